@@ -21,7 +21,12 @@ import javax.servlet.ServletContextListener;
 import javax.servlet.ServletContextEvent;
 
 import io.personium.core.event.EventBus;
+import io.personium.core.model.impl.fs.DavContentSweeper;
+import io.personium.core.model.impl.fs.DavEncryptionMigrator;
+import io.personium.core.model.lock.LockManager;
 import io.personium.core.rs.PersoniumCoreApplication;
+import io.personium.core.stream.impl.activemq.ActiveMQConnectionPool;
+import io.personium.core.utils.HttpClientFactory;
 import io.personium.core.ws.WebSocketService;
 
 /**
@@ -39,16 +44,37 @@ public class PersoniumCoreListener implements ServletContextListener {
 
         // Start WebSocketService.
         WebSocketService.start();
+
+        // Start rewriting encrypted DAV files into chunks if enabled.
+        DavEncryptionMigrator.start();
+
+        // Delete staging files left by the last stop.
+        DavContentSweeper.sweepStagingFiles();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        // Stop rewriting encrypted DAV files.
+        DavEncryptionMigrator.stop();
+
+        // Stop deleting replaced DAV contents.
+        DavContentSweeper.stop();
+
         // Stop WebSocket service.
         WebSocketService.stop();
 
         // Stop EventBus.
         EventBus.stop();
 
+        // Release cell reference counts held by this node.
+        LockManager.shutdown();
+
+        // Close pooled HTTP connections.
+        HttpClientFactory.shutdown();
+
+        // Flush batched messages and close pooled JMS connections.
+        ActiveMQConnectionPool.shutdown();
+
         // Stop Application.
         PersoniumCoreApplication.stop();
     }
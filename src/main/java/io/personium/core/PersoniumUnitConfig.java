@@ -195,6 +195,13 @@ public class PersoniumUnitConfig {
         /** Encrypt the DAV file (true: enabled false: disabled (default)). */
         public static final String DAV_ENCRYPT_ENABLED = KEY_ROOT + "security.dav.encrypt.enabled";
 
+        /** Chunk size of encrypted DAV files in bytes (0: not chunked (default)). */
+        public static final String DAV_ENCRYPT_CHUNK_SIZE = KEY_ROOT + "security.dav.encrypt.chunkSize";
+
+        /** Rewrite DAV files encrypted without chunks in the background (true: enabled false: disabled). */
+        public static final String DAV_ENCRYPT_MIGRATION_ENABLED =
+                KEY_ROOT + "security.dav.encrypt.migration.enabled";
+
         /** Default scope of token for grant_type=password . */
         public static final String TOKEN_DEFAULT_SCOPE_ROPC = KEY_ROOT + "security.token.defaultScope.ropc";
 
@@ -225,6 +232,9 @@ public class PersoniumUnitConfig {
         /** Interval at cell lock acquisition retry.*/
         public static final String CELL_RETRY_INTERVAL = KEY_ROOT + "lock.cell.retry.interval";
 
+        /** Lifetime of locks, renewed while they are held (s).*/
+        public static final String LEASE = KEY_ROOT + "lock.lease";
+
         /** The memcached host name to hold lock on memcached.*/
         public static final String MEMCACHED_HOST = KEY_ROOT + "lock.memcached.host";
 
@@ -233,6 +243,16 @@ public class PersoniumUnitConfig {
 
         /** Lock memcached operation Timeout value (ms).*/
         public static final String MEMCACHED_OPTIMEOUT = KEY_ROOT + "lock.memcached.opTimeout";
+
+        /** Lifetime of cell statuses and the ReadDeleteOnly mode cached in process (ms).*/
+        public static final String LOCAL_CACHE_EXPIRES_IN = KEY_ROOT + "lock.localCache.expiresIn";
+
+        /** Interval at checking changes of cell statuses to invalidate those cached in process (ms).*/
+        public static final String LOCAL_CACHE_SYNC_INTERVAL = KEY_ROOT + "lock.localCache.syncInterval";
+
+        /** Interval at releasing cell reference counts no longer used in process (ms).*/
+        public static final String CELL_REFERENCE_COUNT_FLUSH_INTERVAL = KEY_ROOT
+                + "lock.cell.referenceCount.flushInterval";
     }
 
     /**
@@ -302,6 +322,21 @@ public class PersoniumUnitConfig {
 
         /** Retry interval (msec) at the time of reading / writing Dav file, hard link creation / file name modification.*/
         public static final String RETRY_INTERVAL = KEY_ROOT + "binaryData.dav.retry.interval";
+
+        /** Time (sec) to keep the content of a Dav file after it is replaced, for the readers of the content.*/
+        public static final String RETIRED_CONTENT_RETENTION = KEY_ROOT + "binaryData.dav.retired.retention";
+
+        /** Maximum number of Dav metadata files kept parsed in process (0: disabled).*/
+        public static final String METADATA_CACHE_SIZE = KEY_ROOT + "binaryData.dav.metadata.cache.size";
+
+        /** Time (msec) to use Dav metadata kept parsed before reading the file again (0: while the file is same).*/
+        public static final String METADATA_CACHE_TTL = KEY_ROOT + "binaryData.dav.metadata.cache.ttl";
+
+        /**
+         * Format to write Dav metadata files (json: JSON text (default), binary: compact binary encoding).
+         * Metadata of service collections and their sources is always written in JSON for the engine.
+         */
+        public static final String METADATA_FORMAT = KEY_ROOT + "binaryData.dav.metadata.format";
     }
 
     /**
@@ -351,12 +386,30 @@ public class PersoniumUnitConfig {
         /** Whether cell caching is enabled Tolerance: true/false.*/
         public static final String CELL_CACHE_ENABLED = KEY_ROOT + "cache.cell.enabled";
 
+        /** Maximum number of cells kept in process. 0 disables the local cell cache.*/
+        public static final String CELL_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.cell.local.maxSize";
+
+        /** Lifetime of cells kept in process (s).*/
+        public static final String CELL_LOCAL_CACHE_EXPIRES_IN = KEY_ROOT + "cache.cell.local.expiresIn";
+
         /** Whether box caching is enabled Tolerance: true/false.*/
         public static final String BOX_CACHE_ENABLED = KEY_ROOT + "cache.box.enabled";
 
         /** Whether schema caching is enabled Tolerance: true/false.*/
         public static final String SCHEMA_CACHE_ENABLED = KEY_ROOT + "cache.schema.enabled";
 
+        /** Maximum number of parsed schemas kept in process. 0 disables the local schema cache.*/
+        public static final String SCHEMA_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.schema.local.maxSize";
+
+        /** Whether in-process caching of cell control objects is enabled Tolerance: true/false.*/
+        public static final String CELLCTL_CACHE_ENABLED = KEY_ROOT + "cache.cellctl.enabled";
+
+        /** Maximum number of cells whose control objects are cached in process.*/
+        public static final String CELLCTL_CACHE_MAX_SIZE = KEY_ROOT + "cache.cellctl.maxSize";
+
+        /** Expiration (sec) of cell control objects cached in process.*/
+        public static final String CELLCTL_CACHE_EXPIRES_IN = KEY_ROOT + "cache.cellctl.expiresIn";
+
         /** memcached host name.*/
         public static final String MEMCACHED_HOST = KEY_ROOT + "cache.memcached.host";
 
@@ -384,6 +437,29 @@ public class PersoniumUnitConfig {
         public static final String PATH = KEY_ROOT + "engine.path";
     }
 
+    /**
+     * Setting around outgoing HTTP connections.
+     */
+    public static final class HttpClient {
+        /** Maximum number of pooled connections of each client type.*/
+        public static final String POOL_MAX_TOTAL = KEY_ROOT + "http.client.pool.maxTotal";
+
+        /** Maximum number of pooled connections to a route (scheme, host and port).*/
+        public static final String POOL_MAX_PER_ROUTE = KEY_ROOT + "http.client.pool.maxPerRoute";
+
+        /** Maximum number of pooled connections to the engine, which all service calls are relayed to.*/
+        public static final String POOL_MAX_PER_ENGINE_ROUTE = KEY_ROOT + "http.client.pool.maxPerEngineRoute";
+
+        /** Time to wait for a pooled connection to be available (ms).*/
+        public static final String POOL_LEASE_TIMEOUT = KEY_ROOT + "http.client.pool.leaseTimeout";
+
+        /** Time to keep an idle connection alive when the server does not specify it (ms).*/
+        public static final String KEEP_ALIVE = KEY_ROOT + "http.client.keepAlive";
+
+        /** Idle time after which pooled connections are closed (ms).*/
+        public static final String POOL_IDLE_TIMEOUT = KEY_ROOT + "http.client.pool.idleTimeout";
+    }
+
     /**
      * Setting around X509.
      */
@@ -451,6 +527,33 @@ public class PersoniumUnitConfig {
 
         /** Number of threads to process event. */
         public static final String EVENTPROC_THREAD_NUM = KEY_ROOT + "eventbus.eventProcessing.thread.num";
+
+        /** Number of threads to send posted events to the broker. 0: sent by the posting thread. */
+        public static final String EMITTER_THREAD_NUM = KEY_ROOT + "eventbus.emitter.thread.num";
+
+        /** Max number of posted events waiting to be sent. */
+        public static final String EMITTER_QUEUE_SIZE = KEY_ROOT + "eventbus.emitter.queue.size";
+
+        /** Max number of events sent in a batch. */
+        public static final String EMITTER_BATCH_SIZE = KEY_ROOT + "eventbus.emitter.batch.size";
+
+        /** Policy when the queue of posted events is full: block/drop-oldest/spill. */
+        public static final String EMITTER_OVERFLOW = KEY_ROOT + "eventbus.emitter.overflow";
+
+        /** Local directory where events are spilled. */
+        public static final String EMITTER_SPILL_DIR = KEY_ROOT + "eventbus.emitter.spill.dir";
+
+        /** Whether events which no rule or WebSocket subscriber can observe are dropped on posting. */
+        public static final String INTEREST_ENABLED = KEY_ROOT + "eventbus.interest.enabled";
+
+        /** Time to cache the interests of a cell on posting nodes in milliseconds. */
+        public static final String INTEREST_CACHE_TTL = KEY_ROOT + "eventbus.interest.cache.ttl";
+
+        /** Lifetime of the shared interests of a cell in seconds. */
+        public static final String INTEREST_LEASE_TTL = KEY_ROOT + "eventbus.interest.lease.ttl";
+
+        /** Space separated names of cells whose events are always sent. */
+        public static final String INTEREST_AUDIT_CELLS = KEY_ROOT + "eventbus.interest.audit.cells";
     }
 
     /**
@@ -467,6 +570,12 @@ public class PersoniumUnitConfig {
         public static final String PASSWORD = KEY_ROOT + "stream.password";
         /** data retention period. */
         public static final String EXPIRESIN = KEY_ROOT + "stream.expiresIn";
+        /** Number of threads to deliver stream data to WebSocket sessions. */
+        public static final String FANOUT_THREAD_NUM = KEY_ROOT + "stream.fanout.thread.num";
+        /** Max number of stream data waiting for a WebSocket session. */
+        public static final String FANOUT_QUEUE_SIZE = KEY_ROOT + "stream.fanout.queue.size";
+        /** Time to live of authorization decisions of stream WebSocket sessions in milliseconds. */
+        public static final String AUTHZ_CACHE_TTL = KEY_ROOT + "stream.authz.cache.ttl";
     }
 
     /**
@@ -475,6 +584,46 @@ public class PersoniumUnitConfig {
     public static final class Rule {
         /** Number of threads to manage timer event. */
         public static final String TIMEREVENT_THREAD_NUM = KEY_ROOT + "rule.timerEvent.thread.num";
+        /** Number of threads to load rules of cells. */
+        public static final String LOADER_THREAD_NUM = KEY_ROOT + "rule.loader.thread.num";
+        /** Number of rules searched to warm up their cells at startup. */
+        public static final String PRELOAD_SIZE = KEY_ROOT + "rule.preload.size";
+    }
+
+    /**
+     * WebSocket configurations.
+     */
+    public static final class WebSocket {
+        /** Number of threads to send events to WebSocket sessions. */
+        public static final String DISPATCHER_THREAD_NUM = KEY_ROOT + "ws.dispatcher.thread.num";
+        /** Max number of messages waiting to be sent to a session. */
+        public static final String OUTBOUND_QUEUE_SIZE = KEY_ROOT + "ws.outbound.queue.size";
+        /** Policy when the outbound queue is full: drop/close. */
+        public static final String OUTBOUND_OVERFLOW = KEY_ROOT + "ws.outbound.overflow";
+    }
+
+    /**
+     * ActiveMQ sender configurations.
+     */
+    public static final class ActiveMQ {
+        /** Max number of idle sessions kept for each broker connection. */
+        public static final String SESSION_POOL_SIZE = KEY_ROOT + "activemq.session.pool.size";
+        /** Whether messages are sent asynchronously in batches. */
+        public static final String ASYNC_ENABLED = KEY_ROOT + "activemq.async.enabled";
+        /** Interval of flushing batched messages in milliseconds. */
+        public static final String ASYNC_FLUSH_INTERVAL = KEY_ROOT + "activemq.async.flush.interval";
+        /** Max number of messages sent in a batch. */
+        public static final String ASYNC_BATCH_SIZE = KEY_ROOT + "activemq.async.batch.size";
+        /** Max number of messages waiting to be sent. */
+        public static final String ASYNC_QUEUE_SIZE = KEY_ROOT + "activemq.async.queue.size";
+    }
+
+    /**
+     * In-process broker configurations.
+     */
+    public static final class InProcessMQ {
+        /** Max number of messages kept in each queue or subscription. The oldest is dropped when full. */
+        public static final String QUEUE_SIZE = KEY_ROOT + "inprocess.queue.size";
     }
 
     /**
@@ -1114,6 +1263,13 @@ public class PersoniumUnitConfig {
         return get(Lock.RETRY_INTERVAL);
     }
 
+    /**
+     * @return Lifetime of locks, renewed while they are held (s).
+     */
+    public static int getLockLease() {
+        return Integer.parseInt(get(Lock.LEASE));
+    }
+
     /**
      * @return Number of retries when acquiring cell lock.
      */
@@ -1149,6 +1305,27 @@ public class PersoniumUnitConfig {
         return Long.parseLong(get(Lock.MEMCACHED_OPTIMEOUT));
     }
 
+    /**
+     * @return Lifetime of cell statuses and the ReadDeleteOnly mode cached in process (ms).
+     */
+    public static long getLockLocalCacheExpiresIn() {
+        return Long.parseLong(get(Lock.LOCAL_CACHE_EXPIRES_IN));
+    }
+
+    /**
+     * @return Interval at checking changes of cell statuses to invalidate those cached in process (ms).
+     */
+    public static long getLockLocalCacheSyncInterval() {
+        return Long.parseLong(get(Lock.LOCAL_CACHE_SYNC_INTERVAL));
+    }
+
+    /**
+     * @return Interval at releasing cell reference counts no longer used in process (ms).
+     */
+    public static long getCellReferenceCountFlushInterval() {
+        return Long.parseLong(get(Lock.CELL_REFERENCE_COUNT_FLUSH_INTERVAL));
+    }
+
     /**
      * @return Account valid authentication interval time (s).
      */
@@ -1234,6 +1411,38 @@ public class PersoniumUnitConfig {
         return Long.parseLong(get(BinaryData.RETRY_INTERVAL));
     }
 
+    /**
+     * Time to keep the content of a Dav file after it is replaced.
+     * @return retention (sec)
+     */
+    public static long getDavRetiredContentRetention() {
+        return Long.parseLong(get(BinaryData.RETIRED_CONTENT_RETENTION));
+    }
+
+    /**
+     * Maximum number of Dav metadata files kept parsed in process.
+     * @return cache size (0: disabled)
+     */
+    public static int getDavMetadataCacheSize() {
+        return Integer.parseInt(get(BinaryData.METADATA_CACHE_SIZE));
+    }
+
+    /**
+     * Time to use Dav metadata kept parsed before reading the file again.
+     * @return ttl (msec) (0: while the file is same)
+     */
+    public static long getDavMetadataCacheTtl() {
+        return Long.parseLong(get(BinaryData.METADATA_CACHE_TTL));
+    }
+
+    /**
+     * Format to write Dav metadata files. Files in either format can be read regardless of this setting.
+     * @return "json" or "binary"
+     */
+    public static String getDavMetadataFormat() {
+        return get(BinaryData.METADATA_FORMAT);
+    }
+
     /**
      * The number of retries when an error occurred in ES.
      * @return The number of retries
@@ -1351,6 +1560,22 @@ public class PersoniumUnitConfig {
         return Boolean.parseBoolean(get(Cache.CELL_CACHE_ENABLED));
     }
 
+    /**
+     * Returns the maximum number of cells kept in process.
+     * @return maximum number of entries. 0 if the local cell cache is disabled.
+     */
+    public static int getCellLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.CELL_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * Returns the lifetime of cells kept in process.
+     * @return lifetime (s)
+     */
+    public static int getCellLocalCacheExpiresIn() {
+        return Integer.parseInt(get(Cache.CELL_LOCAL_CACHE_EXPIRES_IN));
+    }
+
     /**
      * Returns whether or not the Box's cache is valid.
      * @return true if it is valid.
@@ -1367,6 +1592,36 @@ public class PersoniumUnitConfig {
         return Boolean.parseBoolean(get(Cache.SCHEMA_CACHE_ENABLED));
     }
 
+    /**
+     * Returns the maximum number of parsed schemas kept in process.
+     * @return maximum number of entries. 0 if the local schema cache is disabled.
+     */
+    public static int getSchemaLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.SCHEMA_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * Returns whether or not the in-process cache of cell control objects is valid.
+     * @return true if it is valid.
+     */
+    public static boolean isCellCtlCacheEnabled() {
+        return Boolean.parseBoolean(get(Cache.CELLCTL_CACHE_ENABLED));
+    }
+
+    /**
+     * @return Maximum number of cells whose control objects are cached in process.
+     */
+    public static int getCellCtlCacheMaxSize() {
+        return Integer.parseInt(get(Cache.CELLCTL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return Expiration (sec) of cell control objects cached in process.
+     */
+    public static int getCellCtlCacheExpiresIn() {
+        return Integer.parseInt(get(Cache.CELLCTL_CACHE_EXPIRES_IN));
+    }
+
     /**
      * @return memcached Cache expiration date.
      */
@@ -1398,6 +1653,48 @@ public class PersoniumUnitConfig {
         return get(Engine.PATH);
     }
 
+    /**
+     * @return Maximum number of pooled connections of each HTTP client type.
+     */
+    public static int getHttpClientPoolMaxTotal() {
+        return Integer.parseInt(get(HttpClient.POOL_MAX_TOTAL));
+    }
+
+    /**
+     * @return Maximum number of pooled connections to a route.
+     */
+    public static int getHttpClientPoolMaxPerRoute() {
+        return Integer.parseInt(get(HttpClient.POOL_MAX_PER_ROUTE));
+    }
+
+    /**
+     * @return Maximum number of pooled connections to the engine.
+     */
+    public static int getHttpClientPoolMaxPerEngineRoute() {
+        return Integer.parseInt(get(HttpClient.POOL_MAX_PER_ENGINE_ROUTE));
+    }
+
+    /**
+     * @return Time to wait for a pooled connection to be available (ms).
+     */
+    public static int getHttpClientPoolLeaseTimeout() {
+        return Integer.parseInt(get(HttpClient.POOL_LEASE_TIMEOUT));
+    }
+
+    /**
+     * @return Time to keep an idle connection alive when the server does not specify it (ms).
+     */
+    public static long getHttpClientKeepAlive() {
+        return Long.parseLong(get(HttpClient.KEEP_ALIVE));
+    }
+
+    /**
+     * @return Idle time after which pooled HTTP connections are closed (ms).
+     */
+    public static long getHttpClientPoolIdleTimeout() {
+        return Long.parseLong(get(HttpClient.POOL_IDLE_TIMEOUT));
+    }
+
     /**
      * Get the set value of the path of the X509 secret key file of this UNIT.
      * @return setting value
@@ -1508,6 +1805,22 @@ public class PersoniumUnitConfig {
         return Boolean.parseBoolean(get(Security.DAV_ENCRYPT_ENABLED));
     }
 
+    /**
+     * Chunk size of encrypted DAV files.
+     * @return chunk size in bytes, 0 if files are encrypted without chunks
+     */
+    public static int getDavEncryptChunkSize() {
+        return Integer.parseInt(get(Security.DAV_ENCRYPT_CHUNK_SIZE));
+    }
+
+    /**
+     * Rewrite DAV files encrypted without chunks in the background.
+     * @return true: enabled false: disabled
+     */
+    public static boolean isDavEncryptMigrationEnabled() {
+        return Boolean.parseBoolean(get(Security.DAV_ENCRYPT_MIGRATION_ENABLED));
+    }
+
     /**
      *
      * @return scope string
@@ -1579,6 +1892,82 @@ public class PersoniumUnitConfig {
         return Integer.parseInt(get(EventBus.EVENTPROC_THREAD_NUM));
     }
 
+    /**
+     * Get thread number to send posted events.
+     * @return thread num
+     */
+    public static int getEventEmitterThreadNum() {
+        return Integer.parseInt(get(EventBus.EMITTER_THREAD_NUM));
+    }
+
+    /**
+     * Get max number of posted events waiting to be sent.
+     * @return queue size
+     */
+    public static int getEventEmitterQueueSize() {
+        return Integer.parseInt(get(EventBus.EMITTER_QUEUE_SIZE));
+    }
+
+    /**
+     * Get max number of events sent in a batch.
+     * @return batch size
+     */
+    public static int getEventEmitterBatchSize() {
+        return Integer.parseInt(get(EventBus.EMITTER_BATCH_SIZE));
+    }
+
+    /**
+     * Get policy when the queue of posted events is full.
+     * @return block, drop-oldest or spill
+     */
+    public static String getEventEmitterOverflow() {
+        return get(EventBus.EMITTER_OVERFLOW);
+    }
+
+    /**
+     * Get local directory where events are spilled.
+     * @return directory path
+     */
+    public static String getEventEmitterSpillDir() {
+        return get(EventBus.EMITTER_SPILL_DIR);
+    }
+
+    /**
+     * Get whether events which nobody can observe are dropped on posting.
+     * @return true if dropped
+     */
+    public static boolean isEventInterestEnabled() {
+        return Boolean.parseBoolean(get(EventBus.INTEREST_ENABLED));
+    }
+
+    /**
+     * Get time to cache the interests of a cell on posting nodes.
+     * @return time in milliseconds
+     */
+    public static long getEventInterestCacheTtl() {
+        return Long.parseLong(get(EventBus.INTEREST_CACHE_TTL));
+    }
+
+    /**
+     * Get lifetime of the shared interests of a cell.
+     * @return lifetime in seconds
+     */
+    public static int getEventInterestLeaseTtl() {
+        return Integer.parseInt(get(EventBus.INTEREST_LEASE_TTL));
+    }
+
+    /**
+     * Get names of cells whose events are always sent.
+     * @return cell names
+     */
+    public static String[] getEventInterestAuditCells() {
+        String value = get(EventBus.INTEREST_AUDIT_CELLS);
+        if (value == null || value.trim().isEmpty()) {
+            return new String[0];
+        }
+        return value.trim().split(" +");
+    }
+
     /**
      * Get message queue implementation for Stream.
      * @return message queue string
@@ -1619,6 +2008,30 @@ public class PersoniumUnitConfig {
         return Integer.parseInt(get(Stream.EXPIRESIN));
     }
 
+    /**
+     * Get thread number to deliver stream data.
+     * @return thread num
+     */
+    public static int getStreamFanoutThreadNum() {
+        return Integer.parseInt(get(Stream.FANOUT_THREAD_NUM));
+    }
+
+    /**
+     * Get max number of stream data waiting for a WebSocket session.
+     * @return queue size
+     */
+    public static int getStreamFanoutQueueSize() {
+        return Integer.parseInt(get(Stream.FANOUT_QUEUE_SIZE));
+    }
+
+    /**
+     * Get time to live of authorization decisions of stream WebSocket sessions.
+     * @return time to live in milliseconds
+     */
+    public static long getStreamAuthzCacheTtl() {
+        return Long.parseLong(get(Stream.AUTHZ_CACHE_TTL));
+    }
+
     /**
      * Get thread number of timer event.
      * @return thread num
@@ -1627,6 +2040,94 @@ public class PersoniumUnitConfig {
         return Integer.parseInt(get(Rule.TIMEREVENT_THREAD_NUM));
     }
 
+    /**
+     * Get thread number of loading rules.
+     * @return thread num
+     */
+    public static int getRuleLoaderThreadNum() {
+        return Integer.parseInt(get(Rule.LOADER_THREAD_NUM));
+    }
+
+    /**
+     * Get number of rules searched to warm up their cells at startup.
+     * @return number of rules (0 loads only cells with timer events)
+     */
+    public static int getRulePreloadSize() {
+        return Integer.parseInt(get(Rule.PRELOAD_SIZE));
+    }
+
+    /**
+     * Get thread number of WebSocket event dispatchers.
+     * @return thread num
+     */
+    public static int getWebSocketDispatcherThreadNum() {
+        return Integer.parseInt(get(WebSocket.DISPATCHER_THREAD_NUM));
+    }
+
+    /**
+     * Get max number of messages waiting to be sent to a WebSocket session.
+     * @return queue size
+     */
+    public static int getWebSocketOutboundQueueSize() {
+        return Integer.parseInt(get(WebSocket.OUTBOUND_QUEUE_SIZE));
+    }
+
+    /**
+     * Get policy when the outbound queue of a WebSocket session is full.
+     * @return drop or close
+     */
+    public static String getWebSocketOutboundOverflow() {
+        return get(WebSocket.OUTBOUND_OVERFLOW);
+    }
+
+    /**
+     * Get max number of idle sessions kept for each ActiveMQ connection.
+     * @return pool size
+     */
+    public static int getActiveMQSessionPoolSize() {
+        return Integer.parseInt(get(ActiveMQ.SESSION_POOL_SIZE));
+    }
+
+    /**
+     * Returns whether messages are sent to ActiveMQ asynchronously in batches.
+     * @return true if it is enabled
+     */
+    public static boolean isActiveMQAsyncEnabled() {
+        return Boolean.parseBoolean(get(ActiveMQ.ASYNC_ENABLED));
+    }
+
+    /**
+     * Get interval of flushing batched messages to ActiveMQ.
+     * @return interval in milliseconds
+     */
+    public static long getActiveMQAsyncFlushInterval() {
+        return Long.parseLong(get(ActiveMQ.ASYNC_FLUSH_INTERVAL));
+    }
+
+    /**
+     * Get max number of messages sent to ActiveMQ in a batch.
+     * @return batch size
+     */
+    public static int getActiveMQAsyncBatchSize() {
+        return Integer.parseInt(get(ActiveMQ.ASYNC_BATCH_SIZE));
+    }
+
+    /**
+     * Get max number of messages waiting to be sent to ActiveMQ.
+     * @return queue size
+     */
+    public static int getActiveMQAsyncQueueSize() {
+        return Integer.parseInt(get(ActiveMQ.ASYNC_QUEUE_SIZE));
+    }
+
+    /**
+     * Get max number of messages kept in each queue or subscription of the in-process broker.
+     * @return queue size
+     */
+    public static int getInProcessMQQueueSize() {
+        return Integer.parseInt(get(InProcessMQ.QUEUE_SIZE));
+    }
+
     /**
      * Get username for Token Introspection.
      * @return username
@@ -17,10 +17,15 @@
  */
 package io.personium.core.event;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.personium.core.PersoniumUnitConfig;
@@ -31,6 +36,8 @@ import io.personium.core.rule.RuleManager;
  * Bus for sendig event.
  */
 public final class EventBus {
+    private static Logger log = LoggerFactory.getLogger(EventBus.class);
+
     Cell cell;
 
     /**
@@ -52,12 +59,42 @@ public final class EventBus {
         // set time
         ev.setTime();
 
+        // drop the event if nobody can observe it
+        if (!EventInterest.isObservable(this.cell, ev)) {
+            return;
+        }
+
         // send event
-        EventFactory.getEventSender().send(ev);
+        EventEmitter eventEmitter = emitter;
+        if (eventEmitter != null) {
+            eventEmitter.emit(ev);
+        } else {
+            try {
+                EventFactory.getEventSender().send(ev);
+            } catch (EventSender.EventSendException e) {
+                log.warn("eventbus: dropped event which failed to be sent: " + ev.getEventId().orElse("-")
+                        + ": " + e.getMessage(), e);
+            }
+        }
     }
 
     private static ExecutorService pool;
 
+    private static volatile EventEmitter emitter;
+
+    /**
+     * Get counters of posted events.
+     * Keys are "queued", "sent", "dropped", "spilled", "failed", "latency.avg" and "latency.max".
+     * @return counters, empty if events are sent by the posting thread
+     */
+    public static Map<String, Long> getStatistics() {
+        EventEmitter eventEmitter = emitter;
+        if (eventEmitter == null) {
+            return new HashMap<>();
+        }
+        return eventEmitter.getStatistics();
+    }
+
     /**
      * Start EventBus.
      */
@@ -78,12 +115,25 @@ public final class EventBus {
         }
 
         EventFactory.createEventSender();
+
+        // start sending posted events in the background.
+        EventEmitter eventEmitter = EventEmitter.create();
+        if (eventEmitter != null) {
+            eventEmitter.start();
+        }
+        emitter = eventEmitter;
     }
 
     /**
      * Stop EventBus.
      */
     public static void stop() {
+        // send queued events before closing the sender.
+        EventEmitter eventEmitter = emitter;
+        emitter = null;
+        if (eventEmitter != null) {
+            eventEmitter.stop();
+        }
         EventFactory.closeEventSender();
 
         // shutdown thread pool.
@@ -103,6 +153,7 @@ public final class EventBus {
         }
 
         EventFactory.closeEventPublisher();
+        EventInterest.clear();
     }
 
 }
@@ -0,0 +1,391 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.event;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Sends posted events to the broker in the background.
+ * <p>
+ * Posted events are put on a bounded queue of this node and sent in batches by sender threads,
+ * so the posting thread never waits for the broker. When the queue is full, the posting thread
+ * waits for space, the oldest event is dropped, or the event is spilled to a local file
+ * and sent when the queue becomes idle.
+ * </p>
+ */
+final class EventEmitter {
+    private static Logger log = LoggerFactory.getLogger(EventEmitter.class);
+
+    /** Time to wait for events or space in milliseconds. */
+    private static final long POLL_TIMEOUT = 100;
+
+    /** Time to wait for senders to send the queued events on stop, in seconds. */
+    private static final long STOP_TIMEOUT = 5;
+
+    /** Policy applied when the queue is full. */
+    enum Overflow {
+        /** wait for space. */
+        BLOCK,
+        /** drop the oldest event. */
+        DROP_OLDEST,
+        /** write the event to a local file. */
+        SPILL;
+
+        /**
+         * Parse the policy.
+         * @param value configuration value
+         * @return policy, BLOCK if the value is unknown
+         */
+        static Overflow of(String value) {
+            if (value != null) {
+                String name = value.trim().replace('-', '_');
+                for (Overflow overflow : values()) {
+                    if (overflow.name().equalsIgnoreCase(name)) {
+                        return overflow;
+                    }
+                }
+            }
+            return BLOCK;
+        }
+    }
+
+    private final Supplier<EventSender> sender;
+    private final int threadNum;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final EventSpill spill;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    /** Free slots of the queue. */
+    private final Semaphore space;
+    /** Events in the queue. */
+    private final Semaphore items = new Semaphore(0);
+    private final AtomicBoolean drainingSpill = new AtomicBoolean();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong latencyTotal = new AtomicLong();
+    private final AtomicLong latencyMax = new AtomicLong();
+
+    private volatile boolean running;
+    private ExecutorService pool;
+
+    /**
+     * Constructor.
+     * @param sender sender of events
+     * @param threadNum number of sender threads
+     * @param capacity max number of events waiting to be sent
+     * @param batchSize max number of events sent in a batch
+     * @param overflow policy applied when the queue is full
+     * @param spill spill files, required if the policy is SPILL
+     */
+    EventEmitter(Supplier<EventSender> sender, int threadNum, int capacity, int batchSize,
+            Overflow overflow, EventSpill spill) {
+        this.sender = sender;
+        this.threadNum = threadNum;
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.spill = spill;
+        this.space = new Semaphore(capacity);
+    }
+
+    /**
+     * Create EventEmitter from configurations.
+     * @return EventEmitter, null if events are sent by the posting thread
+     */
+    static EventEmitter create() {
+        int threadNum = PersoniumUnitConfig.getEventEmitterThreadNum();
+        if (threadNum <= 0) {
+            return null;
+        }
+        Overflow overflow = Overflow.of(PersoniumUnitConfig.getEventEmitterOverflow());
+        EventSpill spill = null;
+        if (Overflow.SPILL.equals(overflow)) {
+            String dir = PersoniumUnitConfig.getEventEmitterSpillDir();
+            if (dir == null || dir.isEmpty()) {
+                dir = new File(System.getProperty("java.io.tmpdir"), "personium-event-spill").getPath();
+            }
+            spill = new EventSpill(new File(dir));
+        }
+        return new EventEmitter(EventFactory::getEventSender, threadNum,
+                PersoniumUnitConfig.getEventEmitterQueueSize(),
+                PersoniumUnitConfig.getEventEmitterBatchSize(), overflow, spill);
+    }
+
+    /**
+     * Start sender threads.
+     */
+    void start() {
+        running = true;
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("event-emitter-%d");
+        pool = Executors.newFixedThreadPool(threadNum, builder.build());
+        for (int i = 0; i < threadNum; i++) {
+            pool.execute(this::run);
+        }
+    }
+
+    /**
+     * Send queued events and stop sender threads.
+     * Events which could not be sent in time are spilled or dropped.
+     */
+    void stop() {
+        running = false;
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        int left = 0;
+        while (items.tryAcquire()) {
+            Entry entry = take();
+            if (spill != null && spill.append(entry.event)) {
+                spilled.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+                left++;
+            }
+        }
+        if (left > 0) {
+            log.warn("eventbus: {} events were dropped on stop.", left);
+        }
+    }
+
+    /**
+     * Post an event.
+     * @param event event
+     */
+    void emit(PersoniumEvent event) {
+        Entry entry = new Entry(event, System.nanoTime());
+        if (!running) {
+            send(Collections.singletonList(entry));
+            return;
+        }
+        if (space.tryAcquire()) {
+            enqueue(entry);
+            return;
+        }
+        switch (overflow) {
+        case BLOCK:
+            try {
+                while (!space.tryAcquire(POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    if (!running) {
+                        send(Collections.singletonList(entry));
+                        return;
+                    }
+                }
+                enqueue(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drop(event);
+            }
+            break;
+        case SPILL:
+            if (spill.append(event)) {
+                spilled.incrementAndGet();
+            } else {
+                drop(event);
+            }
+            break;
+        default:
+            // drop the oldest event and reuse its slot.
+            if (items.tryAcquire()) {
+                drop(queue.poll().event);
+                enqueue(entry);
+            } else if (space.tryAcquire()) {
+                enqueue(entry);
+            } else {
+                drop(event);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Get counters.
+     * Keys are "queued", "sent", "dropped", "spilled", "failed", "latency.avg" and "latency.max".
+     * Latencies are in milliseconds from posting to sending.
+     * @return counters
+     */
+    Map<String, Long> getStatistics() {
+        Map<String, Long> stat = new HashMap<>();
+        long sentCount = sent.get();
+        stat.put("queued", (long) items.availablePermits());
+        stat.put("sent", sentCount);
+        stat.put("dropped", dropped.get());
+        stat.put("spilled", spilled.get());
+        stat.put("failed", failed.get());
+        long avg = sentCount > 0 ? latencyTotal.get() / sentCount : 0;
+        stat.put("latency.avg", TimeUnit.NANOSECONDS.toMillis(avg));
+        stat.put("latency.max", TimeUnit.NANOSECONDS.toMillis(latencyMax.get()));
+        return stat;
+    }
+
+    private void drop(PersoniumEvent event) {
+        dropped.incrementAndGet();
+        log.warn("eventbus: dropped event as the queue is full: " + event.getEventId().orElse("-"));
+    }
+
+    private void enqueue(Entry entry) {
+        queue.add(entry);
+        items.release();
+    }
+
+    private Entry take() {
+        Entry entry = queue.poll();
+        space.release();
+        return entry;
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || items.availablePermits() > 0) {
+            try {
+                if (!items.tryAcquire(POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    // the queue is idle.
+                    drainSpill();
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            batch.add(take());
+            while (batch.size() < batchSize && items.tryAcquire()) {
+                batch.add(take());
+            }
+            send(batch);
+            batch.clear();
+        }
+    }
+
+    private void drainSpill() {
+        if (spill == null || !running || !spill.hasData() || !drainingSpill.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            int count = spill.drain(event -> {
+                batch.add(new Entry(event, System.nanoTime()));
+                if (batch.size() >= batchSize) {
+                    send(batch);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+            log.info("eventbus: {} spilled events were sent.", count);
+        } finally {
+            drainingSpill.set(false);
+        }
+    }
+
+    private void send(List<Entry> batch) {
+        List<PersoniumEvent> events = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            events.add(entry.event);
+        }
+        try {
+            sender.get().send(events);
+        } catch (RuntimeException e) {
+            log.info("eventbus: failed to send a batch of {} events, sending them one by one: {}",
+                    batch.size(), e.getMessage());
+            sendEach(batch);
+            return;
+        }
+        countSent(batch);
+    }
+
+    /**
+     * Send the events of a failed batch one at a time, as the posting thread does without the emitter.
+     * Events which still fail are dropped and logged with their ids.
+     * @param batch events of the failed batch
+     */
+    private void sendEach(List<Entry> batch) {
+        List<Entry> sentEntries = new ArrayList<>(batch.size());
+        List<String> droppedIds = new ArrayList<>();
+        RuntimeException cause = null;
+        for (Entry entry : batch) {
+            try {
+                sender.get().send(entry.event);
+                sentEntries.add(entry);
+            } catch (RuntimeException e) {
+                cause = e;
+                failed.incrementAndGet();
+                droppedIds.add(entry.event.getEventId().orElse("-"));
+            }
+        }
+        countSent(sentEntries);
+        if (cause != null) {
+            log.warn("eventbus: dropped events which failed to be sent: " + droppedIds + ": " + cause.getMessage(),
+                    cause);
+        }
+    }
+
+    private void countSent(List<Entry> batch) {
+        long now = System.nanoTime();
+        for (Entry entry : batch) {
+            long latency = now - entry.postedAt;
+            latencyTotal.addAndGet(latency);
+            latencyMax.accumulateAndGet(latency, Math::max);
+        }
+        sent.addAndGet(batch.size());
+    }
+
+    /**
+     * Posted event.
+     */
+    private static final class Entry {
+        final PersoniumEvent event;
+        final long postedAt;
+
+        Entry(PersoniumEvent event, long postedAt) {
+            this.event = event;
+            this.postedAt = postedAt;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package io.personium.core.event;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.stream.impl.activemq.ActiveMQReceiver;
 import io.personium.core.stream.impl.activemq.ActiveMQSender;
+import io.personium.core.stream.impl.inprocess.InProcessReceiver;
+import io.personium.core.stream.impl.inprocess.InProcessSender;
 import io.personium.core.stream.impl.kafka.KafkaEventReceiver;
 import io.personium.core.stream.impl.kafka.KafkaEventSender;
 
@@ -28,6 +30,7 @@ import io.personium.core.stream.impl.kafka.KafkaEventSender;
 public class EventFactory {
     private static final String ACTIVEMQ = "activemq";
     private static final String KAFKA = "kafka";
+    private static final String INPROCESS = "inprocess";
 
     private static String mq = PersoniumUnitConfig.getEventBusMQ();
     private static String broker = PersoniumUnitConfig.getEventBusBroker();
@@ -52,6 +55,8 @@ public class EventFactory {
             eventReceiver = new ActiveMQReceiver(broker);
         } else if (KAFKA.equals(mq)) {
             eventReceiver = new KafkaEventReceiver(broker);
+        } else if (INPROCESS.equals(mq)) {
+            eventReceiver = new InProcessReceiver();
         } else {
             eventReceiver = new ActiveMQReceiver(broker);
         }
@@ -71,6 +76,8 @@ public class EventFactory {
             eventSubscriber = new ActiveMQReceiver(broker);
         } else if (KAFKA.equals(mq)) {
             eventSubscriber = new KafkaEventReceiver(broker);
+        } else if (INPROCESS.equals(mq)) {
+            eventSubscriber = new InProcessReceiver();
         } else {
             eventSubscriber = new ActiveMQReceiver(broker);
         }
@@ -91,6 +98,8 @@ public class EventFactory {
             eventSubscriber = new ActiveMQReceiver(broker);
         } else if (KAFKA.equals(mq)) {
             eventSubscriber = new KafkaEventReceiver(broker);
+        } else if (INPROCESS.equals(mq)) {
+            eventSubscriber = new InProcessReceiver();
         } else {
             eventSubscriber = new ActiveMQReceiver(broker);
         }
@@ -107,6 +116,8 @@ public class EventFactory {
             eventSender = new ActiveMQSender(broker);
         } else if (KAFKA.equals(mq)) {
             eventSender = new KafkaEventSender(broker);
+        } else if (INPROCESS.equals(mq)) {
+            eventSender = new InProcessSender();
         } else {
             eventSender = new ActiveMQSender(broker);
         }
@@ -137,6 +148,8 @@ public class EventFactory {
             eventPublisher = new ActiveMQSender(broker);
         } else if (KAFKA.equals(mq)) {
             eventPublisher = new KafkaEventSender(broker);
+        } else if (INPROCESS.equals(mq)) {
+            eventPublisher = new InProcessSender();
         } else {
             eventPublisher = new ActiveMQSender(broker);
         }
@@ -170,6 +183,8 @@ public class EventFactory {
             publisher = new ActiveMQSender(broker);
         } else if (KAFKA.equals(mq)) {
             publisher = new KafkaEventSender(broker);
+        } else if (INPROCESS.equals(mq)) {
+            publisher = new InProcessSender();
         } else {
             publisher = new ActiveMQSender(broker);
         }
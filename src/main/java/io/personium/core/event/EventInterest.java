@@ -0,0 +1,198 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.event;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.Cell;
+import io.personium.core.model.lock.EventInterestLockManager;
+import io.personium.core.rule.RuleManager;
+
+/**
+ * Interests of cells in their events, shared by all nodes.
+ * <p>
+ * Events of a cell can be observed only by its rules (including the log action) and WebSocket subscribers.
+ * Nodes which hold the rules of a cell write whether it has rules, and nodes which have WebSocket subscribers
+ * of a cell keep writing a lease. Posting nodes read them, cache them for a short time,
+ * and drop events of cells which have neither.
+ * External events, events which change rules and events of full audit cells are always sent.
+ * An unknown rule interest is regarded as interested.
+ * A lease left by subscribers which have gone is kept until it expires, which only sends events needlessly.
+ * </p>
+ */
+public final class EventInterest {
+
+    /** Maximum number of cells whose interests are cached. */
+    private static final long CACHE_MAX_SIZE = 10000;
+
+    private static volatile Cache<String, Boolean> cache;
+
+    /** Time when the interest was written by this node, keyed by category and cell id. */
+    private static final Map<String, Long> written = new ConcurrentHashMap<>();
+
+    private static volatile Set<String> auditCells;
+
+    private EventInterest() {
+    }
+
+    /**
+     * Return whether the event may be observed.
+     * @param cell cell of the event
+     * @param event event
+     * @return false if nobody can observe the event
+     */
+    static boolean isObservable(Cell cell, PersoniumEvent event) {
+        if (!PersoniumUnitConfig.isEventInterestEnabled() || event.getExternal()) {
+            return true;
+        }
+        String cellId = cell.getId();
+        if (RuleManager.isRuleEvent(event)) {
+            // rules may be created: regard as interested until the rules are loaded.
+            write(EventInterestLockManager.CATEGORY_RULE_INTEREST, cellId, 1);
+            getCache().invalidate(cellId);
+            return true;
+        }
+        if (getAuditCells().contains(cell.getName())) {
+            return true;
+        }
+        try {
+            return getCache().get(cellId, () -> lookup(cellId));
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Write whether the cell has rules.
+     * It is called when the rules of the cell are loaded or changed.
+     * @param cellId cell id
+     * @param hasRules true if the cell has rules
+     */
+    public static void publishRules(String cellId, boolean hasRules) {
+        if (!PersoniumUnitConfig.isEventInterestEnabled()) {
+            return;
+        }
+        write(EventInterestLockManager.CATEGORY_RULE_INTEREST, cellId, hasRules ? 1 : 0);
+    }
+
+    /**
+     * Write whether the cell has rules again unless it was written recently.
+     * It is called when events of the cell are judged, so that the interest does not expire.
+     * @param cellId cell id
+     * @param hasRules true if the cell has rules
+     */
+    public static void refreshRules(String cellId, boolean hasRules) {
+        if (!PersoniumUnitConfig.isEventInterestEnabled()
+                || isWrittenRecently(EventInterestLockManager.CATEGORY_RULE_INTEREST, cellId)) {
+            return;
+        }
+        write(EventInterestLockManager.CATEGORY_RULE_INTEREST, cellId, hasRules ? 1 : 0);
+    }
+
+    /**
+     * Write the lease of WebSocket subscribers of the cell unless it was written recently.
+     * It must be called periodically while the cell has subscribers on this node.
+     * @param cellId cell id
+     */
+    public static void refreshWebSocket(String cellId) {
+        if (!PersoniumUnitConfig.isEventInterestEnabled()
+                || isWrittenRecently(EventInterestLockManager.CATEGORY_WEBSOCKET_INTEREST, cellId)) {
+            return;
+        }
+        write(EventInterestLockManager.CATEGORY_WEBSOCKET_INTEREST, cellId, 1);
+        // events posted to this node are sent to the new subscriber at once
+        getCache().invalidate(cellId);
+    }
+
+    /**
+     * Stop keeping the lease of WebSocket subscribers of the cell written by this node.
+     * It is called when the cell has no subscribers left on this node.
+     * The shared lease is not cleared, because other nodes may still have subscribers.
+     * It expires unless they refresh it, and until then events of the cell are only sent needlessly.
+     * @param cellId cell id
+     */
+    public static void releaseWebSocket(String cellId) {
+        if (!PersoniumUnitConfig.isEventInterestEnabled()) {
+            return;
+        }
+        // a subscriber coming back writes the lease at once
+        written.remove(EventInterestLockManager.CATEGORY_WEBSOCKET_INTEREST + cellId);
+    }
+
+    /**
+     * Clear the interests cached in process.
+     */
+    public static void clear() {
+        cache = null;
+        auditCells = null;
+        written.clear();
+    }
+
+    private static boolean lookup(String cellId) {
+        if (EventInterestLockManager.getInterest(EventInterestLockManager.CATEGORY_RULE_INTEREST, cellId) != 0) {
+            return true;
+        }
+        return EventInterestLockManager.getInterest(
+                EventInterestLockManager.CATEGORY_WEBSOCKET_INTEREST, cellId) > 0;
+    }
+
+    private static boolean isWrittenRecently(String category, String cellId) {
+        Long time = written.get(category + cellId);
+        long half = TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getEventInterestLeaseTtl()) / 2;
+        return time != null && System.currentTimeMillis() - time < half;
+    }
+
+    private static void write(String category, String cellId, long value) {
+        if (EventInterestLockManager.putInterest(category, cellId, value,
+                PersoniumUnitConfig.getEventInterestLeaseTtl())) {
+            written.put(category + cellId, System.currentTimeMillis());
+        } else {
+            written.remove(category + cellId);
+        }
+    }
+
+    private static Cache<String, Boolean> getCache() {
+        Cache<String, Boolean> c = cache;
+        if (c == null) {
+            c = CacheBuilder.newBuilder()
+                    .maximumSize(CACHE_MAX_SIZE)
+                    .expireAfterWrite(PersoniumUnitConfig.getEventInterestCacheTtl(), TimeUnit.MILLISECONDS)
+                    .build();
+            cache = c;
+        }
+        return c;
+    }
+
+    private static Set<String> getAuditCells() {
+        Set<String> cells = auditCells;
+        if (cells == null) {
+            cells = new HashSet<>(Arrays.asList(PersoniumUnitConfig.getEventInterestAuditCells()));
+            auditCells = cells;
+        }
+        return cells;
+    }
+}
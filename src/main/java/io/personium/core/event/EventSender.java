@@ -16,6 +16,8 @@
  */
 package io.personium.core.event;
 
+import java.util.List;
+
 /**
  * Send event to queue.
  */
@@ -30,12 +32,37 @@ public interface EventSender {
     /**
      * Send event.
      * @param event event to send
+     * @throws EventSendException if the event could not be handed to the broker
      */
     void send(PersoniumEvent event);
 
+    /**
+     * Send events in a batch.
+     * @param events events to send
+     * @throws EventSendException if the events could not be handed to the broker
+     */
+    default void send(List<PersoniumEvent> events) {
+        for (PersoniumEvent event : events) {
+            send(event);
+        }
+    }
+
     /**
      * Close connection.
      */
     void close();
 
+    /**
+     * Exception thrown when events could not be handed to the broker.
+     */
+    class EventSendException extends RuntimeException {
+        /**
+         * constructor.
+         * @param message message
+         * @param cause root exception
+         */
+        public EventSendException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.event;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local files of events which could not be queued.
+ * <p>
+ * Events are appended to the current file. Readers roll the current file and read the rolled files,
+ * including files left by the previous run.
+ * </p>
+ */
+class EventSpill {
+    private static Logger log = LoggerFactory.getLogger(EventSpill.class);
+
+    private static final String CURRENT = "events.current";
+    private static final String ROLLED_PREFIX = "events-";
+    private static final String ROLLED_SUFFIX = ".spill";
+
+    private final File dir;
+
+    /** Guarded by this object. */
+    private DataOutputStream out;
+    /** Guarded by this object. */
+    private boolean hasData;
+
+    /**
+     * Constructor.
+     * @param dir directory of spill files
+     */
+    EventSpill(File dir) {
+        this.dir = dir;
+        String[] files = dir.list();
+        this.hasData = files != null && files.length > 0;
+    }
+
+    /**
+     * Append an event.
+     * @param event event
+     * @return true if the event is written
+     */
+    synchronized boolean append(PersoniumEvent event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(event);
+            }
+            if (out == null) {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("failed to create directory: " + dir);
+                }
+                out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(new File(dir, CURRENT), true)));
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            out.flush();
+            hasData = true;
+            return true;
+        } catch (IOException e) {
+            log.warn("eventbus: failed to spill event: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Check if there may be spilled events.
+     * @return true if there are
+     */
+    synchronized boolean hasData() {
+        return hasData;
+    }
+
+    /**
+     * Read and delete all spilled events.
+     * @param consumer consumer of events
+     * @return number of events read
+     */
+    int drain(Consumer<PersoniumEvent> consumer) {
+        List<File> files = roll();
+        int count = 0;
+        for (File file : files) {
+            count += read(file, consumer);
+            if (!file.delete()) {
+                log.warn("eventbus: failed to delete spill file: " + file);
+            }
+        }
+        return count;
+    }
+
+    private synchronized List<File> roll() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("eventbus: failed to close spill file: " + e.getMessage());
+            }
+            out = null;
+        }
+        File current = new File(dir, CURRENT);
+        if (current.exists()) {
+            File rolled = new File(dir, ROLLED_PREFIX + System.currentTimeMillis() + "-" + System.nanoTime()
+                    + ROLLED_SUFFIX);
+            if (!current.renameTo(rolled)) {
+                log.warn("eventbus: failed to roll spill file: " + current);
+            }
+        }
+        hasData = false;
+        File[] rolledFiles = dir.listFiles((d, name) -> name.startsWith(ROLLED_PREFIX)
+                && name.endsWith(ROLLED_SUFFIX));
+        if (rolledFiles == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(rolledFiles);
+        return Arrays.asList(rolledFiles);
+    }
+
+    private static ObjectInputFilter.Status filter(ObjectInputFilter.FilterInfo info) {
+        Class<?> clazz = info.serialClass();
+        if (clazz == null || clazz == PersoniumEvent.class || clazz == Boolean.class) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        return ObjectInputFilter.Status.REJECTED;
+    }
+
+    private int read(File file, Consumer<PersoniumEvent> consumer) {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    ois.setObjectInputFilter(EventSpill::filter);
+                    consumer.accept((PersoniumEvent) ois.readObject());
+                    count++;
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            // a truncated record is left by a crash while writing.
+            log.warn("eventbus: failed to read spill file: " + file + ": " + e.getMessage());
+        }
+        return count;
+    }
+}
@@ -99,6 +99,25 @@ public class ByteRangeSpec {
         return new ByteRangeSpec(firstBytePosLong, lastBytePosLong, entitySize);
     }
 
+    /**
+     * Returns true if this range overlaps the given range or is adjacent to it.
+     * @param other range starting at or after the start of this range
+     * @return true if the two ranges can be served as one
+     */
+    boolean isContiguousWith(final ByteRangeSpec other) {
+        return other.getFirstBytePos() <= this.getLastBytePos() + 1;
+    }
+
+    /**
+     * Returns the range covering this range and the given contiguous range.
+     * @param other range starting at or after the start of this range
+     * @return merged range
+     */
+    ByteRangeSpec merge(final ByteRangeSpec other) {
+        return new ByteRangeSpec(this.getFirstBytePos(), Math.max(this.getLastBytePos(), other.getLastBytePos()),
+                this.entitySize);
+    }
+
     /**
      * Returns true if the starting position of the Range is within the range of the file or checked and is within the range.
      * @return bool
@@ -18,6 +18,7 @@
 package io.personium.core.http.header;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -28,6 +29,7 @@ import java.util.regex.Pattern;
  * Also when it is valid and isSatisfiable (), if there is no byte-range-spec in which the Range start specification is normal, 416 response should be returned.
  * If byte-range-spec to be processed exists, getByteRangeSpecCount () acquires the number of valid byte-range-spec,
  * Get necessary information for response generation with getFirstBytePos (), getLastBytePos (), getContentLength (), makeContentRangeHeaderField ().
+ * Overlapping or adjacent byte-range-specs are coalesced, so that repeating a range can not multiply the response.
  */
 public class RangeHeaderHandler {
 
@@ -98,10 +100,34 @@ public class RangeHeaderHandler {
             byteRangeSpecList.add(brs);
         }
         range.setValid();
-        range.setByteRangeSpec(byteRangeSpecList);
+        range.setByteRangeSpec(coalesce(byteRangeSpecList));
         return range;
     }
 
+    /**
+     * Coalesce overlapping or adjacent byte-range-specs.
+     * The order of the request is kept when there is nothing to coalesce.
+     * @param byteRangeSpecList byte-range-specs within the entity
+     * @return coalesced byte-range-specs
+     */
+    static List<ByteRangeSpec> coalesce(final List<ByteRangeSpec> byteRangeSpecList) {
+        List<ByteRangeSpec> sorted = new ArrayList<ByteRangeSpec>(byteRangeSpecList);
+        sorted.sort(Comparator.comparingLong(ByteRangeSpec::getFirstBytePos));
+        List<ByteRangeSpec> coalesced = new ArrayList<ByteRangeSpec>();
+        for (ByteRangeSpec brs : sorted) {
+            int last = coalesced.size() - 1;
+            if (last >= 0 && coalesced.get(last).isContiguousWith(brs)) {
+                coalesced.set(last, coalesced.get(last).merge(brs));
+            } else {
+                coalesced.add(brs);
+            }
+        }
+        if (coalesced.size() == byteRangeSpecList.size()) {
+            return byteRangeSpecList;
+        }
+        return coalesced;
+    }
+
     /**
      * Returns the character string of the Range header field.
      * @return Range header field
@@ -20,9 +20,9 @@ package io.personium.core.model;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
@@ -32,8 +32,8 @@ import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.wink.webdav.model.Propfind;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -192,10 +192,10 @@ public class CellRsCmp extends DavRsCmp {
     /**
      * {@inheritDoc}
      */
-    protected List<org.apache.wink.webdav.model.Response> createChildrenDavResponseList(String reqUri,
-            Propfind propfind, boolean canAclRead) {
+    @Override
+    protected Stream<String> getPropfindChildNames() {
         // Resources directly below Cell are not displayed.
-        return new ArrayList<>();
+        return Stream.empty();
     }
 
     /**
@@ -321,7 +321,9 @@ public class CellRsCmp extends DavRsCmp {
 
         // Check response media type.
         Header contentType = res.getFirstHeader(HttpHeaders.CONTENT_TYPE);
-        if (!MediaType.TEXT_HTML.equals(contentType.getValue())) {
+        if (contentType == null || !MediaType.TEXT_HTML.equals(contentType.getValue())) {
+            // Return the connection to the pool
+            HttpClientUtils.closeQuietly(res);
             throw PersoniumCoreException.NetWork.UNEXPECTED_RESPONSE.params(requestUrl, MediaType.TEXT_HTML);
         }
 
@@ -16,11 +16,7 @@
  */
 package io.personium.core.model;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
-import org.apache.wink.webdav.model.Propfind;
+import java.util.stream.Stream;
 
 import io.personium.core.auth.AccessContext;
 
@@ -59,14 +55,8 @@ public class CellSnapshotCellRsCmp extends CellRsCmp {
     /**
      * {@inheritDoc}
      */
-    protected List<org.apache.wink.webdav.model.Response> createChildrenDavResponseList(String reqUri,
-            Propfind propfind, boolean canAclRead) {
-        List<org.apache.wink.webdav.model.Response> resList = new ArrayList<>();
-        Map<String, DavCmp> childrenMap = this.davCmp.getChildren();
-        for (String childName : childrenMap.keySet()) {
-            DavCmp child = childrenMap.get(childName);
-            resList.add(createDavResponse(childName, reqUri + "/" + child.getName(), child, propfind, canAclRead));
-        }
-        return resList;
+    @Override
+    protected Stream<String> getPropfindChildNames() {
+        return this.davCmp.getChildNameStream();
     }
 }
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.ws.rs.core.Response.ResponseBuilder;
 
@@ -191,6 +192,14 @@ public interface DavCmp {
      */
     Map<String, DavCmp> getChildren();
 
+    /**
+     * Returns the names of the children one by one as the stream is consumed, without listing all of them at once.
+     * Each child is loaded by {@link #getChild(String)}, so that a child failing to load can be told from the others.
+     * The stream must be closed after use.
+     * @return stream of names of children
+     */
+    Stream<String> getChildNameStream();
+
     /**
      * Returns the cellId.
      * @return cellId
@@ -0,0 +1,90 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.wink.webdav.WebDAVConstants;
+import org.apache.wink.webdav.model.Response;
+import org.apache.wink.webdav.model.WebDAVModelHelper;
+
+/**
+ * Writes a multistatus element of WebDAV one response at a time,
+ * so that the responses of a large collection are not kept in memory all together.
+ */
+class DavMultistatusWriter {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final XMLStreamWriter writer;
+    private final Marshaller marshaller;
+
+    /**
+     * Constructor. Writes the XML declaration and the start tag of the multistatus element.
+     * @param os stream to write to
+     * @throws IOException failed to write
+     */
+    DavMultistatusWriter(OutputStream os) throws IOException {
+        this.marshaller = WebDAVModelHelper.createMarshaller();
+        try {
+            this.writer = OUTPUT_FACTORY.createXMLStreamWriter(os, StandardCharsets.UTF_8.name());
+            this.writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            this.writer.setDefaultNamespace(WebDAVConstants.NAMESPACE_DAV);
+            this.writer.writeStartElement(WebDAVConstants.NAMESPACE_DAV, "multistatus");
+            this.writer.writeDefaultNamespace(WebDAVConstants.NAMESPACE_DAV);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes a response element.
+     * @param response response
+     * @throws IOException failed to write
+     */
+    void write(Response response) throws IOException {
+        try {
+            this.marshaller.marshal(response, this.writer);
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes the end tag of the multistatus element.
+     * Not called on errors, so that the client does not take a partial list as a complete one.
+     * @throws IOException failed to write
+     */
+    void finish() throws IOException {
+        try {
+            this.writer.writeEndElement();
+            this.writer.writeEndDocument();
+            this.writer.flush();
+            this.writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -26,8 +26,13 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.HttpMethod;
@@ -43,6 +48,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.codec.CharEncoding;
 import org.apache.http.HttpStatus;
+import org.apache.wink.webdav.WebDAVConstants;
 import org.apache.wink.webdav.model.Creationdate;
 import org.apache.wink.webdav.model.Getcontentlength;
 import org.apache.wink.webdav.model.Getcontenttype;
@@ -87,6 +93,12 @@ public class DavRsCmp {
      */
     private static Logger log = LoggerFactory.getLogger(DavRsCmp.class);
 
+    /** Name of acl property. */
+    private static final QName PROPERTY_ACL = new QName(WebDAVConstants.NAMESPACE_DAV, "acl");
+
+    /** Status of a child which failed in the response of PROPFIND. */
+    static final String STATUS_LINE_INTERNAL_SERVER_ERROR = "HTTP/1.1 500 Internal Server Error";
+
     DavCmp davCmp;
     DavRsCmp parent;
     String pathName;
@@ -269,21 +281,27 @@ public class DavRsCmp {
             reqUri = reqUri.substring(0, reqUri.length() - 1);
         }
 
-        // The actural processing
-        final Multistatus ms = this.of.createMultistatus();
-        List<org.apache.wink.webdav.model.Response> resList = ms.getResponse();
-        resList.add(createDavResponse(pathName, reqUri, this.davCmp, propfind, canAclRead));
-
-        // if Depth is not 0, then process children.
-        if (!"0".equals(depth)) {
-            resList.addAll(createChildrenDavResponseList(reqUri, propfind, canAclRead));
-        }
+        // The response of the resource itself is created beforehand, so that its errors are returned as they are.
+        final org.apache.wink.webdav.model.Response self =
+                createDavResponse(pathName, reqUri, this.davCmp, propfind, canAclRead);
+        final boolean withChildren = !"0".equals(depth);
+        final String href = reqUri;
+        final Propfind request = propfind;
+        final boolean aclRead = canAclRead;
 
         // output the result
+        // Children are listed and written one by one, not to keep all of them in memory.
         StreamingOutput str = new StreamingOutput() {
             @Override
             public void write(final OutputStream os) throws IOException {
-                Multistatus.marshal(ms, os);
+                DavMultistatusWriter writer = new DavMultistatusWriter(os);
+                writer.write(self);
+                if (withChildren) {
+                    try (Stream<String> names = getPropfindChildNames()) {
+                        writeChildResponses(writer, davCmp, names.iterator(), href, request, aclRead);
+                    }
+                }
+                writer.finish();
             }
         };
         return Response.status(HttpStatus.SC_MULTI_STATUS)
@@ -293,21 +311,49 @@ public class DavRsCmp {
     }
 
     /**
-     * create children DavResponse list.
-     * @param reqUri request url
-     * @param propfind propfind
-     * @param canAclRead can acl read
-     * @return DavResponse list
+     * Returns the names of the children listed in the response of PROPFIND with Depth 1.
+     * @return stream of names, which is closed by the caller
      */
-    protected List<org.apache.wink.webdav.model.Response> createChildrenDavResponseList(String reqUri,
-            Propfind propfind, boolean canAclRead) {
-        List<org.apache.wink.webdav.model.Response> resList = new ArrayList<>();
-        Map<String, DavCmp> childrenMap = this.davCmp.getChildren();
-        for (String childName : childrenMap.keySet()) {
-            DavCmp child = childrenMap.get(childName);
-            resList.add(createDavResponse(childName, reqUri + "/" + child.getName(), child, propfind, canAclRead));
+    protected Stream<String> getPropfindChildNames() {
+        return this.davCmp.getChildNameStream();
+    }
+
+    /**
+     * Writes the responses of the children of PROPFIND.
+     * <p>
+     * The status 207 has been sent when the children are written.
+     * A child failing to load or to create its response is reported with the status 500 in its own response,
+     * and a child deleted while listing is left out, so that the other children are still listed.
+     * If listing the children itself fails, the output stops without the end tag of multistatus,
+     * so that the client sees a broken body instead of taking a partial list as a complete one.
+     * </p>
+     * @param writer writer of the multistatus
+     * @param parent parent DavCmp
+     * @param names names of the children
+     * @param href href of the parent without the trailing slash
+     * @param propfind requested properties
+     * @param canAclRead true if ACL can be read
+     * @throws IOException failed to write
+     */
+    static void writeChildResponses(DavMultistatusWriter writer, DavCmp parent, Iterator<String> names,
+            String href, Propfind propfind, boolean canAclRead) throws IOException {
+        while (names.hasNext()) {
+            String name = names.next();
+            String childHref = href + "/" + name;
+            org.apache.wink.webdav.model.Response response;
+            try {
+                DavCmp child = parent.getChild(name);
+                if (!child.exists()) {
+                    continue;
+                }
+                response = createDavResponse(name, childHref, child, propfind, canAclRead);
+            } catch (RuntimeException e) {
+                log.info("Failed to create the PROPFIND response of " + childHref, e);
+                response = new org.apache.wink.webdav.model.Response(childHref);
+                response.setStatus(STATUS_LINE_INTERNAL_SERVER_ERROR);
+            }
+            writer.write(response);
         }
-        return resList;
     }
 
     /**
@@ -547,14 +593,8 @@ public class DavRsCmp {
         org.apache.wink.webdav.model.Response ret = of.createResponse();
         ret.getHref().add(href);
 
-        // TODO change what to return depending on PROPFIND request content
-        if (propfind != null) {
-
-            log.debug("isAllProp:" + propfind.isAllprop());
-            log.debug("isPropName:" + propfind.isPropname());
-        } else {
-            log.debug("propfind is null");
-        }
+        // Only the properties requested are created.
+        PropSelector selector = new PropSelector(propfind);
 
         /*
          * Displayname dn = of.createDisplayname(); dn.setValue(name); ret.setPropertyOk(dn);
@@ -562,144 +602,142 @@ public class DavRsCmp {
 
         Long updated = dCmp.getUpdated();
         if (updated != null) {
-            Getlastmodified lm = of.createGetlastmodified();
-            lm.setValue(new Date(updated));
-            ret.setPropertyOk(lm);
+            selector.put(ret, WebDAVConstants.PROPERTY_GETLASTMODIFIED, () -> {
+                Getlastmodified lm = of.createGetlastmodified();
+                lm.setValue(new Date(updated));
+                return lm;
+            });
         }
         Long published = dCmp.getPublished();
         if (published != null) {
-            Creationdate cd = of.createCreationdate();
-            cd.setValue(new Date(published));
-            ret.setPropertyOk(cd);
+            selector.put(ret, WebDAVConstants.PROPERTY_CREATIONDATE, () -> {
+                Creationdate cd = of.createCreationdate();
+                cd.setValue(new Date(published));
+                return cd;
+            });
         }
         String type = dCmp.getType();
+        if (DavCmp.TYPE_NULL.equals(type)) {
+            // If TYPE_NULL, not display anything.
+            ret.getHref().remove(href);
+        } else {
+            selector.put(ret, WebDAVConstants.PROPERTY_RESOURCETYPE, () -> createResourcetype(of, type));
+        }
         if (DavCmp.TYPE_DAV_FILE.equals(type)) {
             // Dav File
-            Resourcetype rt1 = of.createResourcetype();
-            ret.setPropertyOk(rt1);
-            Getcontentlength gcl = new Getcontentlength();
-            gcl.setValue(String.valueOf(dCmp.getContentLength()));
-            ret.setPropertyOk(gcl);
-            String contentType = dCmp.getContentType();
-            Getcontenttype gct = new Getcontenttype();
-            gct.setValue(contentType);
-            ret.setPropertyOk(gct);
-        } else if (DavCmp.TYPE_COL_ODATA.equals(type)) {
-            // OData Service Resource
-            Resourcetype colRt = of.createResourcetype();
-            colRt.setCollection(of.createCollection());
-            List<Element> listElement = colRt.getAny();
-            QName qname = new QName(CommonUtils.XmlConst.NS_PERSONIUM, CommonUtils.XmlConst.ODATA,
-                    CommonUtils.XmlConst.NS_PREFIX_PERSONIUM);
-            Element element = WebDAVModelHelper.createElement(qname);
-            listElement.add(element);
-            ret.setPropertyOk(colRt);
-
-        } else if (DavCmp.TYPE_COL_SVC.equals(type)) {
-            // Engine Service Resource
-            Resourcetype colRt = of.createResourcetype();
-            colRt.setCollection(of.createCollection());
-            List<Element> listElement = colRt.getAny();
-            QName qname = new QName(CommonUtils.XmlConst.NS_PERSONIUM, CommonUtils.XmlConst.SERVICE,
-                    CommonUtils.XmlConst.NS_PREFIX_PERSONIUM);
-            Element element = WebDAVModelHelper.createElement(qname);
-            listElement.add(element);
-            ret.setPropertyOk(colRt);
-
-        } else if (DavCmp.TYPE_COL_STREAM.equals(type)) {
-            // Stream Resource
-            Resourcetype colRt = of.createResourcetype();
-            colRt.setCollection(of.createCollection());
-            List<Element> listElement = colRt.getAny();
-            QName qname = new QName(CommonUtils.XmlConst.NS_PERSONIUM, CommonUtils.XmlConst.STREAM,
-                    CommonUtils.XmlConst.NS_PREFIX_PERSONIUM);
-            Element element = WebDAVModelHelper.createElement(qname);
-            listElement.add(element);
-            ret.setPropertyOk(colRt);
-
+            selector.put(ret, WebDAVConstants.PROPERTY_GETCONTENTLENGTH, () -> {
+                Getcontentlength gcl = new Getcontentlength();
+                gcl.setValue(String.valueOf(dCmp.getContentLength()));
+                return gcl;
+            });
+            selector.put(ret, WebDAVConstants.PROPERTY_GETCONTENTTYPE, () -> {
+                Getcontenttype gct = new Getcontenttype();
+                gct.setValue(dCmp.getContentType());
+                return gct;
+            });
         } else if (DavCmp.TYPE_CELL.equals(type)) {
-            // Cell
-            Resourcetype colRt = of.createResourcetype();
-            colRt.setCollection(of.createCollection());
-            ret.setPropertyOk(colRt);
-
             // Add cellstatus.
             QName qname = new QName(CommonUtils.XmlConst.NS_PERSONIUM, CommonUtils.XmlConst.CELL_STATUS,
                     CommonUtils.XmlConst.NS_PREFIX_PERSONIUM);
-            Element element = WebDAVModelHelper.createElement(qname);
-            element.setTextContent(dCmp.getCellStatus());
-            ret.setPropertyOk(element);
-        } else if (DavCmp.TYPE_NULL.equals(type)) {
-            // If TYPE_NULL, not display anything.
-            ret.getHref().remove(href);
-        } else {
-            // Collection Resource
-            Resourcetype colRt = of.createResourcetype();
-            colRt.setCollection(of.createCollection());
-            ret.setPropertyOk(colRt);
+            selector.put(ret, qname, () -> {
+                Element element = WebDAVModelHelper.createElement(qname);
+                element.setTextContent(dCmp.getCellStatus());
+                return element;
+            });
         }
 
-        // Processing ACL
-        Acl acl = dCmp.getAcl();
-        if (isAclRead && acl != null) {
-
-            Acl outputAcl = new Acl();
-            String baseUrl = acl.getBase();
-            if (forBarFileUse) {
-                String schema = dCmp.getBox().getSchema();
-                if (schema != null) {
-                    baseUrl = schema + "__role/__/";
-                }
-            }
-            outputAcl.setBase(baseUrl, false);
-            outputAcl.setRequireSchemaAuthz(acl.getRequireSchemaAuthz());
-
-            // Get ace list
-            //   for propfind use, include inherited ace.
-            //   for bar file use, do not include inherited ace.
-            List<Ace> aces = getAces(dCmp, !forBarFileUse);
-            outputAcl.getAceList().addAll(aces);
-
-            // Convert to Element.
-            Document aclDoc = null;
-
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            try {
-                aclDoc = dbf.newDocumentBuilder().newDocument();
-                ObjectIo.marshal(outputAcl, aclDoc);
-            } catch (Exception e) {
-                throw new WebApplicationException(e);
-            }
-            if (aclDoc != null) {
-                Element e = aclDoc.getDocumentElement();
-                ret.setPropertyOk(e);
-            }
+        // Processing ACL, which is read only if it is requested
+        if (isAclRead && selector.isRequested(PROPERTY_ACL) && dCmp.getAcl() != null) {
+            selector.put(ret, PROPERTY_ACL, () -> createAclElement(dCmp, forBarFileUse));
         }
 
         // Processing Other Props
         Map<String, String> props = dCmp.getProperties();
         if (props != null) {
-            List<String> nsList = new ArrayList<String>();
             for (Map.Entry<String, String> entry : props.entrySet()) {
+                // key is "{localName}@{namespace}"
                 String key = entry.getKey();
-                String val = entry.getValue();
                 int idx = key.indexOf("@");
-                String ns = key.substring(idx + 1, key.length());
+                QName qname = idx == -1 ? new QName(key) : new QName(key.substring(idx + 1), key.substring(0, idx));
+                selector.put(ret, qname, () -> parseProp(entry.getValue()));
+            }
+        }
 
-                int nsIdx = nsList.indexOf(ns);
-                if (nsIdx == -1) {
-                    nsList.add(ns);
-                }
+        selector.putNotFound(ret);
+        return ret;
+    }
 
-                Element e = parseProp(val);
+    /**
+     * Create resourcetype property depending on the type of the resource.
+     * @param of ObjectFactory
+     * @param type type string defined in DavCmp.TYPE* constants
+     * @return resourcetype
+     */
+    private static Resourcetype createResourcetype(final ObjectFactory of, final String type) {
+        Resourcetype rt = of.createResourcetype();
+        if (DavCmp.TYPE_DAV_FILE.equals(type)) {
+            // Dav File
+            return rt;
+        }
+        rt.setCollection(of.createCollection());
+        String serviceType = null;
+        if (DavCmp.TYPE_COL_ODATA.equals(type)) {
+            // OData Service Resource
+            serviceType = CommonUtils.XmlConst.ODATA;
+        } else if (DavCmp.TYPE_COL_SVC.equals(type)) {
+            // Engine Service Resource
+            serviceType = CommonUtils.XmlConst.SERVICE;
+        } else if (DavCmp.TYPE_COL_STREAM.equals(type)) {
+            // Stream Resource
+            serviceType = CommonUtils.XmlConst.STREAM;
+        }
+        if (serviceType != null) {
+            QName qname = new QName(CommonUtils.XmlConst.NS_PERSONIUM, serviceType,
+                    CommonUtils.XmlConst.NS_PREFIX_PERSONIUM);
+            rt.getAny().add(WebDAVModelHelper.createElement(qname));
+        }
+        return rt;
+    }
 
-                ret.setPropertyOk(e);
+    /**
+     * Create acl property.
+     * @param dCmp DavCmp
+     * @param forBarFileUse true if used for bar file
+     * @return acl element
+     */
+    private static Element createAclElement(final DavCmp dCmp, final boolean forBarFileUse) {
+        Acl acl = dCmp.getAcl();
+        Acl outputAcl = new Acl();
+        String baseUrl = acl.getBase();
+        if (forBarFileUse) {
+            String schema = dCmp.getBox().getSchema();
+            if (schema != null) {
+                baseUrl = schema + "__role/__/";
             }
+        }
+        outputAcl.setBase(baseUrl, false);
+        outputAcl.setRequireSchemaAuthz(acl.getRequireSchemaAuthz());
 
+        // Get ace list
+        //   for propfind use, include inherited ace.
+        //   for bar file use, do not include inherited ace.
+        List<Ace> aces = getAces(dCmp, !forBarFileUse);
+        outputAcl.getAceList().addAll(aces);
+
+        // Convert to Element.
+        Document aclDoc = null;
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        try {
+            aclDoc = dbf.newDocumentBuilder().newDocument();
+            ObjectIo.marshal(outputAcl, aclDoc);
+        } catch (Exception e) {
+            throw new WebApplicationException(e);
         }
-        return ret;
+        return aclDoc.getDocumentElement();
     }
+
     static final org.apache.wink.webdav.model.Response createDavResponse(final String pathName,
             final String href,
             final DavCmp dCmp,
@@ -751,6 +789,74 @@ public class DavRsCmp {
         return aces;
     }
 
+    /**
+     * Selects the properties to put in a response of PROPFIND, following its allprop, propname or prop element.
+     */
+    private static final class PropSelector {
+        /** true for propname, which requests the names of the properties only. */
+        private final boolean nameOnly;
+        /** Names of the properties requested by prop element, null if all properties are requested. */
+        private final Set<QName> requested;
+        private final Set<QName> found = new HashSet<>();
+
+        PropSelector(final Propfind propfind) {
+            if (propfind == null || propfind.isAllprop()) {
+                this.nameOnly = false;
+                this.requested = null;
+            } else if (propfind.isPropname()) {
+                this.nameOnly = true;
+                this.requested = null;
+            } else {
+                this.nameOnly = false;
+                // propfind with no child is treated as allprop.
+                this.requested = propfind.getProp() == null ? null
+                        : WebDAVModelHelper.extractPropertyNames(propfind.getProp(), new HashSet<>());
+            }
+        }
+
+        /**
+         * Returns whether the property is requested.
+         * @param name property name
+         * @return true if the property is requested
+         */
+        boolean isRequested(final QName name) {
+            return this.requested == null || this.requested.contains(name);
+        }
+
+        /**
+         * Put the property to the response if it is requested.
+         * @param ret response
+         * @param name property name
+         * @param value creates the property, called only if the value is requested
+         */
+        void put(final org.apache.wink.webdav.model.Response ret, final QName name, final Supplier<Object> value) {
+            if (!isRequested(name)) {
+                return;
+            }
+            this.found.add(name);
+            if (this.nameOnly) {
+                ret.setPropertyOk(WebDAVModelHelper.createElement(name));
+            } else {
+                ret.setPropertyOk(value.get());
+            }
+        }
+
+        /**
+         * Put the requested properties which the resource does not have as 404.
+         * @param ret response
+         */
+        void putNotFound(final org.apache.wink.webdav.model.Response ret) {
+            if (this.requested == null) {
+                return;
+            }
+            for (QName name : this.requested) {
+                if (!this.found.contains(name)) {
+                    ret.setPropertyNotFound(WebDAVModelHelper.createElement(name));
+                }
+            }
+        }
+    }
+
     /**
      * returns the RequestKey string.
      * @return RequestKey String
@@ -0,0 +1,298 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+
+import io.personium.common.file.DataCryptor;
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Encryption of DAV file contents in independently encrypted chunks.
+ * <p>
+ * The content is divided into chunks of a fixed size and each chunk is encrypted by {@link DataCryptor}
+ * with a random block in front of it, so that any chunk can be decrypted without the preceding ones
+ * and equal chunks are not encrypted to equal bytes.
+ * Since every chunk except the last has the same encrypted size, the position of a chunk is computed
+ * from the header and a range is read by decrypting only the chunks containing it.
+ * </p>
+ * <pre>
+ * header : magic "PCEF" (4) | version (4) | chunk size (4) | content length (8)
+ * chunk  : AES(random block (16) | chunk of the content)
+ * </pre>
+ */
+public final class ChunkedDataCryptor {
+
+    /** Encryption type of the chunked format, recorded in the metadata. */
+    public static final String ENCRYPTION_TYPE_AES_CHUNKED = "AES-CHUNKED";
+
+    /** Version of the format written by this class. */
+    static final int VERSION = 1;
+
+    /** Length of the header. */
+    static final int HEADER_LENGTH = 20;
+
+    private static final byte[] MAGIC = {'P', 'C', 'E', 'F'};
+
+    /** Block size of AES. */
+    private static final int CIPHER_BLOCK_SIZE = 16;
+
+    /** Increase of the size of a full chunk by encryption: the random block and the padding block. */
+    private static final int CHUNK_OVERHEAD = CIPHER_BLOCK_SIZE * 2;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ChunkedDataCryptor() {
+    }
+
+    /**
+     * Returns whether new contents are written in the chunked format.
+     * @return true if DAV encryption is enabled and the chunk size is positive
+     */
+    public static boolean isEnabled() {
+        return PersoniumUnitConfig.isDavEncryptEnabled() && PersoniumUnitConfig.getDavEncryptChunkSize() > 0;
+    }
+
+    /**
+     * Returns whether the encryption type is the chunked format.
+     * @param encryptionType encryption type
+     * @return true if chunked
+     */
+    public static boolean isChunked(String encryptionType) {
+        return ENCRYPTION_TYPE_AES_CHUNKED.equals(encryptionType);
+    }
+
+    /**
+     * Encrypt the input and write it to a new file.
+     * @param input content
+     * @param file file to create
+     * @param cellId Cell ID
+     * @param chunkSize chunk size, multiple of 16
+     * @return length of the content
+     * @throws IOException if failed to read or write
+     */
+    public static long encode(InputStream input, Path file, String cellId, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize % CIPHER_BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("chunk size must be a positive multiple of 16: " + chunkSize);
+        }
+        DataCryptor cryptor = new DataCryptor(cellId);
+        byte[] plain = new byte[CIPHER_BLOCK_SIZE + chunkSize];
+        long length = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // the content length is written after the content.
+            writeFully(channel, header(chunkSize, 0), 0);
+            long position = HEADER_LENGTH;
+            while (true) {
+                int n = IOUtils.read(input, plain, CIPHER_BLOCK_SIZE, chunkSize);
+                if (n == 0 && length > 0) {
+                    break;
+                }
+                byte[] random = new byte[CIPHER_BLOCK_SIZE];
+                RANDOM.nextBytes(random);
+                System.arraycopy(random, 0, plain, 0, CIPHER_BLOCK_SIZE);
+                byte[] encrypted = IOUtils.toByteArray(
+                        cryptor.encode(new ByteArrayInputStream(plain, 0, CIPHER_BLOCK_SIZE + n), true));
+                writeFully(channel, ByteBuffer.wrap(encrypted), position);
+                position += encrypted.length;
+                length += n;
+                if (n < chunkSize) {
+                    break;
+                }
+            }
+            writeFully(channel, header(chunkSize, length), 0);
+        }
+        return length;
+    }
+
+    /**
+     * Returns the stream of the decrypted content from the position.
+     * The channel is read at its positions without changing the position of the channel.
+     * @param channel channel of the encrypted file
+     * @param position position in the content
+     * @param cellId Cell ID
+     * @param owner closed when the stream is closed, may be null
+     * @return decrypted content
+     * @throws IOException if the header is broken
+     */
+    public static InputStream decode(FileChannel channel, long position, String cellId, Closeable owner)
+            throws IOException {
+        try {
+            return new ChunkInputStream(channel, position, new DataCryptor(cellId), owner);
+        } catch (IOException e) {
+            if (owner != null) {
+                owner.close();
+            }
+            throw e;
+        }
+    }
+
+    private static ByteBuffer header(int chunkSize, long length) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).putInt(VERSION).putInt(chunkSize).putLong(length);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Read the header.
+     * @param channel channel of the encrypted file
+     * @return header positioned at the chunk size, null if it is not the header of this format
+     * @throws IOException if failed to read
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(channel, header, 0);
+        header.flip();
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        int version = header.getInt();
+        int chunkSize = header.getInt(header.position());
+        if (!Arrays.equals(MAGIC, magic) || version != VERSION
+                || chunkSize <= 0 || chunkSize % CIPHER_BLOCK_SIZE != 0) {
+            return null;
+        }
+        return header;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, pos);
+            if (n < 0) {
+                throw new EOFException("encrypted file is too short.");
+            }
+            pos += n;
+        }
+    }
+
+    /**
+     * InputStream decrypting the chunks containing the requested part of the content.
+     */
+    static final class ChunkInputStream extends InputStream {
+        private final FileChannel channel;
+        private final DataCryptor cryptor;
+        private final Closeable owner;
+        private final int chunkSize;
+        private final long length;
+
+        /** Position in the content. */
+        private long position;
+        /** Decrypted chunk containing the position. */
+        private byte[] chunk;
+        private long chunkIndex = -1;
+
+        ChunkInputStream(FileChannel channel, long position, DataCryptor cryptor, Closeable owner)
+                throws IOException {
+            this.channel = channel;
+            this.cryptor = cryptor;
+            this.owner = owner;
+            ByteBuffer header = readHeader(channel);
+            if (header == null) {
+                throw new IOException("unknown format of encrypted file.");
+            }
+            this.chunkSize = header.getInt();
+            this.length = header.getLong();
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            if (n <= 0) {
+                return -1;
+            }
+            return b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+            long index = position / chunkSize;
+            if (index != chunkIndex) {
+                chunk = decryptChunk(index);
+                chunkIndex = index;
+            }
+            int offset = (int) (position - index * chunkSize);
+            int n = Math.min(len, chunk.length - offset);
+            System.arraycopy(chunk, offset, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            if (chunk == null || position / chunkSize != chunkIndex) {
+                return 0;
+            }
+            return (int) (chunkIndex * chunkSize + chunk.length - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (owner != null) {
+                owner.close();
+            }
+        }
+
+        private byte[] decryptChunk(long index) throws IOException {
+            int plainLength = (int) Math.min(chunkSize, length - index * chunkSize);
+            // PKCS5 padding always adds 1 to 16 bytes.
+            int encryptedLength = (CIPHER_BLOCK_SIZE + plainLength) / CIPHER_BLOCK_SIZE * CIPHER_BLOCK_SIZE
+                    + CIPHER_BLOCK_SIZE;
+            ByteBuffer encrypted = ByteBuffer.allocate(encryptedLength);
+            readFully(channel, encrypted, HEADER_LENGTH + index * (chunkSize + CHUNK_OVERHEAD));
+            byte[] plain = IOUtils.toByteArray(cryptor.decode(
+                    new ByteArrayInputStream(encrypted.array()), DataCryptor.ENCRYPTION_TYPE_AES));
+            if (plain.length != CIPHER_BLOCK_SIZE + plainLength) {
+                throw new IOException("encrypted chunk is broken. index: " + index);
+            }
+            return Arrays.copyOfRange(plain, CIPHER_BLOCK_SIZE, plain.length);
+        }
+    }
+}
@@ -18,13 +18,14 @@
 package io.personium.core.model.file;
 
 import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
@@ -40,7 +41,12 @@ import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
 
 /**
- * StreamingOutput class to use when returning the contents of the Dav file to Response Internally create a hard link for reading only and delete it after completion of output.
+ * StreamingOutput class to use when returning the contents of the Dav file to Response.
+ * <p>
+ * The content file is opened when the response is created and read through the descriptor.
+ * Content files are not modified after they are written: an update writes a new file,
+ * and the replaced file is kept for a while before it is deleted, so the content being read does not change.
+ * </p>
  */
 public class StreamingOutputForDavFile implements StreamingOutput {
 
@@ -48,24 +54,29 @@ public class StreamingOutputForDavFile implements StreamingOutput {
     private static final int KILO_BYTES = 1000;
 
     /**
-     * Maximum number of retries at the time of reading / writing Dav file, hard link creation / file name modification.
+     * Maximum number of retries at the time of opening Dav file.
      */
     private static int maxRetryCount = PersoniumUnitConfig.getDavFileOperationRetryCount();
 
     /**
-     * Retry interval (msec) at the time of reading / writing Dav file, hard link creation / file name modification.
+     * Retry interval (msec) at the time of opening Dav file.
      */
     private static long retryInterval = PersoniumUnitConfig.getDavFileOperationRetryInterval();
 
     /**
-     * The hard link path for loading.
+     * Channel of the content file.
      */
-    Path hardLinkPath = null;
+    FileChannel contentChannel = null;
 
     /**
-     * Input stream from the hard link for reading.
+     * Cell ID whose key decrypts the file.
      */
-    InputStream hardLinkInput = null;
+    final String cellId;
+
+    /**
+     * Encryption type of the file.
+     */
+    final String encryptionType;
 
     /**
      * Constructor.
@@ -76,30 +87,19 @@ public class StreamingOutputForDavFile implements StreamingOutput {
      */
     public StreamingOutputForDavFile(String fileFullPath, String cellId, String encryptionType)
             throws FileDataNotFoundException {
-        if (!Files.exists(Paths.get(fileFullPath))) {
-            throw new FileDataNotFoundException(fileFullPath);
-        }
-
-        //Generate a unique name to create a read-only hard link.
-        String hardLinkName = UniqueNameComposer.compose(fileFullPath);
+        this.cellId = cellId;
+        this.encryptionType = encryptionType;
 
         for (int i = 0; i < maxRetryCount; i++) {
             try {
-                synchronized (fileFullPath) {
-                    //Create a hard link.
-                    hardLinkPath = Files.createLink(Paths.get(hardLinkName), Paths.get(fileFullPath));
-                }
-                //Get input stream from hard link
-                InputStream inputStream;
-                // Perform decryption.
-                DataCryptor cryptor = new DataCryptor(cellId);
-                inputStream = cryptor.decode(new FileInputStream(hardLinkPath.toFile()), encryptionType);
-                hardLinkInput = new BufferedInputStream(inputStream);
+                contentChannel = FileChannel.open(Paths.get(fileFullPath), StandardOpenOption.READ);
                 //End if successful
                 return;
+            } catch (NoSuchFileException e) {
+                throw new FileDataNotFoundException(fileFullPath);
             } catch (IOException e) {
                 //Retry until the specified number of times.
-                logger.debug(String.format("Creating hard link %s failed. Will try again.", hardLinkName));
+                logger.debug(String.format("Opening %s failed. Will try again.", fileFullPath));
                 try {
                     Thread.sleep(retryInterval);
                 } catch (InterruptedException e1) {
@@ -108,7 +108,7 @@ public class StreamingOutputForDavFile implements StreamingOutput {
             }
         }
 
-        throw new FileDataNotFoundException("Unable to create hard link for DAV file: " + hardLinkName);
+        throw new FileDataNotFoundException("Unable to open DAV file: " + fileFullPath);
     }
 
     /**
@@ -116,21 +116,24 @@ public class StreamingOutputForDavFile implements StreamingOutput {
      */
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
-        if (null == hardLinkInput) {
-            throw new WebApplicationException(new FileDataNotFoundException(hardLinkPath.toString()));
-        }
         // write start log
         PersoniumCoreLog.Dav.FILE_OPERATION_START.params("-").writeLog();
         ElapsedTimeLog endLog = ElapsedTimeLog.Dav.FILE_OPERATION_END.params();
         endLog.setStartTime();
 
-        int writtenBytes = 0;
+        long writtenBytes = 0;
         try {
-            writtenBytes = IOUtils.copy(hardLinkInput, output);
+            // Perform decryption.
+            InputStream inputStream = Channels.newInputStream(contentChannel);
+            if (ChunkedDataCryptor.isChunked(encryptionType)) {
+                inputStream = ChunkedDataCryptor.decode(contentChannel, 0, cellId, null);
+            } else {
+                DataCryptor cryptor = new DataCryptor(cellId);
+                inputStream = cryptor.decode(inputStream, encryptionType);
+            }
+            writtenBytes = IOUtils.copyLarge(new BufferedInputStream(inputStream), output);
         } finally {
-            IOUtils.closeQuietly(hardLinkInput);
-            //Cleanup. Delete the reading hard link for yourself.
-            Files.delete(hardLinkPath);
+            contentChannel.close();
         }
         // write end log
         endLog.setParams(writtenBytes / KILO_BYTES);
@@ -17,15 +17,24 @@
  */
 package io.personium.core.model.file;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import javax.ws.rs.WebApplicationException;
 
 import org.apache.commons.io.IOUtils;
 
+import io.personium.common.file.DataCryptor;
 import io.personium.common.file.FileDataNotFoundException;
 import io.personium.core.ElapsedTimeLog;
 import io.personium.core.PersoniumCoreException;
@@ -34,20 +43,59 @@ import io.personium.core.http.header.ByteRangeSpec;
 import io.personium.core.http.header.RangeHeaderHandler;
 
 /**
- * StreamingOutput class to use when returning the contents of the Dav file to Response Internally create a hard link for reading only and delete it after completion of output.
+ * StreamingOutput class to use when returning ranges of the contents of the Dav file to Response.
+ * <p>
+ * Ranges are read at their positions in the file without reading the preceding bytes.
+ * Plain files are transferred by the channel, chunked files are decrypted from the chunk
+ * containing the range, and AES (CBC) files are decrypted from the cipher block preceding the range.
+ * Multiple ranges are returned as multipart/byteranges.
+ * </p>
  */
 public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFile {
 
     private RangeHeaderHandler range = null;
     private long fileSize = 0;
 
+    /** Parts of multipart/byteranges. null if a single range is requested. */
+    private List<byte[]> partHeaders = null;
+    private String boundary = null;
+
     private static final int KILO_BYTES = 1000;
 
+    /** Size of the buffer to copy decrypted data. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Block size of AES. */
+    private static final int CIPHER_BLOCK_SIZE = 16;
+
+    private static final String CRLF = "\r\n";
+
+    /** Media type of multiple ranges. */
+    static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+
+    /**
+     * constructor.
+     * @param fileFullPath Full path of the file to read
+     * @param fileSize Size of the file to read
+     * @param range RangeHeader
+     * @param cellId Cell ID
+     * @param encryptionType encryption type
+     * @throws FileDataNotFoundException if the file does not exist.
+     */
+    public StreamingOutputForDavFileWithRange(final String fileFullPath,
+            final long fileSize,
+            final RangeHeaderHandler range,
+            String cellId,
+            String encryptionType) throws FileDataNotFoundException {
+        this(fileFullPath, fileSize, range, null, cellId, encryptionType);
+    }
+
     /**
      * constructor.
      * @param fileFullPath Full path of the file to read
      * @param fileSize Size of the file to read
      * @param range RangeHeader
+     * @param contentType Content type of the file, written in each part of multiple ranges
      * @param cellId Cell ID
      * @param encryptionType encryption type
      * @throws FileDataNotFoundException if the file does not exist.
@@ -55,11 +103,63 @@ public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFil
     public StreamingOutputForDavFileWithRange(final String fileFullPath,
             final long fileSize,
             final RangeHeaderHandler range,
+            final String contentType,
             String cellId,
             String encryptionType) throws FileDataNotFoundException {
         super(fileFullPath, cellId, encryptionType);
         this.range = range;
         this.fileSize = fileSize;
+        if (range.getByteRangeSpecCount() > 1) {
+            this.boundary = UUID.randomUUID().toString().replace("-", "");
+            this.partHeaders = new ArrayList<>();
+            boolean first = true;
+            for (ByteRangeSpec brs : range.getByteRangeSpecList()) {
+                StringBuilder header = new StringBuilder();
+                if (!first) {
+                    header.append(CRLF);
+                }
+                header.append("--").append(boundary).append(CRLF);
+                if (contentType != null) {
+                    header.append("Content-Type: ").append(contentType).append(CRLF);
+                }
+                header.append("Content-Range: ").append(brs.makeContentRangeHeaderField()).append(CRLF);
+                header.append(CRLF);
+                this.partHeaders.add(header.toString().getBytes(StandardCharsets.UTF_8));
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Returns whether multiple ranges are returned.
+     * @return true if multipart/byteranges
+     */
+    public boolean isMultipart() {
+        return partHeaders != null;
+    }
+
+    /**
+     * Returns the Content-Type of the multipart/byteranges response.
+     * @return Content-Type with the boundary
+     */
+    public String getMultipartContentType() {
+        return MULTIPART_BYTERANGES + "; boundary=" + boundary;
+    }
+
+    /**
+     * Returns the length of the response body.
+     * @return Content-Length
+     */
+    public long getContentLength() {
+        List<ByteRangeSpec> brss = range.getByteRangeSpecList();
+        if (!isMultipart()) {
+            return brss.get(0).getContentLength();
+        }
+        long length = 0;
+        for (int i = 0; i < brss.size(); i++) {
+            length += partHeaders.get(i).length + brss.get(i).getContentLength();
+        }
+        return length + closeDelimiter().length;
     }
 
     @Override
@@ -69,40 +169,146 @@ public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFil
         ElapsedTimeLog endLog = ElapsedTimeLog.Dav.FILE_OPERATION_END.params();
         endLog.setStartTime();
 
-        try {
-            //Because it does not correspond to MultiPart, it processes only the first byte-renge-set.
-            int rangeIndex = 0;
+        try (FileChannel channel = contentChannel) {
             List<ByteRangeSpec> brss = range.getByteRangeSpecList();
-            final ByteRangeSpec brs = brss.get(rangeIndex);
-
-            int chr;
-            long first = brs.getFirstBytePos();
-            long last = brs.getLastBytePos();
-            //Skip to the beginning of Range
-            if (hardLinkInput.skip(first) != first) {
-                PersoniumCoreLog.Dav.FILE_TOO_SHORT
-                        .params("skip failed", fileSize, range.getRangeHeaderField()).writeLog();
-                throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND;
-            }
-            //Return to the end of Range
-            for (long pos = first; pos < last + 1; pos++) {
-                chr = hardLinkInput.read();
-                if (chr == -1) {
-                    PersoniumCoreLog.Dav.FILE_TOO_SHORT
-                            .params("too short.size", fileSize, range.getRangeHeaderField()).writeLog();
-                    throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND;
+            long written = 0;
+            for (int i = 0; i < brss.size(); i++) {
+                if (isMultipart()) {
+                    output.write(partHeaders.get(i));
                 }
-                output.write((char) chr);
+                written += writeRange(channel, brss.get(i), output);
+            }
+            if (isMultipart()) {
+                output.write(closeDelimiter());
             }
 
             // write end log
-            endLog.setParams(last / KILO_BYTES);
+            endLog.setParams(written / KILO_BYTES);
             endLog.writeLog();
-        } finally {
-            IOUtils.closeQuietly(hardLinkInput);
-            Files.delete(hardLinkPath);
         }
+    }
+
+    private byte[] closeDelimiter() {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a range of the content.
+     * @param channel channel of the file
+     * @param brs range
+     * @param output output
+     * @return number of written bytes
+     * @throws IOException if failed to read or write
+     */
+    private long writeRange(FileChannel channel, ByteRangeSpec brs, OutputStream output) throws IOException {
+        long first = brs.getFirstBytePos();
+        long length = brs.getContentLength();
+        if (ChunkedDataCryptor.isChunked(encryptionType)) {
+            return copyRange(ChunkedDataCryptor.decode(channel, first, cellId, null), 0, length, output);
+        }
+        if (DataCryptor.ENCRYPTION_TYPE_AES.equals(encryptionType)) {
+            return writeDecryptedRange(channel, first, length, output);
+        }
+        // the channel is not closed because closing it closes the output.
+        WritableByteChannel target = Channels.newChannel(output);
+        long pos = first;
+        long remaining = length;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(pos, remaining, target);
+            if (transferred <= 0) {
+                throw tooShort();
+            }
+            pos += transferred;
+            remaining -= transferred;
+        }
+        return length;
+    }
 
+    /**
+     * Write a range of the encrypted content.
+     * In CBC mode, a block is decrypted with the preceding cipher block,
+     * so decryption starts one block before the block containing the range
+     * and the first decrypted block is discarded.
+     */
+    private long writeDecryptedRange(FileChannel channel, long first, long length, OutputStream output)
+            throws IOException {
+        long block = first / CIPHER_BLOCK_SIZE;
+        long start = 0;
+        long skip = first;
+        if (block > 0) {
+            start = (block - 1) * CIPHER_BLOCK_SIZE;
+            skip = first - start;
+        }
+        DataCryptor cryptor = new DataCryptor(cellId);
+        InputStream input = cryptor.decode(new PositionalInputStream(channel, start), encryptionType);
+        return copyRange(input, skip, length, output);
     }
 
+    /**
+     * Copy a range of the decrypted content.
+     * @param input decrypted content
+     * @param skip number of bytes before the range
+     * @param length length of the range
+     * @param output output
+     * @return number of written bytes
+     * @throws IOException if failed to read or write
+     */
+    private long copyRange(InputStream input, long skip, long length, OutputStream output) throws IOException {
+        try {
+            IOUtils.skipFully(input, skip);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            if (IOUtils.copyLarge(input, output, 0, length, buffer) != length) {
+                throw tooShort();
+            }
+        } catch (EOFException e) {
+            throw tooShort();
+        }
+        return length;
+    }
+
+    private PersoniumCoreException tooShort() {
+        PersoniumCoreLog.Dav.FILE_TOO_SHORT
+                .params("too short.size", fileSize, range.getRangeHeaderField()).writeLog();
+        return PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND;
+    }
+
+    /**
+     * InputStream reading a channel from a position without changing the position of the channel.
+     */
+    static final class PositionalInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            if (n <= 0) {
+                return -1;
+            }
+            return b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // the channel is closed by the owner.
+        }
+    }
 }
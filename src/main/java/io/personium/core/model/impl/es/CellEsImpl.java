@@ -20,23 +20,21 @@ package io.personium.core.model.impl.es;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.odata4j.core.OEntity;
-import org.odata4j.core.OEntityKey;
 import org.odata4j.core.OProperty;
-import org.odata4j.producer.EntitiesResponse;
-import org.odata4j.producer.InlineCount;
-import org.odata4j.producer.ODataProducer;
-import org.odata4j.producer.QueryInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.personium.common.auth.token.IExtRoleContainingToken;
 import io.personium.common.auth.token.Role;
-import io.personium.common.auth.token.TransCellAccessToken;
 import io.personium.common.es.response.PersoniumGetResponse;
 import io.personium.common.es.response.PersoniumSearchHit;
 import io.personium.common.es.response.PersoniumSearchHits;
@@ -55,20 +53,15 @@ import io.personium.core.model.CellSnapshotCellCmp;
 import io.personium.core.model.ModelFactory;
 import io.personium.core.model.ctl.Account;
 import io.personium.core.model.ctl.Common;
-import io.personium.core.model.ctl.ExtCell;
-import io.personium.core.model.ctl.ExtRole;
-import io.personium.core.model.ctl.Relation;
 import io.personium.core.model.impl.es.accessor.CellAccessor;
 import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
 import io.personium.core.model.impl.es.accessor.ODataLinkAccessor;
 import io.personium.core.model.impl.es.cache.CellCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
 import io.personium.core.model.impl.es.doc.CellDocHandler;
-import io.personium.core.model.impl.es.doc.OEntityDocHandler;
 import io.personium.core.model.impl.es.odata.CellCtlODataProducer;
-import io.personium.core.model.impl.fs.DavCmpFsImpl;
 import io.personium.core.model.lock.CellLockManager;
-import io.personium.core.odata.OEntityWrapper;
 import io.personium.core.utils.UriUtils;
 import net.spy.memcached.internal.CheckedOperationTimeoutException;
 
@@ -82,6 +75,12 @@ public class CellEsImpl extends Cell {
     /** Es search result output upper limit. */
     private static final int TOP_NUM = PersoniumUnitConfig.getEsTopNum();
 
+    /** Key of TransCellRoleIndex in CellCtlCache. */
+    private static final String TRANS_CELL_ROLE_INDEX_KEY = "transCellRoleIndex";
+
+    /** Key of the dictionary of role resource URLs in CellCtlCache. */
+    private static final String ROLE_URLS_KEY = "roleUrls";
+
     private Map<String, Object> json;
 
     /**
@@ -97,12 +96,28 @@ public class CellEsImpl extends Cell {
      */
     public static Cell loadFromId(String id) {
         log.debug(id);
+        Map<String, Object> cache = CellCache.getById(id);
+        if (cache != null) {
+            CellEsImpl cell = new CellEsImpl();
+            cell.setJson(cache);
+            cell.id = id;
+            return cell;
+        }
         EntitySetAccessor esCells = EsModel.cell();
         PersoniumGetResponse resp = esCells.get(id);
         if (resp.exists()) {
             CellEsImpl cell = new CellEsImpl();
             cell.setJson(resp.getSource());
             cell.id = resp.getId();
+
+            cache = resp.getSource();
+            cache.put(CellCache.KEY_ID, resp.getId());
+            try {
+                CellCache.cache(cell.getName(), cache);
+            } catch (RuntimeException e) {
+                //Cells are also found from the data store, so only output the log and continue
+                log.info("Failed to cache Cell info.");
+            }
             return cell;
         } else {
             return null;
@@ -253,6 +268,13 @@ public class CellEsImpl extends Cell {
         waitCellAccessible(this.id, maxLoopCount, interval);
 
         CellLockManager.setCellStatus(this.id, CellLockManager.STATUS.BULK_DELETION);
+        //Wait for the requests which have started before other nodes saw the status
+        try {
+            waitCellAccessible(this.id, maxLoopCount, interval);
+        } catch (PersoniumCoreException e) {
+            CellLockManager.setCellStatus(this.id, CellLockManager.STATUS.NORMAL);
+            throw e;
+        }
 
         // Delete cell entity.
         CellAccessor cellAccessor = (CellAccessor) EsModel.cell();
@@ -261,7 +283,7 @@ public class CellEsImpl extends Cell {
             cellAccessor.delete(docHandler);
             log.info("Cell Entity Deletion End.");
         } finally {
-            CellCache.clear(this.getName());
+            CellCache.clear(this.getName(), this.getId());
             CellLockManager.setCellStatus(this.getId(), CellLockManager.STATUS.NORMAL);
         }
 
@@ -278,6 +300,14 @@ public class CellEsImpl extends Cell {
     @SuppressWarnings("unchecked")
     @Override
     public List<Role> getRoleListForAccount(final String username) {
+        //Acquire the version before searching so that changes made during the search are not cached
+        Long version = CellCtlCache.version(this.getId());
+        String cacheKey = "account:" + username;
+        List<Role> cached = CellCtlCache.get(this.getId(), cacheKey, version, List.class);
+        if (cached != null) {
+            return new ArrayList<Role>(cached);
+        }
+
         //Acquire Account
         EntitySetAccessor accountType = EsModel.cellCtl(this, Account.EDM_TYPE_NAME);
 
@@ -328,17 +358,78 @@ public class CellEsImpl extends Cell {
         if (res == null) {
             return ret;
         }
-        PersoniumSearchHit[] hits2 = res.getHits().getHits();
-        for (PersoniumSearchHit hit2 : hits2) {
-            Map<String, Object> row = hit2.getSource();
-            String role = (String) row.get("k2");
-            log.debug(this.id);
-            EntitySetAccessor roleDao = EsModel.cellCtl(this, Role.EDM_TYPE_NAME);
-            PersoniumGetResponse gRes = roleDao.get(role);
-            if (gRes == null) {
-                continue;
+        List<String> roleIds = new ArrayList<String>();
+        for (PersoniumSearchHit hit2 : res.getHits().getHits()) {
+            roleIds.add((String) hit2.getSource().get("k2"));
+        }
+        //Acquire Roles and their Boxes collectively
+        Map<String, Role> roles = getRolesByIds(roleIds, true);
+        for (String roleId : roleIds) {
+            Role roleObj = roles.get(roleId);
+            if (roleObj != null) {
+                ret.add(roleObj);
+            }
+        }
+        CellCtlCache.cache(this.getId(), cacheKey, version, new ArrayList<Role>(ret));
+        return ret;
+    }
+
+    /**
+     * Acquire Roles with the specified internal IDs and Boxes tied to them by one search each.
+     * Roles that do not exist, or whose Box does not exist, are not included.
+     * @param roleIds Internal IDs of Roles
+     * @param withBoxSchema whether to set the schema URL of the Box to the Roles
+     * @return Map of internal ID and Role
+     */
+    Map<String, Role> getRolesByIds(Collection<String> roleIds, boolean withBoxSchema) {
+        Map<String, Role> ret = new HashMap<String, Role>();
+        if (roleIds.isEmpty()) {
+            return ret;
+        }
+        Map<String, Object> roleSource = new HashMap<String, Object>();
+        roleSource.put("query", QueryMapFactory.idsQuery(roleIds));
+        roleSource.put("size", roleIds.size());
+        PersoniumSearchResponse roleRes = EsModel.cellCtl(this, Role.EDM_TYPE_NAME).search(roleSource);
+        if (roleRes == null) {
+            return ret;
+        }
+        return toRoles(roleRes.getHits().getHits(), withBoxSchema);
+    }
+
+    /**
+     * Convert the search results of Roles into Roles, acquiring Boxes tied to them by one search.
+     * Roles whose Box does not exist are not included.
+     * @param roleHits Search results of Roles
+     * @param withBoxSchema whether to set the schema URL of the Box to the Roles
+     * @return Map of internal ID and Role
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Role> toRoles(PersoniumSearchHit[] roleHits, boolean withBoxSchema) {
+        Map<String, Role> ret = new HashMap<String, Role>();
+        Set<String> boxIds = new HashSet<String>();
+        for (PersoniumSearchHit roleHit : roleHits) {
+            Map<String, Object> l = (Map<String, Object>) roleHit.getSource().get("l");
+            String boxId = (String) l.get(Box.EDM_TYPE_NAME);
+            if (boxId != null) {
+                boxIds.add(boxId);
+            }
+        }
+        Map<String, Map<String, Object>> boxes = new HashMap<String, Map<String, Object>>();
+        if (!boxIds.isEmpty()) {
+            //Search Box
+            Map<String, Object> boxSource = new HashMap<String, Object>();
+            boxSource.put("query", QueryMapFactory.idsQuery(boxIds));
+            boxSource.put("size", boxIds.size());
+            PersoniumSearchResponse boxRes = EsModel.box(this).search(boxSource);
+            if (boxRes != null) {
+                for (PersoniumSearchHit boxHit : boxRes.getHits().getHits()) {
+                    boxes.put(boxHit.getId(), (Map<String, Object>) boxHit.getSource().get("s"));
+                }
             }
-            Map<String, Object> src = gRes.getSource();
+        }
+
+        for (PersoniumSearchHit roleHit : roleHits) {
+            Map<String, Object> src = roleHit.getSource();
             Map<String, Object> s = (Map<String, Object>) src.get("s");
             Map<String, Object> l = (Map<String, Object>) src.get("l");
             String roleName = (String) s.get(Common.P_NAME.getName());
@@ -346,41 +437,47 @@ public class CellEsImpl extends Cell {
             String boxName = null;
             String schema = null;
             if (boxId != null) {
-                //Search Box
-                EntitySetAccessor box = EsModel.box(this);
-                PersoniumGetResponse getRes = box.get(boxId);
-                if (getRes == null || !getRes.isExists()) {
+                Map<String, Object> boxs = boxes.get(boxId);
+                if (boxs == null) {
                     continue;
                 }
-                Map<String, Object> boxsrc = getRes.getSource();
-                Map<String, Object> boxs = (Map<String, Object>) boxsrc.get("s");
                 boxName = (String) boxs.get(Common.P_NAME.getName());
-                schema = (String) boxs.get(Box.P_SCHEMA.getName());
+                if (withBoxSchema) {
+                    schema = (String) boxs.get(Box.P_SCHEMA.getName());
+                }
             }
-            Role roleObj = new Role(roleName, boxName, schema, this.getUrl());
-
-            ret.add(roleObj);
+            ret.put(roleHit.getId(), new Role(roleName, boxName, schema, this.getUrl()));
         }
         return ret;
     }
 
     @Override
     public List<Role> getRoleListHere(final IExtRoleContainingToken token) {
-        List<Role> ret = new ArrayList<Role>();
-
-        //List the Role to be paid out from the association setting of ExtCell and Role
-        this.addRoleListExtCelltoRole(token, ret);
-
-        //List the Role to be paid out from the association of ExtCell, Relation and Role
-        //When
-        //List Role to be paid out from the association between ExtCell, Relation, ExtRole, and Role
-        this.addRoleListExtCelltoRelationAndExtRole(token, ret);
-
-        return ret;
+        //The index of ExtCell, Relation, ExtRole and Role settings is built once for each version of the cell
+        Long version = CellCtlCache.version(this.getId());
+        TransCellRoleIndex index = CellCtlCache.get(this.getId(), TRANS_CELL_ROLE_INDEX_KEY, version,
+                TransCellRoleIndex.class);
+        if (index == null) {
+            index = TransCellRoleIndex.build(this);
+            CellCtlCache.cache(this.getId(), TRANS_CELL_ROLE_INDEX_KEY, version, index);
+        }
+        return index.getRoleList(token);
     }
 
     @Override
     public String roleIdToRoleResourceUrl(String roleId) {
+        //Role resource URLs of all Roles in the cell are resolved once for each version of the cell
+        Long version = CellCtlCache.version(this.getId());
+        if (version != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> roleUrls = CellCtlCache.get(this.getId(), ROLE_URLS_KEY, version, Map.class);
+            if (roleUrls == null) {
+                roleUrls = this.loadRoleUrls();
+                CellCtlCache.cache(this.getId(), ROLE_URLS_KEY, version, roleUrls);
+            }
+            //If the role does not exist, it returns null.
+            return roleUrls.get(roleId);
+        }
         CellCtlODataProducer ccop = new CellCtlODataProducer(this);
         OEntity oe = ccop.getEntityByInternalId(Role.EDM_TYPE_NAME, roleId);
         if (oe == null) {
@@ -399,6 +496,26 @@ public class CellEsImpl extends Cell {
         return roleObj.toRoleInstanceURL();
     }
 
+    /**
+     * Acquire the role resource URLs of all Roles in this cell.
+     * Roles are acquired page by page, so that a cell with many Roles is also resolved once for each version.
+     * @return Map of internal ID and role resource URL
+     */
+    private Map<String, String> loadRoleUrls() {
+        List<Map<String, Object>> implicitFilters = QueryMapFactory.getImplicitFilters(this.getId(),
+                null, null, null, Role.EDM_TYPE_NAME);
+        Map<String, Object> source = new HashMap<String, Object>();
+        source.put("query", QueryMapFactory.filteredQuery(null, QueryMapFactory.mustQuery(implicitFilters)));
+        List<PersoniumSearchHit> hits = TransCellRoleIndex.searchAll(
+                EsModel.cellCtl(this, Role.EDM_TYPE_NAME)::search, source, TOP_NUM);
+        Map<String, String> ret = new HashMap<String, String>();
+        PersoniumSearchHit[] roleHits = hits.toArray(new PersoniumSearchHit[hits.size()]);
+        for (Map.Entry<String, Role> entry : this.toRoles(roleHits, true).entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().toRoleInstanceURL());
+        }
+        return Collections.unmodifiableMap(ret);
+    }
+
     @Override
     public String roleResourceUrlToId(String roleUrl, String baseUrl) {
         EntitySetAccessor roleType = EsModel.cellCtl(this, Role.EDM_TYPE_NAME);
@@ -517,236 +634,4 @@ public class CellEsImpl extends Cell {
         }
         throw PersoniumCoreException.Misc.CONFLICT_CELLACCESS;
     }
-
-    /**
-     * Check ExtCell-Role config and decide which Roles to pay out.
-     * @param token TransCellAccessToken or VisitorRefreshToken
-     * @param roles
-     * List of roles to which found roles are to be added.  (destructive method)
-     */
-    private void addRoleListExtCelltoRole(final IExtRoleContainingToken token, List<Role> roles) {
-        String tokenIssuer = token.getIssuer();
-        String tokenSubject = token.getSubject();
-        String tokenSubjectCell;
-        if (tokenSubject.contains("#")) {
-            tokenSubjectCell = token.getSubject().substring(0, tokenSubject.indexOf("#"));
-        } else {
-            tokenSubjectCell = token.getSubject();
-        }
-
-        // If the token subject cell is different from token issuer
-        // ( = two or more levels of transcell token authentication),
-        // Do not assign any role.
-        if (token instanceof TransCellAccessToken && !tokenIssuer.equals(tokenSubjectCell)) {
-            return;
-        }
-        // otherwise
-        ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
-        EntitiesResponse response = null;
-        //Number of search result output setting
-        QueryInfo qi = QueryInfo.newBuilder().setTop(TOP_NUM).setInlineCount(InlineCount.NONE).build();
-
-        List<String> list = UriUtils.getUrlVariations(tokenSubjectCell);
-        for (int i = 0; i < list.size(); i++) {
-            String extCellUrl = list.get(i);
-            try {
-                //Acquire Roles via  ExtCell-Role Navigation Property.
-                response = (EntitiesResponse) op.getNavProperty(ExtCell.EDM_TYPE_NAME,
-                        OEntityKey.create(extCellUrl),
-                        "_" + Role.EDM_TYPE_NAME, qi);
-                if (response == null) {
-                    break;
-                }
-                //Look at all link information of ExtCell-Role and wash out the roll for cell which has accessed this time.
-                List<OEntity> entList = response.getEntities();
-               for (OEntity ent : entList) {
-                    OEntityWrapper entRole = (OEntityWrapper) ent;
-                    this.addRole(entRole.getUuid(), roles);
-                }
-            } catch (PersoniumCoreException dce) {
-                if (!PersoniumCoreException.OData.NO_SUCH_ENTITY.getCode().equals(dce.getCode())) {
-                    throw dce;
-                }
-                // Continue processing with log output only.
-                log.debug("no such entity.");
-            }
-        }
-    }
-
-    /**
-     * List the Roles to be granted via Relation and ExtRole.
-     * @param token Transcell access token
-     * @param roles List of roles which Roles are to be added to. (destructive method)
-     */
-    @SuppressWarnings("unchecked")
-    private void addRoleListExtCelltoRelationAndExtRole(final IExtRoleContainingToken token, List<Role> roles) {
-        String extCell = token.getExtCellUrl();
-        List<OEntity> relationList = new ArrayList<>();
-
-        //Acquisition of Role corresponding to ExtCell-Role binding
-        ODataProducer op = ModelFactory.ODataCtl.cellCtl(this);
-        EntitiesResponse response = null;
-        //Number of search result output setting
-        QueryInfo qi = QueryInfo.newBuilder().setTop(TOP_NUM).setInlineCount(InlineCount.NONE).build();
-        List<String> list = UriUtils.getUrlVariations(extCell);
-        for (int i = 0; i < list.size(); i++) {
-            try {
-                String extCellUrl = list.get(i);
-                //Acquire link information of ExtCell-Relation
-                response = (EntitiesResponse) op.getNavProperty(ExtCell.EDM_TYPE_NAME,
-                        OEntityKey.create(extCellUrl),
-                        "_" + Relation.EDM_TYPE_NAME, qi);
-                relationList.addAll(response.getEntities());
-            } catch (PersoniumCoreException dce) {
-                if (!PersoniumCoreException.OData.NO_SUCH_ENTITY.getCode().equals(dce.getCode())) {
-                    throw dce;
-                }
-                // Continue processing with log output only.
-                log.debug("no such entity.");
-            }
-        }
-
-        for (OEntity ent : relationList) {
-            OEntityWrapper entRelation = (OEntityWrapper) ent;
-
-            //Look at all the link information of ExtCell-Relation and wash out the roll for cell accessed this time.
-            PersoniumSearchResponse res = serchRoleLinks(Relation.EDM_TYPE_NAME, entRelation.getUuid());
-            if (res == null) {
-                continue;
-            }
-            this.addRoles(res.getHits().getHits(), roles);
-            //↑ List the Role to be paid out from the association between ExtCell, Relation and Role so far.
-            //↓ This is the process of listing Role to be paid out from the association between ExtCell, Relation, ExtRole, and Role.
-
-            //Retrieve ExtRole information from Relation.
-            EntitySetAccessor extRoleType = EsModel.cellCtl(this, ExtRole.EDM_TYPE_NAME);
-
-            //Search for ExtRole linked to Relation
-            //Acquire a list after acquiring the number of current registrations
-            Map<String, Object> source = new HashMap<String, Object>();
-
-            //Specify an implicit filter and set the search target to the beginning of the search condition (narrow down)
-            List<Map<String, Object>> implicitFilters = QueryMapFactory.getImplicitFilters(this.id, null, null, null,
-                    extRoleType.getType());
-            String linksKey = OEntityDocHandler.KEY_LINK + "." + Relation.EDM_TYPE_NAME;
-            implicitFilters.add(0, QueryMapFactory.termQuery(linksKey, entRelation.getUuid()));
-            Map<String, Object> query = QueryMapFactory.mustQuery(implicitFilters);
-            Map<String, Object> filteredQuery = QueryMapFactory.filteredQuery(null, query);
-            source.put("query", filteredQuery);
-            long hitNum = extRoleType.count(source);
-            //Skip this if ExtCell settings do not exist
-            if (hitNum == 0) {
-                continue;
-            }
-            source.put("size", hitNum);
-
-            PersoniumSearchHits extRoleHits = extRoleType.search(source).getHits();
-            //Skip this if ExtCell settings do not exist
-            //Since it may be deleted after acquiring the number, check the search result again
-            if (extRoleHits.getCount() == 0) {
-                continue;
-            }
-            for (PersoniumSearchHit extRoleHit : extRoleHits.getHits()) {
-                Map<String, Object> extRoleSource = extRoleHit.getSource();
-                Map<String, Object> extRoleS = (Map<String, Object>) extRoleSource.get("s");
-                String esExtRole = (String) extRoleS.get(ExtRole.EDM_TYPE_NAME);
-
-                //Match with the rolls in the token
-                for (Role tokenRole : token.getRoleList()) {
-                    if (!tokenRole.toRoleInstanceURL().equals(esExtRole)) {
-                        continue;
-                    }
-                    //Look at all link information of ExtCell-Role and wash out the roll for cell which has accessed this time.
-                    PersoniumSearchResponse resExtRoleToRole = serchRoleLinks(
-                            ExtRole.EDM_TYPE_NAME, extRoleHit.getId());
-                    if (resExtRoleToRole == null) {
-                        continue;
-                    }
-                    this.addRoles(resExtRoleToRole.getHits().getHits(), roles);
-                }
-            }
-        }
-    }
-
-    /**
-     * Acquire corresponding data from the link table of Role and another entity set.
-     * @param searchKey
-     * Entity set name of search condition
-     * @param searchValue
-     * Search uuid
-     * @return Search results
-     */
-    private PersoniumSearchResponse serchRoleLinks(final String searchKey, final String searchValue) {
-
-        ODataLinkAccessor links = EsModel.cellCtlLink(this);
-        //Search for roles linked to Relation
-        Map<String, Object> source = new HashMap<String, Object>();
-        Map<String, Object> filter = new HashMap<String, Object>();
-        Map<String, Object> and = new HashMap<String, Object>();
-        List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>();
-
-        List<Map<String, Object>> queries = new ArrayList<Map<String, Object>>();
-        queries.add(QueryMapFactory.termQuery("t1", searchKey));
-        queries.add(QueryMapFactory.termQuery("t2", "Role"));
-
-        Map<String, Object> query = QueryMapFactory.filteredQuery(null, QueryMapFactory.mustQuery(queries));
-
-        filters.add(QueryMapFactory.termQuery("k1", searchValue));
-        and.put("filters", filters);
-        filter.put("and", and);
-        source.put("filter", filter);
-        source.put("query", query);
-        //Search result count setting
-        source.put("size", TOP_NUM);
-
-        return links.search(source);
-    }
-
-    /**
-     * Get the value of the role from the array of SearchHit containing Role.
-     * @param hits
-     * Search for Role and the result
-     * @param roles
-     * List of roles to be withdrawn. Add here (destructive method)
-     */
-    private void addRoles(PersoniumSearchHit[] hits, List<Role> roles) {
-        for (PersoniumSearchHit hit : hits) {
-            Map<String, Object> src = hit.getSource();
-            String roleUuid = (String) src.get("k2");
-
-            //See all of the Relation-Role link information and identify the roll for the cell that is accessed this time.
-            this.addRole(roleUuid, roles);
-        }
-    }
-
-    /**
-     * Get the value of the role.
-     * @param uuid
-     * Role UUID
-     * @param roles
-     * List of roles to be withdrawn. Add here (destructive method)
-     */
-    @SuppressWarnings("unchecked")
-    private void addRole(String uuid, List<Role> roles) {
-        EntitySetAccessor roleDao = EsModel.cellCtl(this, Role.EDM_TYPE_NAME);
-        PersoniumGetResponse gRes = roleDao.get(uuid);
-        if (gRes == null) {
-            return;
-        }
-        Map<String, Object> src = gRes.getSource();
-        Map<String, Object> s = (Map<String, Object>) src.get("s");
-        Map<String, Object> l = (Map<String, Object>) src.get("l");
-        String roleName = (String) s.get(Common.P_NAME.getName());
-        String schema = (String) s.get(Box.P_SCHEMA.getName());
-        String boxId = (String) l.get(Box.EDM_TYPE_NAME);
-        String boxName = null;
-        if (boxId != null) {
-            //Search Box
-            Map<String, Object> boxsrc = DavCmpFsImpl.searchBox(this, boxId);
-            Map<String, Object> boxs = (Map<String, Object>) boxsrc.get("s");
-            boxName = (String) boxs.get(Common.P_NAME.getName());
-        }
-
-        roles.add(new Role(roleName, boxName, schema, this.getUrl()));
-    }
 }
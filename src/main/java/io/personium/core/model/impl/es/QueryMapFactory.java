@@ -18,6 +18,7 @@
 package io.personium.core.model.impl.es;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,20 @@ public final class QueryMapFactory {
         return query;
     }
 
+    /**
+     * ids Generate and return an instance of Map storing query information.
+     * @param ids Internal IDs to search
+     * @return Map containing input values
+     */
+    public static Map<String, Object> idsQuery(Collection<String> ids) {
+        Map<String, Object> query = new HashMap<String, Object>();
+        Map<String, Object> values = new HashMap<String, Object>();
+
+        values.put("values", new ArrayList<String>(ids));
+        query.put("ids", values);
+        return query;
+    }
+
     /**
      * sort Creates and returns an instance of Map storing query information.
      * @param key Sort key
@@ -0,0 +1,301 @@
+/**
+ * Personium
+ * Copyright 2014-2022 Personium Project Authors
+ * - FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import io.personium.common.auth.token.IExtRoleContainingToken;
+import io.personium.common.auth.token.Role;
+import io.personium.common.auth.token.TransCellAccessToken;
+import io.personium.common.es.response.PersoniumSearchHit;
+import io.personium.common.es.response.PersoniumSearchResponse;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.ctl.Common;
+import io.personium.core.model.ctl.ExtCell;
+import io.personium.core.model.ctl.ExtRole;
+import io.personium.core.model.ctl.Relation;
+import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
+import io.personium.core.model.impl.es.doc.LinkDocHandler;
+import io.personium.core.model.impl.es.doc.OEntityDocHandler;
+import io.personium.core.model.impl.es.odata.EsQueryHandler;
+import io.personium.core.utils.UriUtils;
+
+/**
+ * Index of the Roles granted to other cells, built from the ExtCell, Relation, ExtRole and Role settings of a cell.
+ * It is immutable, and is rebuilt when the cell control objects of the cell are changed.
+ */
+final class TransCellRoleIndex {
+
+    /** Number of documents acquired by one search. */
+    private static final int TOP_NUM = PersoniumUnitConfig.getEsTopNum();
+
+    /** ExtCell URL to ExtCell ID. */
+    private final Map<String, String> extCellIds = new HashMap<String, String>();
+    /** ExtCell ID to Roles linked to the ExtCell. */
+    private final Map<String, List<Role>> extCellRoles = new HashMap<String, List<Role>>();
+    /** ExtCell ID to IDs of Relations linked to the ExtCell. */
+    private final Map<String, List<String>> extCellRelations = new HashMap<String, List<String>>();
+    /** Relation ID to Roles linked to the Relation. */
+    private final Map<String, List<Role>> relationRoles = new HashMap<String, List<Role>>();
+    /** Relation ID to ExtRole URL to Roles linked to the ExtRole. */
+    private final Map<String, Map<String, List<Role>>> relationExtRoles =
+            new HashMap<String, Map<String, List<Role>>>();
+
+    private TransCellRoleIndex() {
+    }
+
+    /**
+     * Build the index of the cell.
+     * @param cell Cell
+     * @return index
+     */
+    static TransCellRoleIndex build(CellEsImpl cell) {
+        return build(cell, TOP_NUM);
+    }
+
+    /**
+     * Build the index of the cell, acquiring all settings page by page.
+     * @param cell Cell
+     * @param pageSize number of documents acquired by one search
+     * @return index
+     */
+    @SuppressWarnings("unchecked")
+    static TransCellRoleIndex build(CellEsImpl cell, int pageSize) {
+        TransCellRoleIndex index = new TransCellRoleIndex();
+
+        for (PersoniumSearchHit hit : searchEntities(cell, ExtCell.EDM_TYPE_NAME, pageSize)) {
+            Map<String, Object> s = (Map<String, Object>) hit.getSource().get(OEntityDocHandler.KEY_STATIC_FIELDS);
+            index.extCellIds.put((String) s.get(Common.P_URL.getName()), hit.getId());
+        }
+
+        Map<String, String> extRoleUrls = new HashMap<String, String>();
+        Map<String, String> extRoleRelations = new HashMap<String, String>();
+        for (PersoniumSearchHit hit : searchEntities(cell, ExtRole.EDM_TYPE_NAME, pageSize)) {
+            Map<String, Object> s = (Map<String, Object>) hit.getSource().get(OEntityDocHandler.KEY_STATIC_FIELDS);
+            Map<String, Object> l = (Map<String, Object>) hit.getSource().get(OEntityDocHandler.KEY_LINK);
+            extRoleUrls.put(hit.getId(), (String) s.get(ExtRole.EDM_TYPE_NAME));
+            extRoleRelations.put(hit.getId(), (String) l.get(Relation.EDM_TYPE_NAME));
+        }
+
+        Map<String, List<String>> extCellRoleIds =
+                searchLinks(cell, ExtCell.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, pageSize);
+        Map<String, List<String>> relationRoleIds =
+                searchLinks(cell, Relation.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, pageSize);
+        Map<String, List<String>> extRoleRoleIds =
+                searchLinks(cell, ExtRole.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, pageSize);
+        index.extCellRelations.putAll(searchLinks(cell, ExtCell.EDM_TYPE_NAME, Relation.EDM_TYPE_NAME, pageSize));
+
+        //Acquire all linked Roles collectively
+        Set<String> roleIds = new HashSet<String>();
+        for (List<String> ids : extCellRoleIds.values()) {
+            roleIds.addAll(ids);
+        }
+        for (List<String> ids : relationRoleIds.values()) {
+            roleIds.addAll(ids);
+        }
+        for (List<String> ids : extRoleRoleIds.values()) {
+            roleIds.addAll(ids);
+        }
+        List<String> roleIdList = new ArrayList<String>(roleIds);
+        Map<String, Role> roles = new HashMap<String, Role>();
+        for (int i = 0; i < roleIdList.size(); i += pageSize) {
+            roles.putAll(cell.getRolesByIds(roleIdList.subList(i, Math.min(i + pageSize, roleIdList.size())), false));
+        }
+
+        for (Map.Entry<String, List<String>> entry : extCellRoleIds.entrySet()) {
+            index.extCellRoles.put(entry.getKey(), toRoles(entry.getValue(), roles));
+        }
+        for (Map.Entry<String, List<String>> entry : relationRoleIds.entrySet()) {
+            index.relationRoles.put(entry.getKey(), toRoles(entry.getValue(), roles));
+        }
+        for (Map.Entry<String, String> entry : extRoleUrls.entrySet()) {
+            String relationId = extRoleRelations.get(entry.getKey());
+            List<String> ids = extRoleRoleIds.get(entry.getKey());
+            if (relationId == null || entry.getValue() == null || ids == null) {
+                continue;
+            }
+            Map<String, List<Role>> extRoles = index.relationExtRoles.get(relationId);
+            if (extRoles == null) {
+                extRoles = new HashMap<String, List<Role>>();
+                index.relationExtRoles.put(relationId, extRoles);
+            }
+            extRoles.put(entry.getValue(), toRoles(ids, roles));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the Roles granted to the token.
+     * @param token TransCellAccessToken or VisitorRefreshToken
+     * @return Roles
+     */
+    List<Role> getRoleList(final IExtRoleContainingToken token) {
+        List<Role> ret = new ArrayList<Role>();
+
+        //List the Role to be paid out from the association setting of ExtCell and Role
+        String tokenIssuer = token.getIssuer();
+        String tokenSubject = token.getSubject();
+        String tokenSubjectCell;
+        if (tokenSubject.contains("#")) {
+            tokenSubjectCell = tokenSubject.substring(0, tokenSubject.indexOf("#"));
+        } else {
+            tokenSubjectCell = tokenSubject;
+        }
+        // If the token subject cell is different from token issuer
+        // ( = two or more levels of transcell token authentication),
+        // Do not assign any role.
+        if (!(token instanceof TransCellAccessToken) || tokenIssuer.equals(tokenSubjectCell)) {
+            for (String extCellUrl : UriUtils.getUrlVariations(tokenSubjectCell)) {
+                String extCellId = extCellIds.get(extCellUrl);
+                if (extCellId != null) {
+                    ret.addAll(getOrEmpty(extCellRoles, extCellId));
+                }
+            }
+        }
+
+        //List the Role to be paid out from the association of ExtCell, Relation and Role
+        //and the association between ExtCell, Relation, ExtRole, and Role
+        for (String extCellUrl : UriUtils.getUrlVariations(token.getExtCellUrl())) {
+            String extCellId = extCellIds.get(extCellUrl);
+            if (extCellId == null) {
+                continue;
+            }
+            List<String> relationIds = extCellRelations.get(extCellId);
+            if (relationIds == null) {
+                continue;
+            }
+            for (String relationId : relationIds) {
+                ret.addAll(getOrEmpty(relationRoles, relationId));
+                Map<String, List<Role>> extRoles = relationExtRoles.get(relationId);
+                if (extRoles == null) {
+                    continue;
+                }
+                //Match with the rolls in the token
+                for (Role tokenRole : token.getRoleList()) {
+                    ret.addAll(getOrEmpty(extRoles, tokenRole.toRoleInstanceURL()));
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static List<Role> getOrEmpty(Map<String, List<Role>> map, String key) {
+        List<Role> roles = map.get(key);
+        if (roles == null) {
+            return Collections.emptyList();
+        }
+        return roles;
+    }
+
+    private static List<Role> toRoles(List<String> roleIds, Map<String, Role> roles) {
+        List<Role> ret = new ArrayList<Role>();
+        for (String roleId : roleIds) {
+            Role role = roles.get(roleId);
+            if (role != null) {
+                ret.add(role);
+            }
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * Search all entities of the entity set in the cell.
+     * @param cell Cell
+     * @param entitySetName Entity set name
+     * @param pageSize number of documents acquired by one search
+     * @return Search results
+     */
+    private static List<PersoniumSearchHit> searchEntities(CellEsImpl cell, String entitySetName, int pageSize) {
+        List<Map<String, Object>> implicitFilters = QueryMapFactory.getImplicitFilters(cell.getId(),
+                null, null, null, entitySetName);
+        Map<String, Object> source = new HashMap<String, Object>();
+        source.put("query", QueryMapFactory.filteredQuery(null, QueryMapFactory.mustQuery(implicitFilters)));
+        return searchAll(EsModel.cellCtl(cell, entitySetName)::search, source, pageSize);
+    }
+
+    /**
+     * Search all links between the entity sets in the cell.
+     * @param cell Cell
+     * @param ent1Type Entity set name sorted first
+     * @param ent2Type Entity set name sorted second
+     * @param pageSize number of documents acquired by one search
+     * @return Map of internal ID of ent1Type and internal IDs of ent2Type
+     */
+    private static Map<String, List<String>> searchLinks(CellEsImpl cell, String ent1Type, String ent2Type,
+            int pageSize) {
+        List<Map<String, Object>> queries = new ArrayList<Map<String, Object>>();
+        queries.add(QueryMapFactory.termQuery(LinkDocHandler.KEY_CELL_ID, cell.getId()));
+        queries.add(QueryMapFactory.termQuery(LinkDocHandler.KEY_ENT1_TYPE, ent1Type));
+        queries.add(QueryMapFactory.termQuery(LinkDocHandler.KEY_ENT2_TYPE, ent2Type));
+        Map<String, Object> source = new HashMap<String, Object>();
+        source.put("query", QueryMapFactory.filteredQuery(null, QueryMapFactory.mustQuery(queries)));
+
+        Map<String, List<String>> ret = new HashMap<String, List<String>>();
+        DataSourceAccessor links = EsModel.cellCtlLink(cell);
+        for (PersoniumSearchHit hit : searchAll(links::search, source, pageSize)) {
+            Map<String, Object> src = hit.getSource();
+            String ent1Id = (String) src.get(LinkDocHandler.KEY_ENT1_ID);
+            List<String> ent2Ids = ret.get(ent1Id);
+            if (ent2Ids == null) {
+                ent2Ids = new ArrayList<String>();
+                ret.put(ent1Id, ent2Ids);
+            }
+            ent2Ids.add((String) src.get(LinkDocHandler.KEY_ENT2_ID));
+        }
+        return ret;
+    }
+
+    /**
+     * Search all documents matching the query page by page, so that no setting is dropped
+     * however many of them the cell has.
+     * @param accessor search function of the accessor
+     * @param source query without paging
+     * @param pageSize number of documents acquired by one search
+     * @return Search results
+     */
+    static List<PersoniumSearchHit> searchAll(Function<Map<String, Object>, PersoniumSearchResponse> accessor,
+            Map<String, Object> source, int pageSize) {
+        List<PersoniumSearchHit> ret = new ArrayList<PersoniumSearchHit>();
+        //Sort by ID so that pages do not overlap
+        source.put("sort", QueryMapFactory.sortQuery("_uid", EsQueryHandler.SORT_ASC));
+        source.put("size", pageSize);
+        long from = 0;
+        while (true) {
+            source.put("from", from);
+            PersoniumSearchResponse res = accessor.apply(source);
+            if (res == null) {
+                break;
+            }
+            PersoniumSearchHit[] hits = res.getHits().getHits();
+            Collections.addAll(ret, hits);
+            //If the search result is smaller than the page size, all documents have been acquired
+            if (hits.length < pageSize) {
+                break;
+            }
+            from += pageSize;
+        }
+        return ret;
+    }
+}
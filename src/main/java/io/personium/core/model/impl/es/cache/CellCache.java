@@ -18,10 +18,14 @@
 package io.personium.core.model.impl.es.cache;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.utils.CacheClient;
 import io.personium.core.utils.MemcachedClient;
@@ -29,12 +33,26 @@ import io.personium.core.utils.MemcachedClient.MemcachedClientException;
 
 /**
  * Class dealing with Cell's cache.
+ * <p>
+ * Cells are cached with keys of both their names and IDs in memcached.
+ * Lookups by ID are also cached in process for a short time, as an ID is never reused for another cell.
+ * Lookups by name always go to memcached, because a name may be bound to a new cell after a deletion.
+ * </p>
  */
 public class CellCache {
     static Logger log = LoggerFactory.getLogger(CellCache.class);
 
+    /** Key of the Cell ID in the cached Map. */
+    public static final String KEY_ID = "_id";
+
     static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
 
+    /** Cells kept in process with the keys of their IDs. */
+    static Cache<String, Map<String, Object>> localCache = CacheBuilder.newBuilder()
+            .maximumSize(PersoniumUnitConfig.getCellLocalCacheMaxSize())
+            .expireAfterWrite(PersoniumUnitConfig.getCellLocalCacheExpiresIn(), TimeUnit.SECONDS)
+            .build();
+
     private CellCache() {
     }
 
@@ -48,12 +66,38 @@ public class CellCache {
      * @return Map object that stores Cell information. It is null if it does not exist in the cache
      */
     public static Map<String, Object> get(String cellName) {
+        return doGet(cacheKey(cellName), false);
+    }
+
+    /**
+     * Get the Cell information with the specified ID from the cache.
+     * @param cellId Cell ID
+     * @return Map object that stores Cell information. It is null if it does not exist in the cache
+     */
+    public static Map<String, Object> getById(String cellId) {
+        return doGet(idCacheKey(cellId), true);
+    }
+
+    private static Map<String, Object> doGet(String key, boolean useLocal) {
         if (!PersoniumUnitConfig.isCellCacheEnabled()) {
             return null;
         }
+        if (useLocal) {
+            Map<String, Object> local = localCache.getIfPresent(key);
+            if (local != null) {
+                return local;
+            }
+        }
+        CacheClient client = getMcdClient();
+        if (client == null) {
+            return null;
+        }
         try {
             @SuppressWarnings("unchecked")
-            Map<String, Object> cache = getMcdClient().get(cacheKey(cellName), Map.class);
+            Map<String, Object> cache = client.get(key, Map.class);
+            if (cache != null && useLocal) {
+                localCache.put(key, cache);
+            }
             return cache;
         } catch (MemcachedClientException e) {
             //If cache access fails, return null to get data from DB
@@ -64,28 +108,69 @@ public class CellCache {
 
     /**
      * Cache the Cell.
+     * It is also cached with the key of its ID if the Map has the ID with the key {@link #KEY_ID}.
      * @param cellName Cell name
-     * @param cell Map object that stores cell information
+     * @param cell Map object that stores cell information. It must not be changed after caching
      */
     public static void cache(String cellName, Map<String, Object> cell) {
         if (!PersoniumUnitConfig.isCellCacheEnabled()) {
             return;
         }
-        getMcdClient().put(cacheKey(cellName), PersoniumUnitConfig.getCacheMemcachedExpiresIn(), cell);
+        String cellId = (String) cell.get(KEY_ID);
+        if (cellId != null) {
+            localCache.put(idCacheKey(cellId), cell);
+        }
+        CacheClient client = getMcdClient();
+        if (client == null) {
+            return;
+        }
+        client.put(cacheKey(cellName), PersoniumUnitConfig.getCacheMemcachedExpiresIn(), cell);
+        if (cellId != null) {
+            client.put(idCacheKey(cellId), PersoniumUnitConfig.getCacheMemcachedExpiresIn(), cell);
+        }
     }
 
     /**
      * Delete the cache information of the specified Cell name.
+     * The cache with the key of its ID is also deleted if the cached Cell has the ID.
      * @param cellName Cell name
      */
     public static void clear(String cellName) {
+        String cellId = null;
+        Map<String, Object> cached = get(cellName);
+        if (cached != null) {
+            cellId = (String) cached.get(KEY_ID);
+        }
+        clear(cellName, cellId);
+    }
+
+    /**
+     * Delete the cache information of the specified Cell.
+     * @param cellName Cell name
+     * @param cellId Cell ID. null if unknown
+     */
+    public static void clear(String cellName, String cellId) {
+        if (cellId != null) {
+            localCache.invalidate(idCacheKey(cellId));
+        }
         if (!PersoniumUnitConfig.isCellCacheEnabled()) {
             return;
         }
-        getMcdClient().delete(cacheKey(cellName));
+        CacheClient client = getMcdClient();
+        if (client == null) {
+            return;
+        }
+        client.delete(cacheKey(cellName));
+        if (cellId != null) {
+            client.delete(idCacheKey(cellId));
+        }
     }
 
     static String cacheKey(String cellName) {
         return "cell:" + cellName;
     }
+
+    static String idCacheKey(String cellId) {
+        return "cellid:" + cellId;
+    }
 }
@@ -0,0 +1,174 @@
+/**
+ * Personium
+ * Copyright 2014-2022 Personium Project Authors
+ * - FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.utils.MemcachedClient;
+import io.personium.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * Class dealing with the in-process cache of cell control objects (Account, Role, Box, ExtCell, Relation, ExtRole
+ * and links between them).
+ * <p>
+ * Every cell has a version number. It is shared between nodes through memcached when the cache type is memcached,
+ * otherwise it is kept in process. Cached values are tagged with the version read before they were loaded
+ * from the data store, and they are only returned while the version is still the same.
+ * The version is incremented whenever a cell control object of the cell is changed.
+ * </p>
+ */
+public class CellCtlCache {
+    static Logger log = LoggerFactory.getLogger(CellCtlCache.class);
+
+    static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+
+    /** Versions used when memcached is not available. */
+    static Map<String, AtomicLong> localVersions = new ConcurrentHashMap<String, AtomicLong>();
+
+    /** Cached values for each cell. */
+    static Cache<String, CellEntries> localCache = CacheBuilder.newBuilder()
+            .maximumSize(PersoniumUnitConfig.getCellCtlCacheMaxSize())
+            .expireAfterWrite(PersoniumUnitConfig.getCellCtlCacheExpiresIn(), TimeUnit.SECONDS)
+            .build();
+
+    private CellCtlCache() {
+    }
+
+    static MemcachedClient getMcdClient() {
+        return mcdClient;
+    }
+
+    /**
+     * Returns the current version of the cell control objects of the specified cell.
+     * Read it before loading the value to cache from the data store.
+     * @param cellId Cell ID
+     * @return version. null if the cache is disabled or the version could not be acquired
+     */
+    public static Long version(String cellId) {
+        if (!PersoniumUnitConfig.isCellCtlCacheEnabled()) {
+            return null;
+        }
+        MemcachedClient client = getMcdClient();
+        if (client == null) {
+            return localVersion(cellId).get();
+        }
+        try {
+            //Since the key may have been evicted, start with the current time so that old versions are not reused
+            return client.getLongValue(cacheKey(cellId), System.currentTimeMillis());
+        } catch (MemcachedClientException e) {
+            //If cache access fails, return null to get data from DB
+            log.info("Failed to get CellCtlCache version.");
+            return null;
+        }
+    }
+
+    /**
+     * Get the cached value.
+     * @param <T> Type to get
+     * @param cellId Cell ID
+     * @param key Key of the value in the cell
+     * @param version Version acquired by {@link #version(String)}
+     * @param clazz Type to get
+     * @return cached value. null if it does not exist or is out of date
+     */
+    public static <T> T get(String cellId, String key, Long version, Class<T> clazz) {
+        if (version == null) {
+            return null;
+        }
+        CellEntries entries = localCache.getIfPresent(cellId);
+        if (entries == null || entries.version != version.longValue()) {
+            return null;
+        }
+        return clazz.cast(entries.values.get(key));
+    }
+
+    /**
+     * Cache the value.
+     * @param cellId Cell ID
+     * @param key Key of the value in the cell
+     * @param version Version acquired by {@link #version(String)} before loading the value
+     * @param value Value to cache. It must not be changed after caching
+     */
+    public static void cache(String cellId, String key, Long version, Object value) {
+        if (version == null || value == null) {
+            return;
+        }
+        CellEntries entries = localCache.getIfPresent(cellId);
+        if (entries == null || entries.version < version.longValue()) {
+            entries = new CellEntries(version);
+            localCache.put(cellId, entries);
+        } else if (entries.version != version.longValue()) {
+            //The value is already out of date
+            return;
+        }
+        entries.values.put(key, value);
+    }
+
+    /**
+     * Invalidate all values cached for the specified cell.
+     * @param cellId Cell ID
+     */
+    public static void clear(String cellId) {
+        localCache.invalidate(cellId);
+        if (!PersoniumUnitConfig.isCellCtlCacheEnabled()) {
+            return;
+        }
+        MemcachedClient client = getMcdClient();
+        if (client == null) {
+            localVersion(cellId).incrementAndGet();
+            return;
+        }
+        try {
+            client.getLongValue(cacheKey(cellId), System.currentTimeMillis());
+            client.incrementLongValue(cacheKey(cellId));
+        } catch (MemcachedClientException e) {
+            //Values cached on other nodes are discarded when they expire
+            log.info("Failed to update CellCtlCache version.");
+        }
+    }
+
+    private static AtomicLong localVersion(String cellId) {
+        return localVersions.computeIfAbsent(cellId, k -> new AtomicLong());
+    }
+
+    static String cacheKey(String cellId) {
+        return "cellctl:" + cellId;
+    }
+
+    /**
+     * Values cached for a cell with the version they belong to.
+     */
+    static final class CellEntries {
+        final long version;
+        final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+
+        CellEntries(long version) {
+            this.version = version;
+        }
+    }
+}
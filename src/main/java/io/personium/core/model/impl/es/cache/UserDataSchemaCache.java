@@ -17,13 +17,20 @@
  */
 package io.personium.core.model.impl.es.cache;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
+import org.odata4j.edm.EdmDataServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.impl.es.odata.PropertyAlias;
 import io.personium.core.utils.CacheClient;
 import io.personium.core.utils.MemcachedClient;
 import io.personium.core.utils.MemcachedClient.MemcachedClientException;
@@ -35,6 +42,14 @@ public class UserDataSchemaCache {
     static Logger log = LoggerFactory.getLogger(UserDataSchemaCache.class);
     static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
 
+    /** Key of the version stamp stored with the schema information. */
+    static final String KEY_VERSION = "version";
+
+    /** Parsed schemas kept in process, keyed by node ID. */
+    static Cache<String, ParsedSchema> localCache = CacheBuilder.newBuilder()
+            .maximumSize(PersoniumUnitConfig.getSchemaLocalCacheMaxSize())
+            .build();
+
     static CacheClient getMcdClient() {
         return mcdClient;
     }
@@ -64,6 +79,7 @@ public class UserDataSchemaCache {
 
     /**
      * Cache the schema information.
+     * A version stamp is added to the schema information if it does not have one yet.
      * @param nodeId node ID
      * @param schema Map object containing schema information
      */
@@ -71,6 +87,9 @@ public class UserDataSchemaCache {
         if (!PersoniumUnitConfig.isSchemaCacheEnabled()) {
             return;
         }
+        if (!schema.containsKey(KEY_VERSION)) {
+            schema.put(KEY_VERSION, UUID.randomUUID().toString());
+        }
         getMcdClient().put(cacheKey(nodeId), PersoniumUnitConfig.getCacheMemcachedExpiresIn(), schema);
     }
 
@@ -79,6 +98,7 @@ public class UserDataSchemaCache {
      * @param nodeId node ID
      */
     public static void clear(String nodeId) {
+        localCache.invalidate(nodeId);
         if (!PersoniumUnitConfig.isSchemaCacheEnabled()) {
             return;
         }
@@ -90,6 +110,7 @@ public class UserDataSchemaCache {
      * @param nodeId node ID
      */
     public static void disable(String nodeId) {
+        localCache.invalidate(nodeId);
         if (!PersoniumUnitConfig.isSchemaCacheEnabled()) {
             return;
         }
@@ -156,6 +177,109 @@ public class UserDataSchemaCache {
         return false;
     }
 
+    /**
+     * Returns the parsed schema kept in process if it was parsed from the given cache information.
+     * The version stamp of the cache information acquired from memcached is compared with the one of
+     * the parsed schema, so schema changes made on other nodes are detected without parsing EDMX.
+     * @param nodeId node ID
+     * @param cache Cache information acquired by {@link #get(String)}
+     * @return parsed schema. null if it does not exist or is out of date
+     */
+    public static ParsedSchema getParsed(String nodeId, Map<String, Object> cache) {
+        String version = versionOf(cache);
+        if (version == null) {
+            return null;
+        }
+        ParsedSchema parsed = localCache.getIfPresent(nodeId);
+        if (parsed == null || !version.equals(parsed.getVersion())) {
+            return null;
+        }
+        return parsed;
+    }
+
+    /**
+     * Keeps the parsed schema in process with the version stamp of the given cache information.
+     * Nothing is kept if the cache information has no version stamp.
+     * @param nodeId node ID
+     * @param cache Cache information the schema was parsed from
+     * @param metadata parsed schema
+     * @return kept schema. null if not kept
+     */
+    public static ParsedSchema cacheParsed(String nodeId, Map<String, Object> cache, EdmDataServices metadata) {
+        String version = versionOf(cache);
+        if (version == null || PersoniumUnitConfig.getSchemaLocalCacheMaxSize() <= 0) {
+            return null;
+        }
+        ParsedSchema parsed = new ParsedSchema(version, metadata, cache);
+        localCache.put(nodeId, parsed);
+        return parsed;
+    }
+
+    private static String versionOf(Map<String, Object> cache) {
+        if (!PersoniumUnitConfig.isSchemaCacheEnabled() || cache == null) {
+            return null;
+        }
+        return (String) cache.get(KEY_VERSION);
+    }
+
+    /**
+     * Immutable schema parsed from the cache information.
+     */
+    public static final class ParsedSchema {
+        private final String version;
+        private final EdmDataServices metadata;
+        private final Map<String, String> entityTypeIds;
+        private final Map<String, PropertyAlias> propertyAliasMap;
+        private final Map<String, String> entityTypeMap;
+
+        @SuppressWarnings("unchecked")
+        ParsedSchema(String version, EdmDataServices metadata, Map<String, Object> cache) {
+            this.version = version;
+            this.metadata = metadata;
+            this.entityTypeIds = Collections.unmodifiableMap(
+                    new HashMap<String, String>((Map<String, String>) cache.get("entityTypeIds")));
+            this.propertyAliasMap = Collections.unmodifiableMap(
+                    new HashMap<String, PropertyAlias>((Map<String, PropertyAlias>) cache.get("propertyAliasMap")));
+            this.entityTypeMap = Collections.unmodifiableMap(
+                    new HashMap<String, String>((Map<String, String>) cache.get("entityTypeMap")));
+        }
+
+        /**
+         * @return version stamp
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return schema
+         */
+        public EdmDataServices getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * @return mapping data of EntityType name and UUID
+         */
+        public Map<String, String> getEntityTypeIds() {
+            return entityTypeIds;
+        }
+
+        /**
+         * @return correspondence between property names and aliases
+         */
+        public Map<String, PropertyAlias> getPropertyAliasMap() {
+            return propertyAliasMap;
+        }
+
+        /**
+         * @return mapping data of EntityType UUID and name
+         */
+        public Map<String, String> getEntityTypeMap() {
+            return entityTypeMap;
+        }
+    }
+
     static String cacheKey(String nodeId) {
         return "userodata:" + nodeId;
     }
@@ -17,6 +17,10 @@
  */
 package io.personium.core.model.impl.es.odata;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.edm.EdmDataServices;
@@ -30,12 +34,18 @@ import io.personium.core.model.Box;
 import io.personium.core.model.BoxCmp;
 import io.personium.core.model.Cell;
 import io.personium.core.model.ModelFactory;
+import io.personium.core.model.ctl.Account;
 import io.personium.core.model.ctl.CtlSchema;
+import io.personium.core.model.ctl.ExtCell;
+import io.personium.core.model.ctl.ExtRole;
+import io.personium.core.model.ctl.Relation;
+import io.personium.core.model.ctl.Role;
 import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
 import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
 import io.personium.core.model.impl.es.accessor.ODataLinkAccessor;
 import io.personium.core.model.impl.es.cache.BoxCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
 import io.personium.core.model.impl.es.doc.EntitySetDocHandler;
 import io.personium.core.odata.OEntityWrapper;
 
@@ -43,6 +53,11 @@ import io.personium.core.odata.OEntityWrapper;
  * ODataProducer of the Cell management object.
  */
 public class CellCtlODataProducer extends EsODataProducer {
+    /** Entity sets whose changes discard the cache of cell control objects. */
+    private static final Set<String> CACHED_ENTITY_SETS = new HashSet<String>(Arrays.asList(
+            Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, Box.EDM_TYPE_NAME,
+            ExtCell.EDM_TYPE_NAME, Relation.EDM_TYPE_NAME, ExtRole.EDM_TYPE_NAME));
+
     Cell cell;
     Logger log = LoggerFactory.getLogger(CellCtlODataProducer.class);
 
@@ -157,7 +172,34 @@ public class CellCtlODataProducer extends EsODataProducer {
     protected void checkInvalidLinks(EntitySetDocHandler sourceDocHandler, OEntity entity, String targetEntitySetName) {
     }
 
+    @Override
+    public void afterCreate(final String entitySetName, final OEntity oEntity, final EntitySetDocHandler docHandler) {
+        if (CACHED_ENTITY_SETS.contains(entitySetName)) {
+            CellCtlCache.clear(this.getCellId());
+        }
+    }
+
+    @Override
+    public void afterUpdate() {
+        CellCtlCache.clear(this.getCellId());
+    }
+
+    @Override
+    public void afterDelete() {
+        CellCtlCache.clear(this.getCellId());
+    }
+
+    @Override
+    public void afterLinkChange(final String sourceEntitySetName, final String targetEntitySetName) {
+        if (CACHED_ENTITY_SETS.contains(sourceEntitySetName) || CACHED_ENTITY_SETS.contains(targetEntitySetName)) {
+            CellCtlCache.clear(this.getCellId());
+        }
+    }
+
     @Override
     public void onChange(String entitySetName) {
+        if (CACHED_ENTITY_SETS.contains(entitySetName)) {
+            CellCtlCache.clear(this.getCellId());
+        }
     }
 }
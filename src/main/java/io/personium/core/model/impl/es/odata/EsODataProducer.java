@@ -309,6 +309,14 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
     public void afterDelete() {
     }
 
+    /**
+     * Implementation subclass If you want to perform Producer processing after links are created or deleted, implement override this place.
+     * @param sourceEntitySetName Entity set name of the source side
+     * @param targetEntitySetName Entity set name of the target side
+     */
+    public void afterLinkChange(final String sourceEntitySetName, final String targetEntitySetName) {
+    }
+
     /**
      * 1 - 0: Search processing is performed on the N side during N deletion processing.
      * @param np EdmNavigationProperty
@@ -1344,6 +1352,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             throw PersoniumCoreException.OData.REQUEST_FIELD_FORMAT_ERROR.params("uri");
         }
         createLinks(sourceEntity, srcNavProp, assoc, src, tgt);
+        this.afterLinkChange(sourceEntity.getEntitySetName(), targetEntity.getEntitySetName());
     }
 
     /**
@@ -1533,6 +1542,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             //Register $ links
             entity = createNavigationPropertyLink(sourceOEntity, entity, srcNavProp, sourceDocHandler, retrievedEntity);
             res = Responses.entity(entity);
+            this.afterLinkChange(sourceOEntity.getEntitySetName(), targetEntitySetName);
 
         } finally {
             log.debug("unlock");
@@ -2098,6 +2108,7 @@ public abstract class EsODataProducer implements PersoniumODataProducer {
             //In the case of n: 1, the relevant item is deleted from the link information of the data of 1
             deleteLinks(sourceEntityId, targetEntityKey, tgtSet, oneAssoc);
         }
+        this.afterLinkChange(srcSet.getName(), tgtSet.getName());
     }
 
     /**
@@ -106,7 +106,7 @@ public class UnitCtlODataProducer extends EsODataProducer {
     public void beforeUpdate(final String entitySetName,
             final OEntityKey oEntityKey,
             final EntitySetDocHandler docHandler) {
-        CellCache.clear(oEntityKey.asSingleValue().toString());
+        CellCache.clear(oEntityKey.asSingleValue().toString(), docHandler.getId());
     }
 
     /**
@@ -118,7 +118,7 @@ public class UnitCtlODataProducer extends EsODataProducer {
     @Override
     public void beforeDelete(final String entitySetName, final OEntityKey oEntityKey,
             final EntitySetDocHandler docHandler) {
-        CellCache.clear(oEntityKey.asSingleValue().toString());
+        CellCache.clear(oEntityKey.asSingleValue().toString(), docHandler.getId());
     }
 
     @Override
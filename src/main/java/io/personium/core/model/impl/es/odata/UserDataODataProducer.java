@@ -218,6 +218,7 @@ public class UserDataODataProducer extends EsODataProducer {
                 if (latestCache == null) {
                     try {
                         UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
+                        UserDataSchemaCache.cacheParsed(this.getNodeId(), cacheSchema, this.metadata);
                     } catch (RuntimeException e) {
                         if (e.getCause() instanceof CheckedOperationTimeoutException) {
                             log.info("Failed to cache UserDataSchema info.");
@@ -236,6 +237,7 @@ public class UserDataODataProducer extends EsODataProducer {
             if (cacheSchema != null && !UserDataSchemaCache.isChanged(this.getNodeId(), cache)) {
                 try {
                     UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
+                    UserDataSchemaCache.cacheParsed(this.getNodeId(), cacheSchema, this.metadata);
                 } catch (RuntimeException e) {
                     if (e.getCause() instanceof CheckedOperationTimeoutException) {
                         log.info("Failed to cache UserDataSchema info.(CacheOFF)");
@@ -244,29 +246,53 @@ public class UserDataODataProducer extends EsODataProducer {
             }
 
         } else {
-            this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
-            setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
-            setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
-            //Set acquired information
-            //If you pass InputStream to the XML parser (StAX, SAX, DOM) as is, the file list acquisition processing
-            //Because it will be interrupted, store it as a provisional countermeasure and then parse it
-            EdmDataServices metacache = null;
-            try {
-                StringReader sr = new StringReader((String) cache.get("edmx"));
-                XMLFactoryProvider2 provider = StaxXMLFactoryProvider2.getInstance();
-                XMLInputFactory2 factory = provider.newXMLInputFactory2();
-                XMLEventReader2 reader = factory.createXMLEventReader(sr);
-                PersoniumEdmxFormatParser parser = new PersoniumEdmxFormatParser();
-                metacache = parser.parseMetadata(reader);
-            } catch (RuntimeException ex) {
-                log.info("XMLParseException: " + ex.getMessage(), ex.fillInStackTrace());
-                throw ex;
-            } catch (StackOverflowError tw) {
-                //StackOverFlowError occurs when circular reference of ComplexType is made
-                log.info("XMLParseException: " + tw.getMessage(), tw.fillInStackTrace());
-                throw tw;
+            //Reuse the schema parsed by a previous request as long as its version stamp is the latest
+            UserDataSchemaCache.ParsedSchema parsed = UserDataSchemaCache.getParsed(this.getNodeId(), cache);
+            if (parsed == null) {
+                EdmDataServices metacache = parseMetadata((String) cache.get("edmx"));
+                parsed = UserDataSchemaCache.cacheParsed(this.getNodeId(), cache, metacache);
+                if (parsed == null) {
+                    this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
+                    setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
+                    setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
+                    this.metadata = metacache;
+                    return;
+                }
             }
-            this.metadata = metacache;
+            applyParsedSchema(parsed);
+        }
+    }
+
+    /**
+     * Set the schema parsed in process.
+     * Since the producer may add entries to the maps, copies are set.
+     * @param parsed parsed schema
+     */
+    private void applyParsedSchema(UserDataSchemaCache.ParsedSchema parsed) {
+        this.entityTypeIds = new HashMap<String, String>(parsed.getEntityTypeIds());
+        setPropertyAliasMap(new HashMap<String, PropertyAlias>(parsed.getPropertyAliasMap()));
+        setEntityTypeMap(new HashMap<String, String>(parsed.getEntityTypeMap()));
+        this.metadata = parsed.getMetadata();
+    }
+
+    private EdmDataServices parseMetadata(String edmx) {
+        //Set acquired information
+        //If you pass InputStream to the XML parser (StAX, SAX, DOM) as is, the file list acquisition processing
+        //Because it will be interrupted, store it as a provisional countermeasure and then parse it
+        try {
+            StringReader sr = new StringReader(edmx);
+            XMLFactoryProvider2 provider = StaxXMLFactoryProvider2.getInstance();
+            XMLInputFactory2 factory = provider.newXMLInputFactory2();
+            XMLEventReader2 reader = factory.createXMLEventReader(sr);
+            PersoniumEdmxFormatParser parser = new PersoniumEdmxFormatParser();
+            return parser.parseMetadata(reader);
+        } catch (RuntimeException ex) {
+            log.info("XMLParseException: " + ex.getMessage(), ex.fillInStackTrace());
+            throw ex;
+        } catch (StackOverflowError tw) {
+            //StackOverFlowError occurs when circular reference of ComplexType is made
+            log.info("XMLParseException: " + tw.getMessage(), tw.fillInStackTrace());
+            throw tw;
         }
     }
 
@@ -16,8 +16,6 @@
  */
 package io.personium.core.model.impl.fs;
 
-import java.io.BufferedInputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -31,7 +29,6 @@ import org.apache.http.HttpStatus;
 
 import io.personium.common.file.DataCryptor;
 import io.personium.core.PersoniumCoreException;
-import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.model.CellSnapshotDavCmp;
 import io.personium.core.model.DavCmp;
 import io.personium.core.model.lock.Lock;
@@ -100,15 +97,35 @@ public class CellSnapshotDavCmpFsImpl extends DavCmpFsImpl implements CellSnapsh
      */
     @Override
     public ResponseBuilder putForUpdate(String contentType, InputStream inputStream, String etag) {
+        checkPutPreconditions(etag);
+        // The body is written before locking so that a slow upload does not block the cell.
+        StagedContent content = this.stageContent(inputStream);
         Lock lock = this.lock();
         try {
             if (DavCmp.TYPE_NULL.equals(getType())) {
-                return this.doPutForCreate(contentType, inputStream);
+                return this.doPutForCreate(contentType, content);
             } else {
-                return this.doPutForUpdate(contentType, inputStream, etag);
+                return this.doPutForUpdate(contentType, content, etag);
             }
         } finally {
             lock.release();
+            content.discard();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Snapshot files are placed directly in the snapshot directory, so the parent is not checked.
+     */
+    @Override
+    protected void checkPutPreconditions(String etag) {
+        if (DavCmp.TYPE_NULL.equals(getType())) {
+            checkChildResourceCount();
+            return;
+        }
+        if (etag != null && !"*".equals(etag) && !matchesETag(etag)) {
+            throw PersoniumCoreException.Dav.ETAG_NOT_MATCH;
         }
     }
 
@@ -118,28 +135,34 @@ public class CellSnapshotDavCmpFsImpl extends DavCmpFsImpl implements CellSnapsh
      * Snapshot file is not encrypted.
      */
     @Override
-    protected ResponseBuilder doPutForCreate(String contentType, InputStream inputStream) {
+    protected String getEncryptionTypeForNewContent() {
+        return DataCryptor.ENCRYPTION_TYPE_NONE;
+    }
+
+    /**
+     * Newly create the resource.
+     * <p>
+     * Snapshot file is read by the fixed content file name.
+     * @param contentType ContentType of the generated file
+     * @param content staged content of the generated file
+     * @return ResponseBuilder
+     */
+    @Override
+    protected ResponseBuilder doPutForCreate(String contentType, StagedContent content) {
         // check the resource count
         checkChildResourceCount();
 
-        BufferedInputStream bufferedInput = new BufferedInputStream(inputStream);
         try {
             // create new directory.
             Files.createDirectories(Paths.get(this.fsPath));
-            // store the file content.
-            File newFile = new File(getContentFilePath());
-            Files.copy(bufferedInput, newFile.toPath());
-            long writtenBytes = newFile.length();
-            String encryptionType = DataCryptor.ENCRYPTION_TYPE_NONE;
-            if (PersoniumUnitConfig.getFsyncEnabled()) {
-                sync(newFile);
-            }
+            // move the file content into the directory.
+            moveStagedContent(content, Paths.get(getFixedContentFilePath()));
 
             // create new metadata file.
             this.metaFile = DavMetadataFile.prepareNewFile(this, DavCmp.TYPE_DAV_FILE);
             this.metaFile.setContentType(contentType);
-            this.metaFile.setContentLength(writtenBytes);
-            this.metaFile.setEncryptionType(encryptionType);
+            this.metaFile.setContentLength(content.length);
+            this.metaFile.setEncryptionType(content.encryptionType);
             this.metaFile.save();
         } catch (IOException ex) {
             throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(ex);
@@ -149,12 +172,16 @@ public class CellSnapshotDavCmpFsImpl extends DavCmpFsImpl implements CellSnapsh
     }
 
     /**
-     * {@inheritDoc}
+     * Overwrite resources.
      * <p>
-     * Snapshot file is not encrypted.
+     * Snapshot file is read by the fixed content file name, so it is replaced in place.
+     * @param contentType ContentType of the update file
+     * @param content staged content of the update file
+     * @param etag Etag
+     * @return ResponseBuilder
      */
     @Override
-    protected ResponseBuilder doPutForUpdate(String contentType, InputStream inputStream, String etag) {
+    protected ResponseBuilder doPutForUpdate(String contentType, StagedContent content, String etag) {
         // Load file info
         this.load();
 
@@ -171,23 +198,14 @@ public class CellSnapshotDavCmpFsImpl extends DavCmpFsImpl implements CellSnapsh
 
         try {
             // Update Content
-            BufferedInputStream bufferedInput = new BufferedInputStream(inputStream);
-            File tmpFile = new File(getTempContentFilePath());
-            File contentFile = new File(getContentFilePath());
-            Files.copy(bufferedInput, tmpFile.toPath());
-            Files.delete(contentFile.toPath());
-            Files.move(tmpFile.toPath(), contentFile.toPath());
-            long writtenBytes = contentFile.length();
-            String encryptionType = DataCryptor.ENCRYPTION_TYPE_NONE;
-            if (PersoniumUnitConfig.getFsyncEnabled()) {
-                sync(contentFile);
-            }
+            moveStagedContent(content, Paths.get(getFixedContentFilePath()));
 
             // Update Metadata
             this.metaFile.setUpdated(new Date().getTime());
             this.metaFile.setContentType(contentType);
-            this.metaFile.setContentLength(writtenBytes);
-            this.metaFile.setEncryptionType(encryptionType);
+            this.metaFile.setContentLength(content.length);
+            this.metaFile.setEncryptionType(content.encryptionType);
+            this.metaFile.setContentFileName(null);
             this.metaFile.save();
         } catch (IOException ex) {
             throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(ex);
@@ -27,17 +27,23 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.ws.rs.core.HttpHeaders;
-import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response;
+import Response.ResponseBuilder;
 import javax.ws.rs.core.StreamingOutput;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -50,7 +56,6 @@ import org.apache.wink.webdav.model.Multistatus;
 import org.apache.wink.webdav.model.ObjectFactory;
 import org.apache.wink.webdav.model.Prop;
 import org.apache.wink.webdav.model.Propertyupdate;
-import org.apache.wink.webdav.model.Response;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -63,6 +68,7 @@ import org.xml.sax.SAXException;
 import io.personium.common.auth.token.Role;
 import io.personium.common.es.response.PersoniumGetResponse;
 import io.personium.common.es.util.IndexNameEncoder;
+import io.personium.common.es.util.PersoniumUUID;
 import io.personium.common.file.CipherInputStream;
 import io.personium.common.file.DataCryptor;
 import io.personium.common.file.FileDataAccessor;
@@ -83,6 +89,7 @@ import io.personium.core.model.DavDestination;
 import io.personium.core.model.ModelFactory;
 import io.personium.core.model.ctl.ComplexType;
 import io.personium.core.model.ctl.EntityType;
+import io.personium.core.model.file.ChunkedDataCryptor;
 import io.personium.core.model.file.StreamingOutputForDavFile;
 import io.personium.core.model.file.StreamingOutputForDavFileWithRange;
 import io.personium.core.model.impl.es.EsModel;
@@ -115,6 +122,8 @@ public class DavCmpFsImpl implements DavCmp {
 
     String name;
     Acl acl;
+    /** ACL read from the metadata file, whose principals are not translated yet. */
+    JSONObject storedAcl;
     DavMetadataFile metaFile;
     DavCmpFsImpl parent;
     List<String> ownerRepresentativeAccounts = new ArrayList<String>();
@@ -125,6 +134,7 @@ public class DavCmpFsImpl implements DavCmp {
      */
     public static final String CONTENT_FILE_NAME = "content";
     private static final String TEMP_FILE_NAME = "tmp";
+    static final String STAGING_FILE_PREFIX = TEMP_FILE_NAME + ".";
     private static final int KILO_BYTES = 1000;
 
     /*
@@ -237,6 +247,10 @@ public class DavCmpFsImpl implements DavCmp {
      * @return Acl
      */
     public Acl getAcl() {
+        //Translation of principals needs Role lookups, so it is done when the ACL is actually used
+        if (this.acl == null && this.storedAcl != null) {
+            this.acl = this.translateAcl(this.storedAcl);
+        }
         return this.acl;
     }
 
@@ -245,10 +259,13 @@ public class DavCmpFsImpl implements DavCmp {
      * @return schema authentication level
      */
     public String getConfidentialLevel() {
-        if (acl == null) {
+        if (this.acl != null) {
+            return this.acl.getRequireSchemaAuthz();
+        }
+        if (this.storedAcl == null) {
             return null;
         }
-        return this.acl.getRequireSchemaAuthz();
+        return Acl.fromJson(this.storedAcl.toJSONString()).getRequireSchemaAuthz();
     }
 
     /**
@@ -329,7 +346,8 @@ public class DavCmpFsImpl implements DavCmp {
          * Analyze JSON Object, and set metadata such as ACL.
          */
         this.name = fsDir.getName();
-        this.acl = this.translateAcl(this.metaFile.getAcl());
+        this.storedAcl = this.metaFile.getAcl();
+        this.acl = null;
 
         // TODO Interim correspondence.(For security reasons)
 //        @SuppressWarnings("unchecked")
@@ -399,7 +417,7 @@ public class DavCmpFsImpl implements DavCmp {
         long now = new Date().getTime();
         String reqUri = url;
         Multistatus ms = this.of.createMultistatus();
-        Response res = this.of.createResponse();
+        org.apache.wink.webdav.model.Response res = this.of.createResponse();
         res.getHref().add(reqUri);
 
         // Lock
@@ -510,7 +528,7 @@ public class DavCmpFsImpl implements DavCmp {
             this.metaFile.setAcl(aclJson);
             this.metaFile.save();
             // Response
-            return javax.ws.rs.core.Response.status(HttpStatus.SC_OK).header(HttpHeaders.ETAG, this.getEtag());
+            return Response.status(HttpStatus.SC_OK).header(HttpHeaders.ETAG, this.getEtag());
         } finally {
             lock.release();
         }
@@ -518,6 +536,9 @@ public class DavCmpFsImpl implements DavCmp {
 
     @Override
     public final ResponseBuilder putForCreate(final String contentType, final InputStream inputStream) {
+        checkPutPreconditions(null);
+        // The body is written before locking so that a slow upload does not block other requests in the box.
+        StagedContent content = this.stageContent(inputStream);
         // Locking
         Lock lock = this.lock();
         try {
@@ -531,19 +552,23 @@ public class DavCmpFsImpl implements DavCmp {
 
             //When there is a DavNode to be created, update processing
             if (this.exists()) {
-                return this.doPutForUpdate(contentType, inputStream, null);
+                return this.doPutForUpdate(contentType, content, null);
             }
             //When there is no DavNode to be created, a new creation process
-            return this.doPutForCreate(contentType, inputStream);
+            return this.doPutForCreate(contentType, content);
         } finally {
             // UNLOCK
             lock.release();
             log.debug("unlock1");
+            content.discard();
         }
     }
 
     @Override
     public ResponseBuilder putForUpdate(final String contentType, final InputStream inputStream, String etag) {
+        checkPutPreconditions(etag);
+        // The body is written before locking so that a slow upload does not block other requests in the box.
+        StagedContent content = this.stageContent(inputStream);
         //Lock
         Lock lock = this.lock();
         try {
@@ -558,77 +583,165 @@ public class DavCmpFsImpl implements DavCmp {
                 if (this.parent.metaFile == null) {
                     throw getNotFoundException().params(this.parent.getUrl());
                 }
-                return this.doPutForCreate(contentType, inputStream);
+                return this.doPutForCreate(contentType, content);
             }
-            return this.doPutForUpdate(contentType, inputStream, etag);
+            return this.doPutForUpdate(contentType, content, etag);
         } finally {
             //Release the lock
             lock.release();
             log.debug("unlock2");
+            content.discard();
         }
     }
 
     /**
-     * Newly create the resource.
-     * @param contentType ContentType of the generated file
-     * @param inputStream Stream of generated file
-     * @return ResponseBuilder
+     * Check the preconditions of PUT with the state loaded before locking,
+     * so that a request bound to fail is rejected before its body is written.
+     * They are checked again under the lock.
+     * @param etag If-Match header, null if not specified
      */
-    protected ResponseBuilder doPutForCreate(final String contentType, final InputStream inputStream) {
-        // check the resource count
+    protected void checkPutPreconditions(String etag) {
+        if (this.exists()) {
+            if (etag != null && !"*".equals(etag) && !matchesETag(etag)) {
+                throw PersoniumCoreException.Dav.ETAG_NOT_MATCH;
+            }
+            return;
+        }
+        if (!this.parent.exists()) {
+            throw PersoniumCoreException.Dav.HAS_NOT_PARENT.params(this.parent.getUrl());
+        }
         checkChildResourceCount();
+    }
 
-        InputStream input = inputStream;
-        // Perform encryption.
-        DataCryptor cryptor = new DataCryptor(getCellId());
-        input = cryptor.encode(inputStream, PersoniumUnitConfig.isDavEncryptEnabled());
+    /**
+     * Write the request body to a staging file next to the resource without locking.
+     * @param inputStream request body
+     * @return staged content
+     */
+    StagedContent stageContent(final InputStream inputStream) {
+        File file = new File(getStagingFilePath());
 
         // write start log
-        PersoniumCoreLog.Dav.FILE_OPERATION_START.params(getContentFilePath()).writeLog();
+        PersoniumCoreLog.Dav.FILE_OPERATION_START.params(file.getPath()).writeLog();
         ElapsedTimeLog endLog = ElapsedTimeLog.Dav.FILE_OPERATION_END.params();
         endLog.setStartTime();
 
-        BufferedInputStream bufferedInput = new BufferedInputStream(input);
         try {
-            // create new directory.
-            Files.createDirectories(Paths.get(this.fsPath));
-            // store the file content.
-            File newFile = new File(getContentFilePath());
-            Files.copy(bufferedInput, newFile.toPath());
-            long writtenBytes = newFile.length();
-            String encryptionType = DataCryptor.ENCRYPTION_TYPE_NONE;
-            if (PersoniumUnitConfig.isDavEncryptEnabled()) {
-                writtenBytes = ((CipherInputStream) input).getReadLengthBeforEncryption();
-                encryptionType = DataCryptor.ENCRYPTION_TYPE_AES;
-            }
+            String encryptionType = getEncryptionTypeForNewContent();
+            long writtenBytes = storeContent(inputStream, file, encryptionType);
             if (PersoniumUnitConfig.getFsyncEnabled()) {
-                sync(newFile);
+                sync(file);
             }
             // write end log
             endLog.setParams(writtenBytes / KILO_BYTES);
             endLog.writeLog();
+            return new StagedContent(file, writtenBytes, encryptionType);
+        } catch (IOException ex) {
+            FileUtils.deleteQuietly(file);
+            if (!file.getParentFile().exists()) {
+                // the parent was deleted by another request.
+                throw getNotFoundException().params(this.parent.getUrl());
+            }
+            throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(ex);
+        }
+    }
+
+    /**
+     * Newly create the resource.
+     * @param contentType ContentType of the generated file
+     * @param content staged content of the generated file
+     * @return ResponseBuilder
+     */
+    protected ResponseBuilder doPutForCreate(final String contentType, final StagedContent content) {
+        // check the resource count
+        checkChildResourceCount();
+
+        try {
+            // create new directory.
+            Files.createDirectories(Paths.get(this.fsPath));
+            // move the file content into the directory.
+            File newFile = new File(getContentFilePath());
+            moveStagedContent(content, newFile.toPath());
 
             // create new metadata file.
             this.metaFile = DavMetadataFile.prepareNewFile(this, DavCmp.TYPE_DAV_FILE);
             this.metaFile.setContentType(contentType);
-            this.metaFile.setContentLength(writtenBytes);
-            this.metaFile.setEncryptionType(encryptionType);
+            this.metaFile.setContentLength(content.length);
+            this.metaFile.setEncryptionType(content.encryptionType);
             this.metaFile.save();
         } catch (IOException ex) {
             throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(ex);
         }
         this.isPhantom = false;
-        return javax.ws.rs.core.Response.ok().status(HttpStatus.SC_CREATED).header(HttpHeaders.ETAG, getEtag());
+        return Response.ok().status(HttpStatus.SC_CREATED).header(HttpHeaders.ETAG, getEtag());
+    }
+
+    /**
+     * Move the staged content to the content file.
+     * The staging file in the parent directory is lost if the parent is moved or deleted after staging,
+     * which is reported as the parent not found, in the same way as a failure while staging.
+     * @param content staged content
+     * @param target content file
+     * @throws IOException if failed to move
+     */
+    protected void moveStagedContent(StagedContent content, Path target) throws IOException {
+        try {
+            Files.move(content.file.toPath(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            if (!content.file.exists()) {
+                throw getNotFoundException().params(this.parent.getUrl());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the encryption type of contents to be written.
+     * @return encryption type
+     */
+    protected String getEncryptionTypeForNewContent() {
+        if (!PersoniumUnitConfig.isDavEncryptEnabled()) {
+            return DataCryptor.ENCRYPTION_TYPE_NONE;
+        }
+        // The engine reads service sources directly and does not know the chunked format.
+        if (ChunkedDataCryptor.isEnabled() && !isServiceSource()) {
+            return ChunkedDataCryptor.ENCRYPTION_TYPE_AES_CHUNKED;
+        }
+        return DataCryptor.ENCRYPTION_TYPE_AES;
+    }
+
+    /**
+     * Write the content to a new file.
+     * @param inputStream content
+     * @param file file to create
+     * @param encryptionType encryption type
+     * @return length of the content before encryption
+     * @throws IOException if failed to read or write
+     */
+    private long storeContent(InputStream inputStream, File file, String encryptionType) throws IOException {
+        if (ChunkedDataCryptor.isChunked(encryptionType)) {
+            return ChunkedDataCryptor.encode(inputStream, file.toPath(), getCellId(),
+                    PersoniumUnitConfig.getDavEncryptChunkSize());
+        }
+        // Perform encryption.
+        DataCryptor cryptor = new DataCryptor(getCellId());
+        boolean encrypt = DataCryptor.ENCRYPTION_TYPE_AES.equals(encryptionType);
+        InputStream input = cryptor.encode(inputStream, encrypt);
+        Files.copy(new BufferedInputStream(input), file.toPath());
+        if (encrypt) {
+            return ((CipherInputStream) input).getReadLengthBeforEncryption();
+        }
+        return file.length();
     }
 
     /**
      * Overwrite resources..
      * @param contentType ContentType of the update file
-     * @param inputStream Stream of update file
+     * @param content staged content of the update file
      * @param etag Etag
      * @return ResponseBuilder
      */
-    protected ResponseBuilder doPutForUpdate(final String contentType, final InputStream inputStream, String etag) {
+    protected ResponseBuilder doPutForUpdate(final String contentType, final StagedContent content, String etag) {
         //Get current time
         long now = new Date().getTime();
         //Load latest node information
@@ -646,48 +759,35 @@ public class DavCmpFsImpl implements DavCmp {
             throw PersoniumCoreException.Dav.ETAG_NOT_MATCH;
         }
 
-        // Write start log
-        PersoniumCoreLog.Dav.FILE_OPERATION_START.params(getContentFilePath()).writeLog();
-        ElapsedTimeLog endLog = ElapsedTimeLog.Dav.FILE_OPERATION_END.params();
-        endLog.setStartTime();
+        // The content is moved to a new file, and the current file is kept for the requests reading it.
+        // The engine reads service sources by the fixed name, so they are replaced in place.
+        boolean fixedName = isServiceSource();
+        File contentFile = new File(fixedName ? getFixedContentFilePath() : getNewContentFilePath());
         try {
             // Update Content
-            InputStream input = inputStream;
-            // Perform encryption.
-            DataCryptor cryptor = new DataCryptor(getCellId());
-            input = cryptor.encode(inputStream, PersoniumUnitConfig.isDavEncryptEnabled());
-            BufferedInputStream bufferedInput = new BufferedInputStream(input);
-            File tmpFile = new File(getTempContentFilePath());
-            File contentFile = new File(getContentFilePath());
-            Files.copy(bufferedInput, tmpFile.toPath());
-            Files.delete(contentFile.toPath());
-            Files.move(tmpFile.toPath(), contentFile.toPath());
-            if (PersoniumUnitConfig.getFsyncEnabled()) {
-                sync(contentFile);
-            }
-
-            long writtenBytes = contentFile.length();
-            String encryptionType = DataCryptor.ENCRYPTION_TYPE_NONE;
-            if (PersoniumUnitConfig.isDavEncryptEnabled()) {
-                writtenBytes = ((CipherInputStream) input).getReadLengthBeforEncryption();
-                encryptionType = DataCryptor.ENCRYPTION_TYPE_AES;
-            }
-            // Write end log
-            endLog.setParams(writtenBytes / KILO_BYTES);
-            endLog.writeLog();
+            Path retiredFile = Paths.get(getContentFilePath());
+            moveStagedContent(content, contentFile.toPath());
 
             // Update Metadata
             this.metaFile.setUpdated(now);
             this.metaFile.setContentType(contentType);
-            this.metaFile.setContentLength(writtenBytes);
-            this.metaFile.setEncryptionType(encryptionType);
+            this.metaFile.setContentLength(content.length);
+            this.metaFile.setEncryptionType(content.encryptionType);
+            this.metaFile.setContentFileName(fixedName ? null : contentFile.getName());
             this.metaFile.save();
+
+            if (!retiredFile.equals(contentFile.toPath())) {
+                DavContentSweeper.retire(retiredFile, contentFile.getName());
+            }
         } catch (IOException ex) {
+            if (!fixedName) {
+                FileUtils.deleteQuietly(contentFile);
+            }
             throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(ex);
         }
 
         // response
-        return javax.ws.rs.core.Response.ok().status(HttpStatus.SC_NO_CONTENT).header(HttpHeaders.ETAG, getEtag());
+        return Response.ok().status(HttpStatus.SC_NO_CONTENT).header(HttpHeaders.ETAG, getEtag());
     }
 
     /**
@@ -699,7 +799,7 @@ public class DavCmpFsImpl implements DavCmp {
         String contentType = getContentType();
 
         ResponseBuilder res = null;
-        String fileFullPath = this.fsPath + File.separator + CONTENT_FILE_NAME;
+        String fileFullPath = getContentFilePath();
         long fileSize = getContentLength();
         String encryptionType = getEncryptionType();
 
@@ -725,14 +825,9 @@ public class DavCmpFsImpl implements DavCmp {
                     throw PersoniumCoreException.Dav.REQUESTED_RANGE_NOT_SATISFIABLE;
                 }
 
-                if (range.getByteRangeSpecCount() > 1) {
-                    //Not compatible with MultiPart response
-                    throw PersoniumCoreException.Misc.NOT_IMPLEMENTED.params("Range-MultiPart");
-                } else {
-                    StreamingOutput sout = new StreamingOutputForDavFileWithRange(
-                            fileFullPath, fileSize, range, getCellId(), encryptionType);
-                    res = davFileResponseForRange(sout, contentType, range);
-                }
+                StreamingOutputForDavFileWithRange sout = new StreamingOutputForDavFileWithRange(
+                        fileFullPath, fileSize, range, contentType, getCellId(), encryptionType);
+                res = davFileResponseForRange(sout, contentType, range);
             }
             // write end log
             endLog.setParams(fileSize / KILO_BYTES);
@@ -761,7 +856,7 @@ public class DavCmpFsImpl implements DavCmp {
      * @return response
      */
     public ResponseBuilder davFileResponse(final StreamingOutput sout, long fileSize, String contentType) {
-        return javax.ws.rs.core.Response.ok(sout).header(HttpHeaders.CONTENT_LENGTH, fileSize)
+        return Response.ok(sout).header(HttpHeaders.CONTENT_LENGTH, fileSize)
                 .header(HttpHeaders.CONTENT_TYPE, contentType);
     }
 
@@ -775,15 +870,20 @@ public class DavCmpFsImpl implements DavCmp {
      *            RangeHeaderHandler
      * @return response
      */
-    private ResponseBuilder davFileResponseForRange(final StreamingOutput sout, String contentType,
-            final RangeHeaderHandler range) {
-        //Because it does not correspond to MultiPart, it processes only the first byte-renge-set.
+    private ResponseBuilder davFileResponseForRange(final StreamingOutputForDavFileWithRange sout,
+            String contentType, final RangeHeaderHandler range) {
+        if (sout.isMultipart()) {
+            // multiple byte-range-sets are returned as multipart/byteranges.
+            return Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
+                    .header(HttpHeaders.CONTENT_LENGTH, sout.getContentLength())
+                    .header(HttpHeaders.CONTENT_TYPE, sout.getMultipartContentType());
+        }
         int rangeIndex = 0;
         List<ByteRangeSpec> brss = range.getByteRangeSpecList();
         final ByteRangeSpec brs = brss.get(rangeIndex);
 
         //I have returned Content - Length to the clear because I can not process Chunked 's Range response in iPad' s safari.
-        return javax.ws.rs.core.Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
+        return Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
                 .header(CommonUtils.HttpHeaders.CONTENT_RANGE, brs.makeContentRangeHeaderField())
                 .header(HttpHeaders.CONTENT_LENGTH, brs.getContentLength())
                 .header(HttpHeaders.CONTENT_TYPE, contentType);
@@ -876,7 +976,7 @@ public class DavCmpFsImpl implements DavCmp {
         this.isPhantom = false;
 
         // Response
-        return javax.ws.rs.core.Response.status(HttpStatus.SC_CREATED).header(HttpHeaders.ETAG, this.getEtag());
+        return Response.status(HttpStatus.SC_CREATED).header(HttpHeaders.ETAG, this.getEtag());
     }
 
     /**
@@ -934,13 +1034,18 @@ public class DavCmpFsImpl implements DavCmp {
             if (!davDestination.getDestinationCmp().exists()) {
                 davDestination.getDestinationRsCmp().getParent().checkAccessContext(BoxPrivilege.BIND);
                 Files.move(this.fsDir.toPath(), destDir.toPath());
-                res = javax.ws.rs.core.Response.status(HttpStatus.SC_CREATED);
+                res = Response.status(HttpStatus.SC_CREATED);
             } else {
                 davDestination.getDestinationRsCmp().getParent().checkAccessContext(BoxPrivilege.BIND);
                 davDestination.getDestinationRsCmp().getParent().checkAccessContext(BoxPrivilege.UNBIND);
                 FileUtils.deleteDirectory(destDir);
                 Files.move(this.fsDir.toPath(), destDir.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                res = javax.ws.rs.core.Response.status(HttpStatus.SC_NO_CONTENT);
+                res = Response.status(HttpStatus.SC_NO_CONTENT);
+            }
+            DavCmpFsImpl destCmp = (DavCmpFsImpl) davDestination.getDestinationCmp();
+            if (DavCmp.TYPE_DAV_FILE.equals(this.getType()) && destCmp.isServiceSource()) {
+                destCmp.load();
+                destCmp.useFixedContentFileName();
             }
 
         } catch (IOException e) {
@@ -1013,7 +1118,7 @@ public class DavCmpFsImpl implements DavCmp {
             log.debug("unlock");
             lock.release();
         }
-        return javax.ws.rs.core.Response.ok().status(HttpStatus.SC_NO_CONTENT);
+        return Response.ok().status(HttpStatus.SC_NO_CONTENT);
     }
 
     /**
@@ -1108,6 +1213,20 @@ public class DavCmpFsImpl implements DavCmp {
         return ret;
     }
 
+    @Override
+    public Stream<String> getChildNameStream() {
+        if (!this.fsDir.isDirectory()) {
+            return Stream.empty();
+        }
+        try {
+            return Files.list(this.fsDir.toPath())
+                    .filter(Files::isDirectory)
+                    .map(child -> child.getFileName().toString());
+        } catch (IOException e) {
+            throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
+        }
+    }
+
     /*
      * retrieve child resource dir.
      */
@@ -1130,8 +1249,6 @@ public class DavCmpFsImpl implements DavCmp {
         //base: setting xml value
         String baseUrlStr = createBaseUrlStr();
 
-        //TODO This is a heavy process that ES search runs many times, so you should do it when you need it
-        //From here, once should be removed.
         return this.roleIdToName(aclObj, baseUrlStr);
     }
 
@@ -1280,9 +1397,112 @@ public class DavCmpFsImpl implements DavCmp {
      * @return content file path
      */
     protected String getContentFilePath() {
+        String contentFileName = this.metaFile.getContentFileName();
+        if (contentFileName == null) {
+            contentFileName = CONTENT_FILE_NAME;
+        }
+        return this.fsPath + File.separator + contentFileName;
+    }
+
+    /**
+     * Get the path of the content file with the fixed name.
+     * @return content file path
+     */
+    protected String getFixedContentFilePath() {
         return this.fsPath + File.separator + CONTENT_FILE_NAME;
     }
 
+    /**
+     * Returns whether this is a source file of a service collection.
+     * The engine reads the content of source files directly by the fixed name "content".
+     * @return true if service source
+     */
+    protected boolean isServiceSource() {
+        return this.parent != null && SERVICE_SRC_COLLECTION.equals(this.parent.getName())
+                && this.parent.parent != null && DavCmp.TYPE_COL_SVC.equals(this.parent.parent.getType());
+    }
+
+    /**
+     * Returns whether the directory of a Dav file is a source file of a service collection.
+     * Used where no DavCmp is available, like the background migration and the snapshot import.
+     * @param dir directory of the Dav file, which may be in a zip file system
+     * @return true if service source
+     * @throws IOException if failed to read the metadata of the service collection
+     */
+    public static boolean isServiceSourceDir(Path dir) throws IOException {
+        Path srcDir = dir.getParent();
+        if (srcDir == null || srcDir.getParent() == null || srcDir.getFileName() == null
+                || !SERVICE_SRC_COLLECTION.equals(srcDir.getFileName().toString())) {
+            return false;
+        }
+        return DavCmp.TYPE_COL_SVC.equals(
+                DavMetadataFile.readNodeType(srcDir.getParent().resolve(DavMetadataFile.DAV_META_FILE_NAME)));
+    }
+
+    /**
+     * Rename the current content file to the fixed name.
+     * A content in the chunked format, which the engine cannot read, is written again without chunks.
+     * It must be called under the lock.
+     * @throws IOException if failed to rename
+     */
+    void useFixedContentFileName() throws IOException {
+        String contentFileName = this.metaFile.getContentFileName();
+        boolean chunked = ChunkedDataCryptor.isChunked(this.metaFile.getEncryptionType());
+        if (contentFileName == null && !chunked) {
+            return;
+        }
+        Path current = Paths.get(getContentFilePath());
+        Path fixed = Paths.get(getFixedContentFilePath());
+        if (chunked) {
+            File staging = new File(getStagingFilePath());
+            try (FileChannel channel = FileChannel.open(current, StandardOpenOption.READ);
+                    InputStream input = ChunkedDataCryptor.decode(channel, 0, getCellId(), null)) {
+                storeContent(input, staging, DataCryptor.ENCRYPTION_TYPE_AES);
+                if (PersoniumUnitConfig.getFsyncEnabled()) {
+                    sync(staging);
+                }
+                Files.move(staging.toPath(), fixed, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                FileUtils.deleteQuietly(staging);
+            }
+            if (!current.equals(fixed)) {
+                Files.deleteIfExists(current);
+            }
+            this.metaFile.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_AES);
+        } else {
+            Files.move(current, fixed, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.metaFile.setContentFileName(null);
+        this.metaFile.save();
+    }
+
+    /**
+     * Get the path of a new file to write the updated content.
+     * @return new content file path
+     */
+    protected String getNewContentFilePath() {
+        return this.fsPath + File.separator + CONTENT_FILE_NAME + "." + PersoniumUUID.randomUUID();
+    }
+
+    /**
+     * Get the path of a staging file to write the request body.
+     * It is placed in the parent directory, which is kept while the resource itself is deleted or created.
+     * @return staging file path
+     */
+    protected String getStagingFilePath() {
+        return new File(this.fsPath).getParent() + File.separator + STAGING_FILE_PREFIX + PersoniumUUID.randomUUID();
+    }
+
+    /**
+     * Returns whether the file name is a name of staging files.
+     * @param fileName file name
+     * @return true if staging file
+     */
+    public static boolean isStagingFile(String fileName) {
+        return fileName.startsWith(STAGING_FILE_PREFIX);
+    }
+
     /**
      * Get temp content file path.
      * @return temp content file path
@@ -1411,4 +1631,29 @@ public class DavCmpFsImpl implements DavCmp {
     }
 
 
+
+    /**
+     * Content of a PUT request written to a staging file.
+     */
+    static final class StagedContent {
+        /** Staging file. */
+        final File file;
+        /** Length of the content before encryption. */
+        final long length;
+        /** Encryption type of the file. */
+        final String encryptionType;
+
+        StagedContent(File file, long length, String encryptionType) {
+            this.file = file;
+            this.length = length;
+            this.encryptionType = encryptionType;
+        }
+
+        /**
+         * Delete the staging file if it has not been moved.
+         */
+        void discard() {
+            FileUtils.deleteQuietly(this.file);
+        }
+    }
 }
@@ -0,0 +1,189 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Deletes the content files of Dav files which have been replaced.
+ * <p>
+ * An update of a Dav file writes a new content file and switches the metadata to it.
+ * The replaced file may still be read by requests of this node or of other nodes sharing the blob store,
+ * so it is deleted after the retention time. Files left by a stop of the process
+ * are deleted when the Dav file is updated next time.
+ * </p>
+ * <p>
+ * Open readers are not tracked. A request opens the content file right after it reads the metadata
+ * and reads through the descriptor until the response is written, and a local file deleted while it is open
+ * stays readable through its descriptor. So on this node the retention only has to cover the time
+ * between reading the metadata and opening the file. A node reading the blob store over NFS may lose
+ * a file deleted by another node, so the retention must be longer than the longest download on shared storage.
+ * Sources of service collections are replaced in place and never retired, as the engine reads them by name.
+ * </p>
+ * <p>
+ * Staging files of request bodies and metadata are moved or deleted by the request writing them,
+ * so only a stop of the process leaves them. They are deleted on the next start once they are old enough
+ * not to be written by a request of another node.
+ * </p>
+ */
+public final class DavContentSweeper {
+    private static Logger log = LoggerFactory.getLogger(DavContentSweeper.class);
+
+    /** Time after the last modification when a staging file is regarded as left by a stopped process. */
+    static final long STAGING_FILE_EXPIRY = TimeUnit.DAYS.toMillis(1);
+
+    private static ScheduledExecutorService scheduler;
+
+    private DavContentSweeper() {
+    }
+
+    /**
+     * Returns whether the file name is a name of content files.
+     * @param fileName file name
+     * @return true if content file
+     */
+    public static boolean isContentFile(String fileName) {
+        return DavCmpFsImpl.CONTENT_FILE_NAME.equals(fileName)
+                || fileName.startsWith(DavCmpFsImpl.CONTENT_FILE_NAME + ".");
+    }
+
+    /**
+     * Delete the replaced content file after the retention time,
+     * and the content files replaced before that time in the same directory.
+     * It must be called under the lock of the Dav file.
+     * @param retired replaced content file
+     * @param current name of the current content file
+     */
+    static void retire(Path retired, String current) {
+        long retention = TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getDavRetiredContentRetention());
+        long now = System.currentTimeMillis();
+        Path dir = retired.getParent();
+        String retiredName = retired.getFileName().toString();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                path -> isContentFile(path.getFileName().toString()))) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.equals(current) || name.equals(retiredName)) {
+                    continue;
+                }
+                // the modified time of a replaced file is the time when it was replaced.
+                if (Files.getLastModifiedTime(file).toMillis() + retention < now) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.setLastModifiedTime(retired, FileTime.fromMillis(now));
+            BasicFileAttributes attrs = Files.readAttributes(retired, BasicFileAttributes.class);
+            schedule(retired, attrs.fileKey(), attrs.lastModifiedTime().toMillis(), retention);
+        } catch (IOException e) {
+            log.info("Failed to sweep content files in " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the staging files left in the blob store in the background.
+     */
+    public static synchronized void sweepStagingFiles() {
+        Path root = Paths.get(PersoniumUnitConfig.getBlobStoreRoot());
+        long expiredBefore = System.currentTimeMillis() - STAGING_FILE_EXPIRY;
+        executor().execute(() -> sweepStagingFiles(root, expiredBefore));
+    }
+
+    /**
+     * Delete the staging files under the directory which have not been modified since the time.
+     * @param root directory to walk
+     * @param expiredBefore time in milliseconds
+     */
+    static void sweepStagingFiles(Path root, long expiredBefore) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (DavCmpFsImpl.isStagingFile(file.getFileName().toString())
+                            && attrs.lastModifiedTime().toMillis() < expiredBefore) {
+                        Files.deleteIfExists(file);
+                        log.info("Deleted a staging file left: " + file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // deleted by a request while walking
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.info("Failed to sweep staging files in " + root + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop deleting. Files which are not deleted yet are deleted by later updates.
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (scheduler == null) {
+            ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("dav-content-sweeper-%d");
+            builder.setDaemon(true);
+            scheduler = Executors.newSingleThreadScheduledExecutor(builder.build());
+        }
+        return scheduler;
+    }
+
+    private static synchronized void schedule(Path retired, Object fileKey, long retiredAt, long delay) {
+        executor().schedule(() -> {
+            try {
+                // a file created at the same path after the Dav file was deleted must not be deleted.
+                BasicFileAttributes attrs = Files.readAttributes(retired, BasicFileAttributes.class);
+                if (Objects.equals(fileKey, attrs.fileKey()) && attrs.lastModifiedTime().toMillis() == retiredAt) {
+                    Files.deleteIfExists(retired);
+                }
+            } catch (NoSuchFileException e) {
+                log.debug("Already deleted: " + retired);
+            } catch (IOException e) {
+                log.info("Failed to delete " + retired + ": " + e.getMessage());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.common.es.util.PersoniumUUID;
+import io.personium.common.file.DataCryptor;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.file.ChunkedDataCryptor;
+import io.personium.core.model.lock.Lock;
+import io.personium.core.model.lock.LockManager;
+
+/**
+ * Rewrites DAV files encrypted without chunks into the chunked format in the background.
+ * <p>
+ * Files are rewritten one by one. Like an update, the content is encoded into a staging file without the lock,
+ * and the metadata is switched to it under the DAV lock of the box only if the file has not been changed meanwhile,
+ * so the box keeps serving requests and the migration may be stopped at any time.
+ * It runs on every start until no file is left. Service sources are kept as they are for the engine.
+ * </p>
+ */
+public class DavEncryptionMigrator implements Runnable {
+    private static Logger log = LoggerFactory.getLogger(DavEncryptionMigrator.class);
+
+    private static ExecutorService executor;
+
+    private final Path root;
+    private long migrated = 0;
+    private long failed = 0;
+
+    /**
+     * Constructor.
+     * @param root root directory of the blob store
+     */
+    DavEncryptionMigrator(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Start the migration if enabled.
+     */
+    public static synchronized void start() {
+        if (executor != null || !PersoniumUnitConfig.isDavEncryptMigrationEnabled()
+                || !ChunkedDataCryptor.isEnabled()) {
+            return;
+        }
+        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("dav-encryption-migrator-%d");
+        builder.setDaemon(true);
+        executor = Executors.newSingleThreadExecutor(builder.build());
+        executor.execute(new DavEncryptionMigrator(Paths.get(PersoniumUnitConfig.getBlobStoreRoot())));
+    }
+
+    /**
+     * Stop the migration.
+     */
+    public static synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        log.info("DAV encryption migration started.");
+        // blob store root / data bundle / cell id / box id
+        try (DirectoryStream<Path> bundles = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path bundle : bundles) {
+                try (DirectoryStream<Path> cells = Files.newDirectoryStream(bundle, Files::isDirectory)) {
+                    for (Path cell : cells) {
+                        try (DirectoryStream<Path> boxes = Files.newDirectoryStream(cell, Files::isDirectory)) {
+                            for (Path box : boxes) {
+                                if (Thread.currentThread().isInterrupted()) {
+                                    log.info("DAV encryption migration stopped. migrated: " + migrated);
+                                    return;
+                                }
+                                migrateBox(cell.getFileName().toString(), box);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("DAV encryption migration failed: " + e.getMessage(), e);
+            return;
+        }
+        log.info("DAV encryption migration ended. migrated: " + migrated + ", failed: " + failed);
+    }
+
+    /**
+     * Migrate the files in the box.
+     * @param cellId Cell ID
+     * @param box directory of the box
+     * @throws IOException if failed to walk the directory
+     */
+    void migrateBox(String cellId, Path box) throws IOException {
+        String boxId = box.getFileName().toString();
+        try (Stream<Path> files = Files.walk(box)) {
+            files.filter(path -> DavMetadataFile.DAV_META_FILE_NAME.equals(path.getFileName().toString()))
+                    .forEach(metaFile -> {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return;
+                        }
+                        try {
+                            if (migrate(cellId, boxId, metaFile.getParent())) {
+                                migrated++;
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            failed++;
+                            log.warn("Failed to migrate " + metaFile.getParent() + ": " + e.getMessage(), e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Rewrite the content of the DAV file into the chunked format.
+     * The content is encoded into a staging file without the lock, and the lock is held only to
+     * switch the metadata to it if the file has not been changed meanwhile.
+     * @param cellId Cell ID
+     * @param boxId Box ID
+     * @param dir directory of the DAV file
+     * @return true if rewritten
+     * @throws IOException if failed to read or write
+     */
+    boolean migrate(String cellId, String boxId, Path dir) throws IOException {
+        File metaFile = dir.resolve(DavMetadataFile.DAV_META_FILE_NAME).toFile();
+        DavMetadataFile metadata = DavMetadataFile.newInstance(metaFile);
+        if (!metadata.exists()) {
+            return false;
+        }
+        metadata.load();
+        // The engine reads service sources directly and does not know the chunked format.
+        if (!DataCryptor.ENCRYPTION_TYPE_AES.equals(metadata.getEncryptionType())
+                || DavCmpFsImpl.isServiceSourceDir(dir)) {
+            return false;
+        }
+        String contentFileName = metadata.getContentFileName();
+        Long version = metadata.getVersion();
+        Path content = dir.resolve(contentFileName == null ? DavCmpFsImpl.CONTENT_FILE_NAME : contentFileName);
+        Path staging = dir.resolve(DavCmpFsImpl.STAGING_FILE_PREFIX + PersoniumUUID.randomUUID());
+        try {
+            long length;
+            DataCryptor cryptor = new DataCryptor(cellId);
+            try (InputStream input = cryptor.decode(new FileInputStream(content.toFile()),
+                    DataCryptor.ENCRYPTION_TYPE_AES)) {
+                length = ChunkedDataCryptor.encode(input, staging, cellId,
+                        PersoniumUnitConfig.getDavEncryptChunkSize());
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                // replaced and swept, or deleted meanwhile
+                return false;
+            }
+            if (length != metadata.getContentLength()) {
+                throw new IOException("content length does not match the metadata: " + length);
+            }
+            if (PersoniumUnitConfig.getFsyncEnabled()) {
+                try (FileOutputStream fos = new FileOutputStream(staging.toFile(), true)) {
+                    fos.getFD().sync();
+                }
+            }
+
+            Lock lock = LockManager.getLock(Lock.CATEGORY_DAV, null, boxId, null);
+            try {
+                DavMetadataFile current = DavMetadataFile.newInstance(metaFile);
+                if (!current.exists()) {
+                    return false;
+                }
+                current.load();
+                if (!Objects.equals(version, current.getVersion())
+                        || !Objects.equals(contentFileName, current.getContentFileName())) {
+                    // updated meanwhile, migrated on the next run if still needed
+                    return false;
+                }
+                Path newContent = dir.resolve(DavCmpFsImpl.CONTENT_FILE_NAME + "." + PersoniumUUID.randomUUID());
+                Files.move(staging, newContent, StandardCopyOption.ATOMIC_MOVE);
+                current.setEncryptionType(ChunkedDataCryptor.ENCRYPTION_TYPE_AES_CHUNKED);
+                current.setContentFileName(newContent.getFileName().toString());
+                current.save();
+                DavContentSweeper.retire(content, newContent.getFileName().toString());
+                return true;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Compact binary encoding of the Dav metadata.
+ * <p>
+ * The file starts with {@link #MAGIC} followed by a tagged value tree.
+ * Counts, lengths and integers are written as variable-length integers and strings as UTF-8,
+ * so that the metadata is decoded directly from the bytes of the file.
+ * JSON text never starts with {@code 0x00}, so both formats can be told apart by the first byte.
+ */
+final class DavMetadataBinaryFormat {
+
+    /** Header of the binary metadata file, the last byte is the format version. */
+    private static final byte[] MAGIC = {0x00, 'P', 'M', 0x01};
+
+    private static final byte TAG_NULL = 'N';
+    private static final byte TAG_TRUE = 'T';
+    private static final byte TAG_FALSE = 'F';
+    private static final byte TAG_LONG = 'L';
+    private static final byte TAG_DOUBLE = 'D';
+    private static final byte TAG_STRING = 'S';
+    private static final byte TAG_OBJECT = 'O';
+    private static final byte TAG_ARRAY = 'A';
+
+    private static final int VARINT_DATA_BITS = 7;
+    private static final int VARINT_DATA_MASK = 0x7f;
+    private static final int VARINT_CONTINUE = 0x80;
+    private static final int LONG_BITS = 64;
+    private static final int BYTE_BITS = 8;
+    private static final int BYTE_MASK = 0xff;
+
+    private DavMetadataBinaryFormat() {
+    }
+
+    /**
+     * @param bytes content of a metadata file
+     * @return true if the content is encoded in this format
+     */
+    static boolean isBinary(byte[] bytes) {
+        if (bytes.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encode the metadata.
+     * @param json metadata
+     * @return encoded bytes
+     */
+    static byte[] encode(JSONObject json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC, 0, MAGIC.length);
+        writeValue(out, json);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the metadata.
+     * @param bytes content of a metadata file starting with the header
+     * @return metadata
+     * @throws IllegalArgumentException the content is broken
+     */
+    static JSONObject decode(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            throw new IllegalArgumentException("Unknown metadata format.");
+        }
+        Decoder decoder = new Decoder(bytes, MAGIC.length);
+        Object value = decoder.readValue();
+        if (!(value instanceof JSONObject) || decoder.pos != bytes.length) {
+            throw new IllegalArgumentException("Broken metadata.");
+        }
+        return (JSONObject) value;
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.write(TAG_DOUBLE);
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            for (int shift = LONG_BITS - BYTE_BITS; shift >= 0; shift -= BYTE_BITS) {
+                out.write((int) (bits >>> shift) & BYTE_MASK);
+            }
+        } else if (value instanceof Number) {
+            out.write(TAG_LONG);
+            long l = ((Number) value).longValue();
+            // zigzag encoding keeps small negative numbers short
+            writeVarLong(out, (l << 1) ^ (l >> (LONG_BITS - 1)));
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(TAG_OBJECT);
+            writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(TAG_ARRAY);
+            writeVarLong(out, list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else {
+            // Same as JSONValue, other values are stored as their string representation.
+            out.write(TAG_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long v = value;
+        while ((v & ~VARINT_DATA_MASK) != 0) {
+            out.write((int) (v & VARINT_DATA_MASK) | VARINT_CONTINUE);
+            v >>>= VARINT_DATA_BITS;
+        }
+        out.write((int) v);
+    }
+
+    /**
+     * Reads values from the bytes of a file.
+     */
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int pos;
+
+        Decoder(byte[] bytes, int pos) {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+        @SuppressWarnings("unchecked")
+        Object readValue() {
+            byte tag = readByte();
+            switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_LONG:
+                long l = readVarLong();
+                return (l >>> 1) ^ -(l & 1);
+            case TAG_DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < LONG_BITS / BYTE_BITS; i++) {
+                    bits = (bits << BYTE_BITS) | (readByte() & BYTE_MASK);
+                }
+                return Double.longBitsToDouble(bits);
+            case TAG_STRING:
+                return readString();
+            case TAG_OBJECT:
+                int size = readCount();
+                JSONObject object = new JSONObject();
+                for (int i = 0; i < size; i++) {
+                    String key = readString();
+                    object.put(key, readValue());
+                }
+                return object;
+            case TAG_ARRAY:
+                int length = readCount();
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < length; i++) {
+                    array.add(readValue());
+                }
+                return array;
+            default:
+                throw new IllegalArgumentException("Unknown tag in metadata: " + tag);
+            }
+        }
+
+        private String readString() {
+            int length = readCount();
+            String str = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return str;
+        }
+
+        /**
+         * Read a count of items or bytes, which cannot exceed the rest of the bytes.
+         */
+        private int readCount() {
+            long count = readVarLong();
+            if (count < 0 || count > bytes.length - pos) {
+                throw new IllegalArgumentException("Broken metadata.");
+            }
+            return (int) count;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < LONG_BITS; shift += VARINT_DATA_BITS) {
+                int b = readByte() & BYTE_MASK;
+                value |= (long) (b & VARINT_DATA_MASK) << shift;
+                if ((b & VARINT_CONTINUE) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Broken metadata.");
+        }
+
+        private byte readByte() {
+            if (pos >= bytes.length) {
+                throw new IllegalArgumentException("Broken metadata.");
+            }
+            return bytes[pos++];
+        }
+    }
+}
@@ -17,25 +17,40 @@
  */
 package io.personium.core.model.impl.fs;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.personium.common.es.util.PersoniumUUID;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.ElapsedTimeLog;
+import io.personium.core.model.DavCmp;
 
 /**
  * a class for handling internal fs file storing Dav metadata.
@@ -54,6 +69,11 @@ public class DavMetadataFile {
     private static final int META_LOAD_RETRY_MAX = 5;
     private static final int KILO_BYTES = 1000;
 
+    /** Metadata file format: JSON text. */
+    public static final String FORMAT_JSON = "json";
+    /** Metadata file format: compact binary encoding. */
+    public static final String FORMAT_BINARY = "binary";
+
     File file;
     JSONObject json = new JSONObject();
 
@@ -84,6 +104,9 @@ public class DavMetadataFile {
     /** JSON Key for Encryption Type. */
     private static final String KEY_ENCRYPTION_TYPE = "et";
 
+    /** JSON Key for Content File name. */
+    private static final String KEY_CONTENT_FILE = "cf";
+
     /** JSON Key for Version. */
     private static final String KEY_VERSION = "v";
 
@@ -156,6 +179,23 @@ public class DavMetadataFile {
         return ret;
     }
 
+    /**
+     * Read the node type of a metadata file, which may be in a zip file system.
+     * @param path path of the metadata file
+     * @return node type, or null if the file does not exist
+     * @throws IOException if failed to read or parse the file
+     */
+    public static String readNodeType(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return (String) parse(Files.readAllBytes(path)).get(KEY_NODE_TYPE);
+        } catch (ParseException | IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
     /**
      * @return true if the file exists.
      */
@@ -196,6 +236,7 @@ public class DavMetadataFile {
 
     /**
      * load from the file.
+     * The parsed metadata is cached while the file is not replaced.
      */
     private void doLoad() throws PersoniumCoreException {
         // write start log
@@ -203,47 +244,136 @@ public class DavMetadataFile {
         ElapsedTimeLog endLog = ElapsedTimeLog.Dav.FILE_OPERATION_END.params();
         endLog.setStartTime();
 
-        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
-            JSONParser parser = new JSONParser();
-            this.json = (JSONObject) parser.parse(reader);
+        Path path = this.file.toPath();
+        String cacheKey = this.file.getAbsolutePath();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            Cache<String, CachedMetadata> cache = MetadataCache.get();
+            CachedMetadata cached = cache == null ? null : cache.getIfPresent(cacheKey);
+            if (cached != null && cached.isSameFile(attrs)) {
+                this.json = deepCopy(cached.json);
+            } else {
+                byte[] bytes = Files.readAllBytes(path);
+                this.json = parse(bytes);
+                // Cache only if the file has not been replaced while reading it.
+                if (cache != null && CachedMetadata.isSameFile(attrs,
+                        Files.readAttributes(path, BasicFileAttributes.class))) {
+                    cache.put(cacheKey, new CachedMetadata(attrs, deepCopy(this.json)));
+                }
+            }
             // write end log
-            int jsonSize = this.json.toJSONString().getBytes(StandardCharsets.UTF_8).length;
-            endLog.setParams(jsonSize / KILO_BYTES);
+            endLog.setParams(attrs.size() / KILO_BYTES);
             endLog.writeLog();
-        } catch (IOException | ParseException e) {
+        } catch (IOException | ParseException | IllegalArgumentException e) {
             // IO failure or JSON is broken
             throw PersoniumCoreException.Dav.DAV_INCONSISTENCY_FOUND.reason(e);
         }
     }
 
+    /**
+     * Parse the content of the metadata file in either format.
+     */
+    private static JSONObject parse(byte[] bytes) throws IOException, ParseException {
+        if (DavMetadataBinaryFormat.isBinary(bytes)) {
+            return DavMetadataBinaryFormat.decode(bytes);
+        }
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+            return (JSONObject) new JSONParser().parse(reader);
+        }
+    }
+
     /**
      * save to the file.
+     * The file is replaced atomically, so readers never see partially written metadata
+     * and every save gives the file a new identity for the cache to detect.
+     * The metadata read by the engine is always written in JSON.
      */
     public void save() {
         this.incrementVersion();
-        String jsonStr = JSONObject.toJSONString(this.getJSON());
+        byte[] bytes;
+        if (FORMAT_BINARY.equals(PersoniumUnitConfig.getDavMetadataFormat()) && !this.isReadByEngine()) {
+            bytes = DavMetadataBinaryFormat.encode(this.getJSON());
+        } else {
+            bytes = JSONObject.toJSONString(this.getJSON()).getBytes(StandardCharsets.UTF_8);
+        }
 
         // write start log
         PersoniumCoreLog.Dav.FILE_OPERATION_START.params(this.file.toPath()).writeLog();
         ElapsedTimeLog endLog = ElapsedTimeLog.Dav.FILE_OPERATION_END.params();
         endLog.setStartTime();
 
+        Path path = this.file.toPath();
+        Path tempPath = path.resolveSibling(DavCmpFsImpl.STAGING_FILE_PREFIX + PersoniumUUID.randomUUID());
         try {
             if (PersoniumUnitConfig.getFsyncEnabled()) {
-                Files.write(this.file.toPath(), jsonStr.getBytes(StandardCharsets.UTF_8),
-                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+                Files.write(tempPath, bytes, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
             } else {
-                Files.write(this.file.toPath(), jsonStr.getBytes(StandardCharsets.UTF_8));
+                Files.write(tempPath, bytes, StandardOpenOption.CREATE_NEW);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Cache<String, CachedMetadata> cache = MetadataCache.get();
+            if (cache != null) {
+                cache.put(this.file.getAbsolutePath(), new CachedMetadata(
+                        Files.readAttributes(path, BasicFileAttributes.class), deepCopy(this.json)));
             }
         } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException e1) {
+                log.info("Failed to delete temporary metadata file. file:" + tempPath, e1);
+            }
             throw new RuntimeException(e);
         }
 
         // write end log
-        endLog.setParams(jsonStr.getBytes(StandardCharsets.UTF_8).length / KILO_BYTES);
+        endLog.setParams(bytes.length / KILO_BYTES);
         endLog.writeLog();
     }
 
+    /**
+     * The engine parses the metadata of service collections and their sources as JSON.
+     * @return true if this is the metadata of a service collection, its source collection or a source
+     */
+    private boolean isReadByEngine() {
+        if (DavCmp.TYPE_COL_SVC.equals(this.getNodeType())) {
+            return true;
+        }
+        Path dir = this.file.getAbsoluteFile().toPath().getParent();
+        try {
+            Path parent = dir.getParent();
+            if (DavCmp.SERVICE_SRC_COLLECTION.equals(dir.getFileName().toString()) && parent != null
+                    && DavCmp.TYPE_COL_SVC.equals(readNodeType(parent.resolve(DAV_META_FILE_NAME)))) {
+                return true;
+            }
+            return DavCmpFsImpl.isServiceSourceDir(dir);
+        } catch (IOException e) {
+            // JSON can be read by anyone.
+            return true;
+        }
+    }
+
+    /**
+     * Copy the metadata so that the cached one is not changed through the setters or the returned objects.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T deepCopy(T value) {
+        if (value instanceof Map) {
+            JSONObject copy = new JSONObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), deepCopy(entry.getValue()));
+            }
+            return (T) copy;
+        } else if (value instanceof List) {
+            JSONArray copy = new JSONArray();
+            for (Object item : (List<?>) value) {
+                copy.add(deepCopy(item));
+            }
+            return (T) copy;
+        }
+        // String, Number, Boolean and null are immutable.
+        return value;
+    }
+
     private void incrementVersion() {
         this.setVersion(this.getVersion() + 1);
     }
@@ -415,6 +545,25 @@ public class DavMetadataFile {
         this.json.put(KEY_ENCRYPTION_TYPE, encryptionType);
     }
 
+    /**
+     * @return name of the file storing the current content, null if the content is stored in "content".
+     */
+    public String getContentFileName() {
+        return (String) this.json.get(KEY_CONTENT_FILE);
+    }
+
+    /**
+     * @param contentFileName name of the file storing the current content, null to store it in "content"
+     */
+    @SuppressWarnings("unchecked")
+    public void setContentFileName(String contentFileName) {
+        if (contentFileName == null) {
+            this.json.remove(KEY_CONTENT_FILE);
+        } else {
+            this.json.put(KEY_CONTENT_FILE, contentFileName);
+        }
+    }
+
     /**
      * @return cell status string.
      */
@@ -442,4 +591,59 @@ public class DavMetadataFile {
         this.json.put(KEY_VERSION, version);
     }
 
+    /**
+     * Parsed metadata with the identity of the file it was read from.
+     */
+    private static final class CachedMetadata {
+        private final Object fileKey;
+        private final FileTime lastModified;
+        private final long size;
+        private final JSONObject json;
+
+        CachedMetadata(BasicFileAttributes attrs, JSONObject json) {
+            this.fileKey = attrs.fileKey();
+            this.lastModified = attrs.lastModifiedTime();
+            this.size = attrs.size();
+            this.json = json;
+        }
+
+        boolean isSameFile(BasicFileAttributes attrs) {
+            return Objects.equals(this.fileKey, attrs.fileKey())
+                    && this.lastModified.equals(attrs.lastModifiedTime())
+                    && this.size == attrs.size();
+        }
+
+        static boolean isSameFile(BasicFileAttributes attrs1, BasicFileAttributes attrs2) {
+            return Objects.equals(attrs1.fileKey(), attrs2.fileKey())
+                    && attrs1.lastModifiedTime().equals(attrs2.lastModifiedTime())
+                    && attrs1.size() == attrs2.size();
+        }
+    }
+
+    /**
+     * Holder of the cache of parsed metadata, created on first use.
+     */
+    private static final class MetadataCache {
+        /** null if caching is disabled. */
+        private static final Cache<String, CachedMetadata> CACHE = create();
+
+        private static Cache<String, CachedMetadata> create() {
+            int maxSize = PersoniumUnitConfig.getDavMetadataCacheSize();
+            if (maxSize <= 0) {
+                return null;
+            }
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize);
+            // The attributes of a file on shared storage may be cached by the client and miss the saves
+            // of other nodes, while opening the file gets the latest one. Entries are read again after the ttl.
+            long ttl = PersoniumUnitConfig.getDavMetadataCacheTtl();
+            if (ttl > 0) {
+                builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+            }
+            return builder.build();
+        }
+
+        static Cache<String, CachedMetadata> get() {
+            return CACHE;
+        }
+    }
 }
@@ -23,6 +23,8 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+
 /**
  * Utility to manage cell lock.
  */
@@ -100,16 +102,42 @@ public abstract class CellLockManager extends LockManager {
      */
     public static STATUS getCellStatus(String cellId) {
         String key =  CELL_STATUS_PREFIX + cellId;
-        STATUS status = statusMap.get(singleton.doGetCellStatus(key));
+        Cache<String, Object> cache = localCache;
+        CellStatusWatcher watcher = statusWatcher;
+        Long statusId = null;
+        if (cache != null) {
+            statusId = (Long) cache.getIfPresent(key);
+        }
+        boolean cached = statusId != null;
+        long invalidations = 0;
+        if (!cached) {
+            if (watcher != null) {
+                invalidations = watcher.invalidations();
+            }
+            statusId = singleton.doGetCellStatus(key);
+        }
+        STATUS status = statusMap.get(statusId);
         if (status == null) {
             status = STATUS.NORMAL;
         }
+        //Only the normal status is cached, so that the return to normal is seen at once
+        if (cache != null && !cached && STATUS.NORMAL.equals(status)) {
+            cache.put(key, statusId);
+            //The status read before a change must not remain after the invalidation
+            if (watcher != null && watcher.invalidations() != invalidations) {
+                cache.invalidate(key);
+            }
+        }
         return status;
     }
 
     /**
      * Set the processing status of the cell with the specified value.
      * When "Normal" is specified as the status, data is deleted from the cache.
+     * When other status is specified, it waits until other nodes drop the normal status they have cached,
+     * so requests that have seen the normal status are counted in the reference count on return.
+     * The change is notified to other nodes and seen at their next check, or when their cache expires
+     * if the check is disabled.
      * @param cellId Target cell id
      * @param status processing status
      * @return Processing result
@@ -123,7 +151,31 @@ public abstract class CellLockManager extends LockManager {
         } else {
             success = singleton.doSetCellStatus(key, status.getId());
         }
+        //Changes in this node are reflected at once, and those in other nodes at their next check
+        Cache<String, Object> cache = localCache;
+        CellStatusWatcher watcher = statusWatcher;
+        long wait = localCacheExpiresIn;
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+        if (watcher != null) {
+            try {
+                watcher.changed();
+                //A check started before the change may still be running when the interval has passed
+                wait = Math.min(wait, localCacheSyncInterval * 2);
+            } catch (RuntimeException e) {
+                //Other nodes see the change when their cache expires
+                log.info("Failed to notify the change of cell status. CellID:" + cellId, e);
+            }
+        }
         log.info(String.format("Changed cell lock status. CellID:%s, LockStatus:%s", cellId, status.getMessage()));
+        if (!STATUS.NORMAL.equals(status) && wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         return success;
     }
 
@@ -134,6 +186,10 @@ public abstract class CellLockManager extends LockManager {
      */
     public static long getReferenceCount(String cellId) {
         String key =  REFERENCE_COUNT_PREFIX + cellId;
+        CellReferenceCounter counter = referenceCounter;
+        if (counter != null) {
+            return counter.get(key);
+        }
         long count = singleton.doGetReferenceCount(key);
         return count;
     }
@@ -145,6 +201,10 @@ public abstract class CellLockManager extends LockManager {
      */
     public static long incrementReferenceCount(String cellId) {
         String key =  REFERENCE_COUNT_PREFIX + cellId;
+        CellReferenceCounter counter = referenceCounter;
+        if (counter != null) {
+            return counter.increment(key);
+        }
         long count = singleton.doIncrementReferenceCount(key);
         return count;
     }
@@ -156,6 +216,10 @@ public abstract class CellLockManager extends LockManager {
      */
     public static long decrementReferenceCount(String cellId) {
         String key =  REFERENCE_COUNT_PREFIX + cellId;
+        CellReferenceCounter counter = referenceCounter;
+        if (counter != null) {
+            return counter.decrement(key);
+        }
         long count = singleton.doDecrementReferenceCount(key);
         if (count < 0) {
             count = 0;
@@ -0,0 +1,222 @@
+/**
+ * Personium
+ * Copyright 2014-2022 Personium Project Authors
+ * - FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * Reference counts of cells kept in this node.
+ * <p>
+ * Requests to a cell are counted in process. While this node has requests to the cell,
+ * it holds one lease on the shared reference count of the cell, so only the first request
+ * and the release after the last one access the shared count.
+ * The lease is released by the periodic flush, so the shared count may be larger than the actual
+ * for the flush interval, but never smaller. The counter of a cell is removed when its lease is released.
+ * </p>
+ */
+class CellReferenceCounter {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(CellReferenceCounter.class);
+
+    /** Lock manager that holds the shared reference counts. */
+    private final LockManager manager;
+
+    /** Counters of each cell. */
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /** Scheduler releasing the leases. */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     * @param manager lock manager that holds the shared reference counts
+     */
+    CellReferenceCounter(LockManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Start releasing unused leases periodically.
+     * @param flushInterval interval (ms)
+     */
+    void start(long flushInterval) {
+        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("cell-reference-count-flusher-%d");
+        builder.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(builder.build());
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop releasing leases.
+     */
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Increment the reference count of the cell.
+     * @param key key of the shared reference count
+     * @return reference count of the cell in this node
+     */
+    long increment(String key) {
+        while (true) {
+            Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+            counter.count.increment();
+            if (!counter.leased) {
+                //The lease must be held before the request proceeds
+                synchronized (counter) {
+                    if (counter.removed) {
+                        //Removed by the flush, count on the new counter
+                        counter.count.decrement();
+                        continue;
+                    }
+                    if (!counter.leased) {
+                        try {
+                            manager.doIncrementReferenceCount(key);
+                        } catch (RuntimeException e) {
+                            //The request fails without decrementing
+                            counter.count.decrement();
+                            throw e;
+                        }
+                        counter.leased = true;
+                    }
+                }
+            }
+            return counter.count.sum();
+        }
+    }
+
+    /**
+     * Decrement the reference count of the cell.
+     * @param key key of the shared reference count
+     * @return reference count of the cell in this node
+     */
+    long decrement(String key) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            return 0;
+        }
+        counter.count.decrement();
+        return Math.max(counter.count.sum(), 0);
+    }
+
+    /**
+     * Returns the reference count of the cell in all nodes.
+     * @param key key of the shared reference count
+     * @return reference count. -1 if there is no reference
+     */
+    long get(String key) {
+        long shared = manager.doGetReferenceCount(key);
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            return shared;
+        }
+        long local;
+        long own = 0;
+        synchronized (counter) {
+            local = counter.count.sum();
+            if (counter.leased) {
+                own = 1;
+            }
+        }
+        if (shared < 0 && local == 0) {
+            return shared;
+        }
+        //Replace the lease of this node with the actual count
+        return Math.max(shared, 0) - own + local;
+    }
+
+    /**
+     * Release the leases of cells that have no request in this node, and remove their counters.
+     */
+    void flush() {
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            synchronized (counter) {
+                if (counter.count.sum() > 0) {
+                    continue;
+                }
+                if (!counter.leased) {
+                    remove(entry.getKey(), counter);
+                    continue;
+                }
+                //Requests that see the lease released acquire it again after this block
+                counter.leased = false;
+                if (counter.count.sum() > 0) {
+                    counter.leased = true;
+                    continue;
+                }
+                try {
+                    manager.doDecrementReferenceCount(entry.getKey());
+                    remove(entry.getKey(), counter);
+                } catch (MemcachedClientException e) {
+                    log.info("Failed to release cell reference count. key:" + entry.getKey());
+                    counter.leased = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the counter which has no request and no lease. It must be called holding the counter.
+     * Requests which got the counter before the removal retry with a new counter.
+     * @param key key of the shared reference count
+     * @param counter counter to remove
+     */
+    private void remove(String key, Counter counter) {
+        counter.removed = true;
+        counters.remove(key, counter);
+    }
+
+    /**
+     * Number of cells counted in this node.
+     * @return number of counters
+     */
+    int size() {
+        return counters.size();
+    }
+
+    /**
+     * Reference count of a cell in this node.
+     */
+    private static final class Counter {
+        /** Number of requests in this node. */
+        private final LongAdder count = new LongAdder();
+        /** Whether this node holds a lease on the shared count. */
+        private volatile boolean leased;
+        /** Whether this counter has been removed from the counters. */
+        private boolean removed;
+    }
+}
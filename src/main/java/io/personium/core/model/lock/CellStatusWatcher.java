@@ -0,0 +1,136 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Invalidates the cell statuses cached in this node when any node changes a cell status.
+ * <p>
+ * Every change of a cell status increments the shared version of cell statuses.
+ * This node checks the version periodically, and drops all the cached statuses when it has changed,
+ * so a change made by another node is seen within the check interval instead of the lifetime of the cache.
+ * </p>
+ */
+class CellStatusWatcher {
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(CellStatusWatcher.class);
+
+    /** Key of the shared version of cell statuses. */
+    static final String VERSION_KEY = "CellStatusVersion";
+
+    /** Lock manager that holds the shared version. */
+    private final LockManager manager;
+
+    /** Cache holding the cell statuses. */
+    private final Cache<String, Object> cache;
+
+    /** Version seen at the last check. */
+    private volatile long version = Long.MIN_VALUE;
+
+    /** Number of invalidations in this node. */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /** Scheduler checking the version. */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     * @param manager lock manager that holds the shared version
+     * @param cache cache holding the cell statuses
+     */
+    CellStatusWatcher(LockManager manager, Cache<String, Object> cache) {
+        this.manager = manager;
+        this.cache = cache;
+    }
+
+    /**
+     * Start checking the version periodically.
+     * @param interval interval (ms)
+     */
+    void start(long interval) {
+        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("cell-status-watcher-%d");
+        builder.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(builder.build());
+        scheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop checking the version.
+     */
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Notify that this node has changed a cell status.
+     */
+    void changed() {
+        manager.doIncrementCellStatusVersion(VERSION_KEY);
+    }
+
+    /**
+     * Check the version, and invalidate the cached statuses if it has changed.
+     */
+    void check() {
+        long current;
+        try {
+            current = manager.doGetCellStatusVersion(VERSION_KEY);
+        } catch (RuntimeException e) {
+            //Changes cannot be seen, so the cached statuses are no longer trusted
+            log.info("Failed to check the version of cell statuses.", e);
+            invalidate();
+            return;
+        }
+        if (current != version) {
+            version = current;
+            invalidate();
+        }
+    }
+
+    /**
+     * Number of invalidations in this node.
+     * A status read before an invalidation must not be cached after it.
+     * @return number of invalidations
+     */
+    long invalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Invalidate all the cell statuses cached in this node.
+     */
+    private void invalidate() {
+        //Counted first, so that a status put after the removal is found by the reader
+        invalidations.incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.startsWith(CellLockManager.CELL_STATUS_PREFIX));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * Utility to share the event interests of cells between nodes.
+ * <p>
+ * An interest is a value with a lifetime: it disappears unless the nodes observing the events
+ * write it again. A missing interest means it is unknown.
+ * </p>
+ */
+public abstract class EventInterestLockManager extends LockManager {
+    private static Logger log = LoggerFactory.getLogger(EventInterestLockManager.class);
+
+    /**
+     * Category of the interest of rules. The value is 1 if the cell has rules, otherwise 0.
+     */
+    public static final String CATEGORY_RULE_INTEREST = "EventInterestRule_";
+
+    /**
+     * Category of the interest of WebSocket subscribers. The value is 1 while the cell has subscribers.
+     */
+    public static final String CATEGORY_WEBSOCKET_INTEREST = "EventInterestWs_";
+
+    /**
+     * Get the interest of the cell.
+     * @param category category of the interest
+     * @param cellId cell id
+     * @return value, -1 if it is unknown or could not be read
+     */
+    public static long getInterest(final String category, final String cellId) {
+        try {
+            return singleton.doGetEventInterest(category + cellId);
+        } catch (MemcachedClientException e) {
+            log.info("failed to get event interest: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Write the interest of the cell.
+     * @param category category of the interest
+     * @param cellId cell id
+     * @param value value
+     * @param expired lifetime in seconds
+     * @return true if written
+     */
+    public static boolean putInterest(final String category, final String cellId, long value, int expired) {
+        try {
+            return Boolean.TRUE.equals(singleton.doPutEventInterest(category + cellId, value, expired));
+        } catch (MemcachedClientException e) {
+            log.info("failed to put event interest: " + e.getMessage());
+            return false;
+        }
+    }
+}
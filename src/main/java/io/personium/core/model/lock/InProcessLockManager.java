@@ -17,168 +17,241 @@
  */
 package io.personium.core.model.lock;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * InProcess's LockManager.
+ * <p>
+ * Values are kept in concurrent maps and each operation is atomic on its key,
+ * so operations on different keys, such as reference counts of different cells, do not wait for each other.
+ * </p>
  */
 class InProcessLockManager extends LockManager {
-    Map<String, Object> inProcessLock = new HashMap<String, Object>();
-    Map<String, AccountLock> inProcessAccountLock = new HashMap<String, AccountLock>();
+    Map<String, Object> inProcessLock = new ConcurrentHashMap<String, Object>();
+    Map<String, AccountLock> inProcessAccountLock = new ConcurrentHashMap<String, AccountLock>();
+    Map<String, EventInterest> inProcessEventInterest = new ConcurrentHashMap<String, EventInterest>();
 
     @Override
-    synchronized Lock doGetLock(String fullKey) {
-        return (Lock) inProcessLock.get(fullKey);
+    Lock doGetLock(String fullKey) {
+        Object lock = inProcessLock.computeIfPresent(fullKey, (key, current) -> isExpired(current) ? null : current);
+        return (Lock) lock;
     }
 
     @Override
-    synchronized Boolean doPutLock(String fullKey, Lock lock) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, lock);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+    Boolean doPutLock(String fullKey, Lock lock, int lease) {
+        Object current = inProcessLock.compute(fullKey, (key, value) -> {
+            if (value != null && !isExpired(value)) {
+                return value;
+            }
+            lock.leaseExpiresAt = leaseExpiresAt(lease);
+            return lock;
+        });
+        return current == lock;
+    }
+
+    @Override
+    Boolean doRenewLock(String fullKey, Lock lock, int lease) {
+        Object current = inProcessLock.computeIfPresent(fullKey, (key, value) -> {
+            if (value == lock && !isExpired(value)) {
+                lock.leaseExpiresAt = leaseExpiresAt(lease);
+            }
+            return value;
+        });
+        return current == lock && !isExpired(lock);
+    }
+
+    @Override
+    void doReleaseLock(String fullKey, Lock lock) {
+        inProcessLock.remove(fullKey, lock);
     }
 
     @Override
-    synchronized void doReleaseLock(String fullKey) {
+    void doReleaseLock(String fullKey) {
         inProcessLock.remove(fullKey);
     }
 
+    private static boolean isExpired(Object value) {
+        return value instanceof Lock && ((Lock) value).leaseExpiresAt < System.currentTimeMillis();
+    }
+
+    private static long leaseExpiresAt(int lease) {
+        if (lease <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lease);
+    }
+
     @Override
-    synchronized void doDeleteAllLocks() {
+    void doDeleteAllLocks() {
         inProcessLock.clear();
         inProcessAccountLock.clear();
+        inProcessEventInterest.clear();
     }
 
     @Override
-    synchronized String doGetReferenceOnlyLock(String fullKey) {
+    String doGetReferenceOnlyLock(String fullKey) {
         return (String) inProcessLock.get(fullKey);
     }
 
     @Override
-    synchronized Boolean doPutReferenceOnlyLock(String fullKey, String value) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, value);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+    Boolean doPutReferenceOnlyLock(String fullKey, String value) {
+        return inProcessLock.putIfAbsent(fullKey, value) == null;
     }
 
     @Override
-    synchronized long doGetAccountLock(String fullKey) {
-        Long value = -1L;
-        if (inProcessAccountLock.containsKey(fullKey)) {
-            AccountLock lock = inProcessAccountLock.get(fullKey);
-            value = lock.value();
+    long doGetAccountLock(String fullKey) {
+        AccountLock lock = inProcessAccountLock.get(fullKey);
+        if (lock == null) {
+            return -1L;
         }
-        return value;
+        return lock.value();
     }
 
     @Override
-    synchronized Boolean doPutAccountLock(String fullKey, long value, int expired) {
+    Boolean doPutAccountLock(String fullKey, long value, int expired) {
         inProcessAccountLock.put(fullKey, new AccountLock(value, expired));
         return Boolean.TRUE;
     }
 
     @Override
-    synchronized long doIncrementAccountLock(String fullKey, int expired) {
-        Long value = 1L;
-        if (inProcessAccountLock.containsKey(fullKey)) {
-            AccountLock lock = inProcessAccountLock.get(fullKey);
-            value = lock.value();
-            value++;
-        }
-        inProcessAccountLock.put(fullKey, new AccountLock(value, expired));
-        return value;
+    long doIncrementAccountLock(String fullKey, int expired) {
+        AccountLock lock = inProcessAccountLock.compute(fullKey, (key, current) -> {
+            long value = 1L;
+            if (current != null) {
+                value = current.value() + 1;
+            }
+            return new AccountLock(value, expired);
+        });
+        return lock.value;
     }
 
     @Override
-    synchronized void doReleaseAccountLock(String fullKey) {
+    void doReleaseAccountLock(String fullKey) {
         inProcessAccountLock.remove(fullKey);
     }
 
     @Override
-    synchronized String doGetUnituserLock(String fullKey) {
+    String doGetUnituserLock(String fullKey) {
         return (String) inProcessLock.get(fullKey);
     }
 
     @Override
-    synchronized Boolean doPutUnituserLock(String fullKey, String value, int expired) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, value);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+    Boolean doPutUnituserLock(String fullKey, String value, int expired) {
+        return inProcessLock.putIfAbsent(fullKey, value) == null;
     }
 
     @Override
-    synchronized long doGetReferenceCount(String fullKey) {
-        Long value = -1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+    long doGetReferenceCount(String fullKey) {
+        Long value = (Long) inProcessLock.get(fullKey);
+        if (value == null) {
+            return -1L;
         }
         return value;
     }
 
     @Override
-    synchronized long doIncrementReferenceCount(String fullKey) {
-        Long value = 1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
-            value++;
-        }
-        inProcessLock.put(fullKey, value);
-        return value;
+    long doIncrementReferenceCount(String fullKey) {
+        return (Long) inProcessLock.merge(fullKey, 1L, (current, one) -> (Long) current + 1);
     }
 
     @Override
-    synchronized long doDecrementReferenceCount(String fullKey) {
-        Long value = 0L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
-            value--;
-            inProcessLock.put(fullKey, value);
+    long doDecrementReferenceCount(String fullKey) {
+        long[] result = {0L};
+        inProcessLock.computeIfPresent(fullKey, (key, current) -> {
+            long value = (Long) current - 1;
+            result[0] = value;
             if (value == 0) {
-                inProcessLock.remove(fullKey);
+                return null;
             }
-        }
-        return value;
+            return value;
+        });
+        return result[0];
     }
 
     @Override
-    synchronized long doGetCellStatus(String fullKey) {
-        Long value = -1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+    long doGetCellStatus(String fullKey) {
+        Long value = (Long) inProcessLock.get(fullKey);
+        if (value == null) {
+            return -1L;
         }
         return value;
     }
 
     @Override
-    synchronized Boolean doSetCellStatus(String fullKey, long status) {
+    Boolean doSetCellStatus(String fullKey, long status) {
         inProcessLock.put(fullKey, status);
         return true;
     }
 
     @Override
-    synchronized void doDeleteCellStatus(String fullKey) {
+    void doDeleteCellStatus(String fullKey) {
         inProcessLock.remove(fullKey);
     }
 
     @Override
-    synchronized String doGetReadDeleteOnlyMode(String fullKey) {
-        String value = null;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (String) inProcessLock.get(fullKey);
+    long doGetCellStatusVersion(String fullKey) {
+        Long value = (Long) inProcessLock.get(fullKey);
+        if (value == null) {
+            return -1L;
         }
         return value;
     }
 
+    @Override
+    long doIncrementCellStatusVersion(String fullKey) {
+        return (Long) inProcessLock.merge(fullKey, 1L, (current, one) -> (Long) current + 1);
+    }
+
+    @Override
+    String doGetReadDeleteOnlyMode(String fullKey) {
+        return (String) inProcessLock.get(fullKey);
+    }
+
+    @Override
+    long doGetEventInterest(String fullKey) {
+        EventInterest interest = inProcessEventInterest.computeIfPresent(fullKey,
+                (key, current) -> current.isExpired() ? null : current);
+        if (interest == null) {
+            return -1;
+        }
+        return interest.value;
+    }
+
+    @Override
+    Boolean doPutEventInterest(String fullKey, long value, int expired) {
+        inProcessEventInterest.put(fullKey, new EventInterest(value, leaseExpiresAt(expired)));
+        return Boolean.TRUE;
+    }
+
+    /**
+     * A class that holds an event interest of a cell in InProcess.
+     */
+    static class EventInterest {
+
+        private final long value;
+        private final long expiresAt;
+
+        /**
+         * constructor.
+         * @param value value
+         * @param expiresAt time when the interest expires (milliseconds)
+         */
+        EventInterest(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Return whether the interest is expired.
+         * @return true if expired
+         */
+        boolean isExpired() {
+            return this.expiresAt < System.currentTimeMillis();
+        }
+    }
+
     /**
      * A class that holds information for AccountLock in InProcess.
      */
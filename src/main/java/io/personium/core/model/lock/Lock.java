@@ -18,6 +18,8 @@
 package io.personium.core.model.lock;
 
 import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
 
 /**
  * Lock object.
@@ -52,6 +54,11 @@ public class Lock implements Serializable {
 
     String fullKey;
     Long createdAt;
+    /** Identifier of the holder, to release or renew only the lock of its own. */
+    String owner;
+
+    /** Time when the lease expires, used in process. */
+    transient volatile long leaseExpiresAt = Long.MAX_VALUE;
 
     /**
      * Constructor (not disclosed).
@@ -60,12 +67,28 @@ public class Lock implements Serializable {
     Lock(String fullKey, Long createdAt) {
         this.fullKey = fullKey;
         this.createdAt = createdAt;
+        this.owner = UUID.randomUUID().toString();
     }
 
     /**
      * Release the lock.
+     * It does nothing if the lease has expired and the lock is acquired by another.
      */
     public void release() {
-        LockManager.releaseLock(this.fullKey);
+        LockManager.releaseLock(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Lock)) {
+            return false;
+        }
+        Lock other = (Lock) obj;
+        return Objects.equals(this.fullKey, other.fullKey) && this.owner != null && this.owner.equals(other.owner);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.fullKey, this.owner);
     }
 }
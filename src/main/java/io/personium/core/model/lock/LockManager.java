@@ -18,6 +18,18 @@
 package io.personium.core.model.lock;
 
 import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
@@ -28,11 +40,13 @@ import io.personium.core.utils.MemcachedClient.MemcachedClientException;
  * Utility to manage Lock.
  */
 public abstract class LockManager {
+    private static Logger log = LoggerFactory.getLogger(LockManager.class);
 
     static volatile LockManager singleton;
     static volatile String lockType = PersoniumUnitConfig.getLockType();
     static volatile long lockRetryInterval = Long.valueOf(PersoniumUnitConfig.getLockRetryInterval());
     static volatile int lockRetryTimes = Integer.valueOf(PersoniumUnitConfig.getLockRetryTimes());
+    static volatile int lockLease = PersoniumUnitConfig.getLockLease();
     static volatile String lockMemcachedHost = PersoniumUnitConfig.getLockMemcachedHost();
     static volatile String lockMemcachedPort = PersoniumUnitConfig.getLockMemcachedPort();
     static volatile int accountValidAuthnInterval = PersoniumUnitConfig.getAccountValidAuthnInterval();
@@ -48,9 +62,57 @@ public abstract class LockManager {
      */
     public static final String TYPE_IN_PROCESS = "inProcess";
 
+    /** Maximum number of values cached in process. */
+    private static final long LOCAL_CACHE_MAX_SIZE = 10000;
+
+    /**
+     * Values read from memcached and cached in process, such as cell statuses.
+     * null if they are not cached.
+     */
+    static volatile Cache<String, Object> localCache;
+
+    /** Lifetime (ms) of the values cached in process. 0 if they are not cached. */
+    static volatile long localCacheExpiresIn;
+
+    /** Interval (ms) at checking changes of the cell statuses cached in process. 0 if they are not checked. */
+    static volatile long localCacheSyncInterval;
+
+    /** Number of monitors to wake up threads waiting for locks. */
+    private static final int RELEASE_SIGNAL_STRIPES = 64;
+
+    /** Monitors notified when locks are released in process, shared by keys with the same hash. */
+    private static final ReleaseSignal[] RELEASE_SIGNALS = new ReleaseSignal[RELEASE_SIGNAL_STRIPES];
+
+    static {
+        for (int i = 0; i < RELEASE_SIGNAL_STRIPES; i++) {
+            RELEASE_SIGNALS[i] = new ReleaseSignal();
+        }
+    }
+
+    /** Locks held in process, whose leases are renewed. */
+    static final Set<Lock> heldLocks = ConcurrentHashMap.newKeySet();
+
+    private static ScheduledExecutorService leaseRenewer;
+
+    /**
+     * Reference counts of cells kept in process.
+     * null if the shared reference counts are accessed directly.
+     */
+    static volatile CellReferenceCounter referenceCounter;
+
+    /**
+     * Watcher invalidating the cell statuses cached in process when they are changed.
+     * null if the changes are seen when the cache expires.
+     */
+    static volatile CellStatusWatcher statusWatcher;
+
     abstract Lock doGetLock(String fullKey);
 
-    abstract Boolean doPutLock(String fullKey, Lock lock);
+    abstract Boolean doPutLock(String fullKey, Lock lock, int lease);
+
+    abstract Boolean doRenewLock(String fullKey, Lock lock, int lease);
+
+    abstract void doReleaseLock(String fullKey, Lock lock);
 
     abstract void doReleaseLock(String fullKey);
 
@@ -84,18 +146,136 @@ public abstract class LockManager {
 
     abstract void doDeleteCellStatus(String fullKey);
 
+    abstract long doGetCellStatusVersion(String fullKey);
+
+    abstract long doIncrementCellStatusVersion(String fullKey);
+
     abstract String doGetReadDeleteOnlyMode(String fullKey);
 
+    abstract long doGetEventInterest(String fullKey);
+
+    abstract Boolean doPutEventInterest(String fullKey, long value, int expired);
+
     static {
+        initialize();
+    }
+
+    /**
+     * Create the lock manager of the lock type.
+     */
+    private static void initialize() {
         if (TYPE_MEMCACHED.equals(lockType)) {
             singleton = new MemcachedLockManager();
         } else if (TYPE_IN_PROCESS.equals(lockType)) {
             singleton = new InProcessLockManager();
         }
+
+        stopReferenceCounter();
+        stopStatusWatcher();
+        startLeaseRenewer();
+        localCache = null;
+        localCacheExpiresIn = 0;
+        localCacheSyncInterval = 0;
+        //Values in memcached are accessed by every request, so keep them in process
+        if (!TYPE_MEMCACHED.equals(lockType)) {
+            return;
+        }
+        long expiresIn = PersoniumUnitConfig.getLockLocalCacheExpiresIn();
+        if (expiresIn > 0) {
+            localCache = CacheBuilder.newBuilder()
+                    .maximumSize(LOCAL_CACHE_MAX_SIZE)
+                    .expireAfterWrite(expiresIn, TimeUnit.MILLISECONDS)
+                    .build();
+            localCacheExpiresIn = expiresIn;
+            long syncInterval = PersoniumUnitConfig.getLockLocalCacheSyncInterval();
+            if (syncInterval > 0) {
+                CellStatusWatcher watcher = new CellStatusWatcher(singleton, localCache);
+                watcher.start(syncInterval);
+                statusWatcher = watcher;
+                localCacheSyncInterval = syncInterval;
+            }
+        }
+        long flushInterval = PersoniumUnitConfig.getCellReferenceCountFlushInterval();
+        if (flushInterval > 0) {
+            CellReferenceCounter counter = new CellReferenceCounter(singleton);
+            counter.start(flushInterval);
+            referenceCounter = counter;
+        }
+    }
+
+    private static void stopReferenceCounter() {
+        CellReferenceCounter counter = referenceCounter;
+        referenceCounter = null;
+        if (counter != null) {
+            counter.stop();
+            counter.flush();
+        }
+    }
+
+    private static void stopStatusWatcher() {
+        CellStatusWatcher watcher = statusWatcher;
+        statusWatcher = null;
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    /**
+     * Start renewing the leases of the locks held in process.
+     */
+    private static synchronized void startLeaseRenewer() {
+        if (leaseRenewer != null || lockLease <= 0) {
+            return;
+        }
+        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("lock-lease-renewer-%d");
+        builder.setDaemon(true);
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(builder.build());
+        // renew well before expiry so that a delay of memcached does not lose the lock.
+        long period = Math.max(1, TimeUnit.SECONDS.toMillis(lockLease) / 3);
+        leaseRenewer.scheduleWithFixedDelay(LockManager::renewLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static synchronized void stopLeaseRenewer() {
+        if (leaseRenewer != null) {
+            leaseRenewer.shutdownNow();
+            leaseRenewer = null;
+        }
+    }
+
+    /**
+     * Renew the leases of the locks held in process.
+     */
+    static void renewLeases() {
+        for (Lock lock : heldLocks) {
+            try {
+                if (!singleton.doRenewLock(lock.fullKey, lock, lockLease)) {
+                    // the lease has expired and the lock may be acquired by another.
+                    log.warn("Lost the lease of lock: " + lock.fullKey);
+                    heldLocks.remove(lock);
+                }
+            } catch (RuntimeException e) {
+                log.info("Failed to renew the lease of lock: " + lock.fullKey, e);
+            }
+        }
+    }
+
+    /**
+     * Release the resources kept in process.
+     */
+    public static void shutdown() {
+        stopLeaseRenewer();
+        stopReferenceCounter();
+        stopStatusWatcher();
     }
 
     /**
      * Get the lock.
+     * <p>
+     * When the lock is held by another, it waits until the lock is released.
+     * A release in this process wakes it up at once, and a release by another node is found at the retry interval.
+     * It gives up when both the retry times and the retry interval multiplied by them have passed.
+     * </p>
      * @param category Category of lock
      * @param cellId Cell ID
      * @param boxId Box ID
@@ -103,44 +283,52 @@ public abstract class LockManager {
      * @return Lock
      */
     public static Lock getLock(String category, String cellId, String boxId, String nodeId) {
-        Long createdAt = new Date().getTime();
-        //Check if memcached has key
-        //If not, I will write to memcached
-        //If you do, try retrying.
+        String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        ReleaseSignal signal = releaseSignal(fullKey);
+        long deadline = System.currentTimeMillis() + lockRetryInterval * lockRetryTimes;
         int timesRetry = 0;
-        while (timesRetry <= lockRetryTimes) {
-            String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
-            Lock lock = null;
+        while (true) {
+            long releases = signal.count();
+            Lock lock = new Lock(fullKey, new Date().getTime());
+            Boolean success;
             try {
-                lock = singleton.doGetLock(fullKey);
+                success = singleton.doPutLock(fullKey, lock, lockLease);
             } catch (MemcachedClientException e) {
                 MemcachedClient.reportError();
                 throw PersoniumCoreException.Server.GET_LOCK_STATE_ERROR;
             }
-            if (lock == null) {
-                lock = new Lock(fullKey, createdAt);
-                Boolean success = singleton.doPutLock(fullKey, lock);
-                if (success) {
-                    return lock;
-                }
+            if (success) {
+                heldLocks.add(lock);
+                return lock;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (timesRetry >= lockRetryTimes && remaining <= 0) {
+                throw PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
             }
             try {
-                Thread.sleep(lockRetryInterval);
+                signal.await(releases, Math.min(lockRetryInterval, Math.max(remaining, 1)));
             } catch (InterruptedException e) {
                 throw PersoniumCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
             }
             timesRetry++;
         }
-        throw PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
     }
 
     /*
      * Lock release processing
      */
-    static void releaseLock(String fullKey) {
-        singleton.doReleaseLock(fullKey);
+    static void releaseLock(Lock lock) {
+        heldLocks.remove(lock);
+        try {
+            singleton.doReleaseLock(lock.fullKey, lock);
+        } finally {
+            releaseSignal(lock.fullKey).signal();
+        }
     }
 
+    private static ReleaseSignal releaseSignal(String fullKey) {
+        return RELEASE_SIGNALS[Math.floorMod(fullKey.hashCode(), RELEASE_SIGNAL_STRIPES)];
+    }
 
     /**
      * Erase all locks.
@@ -161,11 +349,7 @@ public abstract class LockManager {
      */
     public static final void setLockType(String lockType) {
         LockManager.lockType = lockType;
-        if (TYPE_MEMCACHED.equals(lockType)) {
-            singleton = new MemcachedLockManager();
-        } else if (TYPE_IN_PROCESS.equals(lockType)) {
-            singleton = new InProcessLockManager();
-        }
+        initialize();
     }
 
     /**
@@ -224,4 +408,35 @@ public abstract class LockManager {
         LockManager.lockMemcachedPort = lockMemcachedPort;
     }
 
+    /**
+     * Monitor counting the releases of locks.
+     * A waiter reads the count before trying to lock, so that a release just after the try is not missed.
+     */
+    static final class ReleaseSignal {
+        private long count;
+
+        synchronized long count() {
+            return this.count;
+        }
+
+        synchronized void signal() {
+            this.count++;
+            notifyAll();
+        }
+
+        /**
+         * Wait until a lock is released after the count was read, or the timeout.
+         * @param count count read before trying to lock
+         * @param timeout timeout (ms)
+         * @throws InterruptedException if interrupted
+         */
+        synchronized void await(long count, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            long remaining = timeout;
+            while (this.count == count && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
 }
@@ -29,8 +29,18 @@ class MemcachedLockManager extends LockManager {
     }
 
     @Override
-    Boolean doPutLock(String fullKey, Lock lock) {
-        return MemcachedClient.getLockClient().add(fullKey, lock);
+    Boolean doPutLock(String fullKey, Lock lock, int lease) {
+        return MemcachedClient.getLockClient().add(fullKey, lease, lock);
+    }
+
+    @Override
+    Boolean doRenewLock(String fullKey, Lock lock, int lease) {
+        return MemcachedClient.getLockClient().touchIfEquals(fullKey, lock, lease);
+    }
+
+    @Override
+    void doReleaseLock(String fullKey, Lock lock) {
+        MemcachedClient.getLockClient().deleteIfEquals(fullKey, lock);
     }
 
     @Override
@@ -114,8 +124,34 @@ class MemcachedLockManager extends LockManager {
         MemcachedClient.getLockClient().deleteLongValue(fullKey);
     }
 
+    @Override
+    long doGetCellStatusVersion(String fullKey) {
+        return MemcachedClient.getLockClient().getLongValue(fullKey);
+    }
+
+    @Override
+    long doIncrementCellStatusVersion(String fullKey) {
+        //Start from the current time, so that the version evicted and created again differs from the seen ones
+        MemcachedClient.getLockClient().getLongValue(fullKey, System.currentTimeMillis());
+        return MemcachedClient.getLockClient().incrementLongValue(fullKey);
+    }
+
     @Override
     String doGetReadDeleteOnlyMode(String fullKey) {
         return MemcachedClient.getLockClient().get(fullKey, String.class);
     }
+
+    @Override
+    long doGetEventInterest(String fullKey) {
+        Long value = MemcachedClient.getLockClient().get(fullKey, Long.class);
+        if (value == null) {
+            return -1;
+        }
+        return value;
+    }
+
+    @Override
+    Boolean doPutEventInterest(String fullKey, long value, int expired) {
+        return MemcachedClient.getLockClient().put(fullKey, expired, Long.valueOf(value));
+    }
 }
@@ -17,6 +17,8 @@
  */
 package io.personium.core.model.lock;
 
+import com.google.common.cache.Cache;
+
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.utils.MemcachedClient.MemcachedClientException;
 
@@ -35,9 +37,20 @@ public abstract class ReadDeleteModeLockManager extends LockManager {
      * @return TRUE: ReadDeleteOnly mode state / FALSE: normal state
      */
     public static boolean isReadDeleteOnlyMode() {
+        Cache<String, Object> cache = localCache;
+        if (cache != null) {
+            Boolean mode = (Boolean) cache.getIfPresent(LOCK_KEY);
+            if (mode != null) {
+                return mode;
+            }
+        }
         try {
             String response = singleton.doGetReadDeleteOnlyMode(LOCK_KEY);
-            return response != null;
+            boolean mode = response != null;
+            if (cache != null) {
+                cache.put(LOCK_KEY, mode);
+            }
+            return mode;
         } catch (MemcachedClientException e) {
             throw PersoniumCoreException.Server.SERVER_CONNECTION_ERROR;
         }
@@ -31,7 +31,9 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.common.es.EsClient;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.event.EventBus;
 import io.personium.core.model.impl.es.EsModel;
+import io.personium.core.stream.StreamFactory;
 
 /**
  * JAX-RS Resource class corresponding to StatusResource.
@@ -70,6 +72,10 @@ public class StatusResource {
         esJson.put("health", client.checkHealth());
         responseJson.put("ElasticSearch", esJson);
 
+        // Events posted to the event bus and data delivered to stream subscribers in this node
+        responseJson.put("EventBus", EventBus.getStatistics());
+        responseJson.put("Stream", StreamFactory.getStatistics());
+
         sb.append(responseJson.toJSONString());
         return Response.status(HttpStatus.SC_OK).entity(sb.toString()).build();
     }
@@ -575,6 +575,9 @@ public class PersoniumEngineSvcCollectionResource {
                 }
             };
             res.entity(strOutput);
+        } else {
+            // Return the connection to the pool
+            closeHttpClient(client, objResponse);
         }
 
         //Response return
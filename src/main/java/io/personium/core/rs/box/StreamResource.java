@@ -160,6 +160,15 @@ public abstract class StreamResource {
      */
     abstract List<String> getResources();
 
+    /**
+     * Check if the destination exists.
+     * @param name destination name
+     * @return true if exists
+     */
+    public boolean exists(final String name) {
+        return getResources().contains(name);
+    }
+
     /**
      * Receive data from dest.
      * @param dest destination name
@@ -40,6 +40,7 @@ import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.HttpClientUtils;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -194,6 +195,11 @@ public class CellResource {
         HttpResponse res = cellRsCmp.requestGetRelayHtml();
         int statusCode = res.getStatusLine().getStatusCode();
         HttpEntity entity = res.getEntity();
+        if (entity == null) {
+            // Return the connection to the pool
+            HttpClientUtils.closeQuietly(res);
+            return Response.status(statusCode).build();
+        }
         StreamingOutput streamingOutput = new StreamingOutput() {
             @Override
             public void write(final OutputStream os) throws IOException {
@@ -202,6 +208,8 @@ public class CellResource {
                     while ((chr = in.read()) != -1) {
                         os.write(chr);
                     }
+                } finally {
+                    HttpClientUtils.closeQuietly(res);
                 }
             }
         };
@@ -0,0 +1,260 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.event.PersoniumEventType;
+import io.personium.core.utils.UriUtils;
+
+/**
+ * Compiled rules of a cell.
+ * <p>
+ * Rules with EventType are indexed by a prefix trie on the type (or a suffix trie for ".xxx" types),
+ * rules without EventType but with Object by a prefix trie on the object, with localbox already resolved.
+ * Only the rules found in the tries are compared with the event.
+ * It is immutable, and is rebuilt when the rules or boxes of the cell are changed.
+ * </p>
+ */
+final class RuleIndex {
+
+    /** Index without rules. */
+    static final RuleIndex EMPTY = new RuleIndex();
+
+    /** Rules indexed by the prefix of EventType. */
+    private final Node typePrefixes = new Node();
+    /** Rules indexed by the reversed suffix of EventType. */
+    private final Node typeSuffixes = new Node();
+    /** Rules indexed by the prefix of Object. */
+    private final Node objectPrefixes = new Node();
+    /** Rules without EventType and Object. */
+    private final List<Entry> others = new ArrayList<>();
+    /** Number of the indexed rules. */
+    private int size;
+
+    private RuleIndex() {
+    }
+
+    /**
+     * Build the index.
+     * The caller must hold the lock of the boxes the rules refer to.
+     * @param rules rules of a cell
+     * @return index
+     */
+    static RuleIndex build(Collection<RuleManager.RuleInfo> rules) {
+        RuleIndex index = new RuleIndex();
+        for (RuleManager.RuleInfo rule : rules) {
+            Entry entry = compile(rule);
+            if (entry == null) {
+                continue;
+            }
+            index.size++;
+            if (entry.type != null) {
+                if (entry.backward) {
+                    index.typeSuffixes.put(reverse(entry.type), entry);
+                } else {
+                    index.typePrefixes.put(entry.type, entry);
+                }
+            } else if (entry.object != null) {
+                index.objectPrefixes.put(entry.object, entry);
+            } else {
+                index.others.add(entry);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Compile the rule.
+     * The caller must hold the lock of the box the rule refers to.
+     * @param rule rule
+     * @return compiled rule. null if it never matches
+     */
+    static Entry compile(RuleManager.RuleInfo rule) {
+        // external is required
+        if (rule == null || rule.external == null) {
+            return null;
+        }
+        return new Entry(rule);
+    }
+
+    /**
+     * Returns whether no rule can match with events.
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the rules matching with the event.
+     * @param event event
+     * @return matched rules
+     */
+    List<Entry> match(PersoniumEvent event) {
+        List<Entry> candidates = new ArrayList<>(others);
+        String type = event.getType().orElse(null);
+        if (type != null) {
+            typePrefixes.collect(type, candidates);
+            typeSuffixes.collect(reverse(type), candidates);
+        }
+        event.getObject().ifPresent(object -> objectPrefixes.collect(object, candidates));
+
+        List<Entry> ret = new ArrayList<>();
+        for (Entry entry : candidates) {
+            if (entry.matches(event)) {
+                ret.add(entry);
+            }
+        }
+        return ret;
+    }
+
+    private static String reverse(String str) {
+        return new StringBuilder(str).reverse().toString();
+    }
+
+    /**
+     * Rule compiled for matching.
+     */
+    static final class Entry {
+        /** Original rule. */
+        final RuleManager.RuleInfo rule;
+        /** Name of the box the rule belongs to. */
+        final String boxName;
+        private final boolean external;
+        private final String type;
+        private final boolean backward;
+        private final String schema;
+        private final String subject;
+        private final String object;
+        private final String info;
+
+        private Entry(RuleManager.RuleInfo rule) {
+            this.rule = rule;
+            this.external = rule.external;
+            if (rule.box != null) {
+                this.boxName = rule.box.name;
+                this.schema = rule.box.schema;
+            } else {
+                this.boxName = null;
+                this.schema = null;
+            }
+            this.type = rule.type;
+            // if rule.type is .xxx then backward match, otherwise forward match.
+            this.backward = type != null && type.startsWith(PersoniumEventType.SEPARATOR);
+            this.subject = rule.subject;
+            if (rule.object != null && rule.object.startsWith(UriUtils.SCHEME_BOX_URI)) {
+                // replace localbox to localcell
+                this.object = UriUtils.convertSchemeFromLocalBoxToLocalCell(rule.object, boxName);
+            } else {
+                this.object = rule.object;
+            }
+            this.info = rule.info;
+        }
+
+        /**
+         * Returns whether the rule matches with the event.
+         * @param event event
+         * @return true if matched
+         */
+        boolean matches(PersoniumEvent event) {
+            // compare external
+            if (!Boolean.valueOf(external).equals(event.getExternal())) {
+                return false;
+            }
+
+            // compare type
+            if (type != null) {
+                String eventType = event.getType().orElse(null);
+                if (eventType == null) {
+                    return false;
+                } else if (backward && !eventType.endsWith(type)) {
+                    return false;
+                } else if (!backward && !eventType.startsWith(type)) {
+                    return false;
+                }
+            }
+
+            // compare schema
+            if (schema != null && !event.getSchema().map(s -> schema.equals(s)).orElse(false)) {
+                return false;
+            }
+
+            // compare subject
+            if (subject != null && !event.getSubject().map(s -> subject.equals(s)).orElse(false)) {
+                return false;
+            }
+
+            // compare object
+            if (object != null && !event.getObject().map(o -> o.startsWith(object)).orElse(false)) {
+                return false;
+            }
+
+            // compare info
+            if (info != null && !event.getInfo().map(i -> i.startsWith(info)).orElse(false)) {
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Node of a trie holding the rules whose key ends at the node.
+     */
+    private static final class Node {
+        private Map<Character, Node> children = Collections.emptyMap();
+        private List<Entry> entries = Collections.emptyList();
+
+        void put(String key, Entry entry) {
+            Node node = this;
+            for (int i = 0; i < key.length(); i++) {
+                if (node.children.isEmpty()) {
+                    node.children = new HashMap<>();
+                }
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            if (node.entries.isEmpty()) {
+                node.entries = new ArrayList<>();
+            }
+            node.entries.add(entry);
+        }
+
+        /**
+         * Collect the rules whose key is a prefix of the string.
+         * @param str string
+         * @param ret list to add the rules
+         */
+        void collect(String str, List<Entry> ret) {
+            Node node = this;
+            ret.addAll(node.entries);
+            for (int i = 0; i < str.length(); i++) {
+                node = node.children.get(str.charAt(i));
+                if (node == null) {
+                    return;
+                }
+                ret.addAll(node.entries);
+            }
+        }
+    }
+}
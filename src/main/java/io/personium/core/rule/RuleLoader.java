@@ -0,0 +1,175 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the rules of cells in the background.
+ * <p>
+ * Each cell is loaded at most once at a time: concurrent requests for the same cell share one load.
+ * Tasks requested while the cell is loading are parked on a queue of the cell
+ * and are run in order by the loading thread once the rules are available.
+ * </p>
+ */
+class RuleLoader {
+
+    private static Logger logger = LoggerFactory.getLogger(RuleLoader.class);
+
+    /**
+     * Loading state of a cell.
+     */
+    private static final class Load {
+        final String cellId;
+        final CompletableFuture<RuleIndex> future = new CompletableFuture<>();
+        /** Tasks waiting for the rules. Guarded by this object. */
+        final Deque<Consumer<RuleIndex>> parked = new ArrayDeque<>();
+        /** True after the parked tasks are drained. Guarded by this object. */
+        boolean drained;
+
+        Load(String cellId) {
+            this.cellId = cellId;
+        }
+    }
+
+    private final Executor executor;
+    private final Map<String, Load> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param executor executor that runs loads and parked tasks
+     */
+    RuleLoader(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Start loading the rules of the cell unless it is already loading.
+     * @param cellId target cell id
+     * @param loader function that loads and compiles the rules
+     */
+    void preload(String cellId, Supplier<RuleIndex> loader) {
+        start(cellId, loader);
+    }
+
+    /**
+     * Run the task with the loaded rules of the cell.
+     * The task is parked until the rules are loaded, and is discarded if loading fails.
+     * @param cellId target cell id
+     * @param loader function that loads and compiles the rules
+     * @param task task to run
+     */
+    void runWhenLoaded(String cellId, Supplier<RuleIndex> loader, Consumer<RuleIndex> task) {
+        Load load = start(cellId, loader);
+        synchronized (load) {
+            if (!load.drained) {
+                load.parked.add(task);
+                return;
+            }
+        }
+        // loading finished after it was looked up
+        RuleIndex index = load.future.getNow(null);
+        if (index != null) {
+            task.accept(index);
+        } else {
+            logger.warn("discard a parked event because rules of cell(" + cellId + ") could not be loaded.");
+        }
+    }
+
+    /**
+     * Wait for the rules of the cell to be loaded.
+     * @param cellId target cell id
+     * @param loader function that loads and compiles the rules
+     * @return loaded rules
+     */
+    RuleIndex await(String cellId, Supplier<RuleIndex> loader) {
+        try {
+            return start(cellId, loader).future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Return whether the rules of the cell are loading.
+     * @param cellId target cell id
+     * @return true if loading
+     */
+    boolean isLoading(String cellId) {
+        return loads.containsKey(cellId);
+    }
+
+    private Load start(String cellId, Supplier<RuleIndex> loader) {
+        return loads.computeIfAbsent(cellId, id -> {
+            Load load = new Load(id);
+            executor.execute(() -> run(load, loader));
+            return load;
+        });
+    }
+
+    private void run(Load load, Supplier<RuleIndex> loader) {
+        RuleIndex index = null;
+        try {
+            index = loader.get();
+            load.future.complete(index);
+        } catch (RuntimeException e) {
+            logger.error("failed to load rules of cell(" + load.cellId + "): " + e.getMessage(), e);
+            load.future.completeExceptionally(e);
+        }
+
+        while (true) {
+            List<Consumer<RuleIndex>> tasks;
+            synchronized (load) {
+                if (load.parked.isEmpty()) {
+                    load.drained = true;
+                    break;
+                }
+                tasks = new ArrayList<>(load.parked);
+                load.parked.clear();
+            }
+            for (Consumer<RuleIndex> task : tasks) {
+                if (index == null) {
+                    logger.warn("discard a parked event because rules of cell(" + load.cellId
+                            + ") could not be loaded.");
+                    continue;
+                }
+                try {
+                    task.accept(index);
+                } catch (RuntimeException e) {
+                    logger.error("parked event failed: " + e.getMessage(), e);
+                }
+            }
+        }
+        loads.remove(load.cellId, load);
+    }
+}
@@ -23,14 +23,15 @@ import static io.personium.core.utils.PersoniumUrl.SCHEME_LOCALUNIT;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -60,6 +61,7 @@ import io.personium.common.utils.PersoniumThread;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.event.EventFactory;
+import io.personium.core.event.EventInterest;
 import io.personium.core.event.EventPublisher;
 import io.personium.core.event.PersoniumEvent;
 import io.personium.core.event.PersoniumEventType;
@@ -110,7 +112,7 @@ public class RuleManager {
         String boxname;
         BoxInfo box;
         String name;
-        long hitcount;
+        AtomicLong hitcount;
     }
 
     private static Logger logger = LoggerFactory.getLogger(RuleManager.class);
@@ -153,11 +155,16 @@ public class RuleManager {
     private Map<String, Map<String, RuleInfo>> rules;
     private Map<String, Map<String, BoxInfo>> boxes;
     private Set<String> loadRuleCells;
+    /** Compiled rules of each cell, replaced as a whole when the rules are changed. */
+    private Map<String, RuleIndex> ruleIndexes;
+    /** Loads rules of cells outside of the rule lock. */
+    private RuleLoader ruleLoader;
 
     private Object lockObj;
     private Object boxLockObj;
 
     private ExecutorService pool;
+    private ExecutorService loaderPool;
 
     private EventPublisher ruleEventPublisher;
 
@@ -167,7 +174,8 @@ public class RuleManager {
     private RuleManager() {
         rules = new HashMap<>();
         boxes = new HashMap<>();
-        loadRuleCells = new HashSet<>();
+        loadRuleCells = ConcurrentHashMap.newKeySet();
+        ruleIndexes = new ConcurrentHashMap<>();
         lockObj = new Object();
         boxLockObj = new Object();
     }
@@ -194,8 +202,21 @@ public class RuleManager {
             timerRuleManager = Optional.of(TimerRuleManager.getInstance());
         }
 
-        // Load rules for initialize.
-        loadRulesForInitialize();
+        // Create ThreadPool for loading rules.
+        final ThreadFactoryBuilder loaderBuilder = new ThreadFactoryBuilder();
+        loaderBuilder.setNameFormat("rule-loader-%d");
+        loaderPool = Executors.newFixedThreadPool(PersoniumUnitConfig.getRuleLoaderThreadNum(),
+                loaderBuilder.build());
+        ruleLoader = new RuleLoader(loaderPool);
+
+        // Load rules for initialize in the background.
+        loaderPool.execute(() -> {
+            try {
+                loadRulesForInitialize();
+            } catch (RuntimeException e) {
+                logger.error("loadRulesForInitialize error: " + e.getMessage(), e);
+            }
+        });
 
         // Create ThreadPool.
         final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
@@ -230,6 +251,14 @@ public class RuleManager {
         } catch (InterruptedException e) {
             pool.shutdownNow();
         }
+        try {
+            loaderPool.shutdown();
+            if (!loaderPool.awaitTermination(1, TimeUnit.SECONDS)) {
+                loaderPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            loaderPool.shutdownNow();
+        }
 
         instance = null;
     }
@@ -260,7 +289,6 @@ public class RuleManager {
         // set event id
         String eventId = event.getEventId().orElse(PersoniumUUID.randomUUID());
 
-        List<ActionInfo> actionList = new ArrayList<ActionInfo>();
         String ruleChain = event.getRuleChain().orElse("0");
         try {
             int i = Integer.parseInt(ruleChain);
@@ -274,61 +302,17 @@ public class RuleManager {
             logger.info("invalid RuleChain:" + ruleChain);
             ruleChain = null;
         }
-        if (ruleChain != null) {
-            synchronized (lockObj) {
-                if (!loadRuleCells.contains(cellId)) {
-                    loadRule(cell);
-                }
 
-                Map<String, RuleInfo> map = rules.get(cellId);
-                if (map != null) {
-                    for (Map.Entry<String, RuleInfo> e : map.entrySet()) {
-                        RuleInfo rule = e.getValue();
-                        if (isMatched(rule, event)) {
-                            String targetUrl = rule.targeturl;
-                            // replace localcell and localbox
-                            if (targetUrl != null) {
-                                // get relative path to set as fragment
-                                //   {Cell URL}box/col/...#box/col/...
-                                String relative = null;
-                                try {
-                                    URI uri = new URI(targetUrl);
-                                    String scheme = uri.getScheme();
-                                    if (SCHEME_LOCALCELL.equals(scheme)) {
-                                        relative = uri.getPath().substring(1);
-                                        targetUrl = UriUtils.convertSchemeFromLocalCellToHttp(cell.getUrl(), targetUrl);
-                                    } else if (SCHEME_LOCALBOX.equals(scheme)) {
-                                        synchronized (boxLockObj) {
-                                            String boxName = getBoxName(rule);
-                                            if (boxName != null) {
-                                                relative = boxName + uri.getPath();
-                                                String boxUrl = cell.getUrl() + boxName + "/";
-                                                targetUrl = UriUtils.convertSchemeFromLocalBoxToHttp(boxUrl, targetUrl);
-                                            } else {
-                                                logger.error(
-                                                        "ignore the Rule(%s) because _Box.Name is null.",
-                                                        rule.name);
-                                                continue;
-                                            }
-                                        }
-                                    }
-                                    if (relative != null) {
-                                        targetUrl += "#" + relative;
-                                    }
-                                } catch (Exception ex) {
-                                    logger.error(
-                                            "ignore the Rule(%s) because TargetUrl is invalid.",
-                                            rule.name);
-                                    continue;
-                                }
-                            }
-                            logger.debug("TargetUrl:{} -> {}", rule.targeturl, targetUrl);
-                            rule.hitcount++;
-                            ActionInfo ai = new ActionInfo(rule.action, targetUrl, eventId, ruleChain);
-                            actionList.add(ai);
-                        }
-                    }
-                }
+        // Rules are matched with the event before its object is converted.
+        List<ActionInfo> actionList = new ArrayList<ActionInfo>();
+        PersoniumEvent source = null;
+        if (ruleChain != null) {
+            RuleIndex index = ruleIndexes.get(cell.getId());
+            if (index != null) {
+                EventInterest.refreshRules(cell.getId(), !index.isEmpty());
+                actionList = match(cell, index, event, eventId, ruleChain);
+            } else {
+                source = event.clone().build();
             }
         }
 
@@ -346,10 +330,14 @@ public class RuleManager {
                                });
         }
 
-        // execute action
-        for (ActionInfo ai : actionList) {
-            ActionRunner runner = new ActionRunner(cell, ai, event);
-            PersoniumThread.MISC.execute(runner);
+        if (source != null) {
+            // The rules of the cell are not loaded yet: match the event when they are.
+            final PersoniumEvent fsource = source;
+            final String fruleChain = ruleChain;
+            ruleLoader.runWhenLoaded(cell.getId(), () -> loadRuleIndex(cell),
+                    index -> execute(cell, match(cell, index, fsource, eventId, fruleChain), event));
+        } else {
+            execute(cell, actionList, event);
         }
 
         // publish event
@@ -358,111 +346,167 @@ public class RuleManager {
         CellLockManager.decrementReferenceCount(cell.getId());
     }
 
-    private void publish(PersoniumEvent event) {
-        // publish event about rule
-        event.getType().ifPresent(type -> {
-                            if (!event.getExternal()
-                                && (RULEEVENT_RULE_CREATE.equals(type)
-                                    || RULEEVENT_RULE_UPDATE.equals(type)
-                                    || RULEEVENT_RULE_MERGE.equals(type)
-                                    || RULEEVENT_RULE_DELETE.equals(type)
-                                    || RULEEVENT_RULE_LINK_BOX_CREATE.equals(type)
-                                    || RULEEVENT_RULE_LINK_BOX_DELETE.equals(type)
-                                    || RULEEVENT_BOX_LINK_RULE_CREATE.equals(type)
-                                    || RULEEVENT_BOX_LINK_RULE_DELETE.equals(type)
-                                    || RULEEVENT_RULE_NAVPROP_BOX_CREATE.equals(type)
-                                    || RULEEVENT_BOX_NAVPROP_RULE_CREATE.equals(type)
-                                    || RULEEVENT_BOX_UPDATE.equals(type)
-                                    || RULEEVENT_BOX_MERGE.equals(type)
-                                    || RULEEVENT_BOX_RECURSIVE_DELETE.equals(type)
-                                    || RULEEVENT_CELL_IMPORT.equals(type))) {
-                               ruleEventPublisher.publish(event);
-                           }
-                       });
-    }
-
-    private String getBoxName(RuleInfo rule) {
-        if (rule.box != null) {
-            return rule.box.name;
+    /**
+     * Get the actions of the rules matched with the event.
+     * @param cell cell object that the event belongs to
+     * @param index compiled rules of the cell
+     * @param event event whose object is not converted yet
+     * @param eventId id of the event
+     * @param ruleChain rule chain of the actions
+     * @return action list
+     */
+    private List<ActionInfo> match(Cell cell, RuleIndex index, PersoniumEvent event,
+            String eventId, String ruleChain) {
+        List<ActionInfo> actionList = new ArrayList<ActionInfo>();
+        for (RuleIndex.Entry entry : index.match(event)) {
+            RuleInfo rule = entry.rule;
+            String targetUrl = rule.targeturl;
+            // replace localcell and localbox
+            if (targetUrl != null) {
+                // get relative path to set as fragment
+                //   {Cell URL}box/col/...#box/col/...
+                String relative = null;
+                try {
+                    URI uri = new URI(targetUrl);
+                    String scheme = uri.getScheme();
+                    if (SCHEME_LOCALCELL.equals(scheme)) {
+                        relative = uri.getPath().substring(1);
+                        targetUrl = UriUtils.convertSchemeFromLocalCellToHttp(cell.getUrl(), targetUrl);
+                    } else if (SCHEME_LOCALBOX.equals(scheme)) {
+                        String boxName = entry.boxName;
+                        if (boxName != null) {
+                            relative = boxName + uri.getPath();
+                            String boxUrl = cell.getUrl() + boxName + "/";
+                            targetUrl = UriUtils.convertSchemeFromLocalBoxToHttp(boxUrl, targetUrl);
+                        } else {
+                            logger.error(
+                                    "ignore the Rule(%s) because _Box.Name is null.",
+                                    rule.name);
+                            continue;
+                        }
+                    }
+                    if (relative != null) {
+                        targetUrl += "#" + relative;
+                    }
+                } catch (Exception ex) {
+                    logger.error(
+                            "ignore the Rule(%s) because TargetUrl is invalid.",
+                            rule.name);
+                    continue;
+                }
+            }
+            logger.debug("TargetUrl:{} -> {}", rule.targeturl, targetUrl);
+            rule.hitcount.incrementAndGet();
+            ActionInfo ai = new ActionInfo(rule.action, targetUrl, eventId, ruleChain);
+            actionList.add(ai);
         }
-        return null;
+        return actionList;
     }
 
-    private String getBoxSchema(RuleInfo rule) {
-        if (rule.box != null) {
-            return rule.box.schema;
+    /**
+     * Execute the actions.
+     * @param cell cell object that the event belongs to
+     * @param actionList action list
+     * @param event event whose object is converted
+     */
+    private void execute(Cell cell, List<ActionInfo> actionList, PersoniumEvent event) {
+        for (ActionInfo ai : actionList) {
+            ActionRunner runner = new ActionRunner(cell, ai, event);
+            PersoniumThread.MISC.execute(runner);
         }
-        return null;
     }
 
-    private boolean isMatched(RuleInfo rule, PersoniumEvent event) {
-        if (rule == null) {
-            return false;
+    private void publish(PersoniumEvent event) {
+        // publish event about rule
+        if (isRuleEvent(event)) {
+            ruleEventPublisher.publish(event);
         }
+    }
 
-        // compare external
-        //   external is required
-        if (rule.external == null) {
-            return false;
-        } else if (!rule.external.equals(event.getExternal())) {
-            return false;
-        }
+    /**
+     * Returns whether the event may change rules.
+     * @param event event object
+     * @return true if the event is about rule, box or cell import
+     */
+    public static boolean isRuleEvent(PersoniumEvent event) {
+        return event.getType().map(type -> !event.getExternal()
+                                           && (RULEEVENT_RULE_CREATE.equals(type)
+                                               || RULEEVENT_RULE_UPDATE.equals(type)
+                                               || RULEEVENT_RULE_MERGE.equals(type)
+                                               || RULEEVENT_RULE_DELETE.equals(type)
+                                               || RULEEVENT_RULE_LINK_BOX_CREATE.equals(type)
+                                               || RULEEVENT_RULE_LINK_BOX_DELETE.equals(type)
+                                               || RULEEVENT_BOX_LINK_RULE_CREATE.equals(type)
+                                               || RULEEVENT_BOX_LINK_RULE_DELETE.equals(type)
+                                               || RULEEVENT_RULE_NAVPROP_BOX_CREATE.equals(type)
+                                               || RULEEVENT_BOX_NAVPROP_RULE_CREATE.equals(type)
+                                               || RULEEVENT_BOX_UPDATE.equals(type)
+                                               || RULEEVENT_BOX_MERGE.equals(type)
+                                               || RULEEVENT_BOX_RECURSIVE_DELETE.equals(type)
+                                               || RULEEVENT_CELL_IMPORT.equals(type)))
+                                .orElse(false);
+    }
 
-        // compare type
-        if (rule.type != null) {
-            // if rule.type is .xxx then backward match, otherwise forward match.
-            if (rule.type.startsWith(PersoniumEventType.SEPARATOR)) {
-                if (!event.getType().map(type -> type.endsWith(rule.type)).orElse(false)) {
-                    return false;
-                }
-            } else if (!event.getType().map(type -> type.startsWith(rule.type)).orElse(false)) {
-                return false;
-            }
+    /**
+     * Returns the compiled rules of the cell, loading them if necessary.
+     * It is called by RuleLoader, outside of the rule lock.
+     * @param cell cell object
+     * @return compiled rules
+     */
+    private RuleIndex loadRuleIndex(Cell cell) {
+        RuleIndex index = ruleIndexes.get(cell.getId());
+        if (index != null) {
+            return index;
         }
-
-        // compare schema
-        synchronized (boxLockObj) {
-            String schema = getBoxSchema(rule);
-            if (schema != null
-                && !event.getSchema().map(s -> schema.equals(s)).orElse(false)) {
-                return false;
-            }
+        if (!loadRuleCells.contains(cell.getId())) {
+            return loadRule(cell);
         }
+        return rebuildRuleIndex(cell.getId());
+    }
 
-        // compare subject
-        if (rule.subject != null
-            && !event.getSubject().map(s -> rule.subject.equals(s)).orElse(false)) {
-            return false;
+    /**
+     * Wait until the rules of the cell are loaded.
+     * @param cell cell object
+     */
+    private void awaitRule(Cell cell) {
+        if (!loadRuleCells.contains(cell.getId()) || ruleLoader.isLoading(cell.getId())) {
+            ruleLoader.await(cell.getId(), () -> loadRuleIndex(cell));
         }
+    }
 
-        // compare object
-        String object = rule.object;
-        if (object != null) {
-            if (object.startsWith(UriUtils.SCHEME_BOX_URI)) {
-                // replace localbox to localcell
+    /**
+     * Compile the rules of the cell and publish them for matching.
+     * @param cellId target cell id
+     * @return compiled rules
+     */
+    private RuleIndex rebuildRuleIndex(String cellId) {
+        RuleIndex index = RuleIndex.EMPTY;
+        synchronized (lockObj) {
+            Map<String, RuleInfo> map = rules.get(cellId);
+            if (map != null && !map.isEmpty()) {
                 synchronized (boxLockObj) {
-                    String boxName = getBoxName(rule);
-                    object = UriUtils.convertSchemeFromLocalBoxToLocalCell(object, boxName);
-                    logger.debug(rule.object + " -> " + object);
+                    index = RuleIndex.build(map.values());
                 }
             }
-            final String fobj = object;
-            if (!event.getObject().map(o -> o.startsWith(fobj)).orElse(false)) {
-                return false;
-            }
+            ruleIndexes.put(cellId, index);
         }
-
-        // compare info
-        if (rule.info != null
-            && !event.getInfo().map(i -> i.startsWith(rule.info)).orElse(false)) {
-            return false;
+        // share whether events of the cell can match with rules, outside of the lock.
+        // publish again while a concurrent rebuild has changed it, so the last published value is the latest.
+        boolean hasRules = !index.isEmpty();
+        while (true) {
+            EventInterest.publishRules(cellId, hasRules);
+            RuleIndex current = ruleIndexes.get(cellId);
+            if (current == null || current.isEmpty() != hasRules) {
+                break;
+            }
+            hasRules = !hasRules;
         }
-
-        return true;
+        return index;
     }
 
     /**
-     * Load rules from DB (Only cells with "timer event").
+     * Load rules from DB (cells with "timer event", and warm-up cells).
+     * Rules are loaded by RuleLoader, so events of other cells are not blocked.
      */
     private void loadRulesForInitialize() {
         logger.debug("  loadRulesForInitialize.");
@@ -470,12 +514,23 @@ public class RuleManager {
         // (Other cells read the rule later.)
         List<String> cellIdList = this.searchCellsWithTimerEventOnly();
         logger.debug("  count cells with TimerEvent:" + cellIdList.size());
+
+        // Warm up cells with rules.
+        int preloadSize = PersoniumUnitConfig.getRulePreloadSize();
+        if (preloadSize > 0) {
+            List<String> preloadList = this.searchCells(new ArrayList<>(), preloadSize);
+            logger.debug("  count cells to preload:" + preloadList.size());
+            for (String cellId : preloadList) {
+                if (!cellIdList.contains(cellId)) {
+                    cellIdList.add(cellId);
+                }
+            }
+        }
+
         for (String cellId : cellIdList) {
             Cell cell = ModelFactory.cellFromId(cellId);
-            synchronized (lockObj) {
-                if (!loadRuleCells.contains(cell.getId())) {
-                    loadRule(cell);
-                }
+            if (cell != null && !loadRuleCells.contains(cell.getId())) {
+                ruleLoader.preload(cell.getId(), () -> loadRuleIndex(cell));
             }
         }
     }
@@ -485,20 +540,32 @@ public class RuleManager {
      * @return cell list (have timerEvent cells only)
      */
     public List<String> searchCellsWithTimerEventOnly() {
-        EdmDataServices metadata = CtlSchema.getEdmDataServicesForCellCtl().build();
-        EdmEntitySet eSet = metadata.findEdmEntitySet(Rule.EDM_TYPE_NAME);
-        EntitySetAccessor esType = new ODataEntityAccessor(EsModel.idxUser("*"), Rule.EDM_TYPE_NAME, null);
-
         List<Map<String, Object>> implicitFilters = new ArrayList<Map<String, Object>>();
         List<Map<String, Object>> orQueries = new ArrayList<Map<String, Object>>();
         orQueries.add(QueryMapFactory.termQuery("s.EventType.untouched", PersoniumEventType.timerPeriodic()));
         orQueries.add(QueryMapFactory.termQuery("s.EventType.untouched", PersoniumEventType.timerOneshot()));
         implicitFilters.add(QueryMapFactory.shouldQuery(orQueries));
+        return searchCells(implicitFilters, null);
+    }
+
+    /**
+     * Search cells that have the rules.
+     * @param implicitFilters conditions of the rules
+     * @param size max number of rules searched, or null for the default
+     * @return cell id list
+     */
+    private List<String> searchCells(List<Map<String, Object>> implicitFilters, Integer size) {
+        EdmDataServices metadata = CtlSchema.getEdmDataServicesForCellCtl().build();
+        EdmEntitySet eSet = metadata.findEdmEntitySet(Rule.EDM_TYPE_NAME);
+        EntitySetAccessor esType = new ODataEntityAccessor(EsModel.idxUser("*"), Rule.EDM_TYPE_NAME, null);
 
         // Conditional search etc.
         ODataQueryHandler visitor = new EsQueryHandler(eSet.getType());
         visitor.initialize(null, implicitFilters);
         Map<String, Object> source = visitor.getSource();
+        if (size != null) {
+            source.put("size", size);
+        }
 
         PersoniumSearchResponse res = null;
         try {
@@ -528,7 +595,8 @@ public class RuleManager {
     }
 
     // Load rules that belongs to cell.
-    private void loadRule(Cell cell) {
+    // The rules are read without the rule lock, which is taken only to register each of them.
+    private RuleIndex loadRule(Cell cell) {
         logger.info("loadRule Cell=" + cell.getName() + " id=" + cell.getId());
 
         CellCtlODataProducer producer = new CellCtlODataProducer(cell);
@@ -538,7 +606,10 @@ public class RuleManager {
         for (OEntity entity : ruleList) {
             registerRule(entity, cell);
         }
-        this.loadRuleCells.add(cell.getId());
+        synchronized (lockObj) {
+            this.loadRuleCells.add(cell.getId());
+            return rebuildRuleIndex(cell.getId());
+        }
     }
 
     // Convert OEntity object to RuleInfo.
@@ -554,7 +625,7 @@ public class RuleManager {
         rule.targeturl = (String) oEntity.getProperty(Rule.P_TARGETURL.getName()).getValue();
         rule.boxname = (String) oEntity.getProperty(Common.P_BOX_NAME.getName()).getValue();
         rule.name = (String) oEntity.getProperty(Rule.P_NAME.getName()).getValue();
-        rule.hitcount = 0;
+        rule.hitcount = new AtomicLong();
 
         return rule;
     }
@@ -675,11 +746,7 @@ public class RuleManager {
         CellCtlODataProducer producer = new CellCtlODataProducer(cell);
 
         try {
-            synchronized (lockObj) {
-                if (!loadRuleCells.contains(cell.getId())) {
-                    loadRule(cell);
-                }
-            }
+            awaitRule(cell);
 
             String type = event.getType().get();
             if (RULEEVENT_RULE_CREATE.equals(type)) {
@@ -772,6 +839,9 @@ public class RuleManager {
         } catch (Exception e) {
             logger.error("handleRuleEvent error: " + e.getMessage(), e);
             ret = false;
+        } finally {
+            // Publish the changed rules for matching
+            rebuildRuleIndex(cell.getId());
         }
 
         CellLockManager.decrementReferenceCount(cell.getId());
@@ -828,6 +898,7 @@ public class RuleManager {
     private void deleteRule(String cellId) {
         synchronized (lockObj) {
             rules.remove(cellId);
+            ruleIndexes.remove(cellId);
             synchronized (boxLockObj) {
                 boxes.remove(cellId);
             }
@@ -1060,11 +1131,8 @@ public class RuleManager {
         Map<String, Object> ret = new HashMap<>();
         String cellId = cell.getId();
         logger.info("cellId is " + cellId);
+        awaitRule(cell);
         synchronized (lockObj) {
-            if (!loadRuleCells.contains(cellId)) {
-                loadRule(cell);
-            }
-
             Optional<Map<String, RuleInfo>> rulesForCell = Optional.ofNullable(rules.get(cellId));
             List<Map<String, Object>> ruleList;
             ruleList = rulesForCell.map(mapRule ->
@@ -1084,7 +1152,7 @@ public class RuleManager {
                                                         m.put(Common.P_BOX_NAME.getName(), ri.box.name);
                                                     }
                                                     m.put(Rule.P_NAME.getName(), ri.name);
-                                                    m.put("HitCount", ri.hitcount);
+                                                    m.put("HitCount", ri.hitcount.get());
                                                     return m;
                                                 })
                                                .collect(Collectors.toList()))
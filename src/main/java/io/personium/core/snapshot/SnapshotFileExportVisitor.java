@@ -33,8 +33,10 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.common.file.DataCryptor;
 import io.personium.core.auth.AuthHistoryLastFile;
+import io.personium.core.model.file.ChunkedDataCryptor;
 import io.personium.core.model.impl.fs.CellKeysFsImpl;
 import io.personium.core.model.impl.fs.DavCmpFsImpl;
+import io.personium.core.model.impl.fs.DavContentSweeper;
 import io.personium.core.model.impl.fs.DavMetadataFile;
 
 /**
@@ -102,26 +104,28 @@ public class SnapshotFileExportVisitor implements FileVisitor<Path> {
             DavMetadataFile metadata = DavMetadataFile.newInstance(file.toFile());
             metadata.load();
             String encryptionType = metadata.getEncryptionType();
-            if (encryptionType != null
+            boolean encrypted = encryptionType != null
                     && !encryptionType.isEmpty()
-                    && !DataCryptor.ENCRYPTION_TYPE_NONE.equals(encryptionType)) {
+                    && !DataCryptor.ENCRYPTION_TYPE_NONE.equals(encryptionType);
+            if (encrypted) {
                 metadata.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_NONE);
-                try (BufferedWriter metadataWriter = Files.newBufferedWriter(pathInZip, StandardCharsets.UTF_8)) {
-                    metadataWriter.write(metadata.toJSONString());
-                }
-            } else {
-                Files.copy(file, pathInZip);
             }
-        } else if (DavCmpFsImpl.CONTENT_FILE_NAME.equals(file.getFileName().toString())) {
+            // The content is exported as "content".
+            metadata.setContentFileName(null);
+            // Metadata is always exported as JSON, whichever format it is stored in.
+            try (BufferedWriter metadataWriter = Files.newBufferedWriter(pathInZip, StandardCharsets.UTF_8)) {
+                metadataWriter.write(metadata.toJSONString());
+            }
+        } else if (DavCmpFsImpl.isStagingFile(file.getFileName().toString())) {
+            // Body of a PUT request in progress, which is not a part of the Dav data.
+            log.debug("Skip staging file. file:" + file.toString());
+        } else if (DavContentSweeper.isContentFile(file.getFileName().toString())) {
             // Content file
             // Load Metadata to determine whether it is encrypted or not
             Path metadataPath = file.getParent().resolve(DavMetadataFile.DAV_META_FILE_NAME);
             DavMetadataFile metadata = DavMetadataFile.newInstance(metadataPath.toFile());
             metadata.load();
-            DataCryptor cryptor = new DataCryptor(cellId);
-            try (InputStream in = cryptor.decode(new FileInputStream(file.toFile()), metadata.getEncryptionType())) {
-                Files.copy(in, pathInZip);
-            }
+            exportContent(file, metadata, pathInZip.resolveSibling(DavCmpFsImpl.CONTENT_FILE_NAME));
         } else {
             // Metafile other than DavMetadata.
             // Because encryption is not done, only copy files.
@@ -132,6 +136,35 @@ public class SnapshotFileExportVisitor implements FileVisitor<Path> {
         return FileVisitResult.CONTINUE;
     }
 
+    /**
+     * Export the content file if it is the current content.
+     * Content files which have been replaced and are not deleted yet are not exported.
+     * @param file content file
+     * @param metadata metadata of the Dav file
+     * @param pathInZip path to export
+     * @throws IOException if failed to read or write
+     */
+    private void exportContent(Path file, DavMetadataFile metadata, Path pathInZip) throws IOException {
+        String contentFileName = metadata.getContentFileName();
+        if (contentFileName == null) {
+            contentFileName = DavCmpFsImpl.CONTENT_FILE_NAME;
+        }
+        if (!contentFileName.equals(file.getFileName().toString())) {
+            return;
+        }
+        FileInputStream fileInput = new FileInputStream(file.toFile());
+        InputStream decoded;
+        if (ChunkedDataCryptor.isChunked(metadata.getEncryptionType())) {
+            decoded = ChunkedDataCryptor.decode(fileInput.getChannel(), 0, cellId, fileInput);
+        } else {
+            DataCryptor cryptor = new DataCryptor(cellId);
+            decoded = cryptor.decode(fileInput, metadata.getEncryptionType());
+        }
+        try (InputStream in = decoded) {
+            Files.copy(in, pathInZip);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
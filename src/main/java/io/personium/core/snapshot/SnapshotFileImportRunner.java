@@ -55,6 +55,8 @@ import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.accessor.CellAccessor;
 import io.personium.core.model.impl.es.accessor.CellDataAccessor;
 import io.personium.core.model.impl.es.accessor.DataSourceAccessor;
+import io.personium.core.model.impl.es.cache.CellCache;
+import io.personium.core.model.impl.es.cache.CellCtlCache;
 import io.personium.core.model.impl.es.doc.OEntityDocHandler;
 import io.personium.core.model.impl.fs.BoxCmpFsImpl;
 import io.personium.core.model.lock.CellLockManager;
@@ -148,6 +150,9 @@ public class SnapshotFileImportRunner implements Runnable {
         } finally {
             // Delete progress info.
             progressInfo.deleteFromCache();
+            // Discard cached cell control objects.
+            CellCache.clear(targetCell.getName(), targetCell.getId());
+            CellCtlCache.clear(targetCell.getId());
             // Unlock the cell.
             CellLockManager.setCellStatus(targetCell.getId(), CellLockManager.STATUS.NORMAL);
             log.info(String.format("End import. CellName:%s", targetCell.getName()));
@@ -40,6 +40,8 @@ import io.personium.common.file.DataCryptor;
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.model.DavCmp;
+import io.personium.core.model.file.ChunkedDataCryptor;
+import io.personium.core.model.impl.fs.DavCmpFsImpl;
 import io.personium.core.model.impl.fs.DavMetadataFile;
 
 /**
@@ -130,16 +132,26 @@ public class SnapshotFileImportVisitor implements FileVisitor<Path> {
             if (PersoniumUnitConfig.isDavEncryptEnabled()
                     && DataCryptor.ENCRYPTION_TYPE_NONE.equals(metadata.getEncryptionType())) {
                 // In the case of ZipPath, toFile() can not be used, so copy it first and rewrite it.
-                metadata.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_AES);
+                if (isChunkedContent(file)) {
+                    metadata.setEncryptionType(ChunkedDataCryptor.ENCRYPTION_TYPE_AES_CHUNKED);
+                } else {
+                    metadata.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_AES);
+                }
             }
             metadata.save();
         } else {
             // Content file
             // It reads the setting file and decides whether to encrypt it or not.
-            DataCryptor cryptor = new DataCryptor(cellId);
-            try (InputStream in = cryptor.encode(Files.newInputStream(file),
-                    PersoniumUnitConfig.isDavEncryptEnabled())) {
-                Files.copy(in, path);
+            if (isChunkedContent(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    ChunkedDataCryptor.encode(in, path, cellId, PersoniumUnitConfig.getDavEncryptChunkSize());
+                }
+            } else {
+                DataCryptor cryptor = new DataCryptor(cellId);
+                try (InputStream in = cryptor.encode(Files.newInputStream(file),
+                        PersoniumUnitConfig.isDavEncryptEnabled())) {
+                    Files.copy(in, path);
+                }
             }
             if (PersoniumUnitConfig.getFsyncEnabled()) {
                 sync(path.toFile());
@@ -167,6 +179,17 @@ public class SnapshotFileImportVisitor implements FileVisitor<Path> {
         return FileVisitResult.CONTINUE;
     }
 
+    /**
+     * Returns whether the content of the Dav file is written in the chunked format.
+     * Service sources are not, since the engine reads them directly.
+     * @param file metadata or content file in zip
+     * @return true if chunked
+     * @throws IOException failed to read the metadata of the service collection
+     */
+    private boolean isChunkedContent(Path file) throws IOException {
+        return ChunkedDataCryptor.isEnabled() && !DavCmpFsImpl.isServiceSourceDir(file.getParent());
+    }
+
     /**
      * Replace _id.
      * @param source target string
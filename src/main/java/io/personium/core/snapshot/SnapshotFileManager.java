@@ -102,6 +102,8 @@ public class SnapshotFileManager {
         waitCellAccessible(targetCell.getId());
         try {
             CellLockManager.setCellStatus(targetCell.getId(), CellLockManager.STATUS.EXPORT);
+            // Wait for the requests which have started before other nodes saw the status.
+            waitCellAccessible(targetCell.getId());
             SnapshotFileExportRunner runner = new SnapshotFileExportRunner(targetCell, snapshotFilePath);
             PersoniumThread.CELL_IO.execute(runner);
         } catch (Throwable e) {
@@ -130,6 +132,8 @@ public class SnapshotFileManager {
         waitCellAccessible(targetCell.getId());
         try {
             CellLockManager.setCellStatus(targetCell.getId(), CellLockManager.STATUS.IMPORT);
+            // Wait for the requests which have started before other nodes saw the status.
+            waitCellAccessible(targetCell.getId());
             SnapshotFileImportRunner runner = new SnapshotFileImportRunner(targetCell, snapshotFilePath);
             PersoniumThread.CELL_IO.execute(runner);
         } catch (Throwable e) {
@@ -16,11 +16,18 @@
  */
 package io.personium.core.stream;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.stream.impl.activemq.ActiveMQReceiver;
 import io.personium.core.stream.impl.activemq.ActiveMQSender;
+import io.personium.core.stream.impl.inprocess.InProcessReceiver;
+import io.personium.core.stream.impl.inprocess.InProcessSender;
 import io.personium.core.stream.impl.kafka.KafkaDataSender;
 import io.personium.core.stream.impl.kafka.KafkaDataReceiver;
 import io.personium.core.stream.impl.kafka.SpringKafkaDataSubscriber;
@@ -31,22 +38,34 @@ import io.personium.core.stream.impl.kafka.SpringKafkaDataSubscriber;
 public class StreamFactory {
     private static final String ACTIVEMQ = "activemq";
     private static final String KAFKA = "kafka";
+    private static final String INPROCESS = "inprocess";
 
     private static String mq = PersoniumUnitConfig.getStreamMQ();
     private static String broker = PersoniumUnitConfig.getStreamBroker();
     private static String username = PersoniumUnitConfig.getStreamUsername();
     private static String password = PersoniumUnitConfig.getStreamPassword();
 
+    private static TopicMultiplexer multiplexer;
+
     /** Constructor. */
     private StreamFactory() {
     }
 
+    /**
+     * Returns whether stream is enabled.
+     * The in-process broker does not require the broker url.
+     * @return true if enabled
+     */
+    private static boolean isEnabled() {
+        return mq != null && (INPROCESS.equals(mq) || broker != null);
+    }
+
     /**
      * Create DataSender.
      * @return created DataSender
      */
     public static Optional<DataSender> createDataSender() {
-        if (mq == null || broker == null) {
+        if (!isEnabled()) {
             return Optional.empty();
         }
 
@@ -56,6 +75,8 @@ public class StreamFactory {
             sender = new ActiveMQSender(broker, username, password);
         } else if (KAFKA.equals(mq)) {
             sender = new KafkaDataSender(broker, username, password);
+        } else if (INPROCESS.equals(mq)) {
+            sender = new InProcessSender();
         }
 
         return Optional.ofNullable(sender);
@@ -66,7 +87,7 @@ public class StreamFactory {
      * @return created DataPublisher
      */
     public static Optional<DataPublisher> createDataPublisher() {
-        if (mq == null || broker == null) {
+        if (!isEnabled()) {
             return Optional.empty();
         }
 
@@ -76,6 +97,8 @@ public class StreamFactory {
             publisher = new ActiveMQSender(broker, username, password);
         } else if (KAFKA.equals(mq)) {
             publisher = new KafkaDataSender(broker, username, password);
+        } else if (INPROCESS.equals(mq)) {
+            publisher = new InProcessSender();
         }
 
         return Optional.ofNullable(publisher);
@@ -86,7 +109,7 @@ public class StreamFactory {
      * @return created DataReceiver
      */
     public static Optional<DataReceiver> createDataReceiver() {
-        if (mq == null || broker == null) {
+        if (!isEnabled()) {
             return Optional.empty();
         }
 
@@ -96,6 +119,8 @@ public class StreamFactory {
             receiver = new ActiveMQReceiver(broker, username, password);
         } else if (KAFKA.equals(mq)) {
             receiver = new KafkaDataReceiver(broker, username, password);
+        } else if (INPROCESS.equals(mq)) {
+            receiver = new InProcessReceiver();
         }
 
         return Optional.ofNullable(receiver);
@@ -106,7 +131,7 @@ public class StreamFactory {
      * @return created DataSubscriber
      */
     public static Optional<DataSubscriber> createDataSubscriber() {
-        if (mq == null || broker == null) {
+        if (!isEnabled()) {
             return Optional.empty();
         }
 
@@ -116,9 +141,49 @@ public class StreamFactory {
             subscriber = new ActiveMQReceiver(broker, username, password);
         } else if (KAFKA.equals(mq)) {
             subscriber = new SpringKafkaDataSubscriber(broker, username, password);
+        } else if (INPROCESS.equals(mq)) {
+            subscriber = new InProcessReceiver();
         }
 
         return Optional.ofNullable(subscriber);
     }
 
+    /**
+     * Create DataSubscriber sharing the broker subscription of its topic with other subscribers.
+     * @return created DataSubscriber
+     */
+    public static Optional<DataSubscriber> createSharedDataSubscriber() {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        return Optional.of(getTopicMultiplexer().createSubscriber());
+    }
+
+    /**
+     * Get TopicMultiplexer of this node.
+     * @return TopicMultiplexer
+     */
+    public static synchronized TopicMultiplexer getTopicMultiplexer() {
+        if (multiplexer == null) {
+            final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("stream-fanout-%d");
+            builder.setDaemon(true);
+            multiplexer = new TopicMultiplexer(StreamFactory::createDataSubscriber,
+                    Executors.newFixedThreadPool(PersoniumUnitConfig.getStreamFanoutThreadNum(), builder.build()),
+                    PersoniumUnitConfig.getStreamFanoutQueueSize());
+        }
+        return multiplexer;
+    }
+
+    /**
+     * Get statistics of the topics subscribed in this node.
+     * @return statistics by topic name, empty if no topic has been subscribed
+     */
+    public static synchronized Map<String, Map<String, Long>> getStatistics() {
+        if (multiplexer == null) {
+            return new HashMap<>();
+        }
+        return multiplexer.getStatistics();
+    }
+
 }
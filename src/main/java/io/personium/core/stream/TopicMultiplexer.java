@@ -0,0 +1,270 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares one broker subscription per topic among the listeners of this node.
+ * <p>
+ * The broker subscription of a topic is created for its first listener and closed
+ * when its last listener leaves. Received data is put on a bounded queue of each listener
+ * and delivered by the fan-out executor, so a slow listener never blocks the broker thread
+ * nor the other listeners. Data is dropped for a listener whose queue is full.
+ * </p>
+ */
+public class TopicMultiplexer {
+    private static Logger log = LoggerFactory.getLogger(TopicMultiplexer.class);
+
+    /** Max number of data delivered in a row to a listener before yielding the thread. */
+    private static final int DELIVER_BATCH = 64;
+
+    private final Supplier<Optional<DataSubscriber>> subscriberFactory;
+    private final Executor executor;
+    private final int capacity;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param subscriberFactory factory of broker subscribers
+     * @param executor executor that delivers data to listeners
+     * @param capacity max number of data waiting for a listener
+     */
+    public TopicMultiplexer(Supplier<Optional<DataSubscriber>> subscriberFactory, Executor executor, int capacity) {
+        this.subscriberFactory = subscriberFactory;
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create a subscriber sharing the broker subscription of its topic.
+     * @return subscriber
+     */
+    public DataSubscriber createSubscriber() {
+        return new SharedSubscriber();
+    }
+
+    /**
+     * Get statistics of each topic.
+     * Keys are "listeners", "received", "delivered", "dropped" and "queued".
+     * @return statistics by topic name
+     */
+    public Map<String, Map<String, Long>> getStatistics() {
+        Map<String, Map<String, Long>> result = new HashMap<>();
+        for (Topic topic : topics.values()) {
+            Map<String, Long> stat = new HashMap<>();
+            long queued = 0;
+            for (Delivery delivery : topic.deliveries) {
+                queued += delivery.size.get();
+            }
+            stat.put("listeners", (long) topic.deliveries.size());
+            stat.put("received", topic.received.get());
+            stat.put("delivered", topic.delivered.get());
+            stat.put("dropped", topic.dropped.get());
+            stat.put("queued", queued);
+            result.put(topic.name, stat);
+        }
+        return result;
+    }
+
+    private Delivery join(String topicName, SharedSubscriber owner) {
+        while (true) {
+            Topic topic = topics.computeIfAbsent(topicName, Topic::new);
+            synchronized (topic) {
+                if (topic.closed) {
+                    // the last listener has just left, retry with a new topic.
+                    continue;
+                }
+                if (topic.subscriber == null) {
+                    Optional<DataSubscriber> subscriber = subscriberFactory.get();
+                    if (!subscriber.isPresent()) {
+                        topic.closed = true;
+                        topics.remove(topicName, topic);
+                        return null;
+                    }
+                    DataSubscriber sub = subscriber.get();
+                    sub.subscribe(topicName);
+                    sub.setListener(topic);
+                    topic.subscriber = sub;
+                    log.debug("stream: subscribe topic: {}", topicName);
+                }
+                Delivery delivery = new Delivery(topic, owner);
+                topic.deliveries.add(delivery);
+                return delivery;
+            }
+        }
+    }
+
+    private void leave(Delivery delivery) {
+        Topic topic = delivery.topic;
+        DataSubscriber subscriber = null;
+        synchronized (topic) {
+            if (!topic.deliveries.remove(delivery) || !topic.deliveries.isEmpty()) {
+                return;
+            }
+            topic.closed = true;
+            topics.remove(topic.name, topic);
+            subscriber = topic.subscriber;
+            topic.subscriber = null;
+        }
+        log.debug("stream: unsubscribe topic: {} received={} delivered={} dropped={}",
+                topic.name, topic.received.get(), topic.delivered.get(), topic.dropped.get());
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    /**
+     * Broker subscription of a topic.
+     */
+    private final class Topic implements IDataListener {
+        final String name;
+        final Set<Delivery> deliveries = ConcurrentHashMap.newKeySet();
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        /** Guarded by this object. */
+        DataSubscriber subscriber;
+        /** Guarded by this object. */
+        boolean closed;
+
+        Topic(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onMessage(String cellUrl, String data) {
+            received.incrementAndGet();
+            for (Delivery delivery : deliveries) {
+                delivery.offer(new String[] {cellUrl, data});
+            }
+        }
+    }
+
+    /**
+     * Bounded queue of data for a listener.
+     */
+    private final class Delivery implements Runnable {
+        final Topic topic;
+        final SharedSubscriber owner;
+        final Queue<String[]> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Delivery(Topic topic, SharedSubscriber owner) {
+            this.topic = topic;
+            this.owner = owner;
+        }
+
+        void offer(String[] message) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                topic.dropped.incrementAndGet();
+                return;
+            }
+            queue.add(message);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                    log.warn("stream: failed to deliver data of topic: " + topic.name, e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < DELIVER_BATCH; i++) {
+                    String[] message = queue.poll();
+                    if (message == null) {
+                        break;
+                    }
+                    size.decrementAndGet();
+                    IDataListener listener = owner.listener;
+                    if (listener == null) {
+                        topic.dropped.incrementAndGet();
+                        continue;
+                    }
+                    try {
+                        listener.onMessage(message[0], message[1]);
+                        topic.delivered.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        log.warn("stream: listener failed: " + e.getMessage(), e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * DataSubscriber backed by the shared subscription of its topic.
+     */
+    private final class SharedSubscriber implements DataSubscriber {
+        volatile IDataListener listener;
+        private Delivery delivery;
+
+        @Override
+        public synchronized void subscribe(String topicName) {
+            if (delivery == null) {
+                delivery = join(topicName, this);
+            }
+        }
+
+        @Override
+        public void setListener(IDataListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void unsubscribe() {
+            Delivery d;
+            synchronized (this) {
+                d = delivery;
+                delivery = null;
+            }
+            listener = null;
+            if (d != null) {
+                leave(d);
+            }
+        }
+    }
+}
@@ -0,0 +1,488 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream.impl.activemq;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
+
+/**
+ * Long-lived connection to a broker with a pool of sessions and producers.
+ * <p>
+ * One connection is shared by all senders of a broker. A sender borrows an idle session
+ * with its anonymous producer, sends a message and returns the session to the pool.
+ * When sending fails, the connection is closed and a new one is opened by the next message.
+ * Optionally, messages are queued and sent in batches by a flusher thread,
+ * one transaction per batch.
+ * </p>
+ */
+public final class ActiveMQConnectionPool {
+    private static Logger log = LoggerFactory.getLogger(ActiveMQConnectionPool.class);
+
+    private static final Map<String, ActiveMQConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService flusher;
+
+    /**
+     * Creates a message in the session used to send it.
+     */
+    @FunctionalInterface
+    interface MessageCreator {
+        /**
+         * Create message.
+         * @param session session
+         * @return message
+         * @throws JMSException failed to create
+         */
+        Message create(Session session) throws JMSException;
+    }
+
+    private final ConnectionFactory factory;
+    private final String username;
+    private final String password;
+    private final int poolSize;
+
+    private final Deque<Channel> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** Guarded by this object. */
+    private Connection connection;
+    /** Incremented whenever the connection is closed. Written under this object. */
+    private volatile int generation;
+    private volatile boolean closed;
+
+    // asynchronous batched send
+    private final ScheduledExecutorService scheduler;
+    private final BlockingQueue<Outgoing> pending;
+    private final int batchSize;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledFuture<?> flushTask;
+    /** Transacted session used only by the flusher. */
+    private Channel batchChannel;
+
+    /**
+     * Constructor.
+     * @param factory connection factory
+     * @param username username, null if not required
+     * @param password password
+     * @param poolSize max number of idle sessions
+     * @param scheduler flusher of batched messages, null to send synchronously
+     * @param flushInterval interval of flushing in milliseconds
+     * @param batchSize max number of messages sent in a batch
+     * @param queueSize max number of messages waiting to be sent
+     */
+    ActiveMQConnectionPool(ConnectionFactory factory, String username, String password, int poolSize,
+            ScheduledExecutorService scheduler, long flushInterval, int batchSize, int queueSize) {
+        this.factory = factory;
+        this.username = username;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.scheduler = scheduler;
+        this.batchSize = batchSize;
+        if (scheduler != null) {
+            this.pending = new ArrayBlockingQueue<>(queueSize);
+            this.flushTask = scheduler.scheduleWithFixedDelay(this::flush,
+                    flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.pending = null;
+        }
+    }
+
+    /**
+     * Get the pool of a broker.
+     * @param broker broker url
+     * @param username username, null if not required
+     * @param password password
+     * @return pool
+     */
+    static ActiveMQConnectionPool get(String broker, String username, String password) {
+        String key = broker + "\n" + (username != null ? username : "");
+        return POOLS.computeIfAbsent(key, k -> new ActiveMQConnectionPool(new ActiveMQConnectionFactory(broker),
+                username, password, PersoniumUnitConfig.getActiveMQSessionPoolSize(), getFlusher(),
+                PersoniumUnitConfig.getActiveMQAsyncFlushInterval(),
+                PersoniumUnitConfig.getActiveMQAsyncBatchSize(),
+                PersoniumUnitConfig.getActiveMQAsyncQueueSize()));
+    }
+
+    private static synchronized ScheduledExecutorService getFlusher() {
+        if (!PersoniumUnitConfig.isActiveMQAsyncEnabled()) {
+            return null;
+        }
+        if (flusher == null) {
+            final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+            builder.setNameFormat("activemq-flusher-%d");
+            builder.setDaemon(true);
+            flusher = Executors.newSingleThreadScheduledExecutor(builder.build());
+        }
+        return flusher;
+    }
+
+    /**
+     * Flush batched messages and close all connections.
+     */
+    public static void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (ActiveMQConnectionPool.class) {
+            executor = flusher;
+            flusher = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (ActiveMQConnectionPool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Send a message.
+     * @param topic true if the destination is a topic, false if it is a queue
+     * @param name destination name
+     * @param creator creator of the message
+     * @param deliveryMode delivery mode
+     * @param timeToLive time to live in milliseconds
+     * @throws JMSException failed to send
+     */
+    void send(boolean topic, String name, MessageCreator creator, int deliveryMode, long timeToLive)
+            throws JMSException {
+        Outgoing outgoing = new Outgoing(topic, name, creator, deliveryMode, timeToLive);
+        if (pending != null && !closed) {
+            if (pending.offer(outgoing)) {
+                if (pending.size() >= batchSize) {
+                    requestFlush();
+                }
+                return;
+            }
+            // the queue is full: send synchronously.
+        }
+        sendNow(outgoing);
+    }
+
+    /**
+     * Send messages with one session.
+     * @param topic true if the destination is a topic, false if it is a queue
+     * @param name destination name
+     * @param creators creators of the messages
+     * @param deliveryMode delivery mode
+     * @param timeToLive time to live in milliseconds
+     * @throws JMSException failed to send
+     */
+    void sendAll(boolean topic, String name, List<MessageCreator> creators, int deliveryMode, long timeToLive)
+            throws JMSException {
+        if (pending != null) {
+            for (MessageCreator creator : creators) {
+                send(topic, name, creator, deliveryMode, timeToLive);
+            }
+            return;
+        }
+        int next = 0;
+        JMSException failure = null;
+        // retry the rest once with a new connection.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Channel channel = null;
+            try {
+                channel = borrow();
+                for (; next < creators.size(); next++) {
+                    channel.send(new Outgoing(topic, name, creators.get(next), deliveryMode, timeToLive));
+                }
+                release(channel);
+                return;
+            } catch (JMSException e) {
+                failure = e;
+                if (channel != null) {
+                    channel.close();
+                    reset(channel.generation, e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    private void sendNow(Outgoing outgoing) throws JMSException {
+        JMSException failure = null;
+        // retry once with a new connection.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Channel channel = null;
+            try {
+                channel = borrow();
+                channel.send(outgoing);
+                release(channel);
+                return;
+            } catch (JMSException e) {
+                failure = e;
+                if (channel != null) {
+                    channel.close();
+                    reset(channel.generation, e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Send queued messages in batches.
+     */
+    void flush() {
+        flushRequested.set(false);
+        List<Outgoing> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            sendBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void sendBatch(List<Outgoing> batch) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Channel channel = batchChannel;
+            int current = generation;
+            try {
+                if (channel == null || channel.generation != current) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    channel = open(true);
+                    batchChannel = channel;
+                }
+                for (Outgoing outgoing : batch) {
+                    channel.send(outgoing);
+                }
+                channel.session.commit();
+                return;
+            } catch (JMSException e) {
+                if (channel != null) {
+                    channel.close();
+                    current = channel.generation;
+                }
+                batchChannel = null;
+                reset(current, e);
+            }
+        }
+        log.warn("activemq: failed to send {} messages.", batch.size());
+    }
+
+    private Channel borrow() throws JMSException {
+        int current = generation;
+        Channel channel;
+        while ((channel = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if (channel.generation == current) {
+                return channel;
+            }
+            // opened by a closed connection.
+            channel.close();
+        }
+        return open(false);
+    }
+
+    private void release(Channel channel) {
+        if (channel.generation == generation && !closed) {
+            if (idleCount.incrementAndGet() <= poolSize) {
+                idle.offerFirst(channel);
+                return;
+            }
+            idleCount.decrementAndGet();
+        }
+        channel.close();
+    }
+
+    private Channel open(boolean transacted) throws JMSException {
+        Connection conn;
+        int current;
+        synchronized (this) {
+            if (closed) {
+                throw new JMSException("connection pool is closed");
+            }
+            if (connection == null) {
+                Connection created;
+                if (username != null) {
+                    created = factory.createConnection(username, password);
+                } else {
+                    created = factory.createConnection();
+                }
+                final int connectionGeneration = generation;
+                try {
+                    created.setExceptionListener(e -> reset(connectionGeneration, e));
+                    created.start();
+                } catch (JMSException e) {
+                    closeQuietly(created);
+                    throw e;
+                }
+                connection = created;
+            }
+            conn = connection;
+            current = generation;
+        }
+        return new Channel(conn, transacted, current);
+    }
+
+    /**
+     * Close the connection if it is still the one that failed.
+     * @param failedGeneration generation of the failed connection
+     * @param cause cause
+     */
+    private void reset(int failedGeneration, Exception cause) {
+        Connection old;
+        synchronized (this) {
+            if (failedGeneration != generation) {
+                return;
+            }
+            generation++;
+            old = connection;
+            connection = null;
+        }
+        if (old != null) {
+            log.info("activemq: connection reset: " + cause.getMessage());
+            closeQuietly(old);
+        }
+    }
+
+    private void close() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        if (pending != null) {
+            flush();
+        }
+        closed = true;
+        if (batchChannel != null) {
+            batchChannel.close();
+            batchChannel = null;
+        }
+        Channel channel;
+        while ((channel = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            channel.close();
+        }
+        Connection old;
+        synchronized (this) {
+            generation++;
+            old = connection;
+            connection = null;
+        }
+        if (old != null) {
+            closeQuietly(old);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (JMSException e) {
+            log.debug("activemq: failed to close connection", e);
+        }
+    }
+
+    /**
+     * Message waiting to be sent.
+     */
+    private static final class Outgoing {
+        final boolean topic;
+        final String name;
+        final MessageCreator creator;
+        final int deliveryMode;
+        final long timeToLive;
+
+        Outgoing(boolean topic, String name, MessageCreator creator, int deliveryMode, long timeToLive) {
+            this.topic = topic;
+            this.name = name;
+            this.creator = creator;
+            this.deliveryMode = deliveryMode;
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * Session and its anonymous producer. Used by one thread at a time.
+     */
+    private static final class Channel {
+        final Session session;
+        final MessageProducer producer;
+        final int generation;
+
+        Channel(Connection connection, boolean transacted, int generation) throws JMSException {
+            this.session = connection.createSession(transacted,
+                    transacted ? Session.SESSION_TRANSACTED : Session.AUTO_ACKNOWLEDGE);
+            this.producer = session.createProducer(null);
+            this.generation = generation;
+        }
+
+        void send(Outgoing outgoing) throws JMSException {
+            Destination dest;
+            if (outgoing.topic) {
+                dest = session.createTopic(outgoing.name);
+            } else {
+                dest = session.createQueue(outgoing.name);
+            }
+            producer.send(dest, outgoing.creator.create(session),
+                    outgoing.deliveryMode, Message.DEFAULT_PRIORITY, outgoing.timeToLive);
+        }
+
+        void close() {
+            try {
+                // closing the session closes its producer.
+                session.close();
+            } catch (JMSException e) {
+                log.debug("activemq: failed to close session", e);
+            }
+        }
+    }
+}
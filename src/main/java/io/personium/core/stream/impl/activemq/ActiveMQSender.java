@@ -16,19 +16,19 @@
  */
 package io.personium.core.stream.impl.activemq;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import javax.jms.Connection;
-import javax.jms.ConnectionFactory;
 import javax.jms.DeliveryMode;
-import javax.jms.Destination;
 import javax.jms.JMSException;
-import javax.jms.MessageProducer;
+import javax.jms.Message;
 import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import javax.jms.TextMessage;
 
-import org.apache.activemq.ActiveMQConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.personium.common.es.util.PersoniumUUID;
 import io.personium.core.PersoniumUnitConfig;
@@ -40,14 +40,15 @@ import io.personium.core.stream.DataSender;
 
 /**
  * Send data to mq.
+ * Sessions and producers are pooled by ActiveMQConnectionPool and shared with the other senders of the broker.
  */
 public class ActiveMQSender implements DataPublisher, DataSender, EventPublisher, EventSender {
+    private static Logger log = LoggerFactory.getLogger(ActiveMQSender.class);
 
     static final String PROP_CELL = "__PERSONIUM_CELL";
     static final String PROP_MESSAGE_ID = "__PERSONIUM_MESSAGE_ID";
 
-    private ConnectionFactory factory;
-    private Connection connection;
+    private ActiveMQConnectionPool pool;
     private String name;
 
     private String broker;
@@ -80,18 +81,7 @@ public class ActiveMQSender implements DataPublisher, DataSender, EventPublisher
      */
     @Override
     public void open(final String name) { // CHECKSTYLE IGNORE
-        try {
-            factory = new ActiveMQConnectionFactory(broker);
-            if (username != null) {
-                connection = factory.createConnection(username, password);
-            } else {
-                connection = factory.createConnection();
-            }
-            connection.start();
-        } catch (Exception e) {
-            connection = null;
-            e.printStackTrace();
-        }
+        this.pool = ActiveMQConnectionPool.get(broker, username, password);
         this.name = name;
     }
 
@@ -102,37 +92,8 @@ public class ActiveMQSender implements DataPublisher, DataSender, EventPublisher
      */
     @Override
     public void send(final String cellUrl, final String data) {
-        Session session = null;
-        MessageProducer producer = null;
-        try {
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination dest = session.createQueue(this.name);
-            producer = session.createProducer(dest);
-
-            producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
-            producer.setTimeToLive(TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getStreamExpiresIn()));
-
-            TextMessage msg = session.createTextMessage();
-            msg.setText(data);
-
-            msg.setStringProperty(PROP_CELL, cellUrl);
-            msg.setStringProperty(PROP_MESSAGE_ID, PersoniumUUID.randomUUID());
-
-            producer.send(msg);
-        } catch (JMSException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (producer != null) {
-                    producer.close();
-                }
-                if (session != null) {
-                    session.close();
-                }
-            } catch (JMSException e) {
-                e.printStackTrace();
-            }
-        }
+        sendQuietly(false, session -> createTextMessage(session, cellUrl, data),
+             DeliveryMode.NON_PERSISTENT, TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getStreamExpiresIn()));
     }
 
     /**
@@ -142,69 +103,40 @@ public class ActiveMQSender implements DataPublisher, DataSender, EventPublisher
      */
     @Override
     public void publish(final String cellUrl, final String data) {
-        Session session = null;
-        MessageProducer producer = null;
-        try {
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination dest = session.createTopic(this.name);
-            producer = session.createProducer(dest);
-
-            producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
-            producer.setTimeToLive(TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getStreamExpiresIn()));
-
-            TextMessage msg = session.createTextMessage();
-            msg.setText(data);
-
-            msg.setStringProperty(PROP_CELL, cellUrl);
-            msg.setStringProperty(PROP_MESSAGE_ID, PersoniumUUID.randomUUID());
-
-            producer.send(msg);
-        } catch (JMSException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (producer != null) {
-                    producer.close();
-                }
-                if (session != null) {
-                    session.close();
-                }
-            } catch (JMSException e) {
-                e.printStackTrace();
-            }
-        }
+        sendQuietly(true, session -> createTextMessage(session, cellUrl, data),
+             DeliveryMode.NON_PERSISTENT, TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getStreamExpiresIn()));
     }
 
     /**
      * Send event.
      * @param event event to send
+     * @throws EventSendException if the event could not be sent
      */
     @Override
     public void send(final PersoniumEvent event) {
-        Session session = null;
-        MessageProducer producer = null;
         try {
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination dest = session.createQueue(this.name);
-            producer = session.createProducer(dest);
-
-            ObjectMessage msg = session.createObjectMessage();
-            msg.setObject(event);
+            send(false, session -> createObjectMessage(session, event),
+                 Message.DEFAULT_DELIVERY_MODE, Message.DEFAULT_TIME_TO_LIVE);
+        } catch (JMSException e) {
+            throw new EventSendException("activemq: failed to send message to " + name, e);
+        }
+    }
 
-            producer.send(msg);
+    /**
+     * Send events with one session.
+     * @param events events to send
+     * @throws EventSendException if the events could not be sent
+     */
+    @Override
+    public void send(final List<PersoniumEvent> events) {
+        List<ActiveMQConnectionPool.MessageCreator> creators = new ArrayList<>(events.size());
+        for (PersoniumEvent event : events) {
+            creators.add(session -> createObjectMessage(session, event));
+        }
+        try {
+            getPool().sendAll(false, name, creators, Message.DEFAULT_DELIVERY_MODE, Message.DEFAULT_TIME_TO_LIVE);
         } catch (JMSException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (producer != null) {
-                    producer.close();
-                }
-                if (session != null) {
-                    session.close();
-                }
-            } catch (JMSException e) {
-                e.printStackTrace();
-            }
+            throw new EventSendException("activemq: failed to send messages to " + name, e);
         }
     }
 
@@ -214,45 +146,56 @@ public class ActiveMQSender implements DataPublisher, DataSender, EventPublisher
      */
     @Override
     public void publish(final PersoniumEvent event) {
-        Session session = null;
-        MessageProducer producer = null;
-        try {
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination dest = session.createTopic(this.name);
-            producer = session.createProducer(dest);
-
-            ObjectMessage msg = session.createObjectMessage();
-            msg.setObject(event);
-
-            producer.send(msg);
-        } catch (JMSException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (producer != null) {
-                    producer.close();
-                }
-                if (session != null) {
-                    session.close();
-                }
-            } catch (JMSException e) {
-                e.printStackTrace();
-            }
-        }
+        sendQuietly(true, session -> createObjectMessage(session, event),
+             Message.DEFAULT_DELIVERY_MODE, Message.DEFAULT_TIME_TO_LIVE);
     }
 
     /**
      * Close connection.
+     * The connection is shared and closed by ActiveMQConnectionPool.shutdown().
      */
     @Override
     public void close() {
+        this.pool = null;
+    }
+
+    private void sendQuietly(boolean topic, ActiveMQConnectionPool.MessageCreator creator,
+            int deliveryMode, long timeToLive) {
         try {
-            if (connection != null) {
-                connection.close();
-            }
+            send(topic, creator, deliveryMode, timeToLive);
         } catch (JMSException e) {
-            e.printStackTrace();
+            log.warn("activemq: failed to send message to " + name + ": " + e.getMessage(), e);
         }
     }
 
+    private void send(boolean topic, ActiveMQConnectionPool.MessageCreator creator,
+            int deliveryMode, long timeToLive) throws JMSException {
+        getPool().send(topic, name, creator, deliveryMode, timeToLive);
+    }
+
+    private ActiveMQConnectionPool getPool() throws JMSException {
+        ActiveMQConnectionPool p = this.pool;
+        if (p == null) {
+            throw new JMSException("activemq: sender is not opened: " + name);
+        }
+        return p;
+    }
+
+    private static TextMessage createTextMessage(Session session, String cellUrl, String data)
+            throws JMSException {
+        TextMessage msg = session.createTextMessage();
+        msg.setText(data);
+
+        msg.setStringProperty(PROP_CELL, cellUrl);
+        msg.setStringProperty(PROP_MESSAGE_ID, PersoniumUUID.randomUUID());
+        return msg;
+    }
+
+    private static ObjectMessage createObjectMessage(Session session, PersoniumEvent event)
+            throws JMSException {
+        ObjectMessage msg = session.createObjectMessage();
+        msg.setObject(event);
+        return msg;
+    }
+
 }
@@ -0,0 +1,270 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream.impl.inprocess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.stream.IDataListener;
+
+/**
+ * Broker which delivers messages between the threads of this node.
+ * <p>
+ * A message sent to a queue is received by one of the receivers of the queue,
+ * and a message published to a topic is delivered to every subscription of the topic.
+ * Messages are passed by reference without serialization, so they must not be modified after sending.
+ * Queues are kept until the process ends, like queues of a broker. When a queue or subscription is full,
+ * its oldest message is dropped. Messages are not shared with other nodes.
+ * </p>
+ */
+final class InProcessBroker {
+    private static Logger log = LoggerFactory.getLogger(InProcessBroker.class);
+
+    private static final Map<String, Mailbox> QUEUES = new ConcurrentHashMap<>();
+    private static final Map<String, List<Subscription>> TOPICS = new ConcurrentHashMap<>();
+
+    private InProcessBroker() {
+    }
+
+    /**
+     * Message in a queue or subscription.
+     */
+    static final class Message {
+        /** PersoniumEvent, or String of stream data. */
+        final Object body;
+        /** Cell url of stream data. */
+        final String cellUrl;
+        /** Time when the message expires, 0 if it does not expire. */
+        final long expiresAt;
+
+        Message(Object body, String cellUrl, long timeToLive) {
+            this.body = body;
+            this.cellUrl = cellUrl;
+            this.expiresAt = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt > 0 && now > expiresAt;
+        }
+    }
+
+    /**
+     * Bounded queue of messages.
+     */
+    static final class Mailbox {
+        private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+        /** Free slots of the queue. */
+        private final Semaphore space;
+        /** Messages in the queue. */
+        private final Semaphore items = new Semaphore(0);
+
+        Mailbox(int capacity) {
+            this.space = new Semaphore(capacity);
+        }
+
+        /**
+         * Add a message, dropping the oldest message if full.
+         * @param message message
+         */
+        void offer(Message message) {
+            if (!space.tryAcquire()) {
+                // drop the oldest message and reuse its slot.
+                if (!items.tryAcquire()) {
+                    if (!space.tryAcquire()) {
+                        log.debug("inprocess: queue is full. message is dropped.");
+                        return;
+                    }
+                } else {
+                    queue.poll();
+                    log.debug("inprocess: queue is full. the oldest message is dropped.");
+                }
+            }
+            queue.add(message);
+            items.release();
+        }
+
+        /**
+         * Take messages which have not expired.
+         * @param max max number of messages
+         * @param timeout time to wait for the first message in milliseconds, 0 not to wait
+         * @return messages, empty if no message arrived in time
+         * @throws InterruptedException if interrupted while waiting
+         */
+        List<Message> poll(int max, long timeout) throws InterruptedException {
+            List<Message> list = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + timeout;
+            while (list.isEmpty()) {
+                long wait = deadline - System.currentTimeMillis();
+                boolean acquired;
+                if (wait > 0) {
+                    acquired = items.tryAcquire(wait, TimeUnit.MILLISECONDS);
+                } else {
+                    acquired = items.tryAcquire();
+                }
+                if (!acquired) {
+                    return list;
+                }
+                take(list);
+                while (list.size() < max && items.tryAcquire()) {
+                    take(list);
+                }
+            }
+            return list;
+        }
+
+        private void take(List<Message> list) {
+            Message message = queue.poll();
+            space.release();
+            if (message != null && !message.isExpired(System.currentTimeMillis())) {
+                list.add(message);
+            }
+        }
+    }
+
+    /**
+     * Subscription of a topic.
+     * Messages are kept in the mailbox until a listener is set, and are passed to the listener after that.
+     */
+    static final class Subscription {
+        final String topic;
+        final Mailbox mailbox;
+        private volatile IDataListener listener;
+
+        Subscription(String topic, Mailbox mailbox) {
+            this.topic = topic;
+            this.mailbox = mailbox;
+        }
+
+        /**
+         * Set the listener and pass the kept messages to it.
+         * @param dataListener listener called by the publishing thread
+         */
+        void setListener(IDataListener dataListener) {
+            this.listener = dataListener;
+            try {
+                for (Message message : mailbox.poll(Integer.MAX_VALUE, 0)) {
+                    deliver(dataListener, message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void publish(Message message) {
+            IDataListener dataListener = listener;
+            if (dataListener != null) {
+                deliver(dataListener, message);
+            } else {
+                mailbox.offer(message);
+            }
+        }
+
+        private static void deliver(IDataListener dataListener, Message message) {
+            if (!(message.body instanceof String)) {
+                return;
+            }
+            try {
+                dataListener.onMessage(message.cellUrl, (String) message.body);
+            } catch (RuntimeException e) {
+                log.warn("inprocess: listener failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Get the queue.
+     * @param name queue name
+     * @return queue
+     */
+    static Mailbox queue(String name) {
+        return QUEUES.computeIfAbsent(name, key -> new Mailbox(PersoniumUnitConfig.getInProcessMQQueueSize()));
+    }
+
+    /**
+     * Send a message to the queue.
+     * @param name queue name
+     * @param message message
+     */
+    static void send(String name, Message message) {
+        queue(name).offer(message);
+    }
+
+    /**
+     * Publish a message to the subscriptions of the topic.
+     * Messages published while the topic has no subscription are discarded.
+     * @param topic topic name
+     * @param message message
+     */
+    static void publish(String topic, Message message) {
+        List<Subscription> subscriptions = TOPICS.get(topic);
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(message);
+        }
+    }
+
+    /**
+     * Subscribe the topic.
+     * @param topic topic name
+     * @return subscription
+     */
+    static Subscription subscribe(String topic) {
+        Subscription subscription = new Subscription(topic,
+                new Mailbox(PersoniumUnitConfig.getInProcessMQQueueSize()));
+        TOPICS.compute(topic, (key, subscriptions) -> {
+            List<Subscription> list = subscriptions;
+            if (list == null) {
+                list = new CopyOnWriteArrayList<>();
+            }
+            list.add(subscription);
+            return list;
+        });
+        return subscription;
+    }
+
+    /**
+     * Unsubscribe the topic.
+     * @param subscription subscription
+     */
+    static void unsubscribe(Subscription subscription) {
+        TOPICS.computeIfPresent(subscription.topic, (key, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    /**
+     * Discard all queues and subscriptions.
+     */
+    static void clear() {
+        QUEUES.clear();
+        TOPICS.clear();
+    }
+}
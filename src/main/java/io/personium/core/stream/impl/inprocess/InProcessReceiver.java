@@ -0,0 +1,131 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream.impl.inprocess;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.core.event.EventReceiver;
+import io.personium.core.event.EventSubscriber;
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.stream.DataReceiver;
+import io.personium.core.stream.DataSubscriber;
+import io.personium.core.stream.IDataListener;
+
+/**
+ * Receiver for the in-process broker.
+ */
+public class InProcessReceiver implements DataReceiver, DataSubscriber, EventReceiver, EventSubscriber {
+    private static Logger log = LoggerFactory.getLogger(InProcessReceiver.class);
+
+    private static final long POLL_TIMEOUT = 1000L;
+
+    /** Max number of events received at once. */
+    private static final int RECEIVE_MAX = 100;
+
+    private volatile InProcessBroker.Mailbox mailbox;
+    private volatile InProcessBroker.Subscription subscription;
+
+    @Override
+    public void open(final String queueName) {
+        this.mailbox = InProcessBroker.queue(queueName);
+    }
+
+    @Override
+    public void subscribe(final String topicName) {
+        InProcessBroker.Subscription s = InProcessBroker.subscribe(topicName);
+        this.subscription = s;
+        this.mailbox = s.mailbox;
+    }
+
+    @Override
+    public void setListener(IDataListener listener) {
+        InProcessBroker.Subscription s = this.subscription;
+        if (listener != null && s != null) {
+            s.setListener(listener);
+        }
+    }
+
+    @Override
+    public List<PersoniumEvent> receive() {
+        List<PersoniumEvent> list = new ArrayList<>();
+        List<InProcessBroker.Message> messages = poll(RECEIVE_MAX);
+        if (messages == null) {
+            return null;
+        }
+        for (InProcessBroker.Message message : messages) {
+            if (message.body instanceof PersoniumEvent) {
+                list.add((PersoniumEvent) message.body);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public List<String> receiveData() {
+        List<String> list = new ArrayList<>();
+        // one message at a time, like the other brokers.
+        List<InProcessBroker.Message> messages = poll(1);
+        if (messages == null) {
+            return list;
+        }
+        for (InProcessBroker.Message message : messages) {
+            if (message.body instanceof String && message.cellUrl != null) {
+                list.add((String) message.body);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void close() {
+        InProcessBroker.Subscription s = this.subscription;
+        this.subscription = null;
+        this.mailbox = null;
+        if (s != null) {
+            InProcessBroker.unsubscribe(s);
+        }
+    }
+
+    @Override
+    public void unsubscribe() {
+        close();
+    }
+
+    /**
+     * Take messages.
+     * @param max max number of messages
+     * @return messages, null if not opened or interrupted
+     */
+    private List<InProcessBroker.Message> poll(int max) {
+        InProcessBroker.Mailbox m = this.mailbox;
+        if (m == null) {
+            log.error("inprocess: receiver is not opened.");
+            return null;
+        }
+        try {
+            return m.poll(max, POLL_TIMEOUT);
+        } catch (InterruptedException e) {
+            log.debug("Interrupted");
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
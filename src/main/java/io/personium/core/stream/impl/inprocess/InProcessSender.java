@@ -0,0 +1,136 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream.impl.inprocess;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.event.EventPublisher;
+import io.personium.core.event.EventSender;
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.stream.DataPublisher;
+import io.personium.core.stream.DataSender;
+
+/**
+ * Sender for the in-process broker.
+ */
+public class InProcessSender implements DataSender, DataPublisher, EventSender, EventPublisher {
+    private static Logger log = LoggerFactory.getLogger(InProcessSender.class);
+
+    private volatile String name;
+
+    /**
+     * Open.
+     * @param queueOrTopic queue or topic name
+     */
+    @Override
+    public void open(final String queueOrTopic) { // CHECKSTYLE IGNORE
+        this.name = queueOrTopic;
+    }
+
+    /**
+     * Send data.
+     * @param cellUrl cell url
+     * @param data data to send
+     */
+    @Override
+    public void send(final String cellUrl, final String data) {
+        String queue = this.name;
+        if (queue != null) {
+            InProcessBroker.send(queue, createDataMessage(cellUrl, data));
+        } else {
+            log.warn("inprocess: sender is not opened.");
+        }
+    }
+
+    /**
+     * Publish data.
+     * @param cellUrl cell url
+     * @param data data to send
+     */
+    @Override
+    public void publish(final String cellUrl, final String data) {
+        String topic = this.name;
+        if (topic != null) {
+            InProcessBroker.publish(topic, createDataMessage(cellUrl, data));
+        } else {
+            log.warn("inprocess: sender is not opened.");
+        }
+    }
+
+    /**
+     * Send event.
+     * @param event event to send
+     */
+    @Override
+    public void send(final PersoniumEvent event) {
+        String queue = this.name;
+        if (queue != null) {
+            InProcessBroker.send(queue, new InProcessBroker.Message(event, null, 0));
+        } else {
+            log.warn("inprocess: sender is not opened.");
+        }
+    }
+
+    /**
+     * Send events.
+     * @param events events to send
+     */
+    @Override
+    public void send(final List<PersoniumEvent> events) {
+        String queue = this.name;
+        if (queue == null) {
+            log.warn("inprocess: sender is not opened.");
+            return;
+        }
+        InProcessBroker.Mailbox mailbox = InProcessBroker.queue(queue);
+        for (PersoniumEvent event : events) {
+            mailbox.offer(new InProcessBroker.Message(event, null, 0));
+        }
+    }
+
+    /**
+     * Publish event.
+     * @param event event to publish
+     */
+    @Override
+    public void publish(final PersoniumEvent event) {
+        String topic = this.name;
+        if (topic != null) {
+            InProcessBroker.publish(topic, new InProcessBroker.Message(event, null, 0));
+        } else {
+            log.warn("inprocess: sender is not opened.");
+        }
+    }
+
+    /**
+     * Close.
+     */
+    @Override
+    public void close() {
+        this.name = null;
+    }
+
+    private static InProcessBroker.Message createDataMessage(String cellUrl, String data) {
+        return new InProcessBroker.Message(data, cellUrl,
+                TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getStreamExpiresIn()));
+    }
+}
@@ -16,11 +16,18 @@
  */
 package io.personium.core.stream.impl.kafka;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.serialization.StringSerializer;
 
 import io.personium.core.event.EventPublisher;
@@ -62,17 +69,43 @@ public class KafkaEventSender implements EventSender, EventPublisher {
     }
 
     /**
-     * Send event.
+     * Send event and wait for the acknowledgement of the broker.
      * @param event event to send
+     * @throws EventSendException if the event could not be sent
      */
     @Override
     public void send(final PersoniumEvent event) {
-        producer.send(new ProducerRecord<>(topicName, event));
+        send(Collections.singletonList(event));
+    }
+
+    /**
+     * Send events and wait for the acknowledgements of the broker.
+     * @param events events to send
+     * @throws EventSendException if any of the events could not be sent
+     */
+    @Override
+    public void send(final List<PersoniumEvent> events) {
+        List<Future<RecordMetadata>> results = new ArrayList<>(events.size());
+        try {
+            for (PersoniumEvent event : events) {
+                results.add(producer.send(new ProducerRecord<>(topicName, event)));
+            }
+            for (Future<RecordMetadata> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new EventSendException("kafka: failed to send events to " + topicName, e.getCause());
+        } catch (KafkaException e) {
+            throw new EventSendException("kafka: failed to send events to " + topicName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventSendException("kafka: interrupted while sending events to " + topicName, e);
+        }
     }
 
     @Override
     public void publish(final PersoniumEvent event) {
-        send(event);
+        producer.send(new ProducerRecord<>(topicName, event));
     }
 
     /**
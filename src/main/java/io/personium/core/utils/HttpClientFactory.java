@@ -22,14 +22,24 @@ import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.DnsResolver;
-import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
@@ -37,12 +47,29 @@ import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.personium.core.PersoniumUnitConfig;
 
 /**
  * Switch implementation by changing HttpClient.
+ * <p>
+ * Clients are shared for each communication type, and connections are pooled and kept alive between requests.
+ * Closing the returned client does not close the pool, so callers may keep closing it after use.
+ * Responses must be closed or fully consumed to return their connections to the pool.
+ * Requests waiting for a connection longer than the lease timeout fail instead of blocking,
+ * and the engine, which all service calls are relayed to, has its own limit of connections.
+ * </p>
  */
 public class HttpClientFactory {
     /** Type of HTTP communication.*/
@@ -55,6 +82,24 @@ public class HttpClientFactory {
     /** Connection timeout value.*/
     private static final int TIMEOUT = 60000; // 20000;
 
+    /** Idle time after which a pooled connection is checked before reuse (ms).*/
+    private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+
+    /** Minimum interval of closing idle connections (ms).*/
+    private static final long MIN_EVICTION_INTERVAL = 1000;
+
+    /** Milliseconds per second.*/
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    /** Logger. */
+    private static Logger log = LoggerFactory.getLogger(HttpClientFactory.class);
+
+    /** Shared clients of each communication type. */
+    private static final Map<String, PooledClient> CLIENTS = new ConcurrentHashMap<>();
+
+    /** Scheduler closing idle connections. */
+    private static ScheduledExecutorService evictor;
+
     /** Constructor. */
     private HttpClientFactory() {
     }
@@ -65,80 +110,160 @@ public class HttpClientFactory {
      * @return HttpClient class instance created
      */
     public static CloseableHttpClient create(final String type) {
-        RequestConfig config = RequestConfig.custom()
-                .setConnectTimeout(TIMEOUT)
-                .setSocketTimeout(TIMEOUT)
-                .setRedirectsEnabled(false)
-                .build();
-
-        if (TYPE_DEFAULT.equalsIgnoreCase(type)) {
-            return HttpClientBuilder.create()
-                    .setDefaultRequestConfig(config)
-                    .useSystemProperties()
-                    .build();
-        } else if (TYPE_INSECURE.equalsIgnoreCase(type)) {
-            return createInsecure(config);
-        } else if (TYPE_ALWAYS_LOCAL.equalsIgnoreCase(type)) {
-            return createAlwaysLocal(config);
+        if (type == null) {
+            return null;
         }
-        return null;
+        String key = type.toLowerCase();
+        PooledClient pooled = CLIENTS.get(key);
+        if (pooled == null) {
+            synchronized (CLIENTS) {
+                pooled = CLIENTS.get(key);
+                if (pooled == null) {
+                    pooled = createPooledClient(key);
+                    if (pooled == null) {
+                        return null;
+                    }
+                    CLIENTS.put(key, pooled);
+                    startEvictor();
+                }
+            }
+        }
+        return pooled.client;
+    }
 
+    /**
+     * Returns the statistics of the connection pool of the communication type.
+     * @param type communication type
+     * @return statistics. null if no client of the type has been created
+     */
+    public static PoolStats getPoolStats(final String type) {
+        if (type == null) {
+            return null;
+        }
+        PooledClient pooled = CLIENTS.get(type.toLowerCase());
+        if (pooled == null) {
+            return null;
+        }
+        return pooled.manager.getTotalStats();
     }
-    private static CloseableHttpClient createAlwaysLocal(RequestConfig config) {
-        SSLConnectionSocketFactory sf = null;
-        try {
-            sf = createInsecureSSLConnectionSocketFactory();
-        } catch (Exception e) {
+
+    /**
+     * Returns the statistics of the connection pool of the communication type to a host.
+     * @param type communication type
+     * @param host target host
+     * @return statistics. null if no client of the type has been created
+     */
+    public static PoolStats getPoolStats(final String type, final HttpHost host) {
+        if (type == null) {
+            return null;
+        }
+        PooledClient pooled = CLIENTS.get(type.toLowerCase());
+        if (pooled == null) {
             return null;
         }
+        return pooled.manager.getStats(new HttpRoute(host));
+    }
 
-        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
-                .register("https", sf)
-                .register("http", PlainConnectionSocketFactory.INSTANCE)
-                .build();
-        /* Custom DNS resolver */
-        DnsResolver dnsResolver = new SystemDefaultDnsResolver() {
-            @Override
-            public InetAddress[] resolve(final String host) throws UnknownHostException {
-                // Always 127.0.0.1
-                return new InetAddress[] { InetAddress.getLoopbackAddress() };
-            }
-        };
-        HttpClientConnectionManager cm = new BasicHttpClientConnectionManager(registry,
-                null, /* Default ConnectionFactory */
-                null, /* Default SchemePortResolver */
-                dnsResolver  /* Our DnsResolver */
-                );
+    /**
+     * @return host of the engine
+     */
+    static HttpHost getEngineHost() {
+        return new HttpHost(PersoniumUnitConfig.getEngineHost(), PersoniumUnitConfig.getEnginePort(), "http");
+    }
 
+    /**
+     * Close all pooled connections.
+     * Clients created after this are given new pools.
+     */
+    public static void shutdown() {
+        synchronized (CLIENTS) {
+            if (evictor != null) {
+                evictor.shutdownNow();
+                evictor = null;
+            }
+            for (PooledClient pooled : CLIENTS.values()) {
+                pooled.manager.shutdown();
+            }
+            CLIENTS.clear();
+        }
+    }
 
-        return HttpClientBuilder.create()
-                                .setDefaultRequestConfig(config)
-                                .setConnectionManager(cm)
-                                .useSystemProperties()
-                                .build();
+    private static PooledClient createPooledClient(String type) {
+        Registry<ConnectionSocketFactory> registry;
+        DnsResolver dnsResolver = null;
+        if (TYPE_DEFAULT.equals(type)) {
+            registry = createRegistry(SSLConnectionSocketFactory.getSystemSocketFactory());
+        } else if (TYPE_INSECURE.equals(type) || TYPE_ALWAYS_LOCAL.equals(type)) {
+            try {
+                registry = createRegistry(createInsecureSSLConnectionSocketFactory());
+            } catch (Exception e) {
+                log.info("Failed to create SSLConnectionSocketFactory.", e);
+                return null;
+            }
+            if (TYPE_ALWAYS_LOCAL.equals(type)) {
+                /* Custom DNS resolver */
+                dnsResolver = new SystemDefaultDnsResolver() {
+                    @Override
+                    public InetAddress[] resolve(final String host) throws UnknownHostException {
+                        // Always 127.0.0.1
+                        return new InetAddress[] {InetAddress.getLoopbackAddress()};
+                    }
+                };
+            }
+        } else {
+            return null;
+        }
 
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(registry,
+                null, /* Default ConnectionFactory */
+                null, /* Default SchemePortResolver */
+                dnsResolver, /* Our DnsResolver */
+                -1, TimeUnit.MILLISECONDS);
+        cm.setMaxTotal(PersoniumUnitConfig.getHttpClientPoolMaxTotal());
+        cm.setDefaultMaxPerRoute(PersoniumUnitConfig.getHttpClientPoolMaxPerRoute());
+        cm.setMaxPerRoute(new HttpRoute(getEngineHost()), PersoniumUnitConfig.getHttpClientPoolMaxPerEngineRoute());
+        // Check the connections kept idle for a while before reusing them
+        cm.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
 
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(TIMEOUT)
+                .setSocketTimeout(TIMEOUT)
+                .setConnectionRequestTimeout(PersoniumUnitConfig.getHttpClientPoolLeaseTimeout())
+                .setRedirectsEnabled(false)
+                .build();
+        CloseableHttpClient client = HttpClientBuilder.create()
+                .setDefaultRequestConfig(config)
+                .setConnectionManager(cm)
+                .setConnectionManagerShared(true)
+                .setKeepAliveStrategy(new KeepAliveStrategy(PersoniumUnitConfig.getHttpClientKeepAlive()))
+                .useSystemProperties()
+                .build();
+        return new PooledClient(client, cm);
     }
-    private static CloseableHttpClient createInsecure(RequestConfig config) {
-        SSLConnectionSocketFactory sf = null;
-        try {
-            sf = createInsecureSSLConnectionSocketFactory();
-        } catch (Exception e) {
-            return null;
-        }
 
-        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+    private static Registry<ConnectionSocketFactory> createRegistry(SSLConnectionSocketFactory sf) {
+        return RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("https", sf)
                 .register("http", PlainConnectionSocketFactory.INSTANCE)
                 .build();
-        HttpClientConnectionManager cm = new BasicHttpClientConnectionManager(registry);
-
-        return HttpClientBuilder.create()
-                                .setDefaultRequestConfig(config)
-                                .setConnectionManager(cm)
-                                .useSystemProperties()
-                                .build();
+    }
 
+    private static void startEvictor() {
+        long idleTimeout = PersoniumUnitConfig.getHttpClientPoolIdleTimeout();
+        if (evictor != null || idleTimeout <= 0) {
+            return;
+        }
+        ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("http-client-connection-evictor-%d");
+        builder.setDaemon(true);
+        evictor = Executors.newSingleThreadScheduledExecutor(builder.build());
+        long interval = Math.max(idleTimeout / 2, MIN_EVICTION_INTERVAL);
+        evictor.scheduleWithFixedDelay(() -> {
+            for (PooledClient pooled : CLIENTS.values()) {
+                pooled.manager.closeExpiredConnections();
+                pooled.manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
     }
 
     private static SSLConnectionSocketFactory createInsecureSSLConnectionSocketFactory()
@@ -151,4 +276,45 @@ public class HttpClientFactory {
                 sslContext,
                 NoopHostnameVerifier.INSTANCE);
     }
+
+    /**
+     * Keeps connections alive for the time the server specifies in the Keep-Alive header,
+     * or for the default time if it is not specified.
+     */
+    static final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+        private final long defaultKeepAlive;
+
+        KeepAliveStrategy(long defaultKeepAlive) {
+            this.defaultKeepAlive = defaultKeepAlive;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Long.parseLong(element.getValue()) * MILLIS_PER_SECOND;
+                    } catch (NumberFormatException e) {
+                        log.debug("Invalid Keep-Alive timeout: " + element.getValue());
+                    }
+                }
+            }
+            return defaultKeepAlive;
+        }
+    }
+
+    /**
+     * Client shared for a communication type and its connection pool.
+     */
+    private static final class PooledClient {
+        private final CloseableHttpClient client;
+        private final PoolingHttpClientConnectionManager manager;
+
+        PooledClient(CloseableHttpClient client, PoolingHttpClientConnectionManager manager) {
+            this.client = client;
+            this.manager = manager;
+        }
+    }
 }
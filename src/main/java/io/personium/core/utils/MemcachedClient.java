@@ -28,6 +28,8 @@ import org.slf4j.LoggerFactory;
 
 import io.personium.core.PersoniumCoreLog;
 import io.personium.core.PersoniumUnitConfig;
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
 import net.spy.memcached.ConnectionFactoryBuilder;
 import net.spy.memcached.DefaultConnectionFactory;
 
@@ -180,6 +182,50 @@ public class MemcachedClient implements CacheClient {
         }
     }
 
+    /**
+     * Extend the expiration of the cache only if it is equal to the specified object.
+     * @param key Key of the cache
+     * @param expected Object expected to be cached
+     * @param expiresIn lifetime
+     * @return Returns True if extended / False if not cached or changed.
+     */
+    public Boolean touchIfEquals(String key, Object expected, int expiresIn) {
+        try {
+            CASValue<Object> current = this.spyClient.gets(key);
+            if (current == null || !expected.equals(current.getValue())) {
+                return false;
+            }
+            return this.spyClient.cas(key, current.getCas(), expiresIn, current.getValue()) == CASResponse.OK;
+        } catch (RuntimeException e) {
+            log.info(e.getMessage(), e);
+            throw new MemcachedClientException(e);
+        }
+    }
+
+    /**
+     * Delete the cache only if it is equal to the specified object.
+     * @param key Key of the cache
+     * @param expected Object expected to be cached
+     * @return Returns True if deleted / False if not cached or changed.
+     */
+    public Boolean deleteIfEquals(String key, Object expected) {
+        try {
+            CASValue<Object> current = this.spyClient.gets(key);
+            if (current == null || !expected.equals(current.getValue())) {
+                return false;
+            }
+            return this.spyClient.delete(key, current.getCas()).get();
+        } catch (InterruptedException e) {
+            PersoniumCoreLog.Server.MEMCACHED_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } catch (ExecutionException e) {
+            PersoniumCoreLog.Server.MEMCACHED_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } catch (RuntimeException e) {
+            log.info(e.getMessage(), e);
+            throw new MemcachedClientException(e);
+        }
+        return false;
+    }
+
     /**
      * Create a new object with the specified key.
      * @param key Cache key
@@ -225,6 +271,22 @@ public class MemcachedClient implements CacheClient {
         }
     }
 
+    /**
+     * Returns the value of the specified key.
+     * If the key does not exist, it is created with the initial value.
+     * @param key Cache key
+     * @param initValue Initial value
+     * @return Specified key value
+     */
+    public long getLongValue(String key, long initValue) {
+        try {
+            return this.spyClient.incr(key, 0, initValue);
+        } catch (RuntimeException e) {
+            log.info(e.getMessage(), e);
+            throw new MemcachedClientException(e);
+        }
+    }
+
     /**
      * Increment the value of the specified key.
      * @param key Cache key
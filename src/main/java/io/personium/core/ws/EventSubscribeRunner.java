@@ -59,7 +59,7 @@ class EventSubscribeRunner implements Runnable {
                             log.debug("    Time: " + event.getTime());
 
                             // WebSocket send
-                            WebSocketService.sendEvent(event);
+                            WebSocketService.dispatchEvent(event);
                         }
                     }
                 } catch (Exception e) {
@@ -0,0 +1,158 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.websocket.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Heartbeat scheduler shared by all WebSocket sessions.
+ * <p>
+ * One scheduler thread times the heartbeats of every session and hands them to sender threads,
+ * as sending a ping or closing a session may block on a client which does not read.
+ * A heartbeat which is still running is skipped, so a blocked session holds at most one sender thread.
+ * </p>
+ */
+final class HeartBeatService {
+    // log
+    private static Logger log = LoggerFactory.getLogger(HeartBeatService.class);
+
+    /** Interval of heartbeats in milliseconds. */
+    static final long HEART_BEAT_TIME = 60000;
+
+    private static final byte[] PING_DATA = new byte[]{1, 2, 3};
+
+    private static ScheduledThreadPoolExecutor scheduler;
+    private static ExecutorService senders;
+
+    private HeartBeatService() {
+    }
+
+    /**
+     * Start HeartBeatService.
+     */
+    static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
+        builder.setNameFormat("ws-heartbeat-%d");
+        builder.setDaemon(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, builder.build());
+        // cancelled heartbeats of closed sessions are dropped immediately.
+        scheduler.setRemoveOnCancelPolicy(true);
+
+        final ThreadFactoryBuilder senderBuilder = new ThreadFactoryBuilder();
+        senderBuilder.setNameFormat("ws-heartbeat-sender-%d");
+        senderBuilder.setDaemon(true);
+        // threads are only added while heartbeats are blocked, and dropped when idle.
+        senders = Executors.newCachedThreadPool(senderBuilder.build());
+    }
+
+    /**
+     * Stop HeartBeatService.
+     */
+    static synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+        senders.shutdownNow();
+        senders = null;
+    }
+
+    /**
+     * Schedule a heartbeat of a session.
+     * The returned future must be cancelled when the session is closed.
+     * @param heartBeat heartbeat task
+     * @param initialDelay delay of the first heartbeat in milliseconds
+     * @return scheduled heartbeat
+     */
+    static ScheduledFuture<?> schedule(Runnable heartBeat, long initialDelay) {
+        return schedule(heartBeat, initialDelay, HEART_BEAT_TIME);
+    }
+
+    /**
+     * Schedule a periodic task, which is run on a sender thread.
+     * The returned future must be cancelled when the task is no longer needed.
+     * @param task task
+     * @param initialDelay delay of the first run in milliseconds
+     * @param period period in milliseconds
+     * @return scheduled task
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long initialDelay, long period) {
+        ScheduledThreadPoolExecutor executor;
+        ExecutorService sender;
+        synchronized (HeartBeatService.class) {
+            if (scheduler == null) {
+                start();
+            }
+            executor = scheduler;
+            sender = senders;
+        }
+        AtomicBoolean running = new AtomicBoolean();
+        return executor.scheduleAtFixedRate(() -> {
+            if (!running.compareAndSet(false, true)) {
+                log.debug("ws: skipped a heartbeat blocked since the last time.");
+                return;
+            }
+            try {
+                sender.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.warn("ws: heartbeat failed: " + e.getMessage(), e);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // stopped
+                running.set(false);
+            }
+        }, initialDelay, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send a ping to the session without waiting for it to be written.
+     * @param session WebSocket session
+     */
+    static void sendPing(Session session) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.getAsyncRemote().sendPing(ByteBuffer.wrap(PING_DATA));
+        } catch (Exception e) {
+            log.debug("ws: failed to send ping: " + session.getId(), e);
+        }
+    }
+}
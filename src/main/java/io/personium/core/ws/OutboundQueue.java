@@ -0,0 +1,150 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of text messages sent to a WebSocket session.
+ * <p>
+ * Messages are sent one at a time through the asynchronous remote endpoint,
+ * so callers never wait for the client.
+ * When the client does not keep up and the queue is full,
+ * new messages are dropped or the session is closed.
+ * </p>
+ */
+class OutboundQueue {
+    // log
+    private static Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+
+    /** Policy applied when the queue is full. */
+    enum Overflow {
+        /** drop the new message. */
+        DROP,
+        /** close the session. */
+        CLOSE;
+
+        /**
+         * Parse the policy.
+         * @param value configuration value
+         * @return policy, DROP if the value is unknown
+         */
+        static Overflow of(String value) {
+            if (value != null && CLOSE.name().equalsIgnoreCase(value.trim())) {
+                return CLOSE;
+            }
+            return DROP;
+        }
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final Overflow overflow;
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     * @param session WebSocket session
+     * @param capacity max number of messages waiting to be sent
+     * @param overflow policy applied when the queue is full
+     */
+    OutboundQueue(Session session, int capacity, Overflow overflow) {
+        this.session = session;
+        this.capacity = capacity;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Add a message to the queue and start sending it.
+     * @param message text message
+     * @return true if the message is queued
+     */
+    boolean offer(String message) {
+        if (!session.isOpen()) {
+            return false;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            if (Overflow.CLOSE.equals(overflow)) {
+                log.info("ws: outbound queue is full. session close.: " + session.getId());
+                try {
+                    session.close();
+                } catch (Exception e) {
+                    log.debug("ws: failed to close session: " + session.getId(), e);
+                }
+            } else {
+                log.info("ws: outbound queue is full. message dropped.: " + session.getId());
+            }
+            return false;
+        }
+        queue.add(message);
+        sendNext();
+        return true;
+    }
+
+    /**
+     * Number of messages waiting to be sent.
+     * @return size
+     */
+    int size() {
+        return size.get();
+    }
+
+    private void sendNext() {
+        while (sending.compareAndSet(false, true)) {
+            String message = queue.poll();
+            if (message == null) {
+                sending.set(false);
+                // a message may be added after poll and before the flag is reset.
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            size.decrementAndGet();
+            try {
+                session.getAsyncRemote().sendText(message, result -> {
+                    if (!result.isOK()) {
+                        log.debug("ws: failed to send message: " + session.getId(), result.getException());
+                    }
+                    sending.set(false);
+                    sendNext();
+                });
+                return;
+            } catch (Exception e) {
+                log.debug("ws: failed to send message: " + session.getId(), e);
+                sending.set(false);
+                if (!session.isOpen()) {
+                    queue.clear();
+                    size.set(0);
+                    return;
+                }
+            }
+        }
+    }
+}
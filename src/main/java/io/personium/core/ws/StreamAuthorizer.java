@@ -0,0 +1,240 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.personium.common.auth.token.AbstractOAuth2Token;
+import io.personium.common.auth.token.IAccessToken;
+import io.personium.common.auth.token.ResidentLocalAccessToken;
+import io.personium.common.auth.token.TransCellAccessToken;
+import io.personium.common.auth.token.VisitorLocalAccessToken;
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.auth.AccessContext;
+import io.personium.core.auth.BoxPrivilege;
+import io.personium.core.model.Box;
+import io.personium.core.model.BoxRsCmp;
+import io.personium.core.model.Cell;
+import io.personium.core.model.CellCmp;
+import io.personium.core.model.CellRsCmp;
+import io.personium.core.model.DavCmp;
+import io.personium.core.model.DavRsCmp;
+import io.personium.core.model.ModelFactory;
+import io.personium.core.rs.box.StreamTopicResource;
+
+/**
+ * Authorization of tokens to receive stream topics.
+ * <p>
+ * The checks done by PROPFIND, OPTIONS and the introspection endpoint are evaluated in this JVM:
+ * the token must have read-properties and stream-receive privileges on the stream collection,
+ * the topic must be listed in it and the token must be active for the cell.
+ * Decisions are cached for a short time by the hash of the token and the topic.
+ * </p>
+ */
+final class StreamAuthorizer {
+    // log
+    private static Logger log = LoggerFactory.getLogger(StreamAuthorizer.class);
+
+    /** Type of the topic destination. */
+    private static final String TYPE_TOPIC = "topic";
+
+    /** Max number of cached decisions. */
+    private static final int CACHE_MAX = 10000;
+
+    /** Decision denying the token. */
+    static final long DENIED = -1;
+
+    private static final Map<String, Decision> CACHE = new ConcurrentHashMap<>();
+
+    private StreamAuthorizer() {
+    }
+
+    /**
+     * Cached decision.
+     */
+    private static final class Decision {
+        final long expirationTime;
+        final long cachedUntil;
+
+        Decision(long expirationTime, long cachedUntil) {
+            this.expirationTime = expirationTime;
+            this.cachedUntil = cachedUntil;
+        }
+    }
+
+    /**
+     * Authorize a token to receive a topic.
+     * @param token token string
+     * @param topic dot-separated topic string: cell.box.{dir}+.col.topic.topicname
+     * @return expiration time of the token in milliseconds, DENIED if not authorized
+     */
+    static long authorize(String token, String topic) {
+        if (token == null || topic == null) {
+            return DENIED;
+        }
+        long ttl = PersoniumUnitConfig.getStreamAuthzCacheTtl();
+        if (ttl <= 0) {
+            return evaluate(token, topic);
+        }
+
+        String key = hash(token) + " " + topic;
+        long now = System.currentTimeMillis();
+        Decision decision = CACHE.get(key);
+        if (decision != null && now < decision.cachedUntil) {
+            return decision.expirationTime;
+        }
+
+        long exp = evaluate(token, topic);
+        // an allowed decision is never kept beyond the expiration of the token.
+        long cachedUntil = exp == DENIED ? now + ttl : Math.min(now + ttl, exp);
+        if (CACHE.size() >= CACHE_MAX) {
+            CACHE.values().removeIf(d -> now >= d.cachedUntil);
+            if (CACHE.size() >= CACHE_MAX) {
+                CACHE.clear();
+            }
+        }
+        CACHE.put(key, new Decision(exp, cachedUntil));
+        return exp;
+    }
+
+    /**
+     * Clear cached decisions.
+     */
+    static void clear() {
+        CACHE.clear();
+    }
+
+    private static long evaluate(String token, String topic) {
+        // topic: cell.box.{dir}+.col.topic.topicname
+        List<String> paths = Arrays.asList(topic.split(Pattern.quote(StreamEndpoint.SEPARATOR)));
+        int size = paths.size();
+        if (size < 5 || !TYPE_TOPIC.equals(paths.get(size - 2))) {
+            return DENIED;
+        }
+        String topicName = paths.get(size - 1);
+
+        try {
+            Cell cell = ModelFactory.cellFromName(paths.get(0));
+            if (cell == null) {
+                return DENIED;
+            }
+            long exp = getExpirationTime(token, cell);
+            if (exp == DENIED) {
+                return DENIED;
+            }
+
+            String baseUri = PersoniumUnitConfig.getBaseUrl();
+            String host = URI.create(baseUri).getHost();
+            AccessContext ac = AccessContext.createForWebSocket(token, cell, baseUri, host);
+
+            Box box = cell.getBoxForName(paths.get(1));
+            if (box == null) {
+                return DENIED;
+            }
+            CellCmp cellCmp = ModelFactory.cellCmp(cell);
+            CellRsCmp cellRsCmp = new CellRsCmp(cellCmp, cell, ac);
+            DavRsCmp davRsCmp = new BoxRsCmp(cellRsCmp, ModelFactory.boxCmp(box), ac, box);
+
+            // resolve collections the same way as the JAX-RS resources do.
+            for (int i = 2; i < size - 2; i++) {
+                DavCmp child = davRsCmp.getDavCmp().getChild(paths.get(i));
+                String expected = i == size - 3 ? DavCmp.TYPE_COL_STREAM : DavCmp.TYPE_COL_WEBDAV;
+                if (!expected.equals(child.getType())) {
+                    return DENIED;
+                }
+                davRsCmp = new DavRsCmp(davRsCmp, child);
+            }
+
+            if (!hasReceivePrivileges(davRsCmp)) {
+                return DENIED;
+            }
+            StreamTopicResource topicResource = new StreamTopicResource(davRsCmp, TYPE_TOPIC);
+            if (!topicResource.exists(topicName)) {
+                return DENIED;
+            }
+            return exp;
+        } catch (Exception e) {
+            log.debug("ws: stream authorization denied: " + e.getMessage());
+            return DENIED;
+        }
+    }
+
+    /**
+     * Check the privileges on the stream collection.
+     * Listing the topics needs read-properties as PROPFIND does, receiving needs stream-receive.
+     * @param davRsCmp stream collection
+     * @return true if the access context has both privileges
+     */
+    static boolean hasReceivePrivileges(DavRsCmp davRsCmp) {
+        try {
+            davRsCmp.checkAccessContext(BoxPrivilege.READ_PROPERTIES);
+            davRsCmp.checkAccessContext(BoxPrivilege.STREAM_RECEIVE);
+            return true;
+        } catch (PersoniumCoreException e) {
+            log.debug("ws: stream privilege lacking: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get expiration time of the token, as the introspection endpoint of the cell does.
+     * @param token token string
+     * @param cell cell
+     * @return expiration time in milliseconds, DENIED if the token is not active
+     */
+    private static long getExpirationTime(String token, Cell cell) throws Exception {
+        AbstractOAuth2Token tk = AbstractOAuth2Token.parse(token, cell.getUrl(), cell.getUnitUrl());
+        if (tk.isExpired()) {
+            return DENIED;
+        }
+        String issuer = tk.getIssuer();
+        boolean active = false;
+        if (tk instanceof ResidentLocalAccessToken) {
+            active = cell.getUrl().equals(issuer);
+        } else if (tk instanceof VisitorLocalAccessToken || tk instanceof TransCellAccessToken) {
+            active = cell.getUrl().equals(issuer) || cell.getUrl().equals(((IAccessToken) tk).getTarget());
+        }
+        if (!active) {
+            return DENIED;
+        }
+        return TimeUnit.SECONDS.toMillis((long) tk.getIssuedAt() + tk.expiresIn());
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding()
+                         .encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -18,19 +18,20 @@ package io.personium.core.ws;
 
 import static io.personium.common.auth.token.AbstractOAuth2Token.MILLISECS_IN_A_SEC;
 
-import java.io.IOException;
 import java.net.URI;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.PongMessage;
 import javax.websocket.Session;
@@ -46,6 +47,7 @@ import io.personium.core.PersoniumUnitConfig;
 import io.personium.core.auth.AccessContext;
 import io.personium.core.auth.CellPrivilege;
 import io.personium.core.event.EventBus;
+import io.personium.core.event.EventInterest;
 import io.personium.core.event.PersoniumEvent;
 import io.personium.core.model.Cell;
 import io.personium.core.model.CellCmp;
@@ -64,21 +66,37 @@ public class WebSocketService {
         String object;
     }
 
+    /**
+     * State of a connected session.
+     * It is shared by the threads of the session and the event dispatchers.
+     */
+    static class SessionInfo {
+        final Session session;
+        final String cellId;
+        final List<RuleInfo> rules = new CopyOnWriteArrayList<>();
+        final AtomicInteger sendPingCount = new AtomicInteger(0);
+        final OutboundQueue outbound;
+        volatile String accessToken;
+        volatile Date authorizedTime;
+        volatile ScheduledFuture<?> heartBeat;
+
+        SessionInfo(Session session, String cellId) {
+            this.session = session;
+            this.cellId = cellId;
+            this.outbound = new OutboundQueue(session,
+                    PersoniumUnitConfig.getWebSocketOutboundQueueSize(),
+                    OutboundQueue.Overflow.of(PersoniumUnitConfig.getWebSocketOutboundOverflow()));
+        }
+    }
+
     // log
     private static Logger log = LoggerFactory.getLogger(WebSocketService.class);
 
-    private static final byte[] PING_DATA = new byte[]{1, 2, 3};
     private static final int PING_MAX = 10;
-    private static final int HEART_BEAT_TIME = 60000;
     private static final int EXPIRES_IN_SECONDS = 3600;
 
     // Keys of session user properties
-    private static final String KEY_PROPERTIES_CELL_ID = "cell_id";
-    private static final String KEY_PROPERTIES_ACCESS_TOKEN = "access_token";
-    private static final String KEY_PROPERTIES_RULES = "rules";
-    private static final String KEY_PROPERTIES_AUTHORIZED_TIME = "authorized_time";
-    private static final String KEY_PROPERTIES_HEART_BEAT = "heart_beat";
-    private static final String KEY_PROPERTIES_PING_COUNT = "ping_count";
+    private static final String KEY_PROPERTIES_SESSION_INFO = "session_info";
 
     // JSON Keys
     private static final String KEY_JSON_ACCESS_TOKEN = "AccessToken";
@@ -105,23 +123,43 @@ public class WebSocketService {
             "Invalid state type. Allowed status type: [" + STATE_TYPE_ALL + ", " + STATE_TYPE_SUBSCRIBE + "]";
 
     // session and cell id map for send event
-    private static Map<String, List<Session>> cellSessionMap = new HashMap<>(); // CellId: Session[]
-
-    // lock object
-    static Object lockObj = new Object();
+    private static Map<String, Set<SessionInfo>> cellSessionMap = new ConcurrentHashMap<>(); // CellId: Session[]
 
     private static ExecutorService pool;
 
+    // event dispatchers sharded by cell id
+    private static ExecutorService[] dispatchers;
+
+    // task keeping the event interests of cells with subscribers
+    private static ScheduledFuture<?> interestRefresher;
+
     /**
      * Start WebSocketService.
      */
     public static void start() {
+        HeartBeatService.start();
+
+        // create event dispatchers. events of a cell are always sent by the same dispatcher.
+        int dispatcherNum = Math.max(1, PersoniumUnitConfig.getWebSocketDispatcherThreadNum());
+        final ThreadFactoryBuilder dispatcherBuilder = new ThreadFactoryBuilder();
+        dispatcherBuilder.setNameFormat("ws-event-dispatcher-%d");
+        ExecutorService[] executors = new ExecutorService[dispatcherNum];
+        for (int i = 0; i < dispatcherNum; i++) {
+            executors[i] = Executors.newSingleThreadExecutor(dispatcherBuilder.build());
+        }
+        dispatchers = executors;
+
         // create thread pool.
         final ThreadFactoryBuilder builder = new ThreadFactoryBuilder();
         builder.setNameFormat("ws-event-subscriber-%d");
         pool = Executors.newFixedThreadPool(1, builder.build());
         // Execute receiver for for all event.
         pool.execute(new EventSubscribeRunner());
+
+        // keep telling the other nodes that events of the subscribed cells are observed.
+        long leaseTtl = TimeUnit.SECONDS.toMillis(PersoniumUnitConfig.getEventInterestLeaseTtl());
+        long interval = Math.max(MILLISECS_IN_A_SEC, leaseTtl / 3);
+        interestRefresher = HeartBeatService.schedule(WebSocketService::refreshEventInterests, interval, interval);
     }
 
     /**
@@ -137,6 +175,50 @@ public class WebSocketService {
         } catch (InterruptedException e) {
             pool.shutdownNow();
         }
+        if (interestRefresher != null) {
+            interestRefresher.cancel(false);
+            interestRefresher = null;
+        }
+        ExecutorService[] executors = dispatchers;
+        dispatchers = null;
+        if (executors != null) {
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+        }
+
+        HeartBeatService.stop();
+    }
+
+    /**
+     * Write the event interests of the cells which have subscriptions on this node.
+     */
+    private static void refreshEventInterests() {
+        cellSessionMap.forEach((cellId, sessions) -> {
+            if (hasSubscriptions(sessions)) {
+                EventInterest.refreshWebSocket(cellId);
+            }
+        });
+    }
+
+    /**
+     * Stop writing the event interest of the cell when it has no subscriptions left on this node.
+     * @param cellId cell id
+     */
+    private static void releaseEventInterest(String cellId) {
+        Set<SessionInfo> sessions = cellSessionMap.get(cellId);
+        if (sessions == null || !hasSubscriptions(sessions)) {
+            EventInterest.releaseWebSocket(cellId);
+        }
+    }
+
+    private static boolean hasSubscriptions(Set<SessionInfo> sessions) {
+        for (SessionInfo info : sessions) {
+            if (!info.rules.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
     }
 
    /**
@@ -149,51 +231,26 @@ public class WebSocketService {
         log.debug("ws: onOpen[" + cellName + "]: " + session.getId());
         Map<String, Object> userProperties = session.getUserProperties();
 
-        synchronized (lockObj) {
-            Cell cell = ModelFactory.cellFromName(cellName);
-            if (cell != null) {
-                String cellId = cell.getId();
-
-                List<Session> sessionList = cellSessionMap.get(cellId);
-                if (sessionList == null) {
-                    sessionList = new ArrayList<>();
-                }
-                if (!sessionList.contains(session)) {
-                    sessionList.add(session);
-                }
-                userProperties.put(KEY_PROPERTIES_CELL_ID, cellId);
-                userProperties.put(KEY_PROPERTIES_RULES, new ArrayList<RuleInfo>());
-                userProperties.put(KEY_PROPERTIES_PING_COUNT, 0);
-
-                cellSessionMap.put(cellId, sessionList);
+        String cellId = null;
+        Cell cell = ModelFactory.cellFromName(cellName);
+        if (cell != null) {
+            cellId = cell.getId();
+        } else {
+            log.warn("Connect cell name is not exist. : " + cellName);
+        }
+        SessionInfo info = new SessionInfo(session, cellId);
+        userProperties.put(KEY_PROPERTIES_SESSION_INFO, info);
+        addSessionInfo(info);
+
+        // heartbeat (send ping).
+        info.heartBeat = HeartBeatService.schedule(() -> {
+            // session closes if it is not received pong message PING_MAX times from the client.
+            if (info.sendPingCount.getAndIncrement() > PING_MAX) {
+                closeSession(session);
             } else {
-                log.warn("Connect cell name is not exist. : " + cellName);
+                HeartBeatService.sendPing(session);
             }
-
-            // heartbeat (send ping).
-            Timer heartBeatInterval = new Timer();
-            heartBeatInterval.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        synchronized (lockObj) {
-                            int sendPingCount = (int) userProperties.get(KEY_PROPERTIES_PING_COUNT);
-                            // session closes if it is not received pong message PING_MAX times from the client.
-                            if (sendPingCount > PING_MAX) {
-                                closeSession(session);
-                            } else {
-                                sendPingCount++;
-                                userProperties.put(KEY_PROPERTIES_PING_COUNT, sendPingCount);
-                                session.getBasicRemote().sendPing(ByteBuffer.wrap(PING_DATA));
-                            }
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            },  0, HEART_BEAT_TIME);
-            userProperties.put(KEY_PROPERTIES_HEART_BEAT, heartBeatInterval);
-        }
+        }, 0);
     }
 
     /**
@@ -217,8 +274,11 @@ public class WebSocketService {
      */
     @SuppressWarnings("unchecked")
     public void onMessage(String text, Session session) {
-        Map<String, Object> userProperties = session.getUserProperties();
-        String cellId = (String) userProperties.get(KEY_PROPERTIES_CELL_ID);
+        SessionInfo info = getSessionInfo(session);
+        if (info == null) {
+            return;
+        }
+        String cellId = info.cellId;
         log.debug("ws: onMessage[" + cellId + "]" + "[" + session.getId() + "] " + text);
 
         JSONParser parser = new JSONParser();
@@ -232,7 +292,7 @@ public class WebSocketService {
                 return;
             }
 
-            String accessToken = (String) userProperties.get(KEY_PROPERTIES_ACCESS_TOKEN);
+            String accessToken = info.accessToken;
             if (accessToken == null) {
                 JSONObject result = createResultJSONObject();
                 result.put(KEY_JSON_RESPONSE, KEY_JSON_ACCESS_TOKEN);
@@ -242,7 +302,7 @@ public class WebSocketService {
                 return;
             }
 
-            Date authorizedDate = (Date) userProperties.get(KEY_PROPERTIES_AUTHORIZED_TIME);
+            Date authorizedDate = info.authorizedTime;
             if (isExpired(authorizedDate)) {
                 log.debug("ws: token expired. session close.: " + cellId);
                 closeSession(session);
@@ -286,15 +346,16 @@ public class WebSocketService {
      */
     @SuppressWarnings("unchecked")
     private void onReceiveAccessToken(Session session, String receivedAccessToken) {
-        Map<String, Object> userProperties = session.getUserProperties();
-        String cellId = (String) userProperties.get(KEY_PROPERTIES_CELL_ID);
+        SessionInfo info = getSessionInfo(session);
+        String cellId = info.cellId;
         JSONObject result = createResultJSONObject();
 
         if (checkPrivilege(receivedAccessToken, cellId)) {
             log.debug("ws: set " + KEY_JSON_ACCESS_TOKEN);
 
-            userProperties.put(KEY_PROPERTIES_ACCESS_TOKEN, receivedAccessToken);
-            userProperties.put(KEY_PROPERTIES_AUTHORIZED_TIME, new Date());
+            // authorized time is set first, dispatchers read it after they see the token.
+            info.authorizedTime = new Date();
+            info.accessToken = receivedAccessToken;
             // ack
             result.put(KEY_JSON_RESPONSE, KEY_JSON_ACCESS_TOKEN);
             result.put(KEY_JSON_RESULT, RESPONSE_SUCCESS);
@@ -314,23 +375,23 @@ public class WebSocketService {
     @SuppressWarnings("unchecked")
     private void onReceiveSubscribe(Session session, JSONObject subscribeInfo) {
         log.debug("ws: set " + KEY_JSON_SUBSCRIBE + ": " + subscribeInfo);
-        Map<String, Object> userProperties = session.getUserProperties();
+        SessionInfo info = getSessionInfo(session);
         JSONObject result = createResultJSONObject();
 
         // want to register multi rules using Array ...
         String eventType = (String) subscribeInfo.get("Type");
         String eventObject = (String) subscribeInfo.get("Object");
         if (eventType != null && eventObject != null) {
-            synchronized (lockObj) {
-                List<RuleInfo> ruleList = (List<RuleInfo>) userProperties.get(KEY_PROPERTIES_RULES);
-                RuleInfo rule = new RuleInfo();
-                rule.type = eventType;
-                rule.object = eventObject;
-                ruleList.add(rule); // able to register same rule
-                // ack
-                result.put(KEY_JSON_RESPONSE, KEY_JSON_SUBSCRIBE);
-                result.put(KEY_JSON_RESULT, RESPONSE_SUCCESS);
+            RuleInfo rule = new RuleInfo();
+            rule.type = eventType;
+            rule.object = eventObject;
+            info.rules.add(rule); // able to register same rule
+            if (info.cellId != null) {
+                EventInterest.refreshWebSocket(info.cellId);
             }
+            // ack
+            result.put(KEY_JSON_RESPONSE, KEY_JSON_SUBSCRIBE);
+            result.put(KEY_JSON_RESULT, RESPONSE_SUCCESS);
         } else {
             result.put(KEY_JSON_RESPONSE, KEY_JSON_SUBSCRIBE);
             result.put(KEY_JSON_RESULT, RESPONSE_ERROR);
@@ -347,31 +408,30 @@ public class WebSocketService {
     @SuppressWarnings("unchecked")
     private void onReceiveUnsubscribe(Session session, JSONObject unsubscribeInfo) {
         log.debug("ws: " + KEY_JSON_UNSUBSCRIBE + ": " + unsubscribeInfo);
-        Map<String, Object> userProperties = session.getUserProperties();
+        SessionInfo info = getSessionInfo(session);
         JSONObject result = createResultJSONObject();
 
         String eventType = (String) unsubscribeInfo.get("Type");
         String eventObject = (String) unsubscribeInfo.get("Object");
         if (eventType != null && eventObject != null) {
-            synchronized (lockObj) {
-                List<RuleInfo> ruleList = (List<RuleInfo>) userProperties.get(KEY_PROPERTIES_RULES);
-                RuleInfo targetRule = null;
-                for (RuleInfo rule : ruleList) {
-                    if (rule.type.equals(eventType) && rule.object.equals(eventObject)) {
-                        targetRule = rule;
-                        break;
-                    }
+            RuleInfo targetRule = null;
+            for (RuleInfo rule : info.rules) {
+                if (rule.type.equals(eventType) && rule.object.equals(eventObject)) {
+                    targetRule = rule;
+                    break;
                 }
-                if (targetRule != null) {
-                    ruleList.remove(targetRule);
-                    // ack
-                    result.put(KEY_JSON_RESPONSE, KEY_JSON_UNSUBSCRIBE);
-                    result.put(KEY_JSON_RESULT, RESPONSE_SUCCESS);
-                } else {
-                    result.put(KEY_JSON_RESPONSE, KEY_JSON_UNSUBSCRIBE);
-                    result.put(KEY_JSON_RESULT, RESPONSE_ERROR);
-                    result.put(KEY_JSON_REASON, REASON_SUBSCRIBE_NOT_FOUND);
+            }
+            if (targetRule != null && info.rules.remove(targetRule)) {
+                if (info.cellId != null && info.rules.isEmpty()) {
+                    releaseEventInterest(info.cellId);
                 }
+                // ack
+                result.put(KEY_JSON_RESPONSE, KEY_JSON_UNSUBSCRIBE);
+                result.put(KEY_JSON_RESULT, RESPONSE_SUCCESS);
+            } else {
+                result.put(KEY_JSON_RESPONSE, KEY_JSON_UNSUBSCRIBE);
+                result.put(KEY_JSON_RESULT, RESPONSE_ERROR);
+                result.put(KEY_JSON_REASON, REASON_SUBSCRIBE_NOT_FOUND);
             }
         } else {
             result.put(KEY_JSON_RESPONSE, KEY_JSON_UNSUBSCRIBE);
@@ -389,21 +449,18 @@ public class WebSocketService {
     @SuppressWarnings("unchecked")
     private void onReceiveState(Session session, String state, Date authorizedDate) {
         log.debug("ws: " + KEY_JSON_STATE + ": " + state);
-        Map<String, Object> userProperties = session.getUserProperties();
-        String cellId = (String) userProperties.get(KEY_PROPERTIES_CELL_ID);
+        SessionInfo info = getSessionInfo(session);
+        String cellId = info.cellId;
         JSONObject result = createResultJSONObject();
 
         if (state.equals(STATE_TYPE_ALL)
                 ||  state.equals(STATE_TYPE_SUBSCRIBE)) {
             List<JSONObject> ruleJsonList = new ArrayList<>();
-            synchronized (lockObj) {
-                List<RuleInfo> ruleList = (List<RuleInfo>) userProperties.get(KEY_PROPERTIES_RULES);
-                for (RuleInfo rule : ruleList) {
-                    JSONObject ruleJson = new JSONObject();
-                    ruleJson.put("Type", rule.type);
-                    ruleJson.put("Object", rule.object);
-                    ruleJsonList.add(ruleJson);
-                }
+            for (RuleInfo rule : info.rules) {
+                JSONObject ruleJson = new JSONObject();
+                ruleJson.put("Type", rule.type);
+                ruleJson.put("Object", rule.object);
+                ruleJsonList.add(ruleJson);
             }
             if (state.equals(STATE_TYPE_SUBSCRIBE)) {
                 result.put(KEY_JSON_RESPONSE, KEY_JSON_STATE);
@@ -443,9 +500,9 @@ public class WebSocketService {
         log.debug("ws: External event Object: " + event.get("Object"));
         log.debug("ws: External event Info: " + event.get("Info"));
         log.debug("ws: External event RequestKey: " + event.get("RequestKey"));
-        Map<String, Object> userProperties = session.getUserProperties();
-        String cellId = (String) userProperties.get(KEY_PROPERTIES_CELL_ID);
-        String accessToken = (String) userProperties.get(KEY_PROPERTIES_ACCESS_TOKEN);
+        SessionInfo info = getSessionInfo(session);
+        String cellId = info.cellId;
+        String accessToken = info.accessToken;
 
         if (event.get("Type") != null && event.get("Object") != null && event.get("Info") != null) {
             try {
@@ -490,11 +547,9 @@ public class WebSocketService {
      * @param session session
      */
     public void onMessage(PongMessage pongMessage, Session session) {
-        synchronized (lockObj) {
-            int sendPingCount = (int) session.getUserProperties().get(KEY_PROPERTIES_PING_COUNT);
-            // log.debug("ws: receive pong message: " + session.getId() + ":" + sendPingCount);
-            sendPingCount--;
-            session.getUserProperties().put(KEY_PROPERTIES_PING_COUNT, sendPingCount);
+        SessionInfo info = getSessionInfo(session);
+        if (info != null) {
+            info.sendPingCount.getAndDecrement();
         }
     }
 
@@ -509,20 +564,36 @@ public class WebSocketService {
         closeSession(session);
     }
 
+    /**
+     * Register a session to receive the events of its cell.
+     * @param info session info
+     */
+    static void addSessionInfo(SessionInfo info) {
+        if (info.cellId == null) {
+            return;
+        }
+        cellSessionMap.compute(info.cellId, (key, sessions) -> {
+            Set<SessionInfo> set = sessions;
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(info);
+            return set;
+        });
+    }
+
     /**
      * Session close.
      * @param session disconnected session
      */
     private static void closeSession(Session session) {
         if (session != null && session.isOpen()) {
-            synchronized (lockObj) {
-                log.debug("ws: closeSession: " + session.getId());
-                removeSessionInfo(session);
-                try {
-                    session.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            log.debug("ws: closeSession: " + session.getId());
+            removeSessionInfo(session);
+            try {
+                session.close();
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
     }
@@ -531,104 +602,121 @@ public class WebSocketService {
      * Remove session info.
      * @param session disconnected session
      */
-    private static void removeSessionInfo(Session session) {
-        synchronized (lockObj) {
-            Map<String, Object> userProperties = session.getUserProperties();
-            String cellId = (String) userProperties.get(KEY_PROPERTIES_CELL_ID);
-
-            log.debug("ws: removeSessionInfo: " + cellId);
-
-            if (cellId != null) {
-                Timer heartBeatInterval = (Timer) userProperties.get(KEY_PROPERTIES_HEART_BEAT);
-                if (heartBeatInterval != null) {
-                    heartBeatInterval.cancel();
-                }
-
-                userProperties.remove(KEY_PROPERTIES_CELL_ID);
-                userProperties.remove(KEY_PROPERTIES_ACCESS_TOKEN);
-                userProperties.remove(KEY_PROPERTIES_RULES);
-                userProperties.remove(KEY_PROPERTIES_HEART_BEAT);
-                userProperties.remove(KEY_PROPERTIES_AUTHORIZED_TIME);
-                userProperties.remove(KEY_PROPERTIES_PING_COUNT);
-
-                List<Session> sessionList = cellSessionMap.get(cellId);
-                sessionList.remove(session);
+    static void removeSessionInfo(Session session) {
+        Object o = session.getUserProperties().remove(KEY_PROPERTIES_SESSION_INFO);
+        if (!(o instanceof SessionInfo)) {
+            return;
+        }
+        SessionInfo info = (SessionInfo) o;
+        log.debug("ws: removeSessionInfo: " + info.cellId);
 
-                if (sessionList.size() == 0) {
-                    cellSessionMap.remove(cellId);
-                }
+        ScheduledFuture<?> heartBeat = info.heartBeat;
+        if (heartBeat != null) {
+            heartBeat.cancel(false);
+        }
+        if (info.cellId != null) {
+            // the set of the cell is dropped atomically when its last session leaves.
+            cellSessionMap.computeIfPresent(info.cellId, (key, sessions) -> {
+                sessions.remove(info);
+                return sessions.isEmpty() ? null : sessions;
+            });
+            releaseEventInterest(info.cellId);
+        }
+    }
 
-            }
+    /**
+     * Get the info of a session.
+     * @param session websocket session
+     * @return session info, null if the session is already closed
+     */
+    private static SessionInfo getSessionInfo(Session session) {
+        Object o = session.getUserProperties().get(KEY_PROPERTIES_SESSION_INFO);
+        if (o instanceof SessionInfo) {
+            return (SessionInfo) o;
         }
+        return null;
     }
 
     /**
      * send text message to client with session.
+     * The message is queued and sent without waiting for the client.
      * @param session send-to websocket session
      * @param message sent text
      */
     private static void sendText(Session session, String message) {
-        if (session.isOpen()) {
-            try {
-                if (session.isOpen()) {
-                    session.getBasicRemote().sendText(message);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        SessionInfo info = getSessionInfo(session);
+        if (info != null) {
+            info.outbound.offer(message);
         }
     }
 
     /**
      * This method is called by EventSubscribeRunner.
+     * The event is handed to the dispatcher of its cell, so that events of a cell keep their order.
      * @param event send event of personium to all cell session
      */
-    static void sendEvent(PersoniumEvent event) {
+    static void dispatchEvent(PersoniumEvent event) {
         String cellId = event.getCellId();
-        String cellName = null;
-        Cell cell = ModelFactory.cellFromId(cellId);
-        if (cell != null) {
-            cellName = cell.getName();
+        if (cellId == null || !cellSessionMap.containsKey(cellId)) {
+            return;
+        }
+        ExecutorService[] executors = dispatchers;
+        if (executors == null) {
+            sendEvent(event);
+            return;
+        }
+        try {
+            executors[Math.floorMod(cellId.hashCode(), executors.length)].execute(() -> sendEvent(event));
+        } catch (RejectedExecutionException e) {
+            log.debug("ws: dispatcher is stopped. event dropped: " + cellId);
         }
-        log.debug("ws: sendEvent: " + cellName);
+    }
 
-        synchronized (lockObj) { // TODO better?
-            // send event data to all connecting session
-            try {
-                List<Session> sessionList = cellSessionMap.get(cellId);
-                List<Session> expiredSessionList = new ArrayList<>();
-                if (sessionList != null) {
-                    for (Session session : sessionList) {
-                        if (!session.isOpen()) {
-                            expiredSessionList.add(session);
-                            continue;
-                        }
-                        Map<String, Object> userProperties = session.getUserProperties();
-                        String accessToken = (String) userProperties.get(KEY_PROPERTIES_ACCESS_TOKEN);
-                        if (accessToken == null) {
-                            continue;
-                        }
-                        Date authorizedDate = (Date) userProperties.get(KEY_PROPERTIES_AUTHORIZED_TIME);
-                        if (isExpired(authorizedDate)) {
-                            log.debug("ws: token expired. " + cellId);
-                            expiredSessionList.add(session);
-                            continue;
-                        }
-                        if (!isExistMatchedRule(session, event)) {
-                            continue;
-                        }
-                        String sendMessage = toJSON(event).toJSONString();
-                        sendText(session, sendMessage);
-                        log.debug("ws: sent!: [" + cellId + "][" + session.getId() + "] " + sendMessage);
-                    }
-                    for (Session disconSession : expiredSessionList) {
-                        log.debug("ws: session close : ", disconSession.getId());
-                        closeSession(disconSession);
-                    }
+    /**
+     * Send an event to all sessions of the cell.
+     * @param event send event of personium to all cell session
+     */
+    static void sendEvent(PersoniumEvent event) {
+        String cellId = event.getCellId();
+        log.debug("ws: sendEvent: " + cellId);
+
+        // send event data to all connecting session
+        try {
+            Set<SessionInfo> sessions = cellSessionMap.get(cellId);
+            if (sessions == null) {
+                return;
+            }
+            List<Session> expiredSessionList = new ArrayList<>();
+            String sendMessage = null;
+            for (SessionInfo info : sessions) {
+                if (!info.session.isOpen()) {
+                    expiredSessionList.add(info.session);
+                    continue;
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+                if (info.accessToken == null) {
+                    continue;
+                }
+                if (isExpired(info.authorizedTime)) {
+                    log.debug("ws: token expired. " + cellId);
+                    expiredSessionList.add(info.session);
+                    continue;
+                }
+                if (!isExistMatchedRule(info, event)) {
+                    continue;
+                }
+                // serialized once for all sessions.
+                if (sendMessage == null) {
+                    sendMessage = toJSON(event).toJSONString();
+                }
+                info.outbound.offer(sendMessage);
+                log.debug("ws: sent!: [" + cellId + "][" + info.session.getId() + "] " + sendMessage);
             }
+            for (Session disconSession : expiredSessionList) {
+                log.debug("ws: session close : ", disconSession.getId());
+                closeSession(disconSession);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
@@ -653,37 +741,24 @@ public class WebSocketService {
 
     /**
      * if occured event match subscribed rules.
-     * @param session websocket session
+     * @param info websocket session info
      * @param event personium event
      * @return result of matching
      */
-    private static boolean isExistMatchedRule(Session session, PersoniumEvent event) {
+    private static boolean isExistMatchedRule(SessionInfo info, PersoniumEvent event) {
         boolean result = false;
-        List<?> ruleList = null;
-        Object o = session.getUserProperties().get(KEY_PROPERTIES_RULES);
-        if (o instanceof List<?>) {
-            ruleList = (List<?>) o;
-        }
-
-        if (ruleList != null && ruleList.size() > 0) {
-            for (Object item : ruleList) {
-                RuleInfo rule;
-                if (item instanceof RuleInfo) {
-                    rule = (RuleInfo) item;
-                } else {
-                    continue;
-                }
-                if (rule.type != null
-                    && event.getType().map(type -> type.startsWith(rule.type) || rule.type.equals("*"))
-                                      .orElse(false)
-                    && rule.object != null
-                    && event.getObject().map(object -> object.startsWith(rule.object) || rule.object.equals("*"))
-                                        .orElse(false)) {
-                    result = true;
-                }
+        for (RuleInfo rule : info.rules) {
+            if (rule.type != null
+                && event.getType().map(type -> type.startsWith(rule.type) || rule.type.equals("*"))
+                                  .orElse(false)
+                && rule.object != null
+                && event.getObject().map(object -> object.startsWith(rule.object) || rule.object.equals("*"))
+                                    .orElse(false)) {
+                result = true;
+                break;
             }
         }
-        log.debug("ws: isExistMatchedRule: sessionId= " + session.getId() + "/ result= " + result);
+        log.debug("ws: isExistMatchedRule: sessionId= " + info.session.getId() + "/ result= " + result);
         return result;
     }
 
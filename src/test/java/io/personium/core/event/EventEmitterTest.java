@@ -0,0 +1,212 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for EventEmitter.
+ */
+@Category({ Unit.class })
+public class EventEmitterTest {
+
+    /** Directory of spill files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Sender which blocks until released.
+     */
+    static class BlockingSender implements EventSender {
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void open(String queueName) {
+        }
+
+        @Override
+        public void send(PersoniumEvent event) {
+            first.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event.getObject().orElse(null));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Sender which fails to send batches and the given events.
+     */
+    static class FailingSender implements EventSender {
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final String failingObject;
+
+        FailingSender(String failingObject) {
+            this.failingObject = failingObject;
+        }
+
+        @Override
+        public void open(String queueName) {
+        }
+
+        @Override
+        public void send(PersoniumEvent event) {
+            if (failingObject.equals(event.getObject().orElse(null))) {
+                throw new IllegalStateException("broker is down");
+            }
+            received.add(event.getObject().orElse(null));
+        }
+
+        @Override
+        public void send(List<PersoniumEvent> events) {
+            throw new IllegalStateException("batch is rejected");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static PersoniumEvent event(String object) {
+        return new PersoniumEvent.Builder().type("test").object(object).build();
+    }
+
+    private static void waitForSent(EventEmitter emitter, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (emitter.getStatistics().get("sent") < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Test emit().
+     * Normal test.
+     * the oldest queued event is dropped when the queue is full.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void emit_Normal_oldest_event_is_dropped_when_queue_is_full() throws Exception {
+        BlockingSender sender = new BlockingSender();
+        EventEmitter emitter = new EventEmitter(() -> sender, 1, 2, 1, EventEmitter.Overflow.DROP_OLDEST, null);
+        emitter.start();
+        try {
+            emitter.emit(event("e1"));
+            assertTrue(sender.first.await(10, TimeUnit.SECONDS));
+            emitter.emit(event("e2"));
+            emitter.emit(event("e3"));
+            emitter.emit(event("e4"));
+            assertEquals(Long.valueOf(1), emitter.getStatistics().get("dropped"));
+            assertEquals(Long.valueOf(2), emitter.getStatistics().get("queued"));
+
+            sender.release.countDown();
+            waitForSent(emitter, 3);
+            assertEquals(Arrays.asList("e1", "e3", "e4"), sender.received);
+        } finally {
+            sender.release.countDown();
+            emitter.stop();
+        }
+    }
+
+    /**
+     * Test emit().
+     * Normal test.
+     * events spilled when the queue is full are sent when the queue becomes idle.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void emit_Normal_spilled_events_are_sent_later() throws Exception {
+        BlockingSender sender = new BlockingSender();
+        EventSpill spill = new EventSpill(folder.newFolder("spill"));
+        EventEmitter emitter = new EventEmitter(() -> sender, 1, 1, 10, EventEmitter.Overflow.SPILL, spill);
+        emitter.start();
+        try {
+            emitter.emit(event("e1"));
+            assertTrue(sender.first.await(10, TimeUnit.SECONDS));
+            emitter.emit(event("e2"));
+            emitter.emit(event("e3"));
+            assertEquals(Long.valueOf(1), emitter.getStatistics().get("spilled"));
+
+            sender.release.countDown();
+            waitForSent(emitter, 3);
+            assertEquals(Arrays.asList("e1", "e2", "e3"), sender.received);
+            assertEquals(Long.valueOf(0), emitter.getStatistics().get("dropped"));
+        } finally {
+            sender.release.countDown();
+            emitter.stop();
+        }
+    }
+
+    /**
+     * Test emit().
+     * Normal test.
+     * events of a batch which failed to be sent are sent one by one, and only the failing ones are dropped.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void emit_Normal_failed_batch_is_sent_one_by_one() throws Exception {
+        FailingSender sender = new FailingSender("e2");
+        EventEmitter emitter = new EventEmitter(() -> sender, 1, 10, 10, EventEmitter.Overflow.DROP_OLDEST, null);
+        emitter.start();
+        try {
+            emitter.emit(event("e1"));
+            emitter.emit(event("e2"));
+            emitter.emit(event("e3"));
+            waitForSent(emitter, 2);
+            assertEquals(Arrays.asList("e1", "e3"), sender.received);
+            assertEquals(Long.valueOf(1), emitter.getStatistics().get("failed"));
+        } finally {
+            emitter.stop();
+        }
+    }
+
+    /**
+     * Test Overflow.of().
+     * Normal test.
+     * unknown policies wait for space so that no event is lost by default.
+     */
+    @Test
+    public void overflow_of_Normal() {
+        assertEquals(EventEmitter.Overflow.DROP_OLDEST, EventEmitter.Overflow.of("drop-oldest"));
+        assertEquals(EventEmitter.Overflow.SPILL, EventEmitter.Overflow.of(" SPILL "));
+        assertEquals(EventEmitter.Overflow.BLOCK, EventEmitter.Overflow.of("block"));
+        assertEquals(EventEmitter.Overflow.BLOCK, EventEmitter.Overflow.of("unknown"));
+        assertEquals(EventEmitter.Overflow.BLOCK, EventEmitter.Overflow.of(null));
+    }
+}
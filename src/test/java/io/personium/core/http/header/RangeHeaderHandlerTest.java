@@ -454,28 +454,60 @@ public class RangeHeaderHandlerTest {
             long fileSize = 27;
             String rangeHeader = "bytes=1-1,2-2,3-3,4-4,5-5,6-6,7-7,8-8,9-9,10-10,11-11,12-12,13-13";
 
-            int exByteRangeSpecCount = 13;
+            long exInstanceLength = fileSize;
+            // 隣接するrange-byte-specは1-13にまとめられる
+            int exFirstBytePos1 = 1;
+            int exLastBytePos1 = 13;
+            int exByteRangeSpecCount = 1;
 
             RangeHeaderHandler range = RangeHeaderHandler.parse(rangeHeader, fileSize);
 
-            // 13個あること確認
-            assertEquals(exByteRangeSpecCount, range.getByteRangeSpecCount());
-            // ヘッダが有効であることの確認
-            assertEquals(true, range.isValid());
-            // 範囲外指定がないことの確認
-            assertEquals(true, range.isSatisfiable());
+            assertNormal(exInstanceLength, exFirstBytePos1, exLastBytePos1, exByteRangeSpecCount, 0, range);
+        }
+
+        /**
+         * 重なるbyte-range-specがひとつにまとめられること.
+         * @throws Exception Exception
+         */
+        @Test
+        public void 正常系マルチバイトレンジ重複() throws Exception {
+            long fileSize = 100;
+            String rangeHeader = "bytes=50-70,10-20,0-,15-30";
+
+            RangeHeaderHandler range = RangeHeaderHandler.parse(rangeHeader, fileSize);
+
+            assertNormal(fileSize, 0, 99, 1, 0, range);
+        }
+
+        /**
+         * 重なるbyte-range-specだけがまとめられ、先頭位置の順に並ぶこと.
+         * @throws Exception Exception
+         */
+        @Test
+        public void 正常系マルチバイトレンジ一部重複() throws Exception {
+            long fileSize = 100;
+            String rangeHeader = "bytes=60-70,10-20,15-31,33-40";
+
+            RangeHeaderHandler range = RangeHeaderHandler.parse(rangeHeader, fileSize);
+
+            assertNormal(fileSize, 10, 31, 3, 0, range);
+            assertNormal(fileSize, 33, 40, 3, 1, range);
+            assertNormal(fileSize, 60, 70, 3, 2, range);
+        }
+
+        /**
+         * 重ならないbyte-range-specは指定順のまま返されること.
+         * @throws Exception Exception
+         */
+        @Test
+        public void 正常系マルチバイトレンジ重複なし() throws Exception {
+            long fileSize = 100;
+            String rangeHeader = "bytes=60-70,10-20";
+
+            RangeHeaderHandler range = RangeHeaderHandler.parse(rangeHeader, fileSize);
 
-            // 各range-byte-specの値チェック
-            int exSize = 1;
-            for (ByteRangeSpec brs : range.getByteRangeSpecList()) {
-                assertEquals(exSize, brs.getFirstBytePos());
-                assertEquals(exSize, brs.getLastBytePos());
-                // Content-Lengthは全部１ 1-1,2-2,・・・なので
-                assertEquals(1, brs.getContentLength());
-                assertEquals(String.format("bytes %s-%s/%s", exSize, exSize, fileSize),
-                        brs.makeContentRangeHeaderField());
-                exSize++;
-            }
+            assertNormal(fileSize, 60, 70, 2, 0, range);
+            assertNormal(fileSize, 10, 20, 2, 1, range);
         }
 
         /**
@@ -26,6 +26,7 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
+        DavRsCmpTest.class,
         ModelFactoryTest.class
 })
 public class AllTests {
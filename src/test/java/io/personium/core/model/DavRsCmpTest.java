@@ -0,0 +1,230 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.http.HttpStatus;
+import org.apache.wink.webdav.model.Prop;
+import org.apache.wink.webdav.model.Propfind;
+import org.apache.wink.webdav.model.Response;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXParseException;
+
+import io.personium.core.PersoniumCoreException;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for DavRsCmp.
+ */
+@Category({ Unit.class })
+public class DavRsCmpTest {
+
+    /**
+     * Test createDavResponse().
+     * Normal.
+     * Only the properties requested by prop are created.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void createDavResponse_Normal_prop() throws Exception {
+        Propfind propfind = Propfind.unmarshal(new StringReader("<D:propfind xmlns:D=\"DAV:\">"
+                + "<D:prop><D:getcontentlength/><D:displayname/></D:prop></D:propfind>"));
+
+        DavCmp davCmp = mock(DavCmp.class);
+        doReturn(DavCmp.TYPE_DAV_FILE).when(davCmp).getType();
+        doReturn(4L).when(davCmp).getContentLength();
+        doReturn(1496130499857L).when(davCmp).getUpdated();
+        doReturn(1496130499857L).when(davCmp).getPublished();
+        Map<String, String> props = new HashMap<>();
+        // Not parsed unless requested.
+        props.put("hoge@urn:x-personium:xmlns", "<broken");
+        doReturn(props).when(davCmp).getProperties();
+
+        Response actual = DavRsCmp.createDavResponse("file", "https://example/file", davCmp, propfind, false);
+
+        Prop ok = actual.getPropstat(HttpStatus.SC_OK, null, null).getProp();
+        assertThat(ok.getGetcontentlength().getValue(), is("4"));
+        assertThat(ok.getGetlastmodified(), is(nullValue()));
+        assertThat(ok.getResourcetype(), is(nullValue()));
+        assertThat(ok.getAny().size(), is(0));
+        Prop notFound = actual.getPropstat(HttpStatus.SC_NOT_FOUND, null, null).getProp();
+        assertThat(notFound.getAny().size(), is(1));
+        assertThat(notFound.getAny().get(0).getLocalName(), is("displayname"));
+    }
+
+    /**
+     * Test createDavResponse().
+     * Normal.
+     * ACL is not read unless it is requested.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void createDavResponse_Normal_acl_not_requested() throws Exception {
+        Propfind propfind = Propfind.unmarshal(new StringReader("<D:propfind xmlns:D=\"DAV:\">"
+                + "<D:prop><D:getcontentlength/></D:prop></D:propfind>"));
+
+        DavCmp davCmp = mock(DavCmp.class);
+        doReturn(DavCmp.TYPE_DAV_FILE).when(davCmp).getType();
+        doReturn(4L).when(davCmp).getContentLength();
+
+        Response actual = DavRsCmp.createDavResponse("file", "https://example/file", davCmp, propfind, true);
+
+        Prop ok = actual.getPropstat(HttpStatus.SC_OK, null, null).getProp();
+        assertThat(ok.getGetcontentlength().getValue(), is("4"));
+        verify(davCmp, never()).getAcl();
+    }
+
+    /**
+     * Test DavMultistatusWriter.
+     * Normal.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void davMultistatusWriter_Normal() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DavMultistatusWriter writer = new DavMultistatusWriter(os);
+        writer.write(new Response("https://example/col"));
+        writer.write(new Response("https://example/col/file"));
+        writer.finish();
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(os.toByteArray()));
+        assertThat(new String(os.toByteArray(), StandardCharsets.UTF_8), startsWith("<?xml"));
+        assertThat(doc.getXmlEncoding(), is("UTF-8"));
+        Element root = doc.getDocumentElement();
+        assertThat(root.getNamespaceURI(), is("DAV:"));
+        assertThat(root.getLocalName(), is("multistatus"));
+        assertThat(root.getElementsByTagNameNS("DAV:", "response").getLength(), is(2));
+        assertThat(root.getElementsByTagNameNS("DAV:", "href").item(1).getTextContent(),
+                is("https://example/col/file"));
+    }
+
+    /**
+     * Test writeChildResponses().
+     * Normal.
+     * A child failing to load is reported with its own status and the others are still listed.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void writeChildResponses_Normal_failing_child() throws Exception {
+        DavCmp parent = mock(DavCmp.class);
+        doReturn(file()).when(parent).getChild("a");
+        doThrow(PersoniumCoreException.Dav.DAV_INCONSISTENCY_FOUND).when(parent).getChild("b");
+        DavCmp deleted = mock(DavCmp.class);
+        doReturn(false).when(deleted).exists();
+        doReturn(deleted).when(parent).getChild("c");
+        doReturn(file()).when(parent).getChild("d");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DavMultistatusWriter writer = new DavMultistatusWriter(os);
+        DavRsCmp.writeChildResponses(writer, parent, Arrays.asList("a", "b", "c", "d").iterator(),
+                "https://example/col", propfind(), false);
+        writer.finish();
+
+        Element root = parse(os.toByteArray()).getDocumentElement();
+        NodeList responses = root.getElementsByTagNameNS("DAV:", "response");
+        assertThat(responses.getLength(), is(3));
+        Element failed = (Element) responses.item(1);
+        assertThat(failed.getElementsByTagNameNS("DAV:", "href").item(0).getTextContent(),
+                is("https://example/col/b"));
+        assertThat(failed.getElementsByTagNameNS("DAV:", "status").item(0).getTextContent(),
+                is(DavRsCmp.STATUS_LINE_INTERNAL_SERVER_ERROR));
+        assertThat(((Element) responses.item(2)).getElementsByTagNameNS("DAV:", "href").item(0).getTextContent(),
+                is("https://example/col/d"));
+    }
+
+    /**
+     * Test writeChildResponses().
+     * Error.
+     * When listing the children fails after the status is sent, the body is left without the end tag,
+     * so that the client does not take the partial list as a complete one.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void writeChildResponses_Error_listing_failure_truncates_body() throws Exception {
+        DavCmp parent = mock(DavCmp.class);
+        doReturn(file()).when(parent).getChild("a");
+        Iterator<String> names = Arrays.asList("a", "b").stream().map(name -> {
+            if ("b".equals(name)) {
+                throw PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND;
+            }
+            return name;
+        }).iterator();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DavMultistatusWriter writer = new DavMultistatusWriter(os);
+        try {
+            DavRsCmp.writeChildResponses(writer, parent, names, "https://example/col", propfind(), false);
+            fail("Not exception.");
+        } catch (PersoniumCoreException e) {
+            assertThat(e.getCode(), is(PersoniumCoreException.Dav.FS_INCONSISTENCY_FOUND.getCode()));
+        }
+
+        try {
+            parse(os.toByteArray());
+            fail("Truncated body is parsed.");
+        } catch (SAXParseException e) {
+            // the multistatus is not closed
+        }
+    }
+
+    private static Propfind propfind() throws Exception {
+        return Propfind.unmarshal(new StringReader("<D:propfind xmlns:D=\"DAV:\">"
+                + "<D:prop><D:getcontentlength/></D:prop></D:propfind>"));
+    }
+
+    private static DavCmp file() {
+        DavCmp davCmp = mock(DavCmp.class);
+        doReturn(true).when(davCmp).exists();
+        doReturn(DavCmp.TYPE_DAV_FILE).when(davCmp).getType();
+        doReturn(4L).when(davCmp).getContentLength();
+        doReturn(new HashMap<String, String>()).when(davCmp).getProperties();
+        return davCmp;
+    }
+
+    private static Document parse(byte[] bytes) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        return dbf.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+    }
+}
@@ -26,7 +26,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    BinaryDataAccessorTest.class
+    BinaryDataAccessorTest.class,
+    ChunkedDataCryptorTest.class
     })
 public class AllTests {
 }
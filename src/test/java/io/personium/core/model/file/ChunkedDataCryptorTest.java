@@ -0,0 +1,114 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.file;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.common.file.DataCryptor;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for ChunkedDataCryptor.
+ */
+@Category({ Unit.class })
+public class ChunkedDataCryptorTest {
+
+    private static final String AES_KEY = "abcdef0123456789";
+    private static final String CELL_ID = "PersoniumTestCellId";
+    private static final int CHUNK_SIZE = 64;
+
+    private Path file;
+
+    /**
+     * Prepare for test.
+     * @throws Exception exception occurred in some errors
+     */
+    @Before
+    public void prepareForTest() throws Exception {
+        DataCryptor.setKeyString(AES_KEY);
+        file = Files.createTempFile("chunked", ".dat");
+        Files.delete(file);
+    }
+
+    /**
+     * Destroy resources used in test.
+     * @throws Exception exception occurred in some errors
+     */
+    @After
+    public void destroyResources() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test encode() and decode().
+     * Normal test.
+     * content is decrypted from any position.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void decode_Normal_content_is_decrypted_from_any_position() throws Exception {
+        byte[] content = new byte[CHUNK_SIZE * 3 + 5];
+        new Random(0).nextBytes(content);
+        long length = ChunkedDataCryptor.encode(new ByteArrayInputStream(content), file, CELL_ID, CHUNK_SIZE);
+        assertThat(length, is((long) content.length));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int position : new int[] {0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE * 2 + 7, content.length}) {
+                InputStream input = ChunkedDataCryptor.decode(channel, position, CELL_ID, null);
+                byte[] expected = Arrays.copyOfRange(content, position, content.length);
+                assertArrayEquals(expected, IOUtils.toByteArray(input));
+            }
+        }
+    }
+
+    /**
+     * Test encode() and decode().
+     * Normal test.
+     * equal chunks are encrypted to different bytes.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void encode_Normal_equal_chunks_are_encrypted_differently() throws Exception {
+        byte[] content = new byte[CHUNK_SIZE * 2];
+        ChunkedDataCryptor.encode(new ByteArrayInputStream(content), file, CELL_ID, CHUNK_SIZE);
+
+        byte[] encrypted = Files.readAllBytes(file);
+        int encryptedChunkSize = CHUNK_SIZE + 32;
+        int first = ChunkedDataCryptor.HEADER_LENGTH;
+        int second = first + encryptedChunkSize;
+        assertThat(encrypted.length, is(second + encryptedChunkSize));
+        assertThat(Arrays.equals(Arrays.copyOfRange(encrypted, first, second),
+                Arrays.copyOfRange(encrypted, second, encrypted.length)), is(false));
+    }
+}
@@ -27,7 +27,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     EsModelTest.class,
-    CellEsImplTest.class
+    CellEsImplTest.class,
+    TransCellRoleIndexTest.class
     })
 public class AllTests {
 }
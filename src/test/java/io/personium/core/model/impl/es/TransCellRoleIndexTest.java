@@ -0,0 +1,274 @@
+/**
+ * Personium
+ * Copyright 2014-2022 Personium Project Authors
+ * - FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import io.personium.common.auth.token.IExtRoleContainingToken;
+import io.personium.common.auth.token.Role;
+import io.personium.common.es.response.PersoniumSearchHit;
+import io.personium.common.es.response.PersoniumSearchHits;
+import io.personium.common.es.response.PersoniumSearchResponse;
+import io.personium.core.model.ctl.Common;
+import io.personium.core.model.ctl.ExtCell;
+import io.personium.core.model.ctl.ExtRole;
+import io.personium.core.model.ctl.Relation;
+import io.personium.core.model.impl.es.accessor.EntitySetAccessor;
+import io.personium.core.model.impl.es.accessor.ODataLinkAccessor;
+import io.personium.core.model.impl.es.doc.LinkDocHandler;
+import io.personium.core.model.impl.es.doc.OEntityDocHandler;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for TransCellRoleIndex.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ EsModel.class })
+@Category({ Unit.class })
+public class TransCellRoleIndexTest {
+
+    private static final String CELL_ID = "cellId";
+    private static final String CELL_URL = "https://cell.example/";
+    private static final String EXT_CELL_URL = "https://ext.example/";
+    private static final String ISSUER_URL = "https://issuer.example/";
+    /** Smaller than the number of Relation-Role links, so that they are acquired over several pages. */
+    private static final int PAGE_SIZE = 2;
+
+    private Role extCellRole = new Role("extCellRole", "box", null, CELL_URL);
+    private Role relationRole = new Role("relationRole", "box", null, CELL_URL);
+    private Role relationRole2 = new Role("relationRole2", "box", null, CELL_URL);
+    private Role relationRole3 = new Role("relationRole3", "box", null, CELL_URL);
+    private Role extRoleRole = new Role("extRoleRole", null, null, CELL_URL);
+    private Role tokenRole = new Role("remote", "__", null, EXT_CELL_URL);
+
+    private Map<String, Role> roles = new HashMap<String, Role>();
+    private List<PersoniumSearchHit> links = new ArrayList<PersoniumSearchHit>();
+    private ODataLinkAccessor linkAccessor;
+
+    private TransCellRoleIndex index;
+
+    /**
+     * Before.
+     * Builds the index from the searched settings of the cell.
+     * @throws Exception Unexpected error
+     */
+    @Before
+    public void before() throws Exception {
+        roles.put("extCellRoleId", extCellRole);
+        roles.put("relationRoleId", relationRole);
+        roles.put("relationRoleId2", relationRole2);
+        roles.put("relationRoleId3", relationRole3);
+        roles.put("extRoleRoleId", extRoleRole);
+
+        Map<String, Object> extCell = new HashMap<String, Object>();
+        extCell.put(OEntityDocHandler.KEY_STATIC_FIELDS, map(Common.P_URL.getName(), EXT_CELL_URL));
+        Map<String, Object> extRole = new HashMap<String, Object>();
+        extRole.put(OEntityDocHandler.KEY_STATIC_FIELDS, map(ExtRole.EDM_TYPE_NAME, tokenRole.toRoleInstanceURL()));
+        extRole.put(OEntityDocHandler.KEY_LINK, map(Relation.EDM_TYPE_NAME, "relationId"));
+
+        addLink(ExtCell.EDM_TYPE_NAME, "extCellId", Role.EDM_TYPE_NAME, "extCellRoleId");
+        addLink(ExtCell.EDM_TYPE_NAME, "extCellId", Relation.EDM_TYPE_NAME, "relationId");
+        addLink(Relation.EDM_TYPE_NAME, "relationId", Role.EDM_TYPE_NAME, "relationRoleId");
+        addLink(Relation.EDM_TYPE_NAME, "relationId", Role.EDM_TYPE_NAME, "relationRoleId2");
+        addLink(Relation.EDM_TYPE_NAME, "relationId", Role.EDM_TYPE_NAME, "relationRoleId3");
+        addLink(ExtRole.EDM_TYPE_NAME, "extRoleId", Role.EDM_TYPE_NAME, "extRoleRoleId");
+
+        CellEsImpl cell = mock(CellEsImpl.class);
+        when(cell.getId()).thenReturn(CELL_ID);
+        when(cell.getRolesByIds(anyCollection(), eq(false))).thenAnswer(this::rolesByIds);
+
+        PowerMockito.mockStatic(EsModel.class);
+        EntitySetAccessor extCellAccessor = mockEntitySet(Arrays.asList(hit("extCellId", extCell)));
+        EntitySetAccessor extRoleAccessor = mockEntitySet(Arrays.asList(hit("extRoleId", extRole)));
+        PowerMockito.when(EsModel.cellCtl(cell, ExtCell.EDM_TYPE_NAME)).thenReturn(extCellAccessor);
+        PowerMockito.when(EsModel.cellCtl(cell, ExtRole.EDM_TYPE_NAME)).thenReturn(extRoleAccessor);
+        linkAccessor = mock(ODataLinkAccessor.class);
+        when(linkAccessor.search(any())).thenAnswer(this::searchLinks);
+        PowerMockito.when(EsModel.cellCtlLink(cell)).thenReturn(linkAccessor);
+
+        index = TransCellRoleIndex.build(cell, PAGE_SIZE);
+    }
+
+    /**
+     * ExtCellとRelationとExtRoleに紐付くRoleが返却されること.
+     */
+    @Test
+    public void ExtCellとRelationとExtRoleに紐付くRoleが返却されること() {
+        IExtRoleContainingToken token = mockToken(EXT_CELL_URL,
+                EXT_CELL_URL + "#me", Arrays.asList(tokenRole));
+        List<Role> ret = index.getRoleList(token);
+        assertTrue(ret.contains(extCellRole));
+        assertTrue(ret.contains(relationRole));
+        assertTrue(ret.contains(extRoleRole));
+    }
+
+    /**
+     * 検索の上限件数を超えるRelationのRoleが全て返却されること.
+     */
+    @Test
+    public void 検索の上限件数を超えるRelationのRoleが全て返却されること() {
+        IExtRoleContainingToken token = mockToken(EXT_CELL_URL,
+                EXT_CELL_URL + "#me", Collections.<Role>emptyList());
+        List<Role> ret = index.getRoleList(token);
+        assertTrue(ret.contains(relationRole));
+        assertTrue(ret.contains(relationRole2));
+        assertTrue(ret.contains(relationRole3));
+        // 1 page for each of 3 link types, 2 pages for Relation-Role
+        verify(linkAccessor, atLeast(5)).search(any());
+    }
+
+    /**
+     * トークンのRoleに一致しないExtRoleのRoleが返却されないこと.
+     */
+    @Test
+    public void トークンのRoleに一致しないExtRoleのRoleが返却されないこと() {
+        IExtRoleContainingToken token = mockToken(EXT_CELL_URL,
+                EXT_CELL_URL + "#me", Collections.<Role>emptyList());
+        List<Role> ret = index.getRoleList(token);
+        assertTrue(ret.contains(extCellRole));
+        assertTrue(ret.contains(relationRole));
+        assertTrue(!ret.contains(extRoleRole));
+    }
+
+    /**
+     * 登録されていないCellのトークンに空のリストが返却されること.
+     */
+    @Test
+    public void 登録されていないCellのトークンに空のリストが返却されること() {
+        IExtRoleContainingToken token = mockToken(ISSUER_URL,
+                ISSUER_URL + "#me", Arrays.asList(tokenRole));
+        List<Role> ret = index.getRoleList(token);
+        assertEquals(0, ret.size());
+    }
+
+    private IExtRoleContainingToken mockToken(String issuer, String subject, List<Role> tokenRoles) {
+        IExtRoleContainingToken token = mock(IExtRoleContainingToken.class);
+        when(token.getIssuer()).thenReturn(issuer);
+        when(token.getSubject()).thenReturn(subject);
+        when(token.getExtCellUrl()).thenReturn(issuer);
+        when(token.getRoleList()).thenReturn(tokenRoles);
+        return token;
+    }
+
+    private Map<String, Role> rolesByIds(InvocationOnMock invocation) {
+        Map<String, Role> ret = new HashMap<String, Role>();
+        for (Object id : (Collection<?>) invocation.getArgument(0)) {
+            ret.put((String) id, roles.get(id));
+        }
+        return ret;
+    }
+
+    private void addLink(String ent1Type, String ent1Id, String ent2Type, String ent2Id) {
+        Map<String, Object> source = new HashMap<String, Object>();
+        source.put(LinkDocHandler.KEY_CELL_ID, CELL_ID);
+        source.put(LinkDocHandler.KEY_ENT1_TYPE, ent1Type);
+        source.put(LinkDocHandler.KEY_ENT1_ID, ent1Id);
+        source.put(LinkDocHandler.KEY_ENT2_TYPE, ent2Type);
+        source.put(LinkDocHandler.KEY_ENT2_ID, ent2Id);
+        links.add(hit(ent1Id + "-" + ent2Id, source));
+    }
+
+    /**
+     * Search the links matching all term queries in the query, returning the requested page only.
+     */
+    @SuppressWarnings("unchecked")
+    private PersoniumSearchResponse searchLinks(InvocationOnMock invocation) {
+        Map<String, Object> source = invocation.getArgument(0);
+        Map<String, Object> terms = new HashMap<String, Object>();
+        collectTerms(source.get("query"), terms);
+        List<PersoniumSearchHit> matched = new ArrayList<PersoniumSearchHit>();
+        for (PersoniumSearchHit link : links) {
+            if (link.getSource().entrySet().containsAll(terms.entrySet())) {
+                matched.add(link);
+            }
+        }
+        return page(matched, source);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectTerms(Object query, Map<String, Object> terms) {
+        if (query instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) query;
+            if (map.get("term") instanceof Map) {
+                terms.putAll((Map<String, Object>) map.get("term"));
+            }
+            for (Object value : map.values()) {
+                collectTerms(value, terms);
+            }
+        } else if (query instanceof List) {
+            for (Object value : (List<Object>) query) {
+                collectTerms(value, terms);
+            }
+        }
+    }
+
+    private static EntitySetAccessor mockEntitySet(List<PersoniumSearchHit> hits) {
+        EntitySetAccessor accessor = mock(EntitySetAccessor.class);
+        when(accessor.search(any())).thenAnswer(invocation -> page(hits, invocation.getArgument(0)));
+        return accessor;
+    }
+
+    private static PersoniumSearchResponse page(List<PersoniumSearchHit> hits, Map<String, Object> source) {
+        int from = ((Number) source.get("from")).intValue();
+        int size = ((Number) source.get("size")).intValue();
+        List<PersoniumSearchHit> page = hits.subList(Math.min(from, hits.size()), Math.min(from + size, hits.size()));
+        PersoniumSearchHits searchHits = mock(PersoniumSearchHits.class);
+        when(searchHits.getHits()).thenReturn(page.toArray(new PersoniumSearchHit[page.size()]));
+        PersoniumSearchResponse res = mock(PersoniumSearchResponse.class);
+        when(res.getHits()).thenReturn(searchHits);
+        return res;
+    }
+
+    private static PersoniumSearchHit hit(String id, Map<String, Object> source) {
+        PersoniumSearchHit hit = mock(PersoniumSearchHit.class);
+        when(hit.getId()).thenReturn(id);
+        when(hit.getSource()).thenReturn(source);
+        return hit;
+    }
+
+    private static Map<String, Object> map(String key, Object value) {
+        Map<String, Object> ret = new HashMap<String, Object>();
+        ret.put(key, value);
+        return ret;
+    }
+}
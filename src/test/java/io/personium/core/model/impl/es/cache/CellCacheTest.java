@@ -25,11 +25,14 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
@@ -50,6 +53,14 @@ import io.personium.test.categories.Unit;
 @PrepareForTest({CellCache.class, PersoniumUnitConfig.class })
 public class CellCacheTest {
 
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        CellCache.localCache.invalidateAll();
+    }
+
     /**
      * Memcachedへの接続に失敗した場合NULLを返すこと.
      * @throws Exception テスト中の例外
@@ -216,4 +227,94 @@ public class CellCacheTest {
         assertThat(mockMemcachedClient.get(cacheKeyForMock, Map.class)).isNull();
     }
 
+    /**
+     * CellのIDでキャッシュの登録取得削除ができること.
+     * @throws Exception 実行エラー
+     */
+    @Test
+    public void CellのIDでキャッシュの登録取得削除ができること() throws Exception {
+
+        String cellName = "cellCacheTestCell";
+        String cellId = "cellCacheTestCellId";
+        Map<String, Object> cellToCache = new HashMap<String, Object>();
+        cellToCache.put(CellCache.KEY_ID, cellId);
+
+        // テスト用のキャッシュクラスに接続するよう設定を変更
+        MockMemcachedClient mockMemcachedClient = new MockMemcachedClient();
+        PowerMockito.spy(CellCache.class);
+        PowerMockito.when(CellCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+
+        // キャッシュの設定を有効にする
+        PowerMockito.spy(PersoniumUnitConfig.class);
+        PowerMockito.when(PersoniumUnitConfig.class, "isCellCacheEnabled").thenReturn(true);
+
+        // Cell名とIDの両方でキャッシュに登録されること
+        CellCache.cache(cellName, cellToCache);
+        assertThat(mockMemcachedClient.get("cellid:" + cellId, Map.class)).isEqualTo(cellToCache);
+        assertThat(CellCache.getById(cellId)).isEqualTo(cellToCache);
+
+        // Cell名で削除するとIDのキャッシュも削除されること
+        CellCache.clear(cellName);
+        assertThat(mockMemcachedClient.get("cellid:" + cellId, Map.class)).isNull();
+        assertThat(CellCache.getById(cellId)).isNull();
+        assertThat(CellCache.get(cellName)).isNull();
+    }
+
+    /**
+     * プロセス内にキャッシュされたCellはMemcachedにアクセスせず取得できること.
+     * @throws Exception 実行エラー
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void プロセス内にキャッシュされたCellはMemcachedにアクセスせず取得できること() throws Exception {
+        String cellId = "cellCacheTestCellId";
+        Map<String, Object> cell = new HashMap<String, Object>();
+        cell.put(CellCache.KEY_ID, cellId);
+        Constructor<MemcachedClient> c = MemcachedClient.class.getDeclaredConstructor();
+        c.setAccessible(true);
+        MemcachedClient mockMemcachedClient = spy(c.newInstance());
+        doReturn(cell).when(mockMemcachedClient).get(anyString(), any(Class.class));
+
+        PowerMockito.spy(CellCache.class);
+        PowerMockito.when(CellCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+
+        PowerMockito.spy(PersoniumUnitConfig.class);
+        PowerMockito.when(PersoniumUnitConfig.class, "isCellCacheEnabled").thenReturn(true);
+
+        // 1回目はMemcachedから取得し、2回目はプロセス内のキャッシュから取得すること
+        assertEquals(cell, CellCache.getById(cellId));
+        assertEquals(cell, CellCache.getById(cellId));
+        verify(mockMemcachedClient, times(1)).get(anyString(), any(Class.class));
+    }
+
+    /**
+     * Cell名による取得はプロセス内にキャッシュせず毎回Memcachedから取得すること.
+     * 削除後に同じ名前で作成されたCellを返すため.
+     * @throws Exception 実行エラー
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void Cell名による取得はプロセス内にキャッシュせず毎回Memcachedから取得すること() throws Exception {
+        String cellName = "cellCacheTestCell";
+        Map<String, Object> deleted = new HashMap<String, Object>();
+        deleted.put(CellCache.KEY_ID, "deletedCellId");
+        Map<String, Object> recreated = new HashMap<String, Object>();
+        recreated.put(CellCache.KEY_ID, "recreatedCellId");
+        Constructor<MemcachedClient> c = MemcachedClient.class.getDeclaredConstructor();
+        c.setAccessible(true);
+        MemcachedClient mockMemcachedClient = spy(c.newInstance());
+        doReturn(deleted).doReturn(recreated).when(mockMemcachedClient).get(anyString(), any(Class.class));
+
+        PowerMockito.spy(CellCache.class);
+        PowerMockito.when(CellCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+
+        PowerMockito.spy(PersoniumUnitConfig.class);
+        PowerMockito.when(PersoniumUnitConfig.class, "isCellCacheEnabled").thenReturn(true);
+
+        // 他のノードで削除、再作成されたCellを取得できること
+        assertEquals(deleted, CellCache.get(cellName));
+        assertEquals(recreated, CellCache.get(cellName));
+        verify(mockMemcachedClient, times(2)).get(anyString(), any(Class.class));
+        assertNull(CellCache.localCache.getIfPresent(CellCache.cacheKey(cellName)));
+    }
 }
@@ -0,0 +1,77 @@
+/**
+ * Personium
+ * Copyright 2014-2022 Personium Project Authors
+ * - FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for CellCtlCache.
+ */
+@Category({ Unit.class })
+public class CellCtlCacheTest {
+
+    /**
+     * 同じバージョンで取得した場合キャッシュした値が返却されること.
+     */
+    @Test
+    public void 同じバージョンで取得した場合キャッシュした値が返却されること() {
+        String cellId = "cell_cachetest_001";
+        Long version = CellCtlCache.version(cellId);
+        CellCtlCache.cache(cellId, "key", version, "value");
+        assertEquals("value", CellCtlCache.get(cellId, "key", CellCtlCache.version(cellId), String.class));
+    }
+
+    /**
+     * キャッシュをクリアした場合バージョンが更新され値が返却されないこと.
+     */
+    @Test
+    public void キャッシュをクリアした場合バージョンが更新され値が返却されないこと() {
+        String cellId = "cell_cachetest_002";
+        Long version = CellCtlCache.version(cellId);
+        CellCtlCache.cache(cellId, "key", version, "value");
+
+        CellCtlCache.clear(cellId);
+        Long newVersion = CellCtlCache.version(cellId);
+        assertNotEquals(version, newVersion);
+        assertNull(CellCtlCache.get(cellId, "key", newVersion, String.class));
+    }
+
+    /**
+     * 取得中にクリアされた値はキャッシュされないこと.
+     */
+    @Test
+    public void 取得中にクリアされた値はキャッシュされないこと() {
+        String cellId = "cell_cachetest_003";
+        Long version = CellCtlCache.version(cellId);
+        // Changed while loading the value.
+        CellCtlCache.clear(cellId);
+        Long newVersion = CellCtlCache.version(cellId);
+        CellCtlCache.cache(cellId, "other", newVersion, "latest");
+
+        CellCtlCache.cache(cellId, "key", version, "stale");
+        assertNull(CellCtlCache.get(cellId, "key", newVersion, String.class));
+        assertEquals("latest", CellCtlCache.get(cellId, "other", newVersion, String.class));
+    }
+}
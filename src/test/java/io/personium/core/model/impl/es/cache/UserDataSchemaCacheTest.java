@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.odata4j.edm.EdmDataServices;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -427,4 +428,90 @@ public class UserDataSchemaCacheTest {
         UserDataSchemaCache.clear(nodeId);
         assertThat(mockMemcachedClient.get(cacheKeyForMock, Map.class)).isNull();
     }
+
+    /**
+     * 登録済みキャッシュとバージョンが一致する場合パース済みスキーマを返すこと.
+     * @throws Exception 実行エラー
+     */
+    @Test
+    public void 登録済みキャッシュとバージョンが一致する場合パース済みスキーマを返すこと() throws Exception {
+        String nodeId = "node_PPPPPPPPP1";
+        Map<String, Object> schemaToCache = createSchemaToCache();
+
+        MockMemcachedClient mockMemcachedClient = new MockMemcachedClient();
+        PowerMockito.spy(UserDataSchemaCache.class);
+        PowerMockito.when(UserDataSchemaCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+        PowerMockito.spy(PersoniumUnitConfig.class);
+        PowerMockito.when(PersoniumUnitConfig.class, "isSchemaCacheEnabled").thenReturn(true);
+
+        // キャッシュ登録時にバージョンが付与されること
+        UserDataSchemaCache.cache(nodeId, schemaToCache);
+        assertThat(schemaToCache.get(UserDataSchemaCache.KEY_VERSION)).isNotNull();
+
+        EdmDataServices metadata = EdmDataServices.newBuilder().build();
+        UserDataSchemaCache.cacheParsed(nodeId, schemaToCache, metadata);
+
+        UserDataSchemaCache.ParsedSchema parsed = UserDataSchemaCache.getParsed(nodeId,
+                UserDataSchemaCache.get(nodeId));
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.getMetadata()).isSameAs(metadata);
+        assertEquals("id001", parsed.getEntityTypeIds().get("Type001"));
+    }
+
+    /**
+     * 登録済みキャッシュとバージョンが異なる場合パース済みスキーマを返さないこと.
+     * @throws Exception 実行エラー
+     */
+    @Test
+    public void 登録済みキャッシュとバージョンが異なる場合パース済みスキーマを返さないこと() throws Exception {
+        String nodeId = "node_PPPPPPPPP2";
+        Map<String, Object> schemaToCache = createSchemaToCache();
+
+        MockMemcachedClient mockMemcachedClient = new MockMemcachedClient();
+        PowerMockito.spy(UserDataSchemaCache.class);
+        PowerMockito.when(UserDataSchemaCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+        PowerMockito.spy(PersoniumUnitConfig.class);
+        PowerMockito.when(PersoniumUnitConfig.class, "isSchemaCacheEnabled").thenReturn(true);
+
+        UserDataSchemaCache.cache(nodeId, schemaToCache);
+        UserDataSchemaCache.cacheParsed(nodeId, schemaToCache, EdmDataServices.newBuilder().build());
+
+        // 他ノードでスキーマが再登録された場合
+        Map<String, Object> schemaFromOtherNode = createSchemaToCache();
+        UserDataSchemaCache.cache(nodeId, schemaFromOtherNode);
+        assertNull(UserDataSchemaCache.getParsed(nodeId, UserDataSchemaCache.get(nodeId)));
+    }
+
+    /**
+     * キャッシュを無効化した場合パース済みスキーマが破棄されること.
+     * @throws Exception 実行エラー
+     */
+    @Test
+    public void キャッシュを無効化した場合パース済みスキーマが破棄されること() throws Exception {
+        String nodeId = "node_PPPPPPPPP3";
+        Map<String, Object> schemaToCache = createSchemaToCache();
+
+        MockMemcachedClient mockMemcachedClient = new MockMemcachedClient();
+        PowerMockito.spy(UserDataSchemaCache.class);
+        PowerMockito.when(UserDataSchemaCache.class, "getMcdClient").thenReturn(mockMemcachedClient);
+        PowerMockito.spy(PersoniumUnitConfig.class);
+        PowerMockito.when(PersoniumUnitConfig.class, "isSchemaCacheEnabled").thenReturn(true);
+
+        UserDataSchemaCache.cache(nodeId, schemaToCache);
+        UserDataSchemaCache.cacheParsed(nodeId, schemaToCache, EdmDataServices.newBuilder().build());
+
+        UserDataSchemaCache.disable(nodeId);
+        assertNull(UserDataSchemaCache.getParsed(nodeId, schemaToCache));
+    }
+
+    private Map<String, Object> createSchemaToCache() {
+        Map<String, String> entityTypeIds = new HashMap<String, String>();
+        entityTypeIds.put("Type001", "id001");
+        Map<String, Object> schema = new HashMap<String, Object>();
+        schema.put("entityTypeIds", entityTypeIds);
+        schema.put("propertyAliasMap", new HashMap<String, Object>());
+        schema.put("entityTypeMap", new HashMap<String, String>());
+        schema.put("edmx", "");
+        return schema;
+    }
 }
@@ -32,6 +32,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -58,6 +59,8 @@ import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -87,6 +90,7 @@ import io.personium.core.model.file.StreamingOutputForDavFile;
 import io.personium.core.model.file.StreamingOutputForDavFileWithRange;
 import io.personium.core.model.impl.es.EsModel;
 import io.personium.core.model.impl.es.accessor.CellDataAccessor;
+import io.personium.core.model.jaxb.Ace;
 import io.personium.core.model.jaxb.Acl;
 import io.personium.core.model.lock.Lock;
 import io.personium.core.model.lock.LockManager;
@@ -111,6 +115,10 @@ public class DavCmpFsImplTest {
     private static final String CONTENT_FILE = "content";
     /** Temp content file name for update. */
     private static final String TEMP_CONTENT_FILE = "tmp";
+    /** New content file name. */
+    private static final String NEW_CONTENT_FILE = "content.new";
+    /** Staging file name for put. */
+    private static final String STAGING_FILE = "tmp.staged";
     /** Source file name for move. */
     private static final String SOURCE_FILE = "source";
     /** Dest file name for move. */
@@ -171,7 +179,9 @@ public class DavCmpFsImplTest {
     @Test
     public void doPutForCreate_Normal_encrypt_false() throws Exception {
         String contentPath = unitTestPath + CONTENT_FILE;
+        String stagingPath = unitTestPath + STAGING_FILE;
         File contentFile = new File(contentPath);
+        File stagingFile = new File(stagingPath);
         InputStream inputStream = null;
         FileInputStream contentStream = null;
         try {
@@ -195,6 +205,7 @@ public class DavCmpFsImplTest {
             Whitebox.setInternalState(davCmpFsImpl, "fsPath", unitTestPath);
 
             PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(stagingPath).when(davCmpFsImpl, "getStagingFilePath");
 
             DavMetadataFile davMetaDataFile = mock(DavMetadataFile.class);
             PowerMockito.mockStatic(DavMetadataFile.class);
@@ -219,10 +230,12 @@ public class DavCmpFsImplTest {
             // Run method
             // --------------------
             // Load methods for private
-            Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForCreate", String.class, InputStream.class);
+            Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForCreate", String.class,
+                    DavCmpFsImpl.StagedContent.class);
             method.setAccessible(true);
             // Run method
-            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType, inputStream);
+            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType,
+                    davCmpFsImpl.stageContent(inputStream));
 
             // --------------------
             // Confirm result
@@ -239,6 +252,7 @@ public class DavCmpFsImplTest {
             assertThat(encryptionTypeCaptor.getValue(), is(DataCryptor.ENCRYPTION_TYPE_NONE));
 
             assertThat(contentFile.exists(), is(contentFileExists));
+            assertThat(stagingFile.exists(), is(false));
             contentStream = new FileInputStream(contentFile);
             assertThat(md5Hex(contentStream), is(sourceFileMD5));
             assertThat(actual.build().getStatus(), is(expected.build().getStatus()));
@@ -251,6 +265,7 @@ public class DavCmpFsImplTest {
                 contentStream.close();
             }
             contentFile.delete();
+            stagingFile.delete();
         }
     }
 
@@ -263,7 +278,9 @@ public class DavCmpFsImplTest {
     @Test
     public void doPutForCreate_Normal_encrypt_true() throws Exception {
         String contentPath = unitTestPath + CONTENT_FILE;
+        String stagingPath = unitTestPath + STAGING_FILE;
         File contentFile = new File(contentPath);
+        File stagingFile = new File(stagingPath);
         InputStream inputStream = null;
         FileInputStream contentStream = null;
         try {
@@ -288,6 +305,7 @@ public class DavCmpFsImplTest {
             Whitebox.setInternalState(davCmpFsImpl, "fsPath", unitTestPath);
 
             PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(stagingPath).when(davCmpFsImpl, "getStagingFilePath");
 
             DavMetadataFile davMetaDataFile = mock(DavMetadataFile.class);
             PowerMockito.mockStatic(DavMetadataFile.class);
@@ -312,10 +330,12 @@ public class DavCmpFsImplTest {
             // Run method
             // --------------------
             // Load methods for private
-            Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForCreate", String.class, InputStream.class);
+            Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForCreate", String.class,
+                    DavCmpFsImpl.StagedContent.class);
             method.setAccessible(true);
             // Run method
-            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType, inputStream);
+            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType,
+                    davCmpFsImpl.stageContent(inputStream));
 
             // --------------------
             // Confirm result
@@ -332,6 +352,7 @@ public class DavCmpFsImplTest {
             assertThat(encryptionTypeCaptor.getValue(), is(DataCryptor.ENCRYPTION_TYPE_AES));
 
             assertThat(contentFile.exists(), is(contentFileExists));
+            assertThat(stagingFile.exists(), is(false));
             contentStream = new FileInputStream(contentFile);
             assertThat(md5Hex(contentStream), is(sourceFileMD5));
             assertThat(actual.build().getStatus(), is(expected.build().getStatus()));
@@ -345,6 +366,7 @@ public class DavCmpFsImplTest {
                 contentStream.close();
             }
             contentFile.delete();
+            stagingFile.delete();
         }
     }
 
@@ -357,11 +379,13 @@ public class DavCmpFsImplTest {
     @Test
     public void doPutForUpdate_Normal_encrypt_false() throws Exception {
         String contentPath = unitTestPath + CONTENT_FILE;
-        String tempContentPath = unitTestPath + TEMP_CONTENT_FILE;
+        String newContentPath = unitTestPath + NEW_CONTENT_FILE;
+        String stagingPath = unitTestPath + STAGING_FILE;
         InputStream inputStream = null;
         FileInputStream contentStream = null;
         File contentFile = new File(contentPath);
-        File tempContentFile = new File(tempContentPath);
+        File newContentFile = new File(newContentPath);
+        File stagingFile = new File(stagingPath);
         try {
             contentFile.createNewFile();
             // --------------------
@@ -388,20 +412,21 @@ public class DavCmpFsImplTest {
 
             doReturn(CELL_ID).when(davCmpFsImpl).getCellId();
 
-            PowerMockito.doReturn(tempContentPath).when(davCmpFsImpl, "getTempContentFilePath");
+            PowerMockito.doReturn(newContentPath).when(davCmpFsImpl, "getNewContentFilePath");
             PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(stagingPath).when(davCmpFsImpl, "getStagingFilePath");
 
             doNothing().when(davMetaDataFile).setUpdated(anyLong());
             doNothing().when(davMetaDataFile).setContentType(anyString());
             doNothing().when(davMetaDataFile).setContentLength(anyLong());
             doNothing().when(davMetaDataFile).setEncryptionType(anyString());
+            doNothing().when(davMetaDataFile).setContentFileName(anyString());
             doNothing().when(davMetaDataFile).save();
 
             // --------------------
             // Expected result
             // --------------------
-            boolean contentFileExists = true;
-            boolean tempFileExists = false;
+            boolean newContentFileExists = true;
             String sourceFileMD5 = md5Hex(getSystemResourceAsStream("davFile/file01.txt"));
             ResponseBuilder expected = Response.ok().status(SC_NO_CONTENT).header(ETAG, "\"1-1487652733383\"");
 
@@ -410,10 +435,11 @@ public class DavCmpFsImplTest {
             // --------------------
             // Load methods for private
             Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForUpdate",
-                    String.class, InputStream.class, String.class);
+                    String.class, DavCmpFsImpl.StagedContent.class, String.class);
             method.setAccessible(true);
             // Run method
-            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType, inputStream, etag);
+            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType,
+                    davCmpFsImpl.stageContent(inputStream), etag);
 
             // --------------------
             // Confirm result
@@ -421,18 +447,23 @@ public class DavCmpFsImplTest {
             ArgumentCaptor<String> contentTypeCaptor = ArgumentCaptor.forClass(String.class);
             ArgumentCaptor<Long> contentLengthCaptor = ArgumentCaptor.forClass(Long.class);
             ArgumentCaptor<String> encryptionTypeCaptor = ArgumentCaptor.forClass(String.class);
+            ArgumentCaptor<String> contentFileNameCaptor = ArgumentCaptor.forClass(String.class);
             verify(davMetaDataFile, times(1)).setUpdated(anyLong());
             verify(davMetaDataFile, times(1)).setContentType(contentTypeCaptor.capture());
             verify(davMetaDataFile, times(1)).setContentLength(contentLengthCaptor.capture());
             verify(davMetaDataFile, times(1)).setEncryptionType(encryptionTypeCaptor.capture());
+            verify(davMetaDataFile, times(1)).setContentFileName(contentFileNameCaptor.capture());
             verify(davMetaDataFile, times(1)).save();
             assertThat(contentTypeCaptor.getValue(), is(contentType));
             assertThat(contentLengthCaptor.getValue(), is(15L));
             assertThat(encryptionTypeCaptor.getValue(), is(DataCryptor.ENCRYPTION_TYPE_NONE));
 
-            assertThat(contentFile.exists(), is(contentFileExists));
-            assertThat(tempContentFile.exists(), is(tempFileExists));
-            contentStream = new FileInputStream(contentFile);
+            assertThat(contentFileNameCaptor.getValue(), is(NEW_CONTENT_FILE));
+
+            // the replaced content file is deleted later.
+            assertThat(newContentFile.exists(), is(newContentFileExists));
+            assertThat(stagingFile.exists(), is(false));
+            contentStream = new FileInputStream(newContentFile);
             assertThat(md5Hex(contentStream), is(sourceFileMD5));
             assertThat(actual.build().getStatus(), is(expected.build().getStatus()));
             assertThat(actual.build().getMetadata().toString(), is(expected.build().getMetadata().toString()));
@@ -444,7 +475,91 @@ public class DavCmpFsImplTest {
                 contentStream.close();
             }
             contentFile.delete();
-            tempContentFile.delete();
+            newContentFile.delete();
+            stagingFile.delete();
+        }
+    }
+
+    /**
+     * Test doPutForUpdate().
+     * normal.
+     * The source of a service collection is replaced in place, as the engine reads it by the fixed name.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void doPutForUpdate_Normal_service_source() throws Exception {
+        String contentPath = unitTestPath + CONTENT_FILE;
+        String newContentPath = unitTestPath + NEW_CONTENT_FILE;
+        String stagingPath = unitTestPath + STAGING_FILE;
+        InputStream inputStream = null;
+        FileInputStream contentStream = null;
+        File contentFile = new File(contentPath);
+        File newContentFile = new File(newContentPath);
+        File stagingFile = new File(stagingPath);
+        try {
+            Files.write(contentFile.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+            // --------------------
+            // Test method args
+            // --------------------
+            String contentType = "text/javascript";
+            inputStream = getSystemResourceAsStream("davFile/file01.txt");
+
+            // --------------------
+            // Mock settings
+            // --------------------
+            davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+            DavMetadataFile davMetaDataFile = mock(DavMetadataFile.class);
+            Whitebox.setInternalState(davCmpFsImpl, "metaFile", davMetaDataFile);
+
+            doNothing().when(davCmpFsImpl).load();
+            doReturn(true).when(davCmpFsImpl).exists();
+            doReturn("\"1-1487652733383\"").when(davCmpFsImpl).getEtag();
+
+            PowerMockito.mockStatic(PersoniumUnitConfig.class);
+            PowerMockito.doReturn(false).when(PersoniumUnitConfig.class, "isDavEncryptEnabled");
+
+            doReturn(CELL_ID).when(davCmpFsImpl).getCellId();
+
+            PowerMockito.doReturn(true).when(davCmpFsImpl, "isServiceSource");
+            PowerMockito.doReturn(newContentPath).when(davCmpFsImpl, "getNewContentFilePath");
+            PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getFixedContentFilePath");
+            PowerMockito.doReturn(stagingPath).when(davCmpFsImpl, "getStagingFilePath");
+
+            // --------------------
+            // Expected result
+            // --------------------
+            String sourceFileMD5 = md5Hex(getSystemResourceAsStream("davFile/file01.txt"));
+
+            // --------------------
+            // Run method
+            // --------------------
+            Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForUpdate",
+                    String.class, DavCmpFsImpl.StagedContent.class, String.class);
+            method.setAccessible(true);
+            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType,
+                    davCmpFsImpl.stageContent(inputStream), null);
+
+            // --------------------
+            // Confirm result
+            // --------------------
+            verify(davMetaDataFile, times(1)).setContentFileName(null);
+            verify(davMetaDataFile, times(1)).save();
+            assertThat(newContentFile.exists(), is(false));
+            assertThat(stagingFile.exists(), is(false));
+            contentStream = new FileInputStream(contentFile);
+            assertThat(md5Hex(contentStream), is(sourceFileMD5));
+            assertThat(actual.build().getStatus(), is(SC_NO_CONTENT));
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (contentStream != null) {
+                contentStream.close();
+            }
+            contentFile.delete();
+            newContentFile.delete();
+            stagingFile.delete();
         }
     }
 
@@ -457,11 +572,13 @@ public class DavCmpFsImplTest {
     @Test
     public void doPutForUpdate_Normal_encrypt_true() throws Exception {
         String contentPath = unitTestPath + CONTENT_FILE;
-        String tempContentPath = unitTestPath + TEMP_CONTENT_FILE;
+        String newContentPath = unitTestPath + NEW_CONTENT_FILE;
+        String stagingPath = unitTestPath + STAGING_FILE;
         InputStream inputStream = null;
         FileInputStream contentStream = null;
         File contentFile = new File(contentPath);
-        File tempContentFile = new File(tempContentPath);
+        File newContentFile = new File(newContentPath);
+        File stagingFile = new File(stagingPath);
         try {
             contentFile.createNewFile();
             // --------------------
@@ -489,20 +606,21 @@ public class DavCmpFsImplTest {
             doReturn(CELL_ID).when(davCmpFsImpl).getCellId();
             DataCryptor.setKeyString(AES_KEY);
 
-            PowerMockito.doReturn(tempContentPath).when(davCmpFsImpl, "getTempContentFilePath");
+            PowerMockito.doReturn(newContentPath).when(davCmpFsImpl, "getNewContentFilePath");
             PowerMockito.doReturn(contentPath).when(davCmpFsImpl, "getContentFilePath");
+            PowerMockito.doReturn(stagingPath).when(davCmpFsImpl, "getStagingFilePath");
 
             doNothing().when(davMetaDataFile).setUpdated(anyLong());
             doNothing().when(davMetaDataFile).setContentType(anyString());
             doNothing().when(davMetaDataFile).setContentLength(anyLong());
             doNothing().when(davMetaDataFile).setEncryptionType(anyString());
+            doNothing().when(davMetaDataFile).setContentFileName(anyString());
             doNothing().when(davMetaDataFile).save();
 
             // --------------------
             // Expected result
             // --------------------
-            boolean contentFileExists = true;
-            boolean tempFileExists = false;
+            boolean newContentFileExists = true;
             String sourceFileMD5 = md5Hex(getSystemResourceAsStream("davFile/encrypt01.txt"));
             ResponseBuilder expected = Response.ok().status(SC_NO_CONTENT).header(ETAG, "\"1-1487652733383\"");
 
@@ -511,10 +629,11 @@ public class DavCmpFsImplTest {
             // --------------------
             // Load methods for private
             Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForUpdate",
-                    String.class, InputStream.class, String.class);
+                    String.class, DavCmpFsImpl.StagedContent.class, String.class);
             method.setAccessible(true);
             // Run method
-            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType, inputStream, etag);
+            ResponseBuilder actual = (ResponseBuilder) method.invoke(davCmpFsImpl, contentType,
+                    davCmpFsImpl.stageContent(inputStream), etag);
 
             // --------------------
             // Confirm result
@@ -522,18 +641,23 @@ public class DavCmpFsImplTest {
             ArgumentCaptor<String> contentTypeCaptor = ArgumentCaptor.forClass(String.class);
             ArgumentCaptor<Long> contentLengthCaptor = ArgumentCaptor.forClass(Long.class);
             ArgumentCaptor<String> encryptionTypeCaptor = ArgumentCaptor.forClass(String.class);
+            ArgumentCaptor<String> contentFileNameCaptor = ArgumentCaptor.forClass(String.class);
             verify(davMetaDataFile, times(1)).setUpdated(anyLong());
             verify(davMetaDataFile, times(1)).setContentType(contentTypeCaptor.capture());
             verify(davMetaDataFile, times(1)).setContentLength(contentLengthCaptor.capture());
             verify(davMetaDataFile, times(1)).setEncryptionType(encryptionTypeCaptor.capture());
+            verify(davMetaDataFile, times(1)).setContentFileName(contentFileNameCaptor.capture());
             verify(davMetaDataFile, times(1)).save();
             assertThat(contentTypeCaptor.getValue(), is(contentType));
             assertThat(contentLengthCaptor.getValue(), is(94L));
             assertThat(encryptionTypeCaptor.getValue(), is(DataCryptor.ENCRYPTION_TYPE_AES));
 
-            assertThat(contentFile.exists(), is(contentFileExists));
-            assertThat(tempContentFile.exists(), is(tempFileExists));
-            contentStream = new FileInputStream(contentFile);
+            assertThat(contentFileNameCaptor.getValue(), is(NEW_CONTENT_FILE));
+
+            // the replaced content file is deleted later.
+            assertThat(newContentFile.exists(), is(newContentFileExists));
+            assertThat(stagingFile.exists(), is(false));
+            contentStream = new FileInputStream(newContentFile);
             assertThat(md5Hex(contentStream), is(sourceFileMD5));
             assertThat(actual.build().getStatus(), is(expected.build().getStatus()));
             assertThat(actual.build().getMetadata().toString(), is(expected.build().getMetadata().toString()));
@@ -545,7 +669,8 @@ public class DavCmpFsImplTest {
                 contentStream.close();
             }
             contentFile.delete();
-            tempContentFile.delete();
+            newContentFile.delete();
+            stagingFile.delete();
         }
     }
 
@@ -561,11 +686,15 @@ public class DavCmpFsImplTest {
         String tempContentPath = unitTestPath + TEMP_CONTENT_FILE;
         File contentFile = new File(contentPath);
         File tempContentFile = new File(tempContentPath);
+        File stagingFile = new File(unitTestPath + STAGING_FILE);
         try {
             contentFile.createNewFile();
             // Test method args
             String contentType = "application/json";
             InputStream inputStream = getSystemResourceAsStream("request/unit/cell-create.txt");
+            Files.copy(inputStream, stagingFile.toPath());
+            DavCmpFsImpl.StagedContent content = new DavCmpFsImpl.StagedContent(stagingFile,
+                    stagingFile.length(), DataCryptor.ENCRYPTION_TYPE_NONE);
             String etag = "\"1-1487652733383\"";
 
             // Expected result
@@ -583,12 +712,12 @@ public class DavCmpFsImplTest {
 
             // Load methods for private
             Method method = DavCmpFsImpl.class.getDeclaredMethod("doPutForUpdate",
-                    String.class, InputStream.class, String.class);
+                    String.class, DavCmpFsImpl.StagedContent.class, String.class);
             method.setAccessible(true);
 
             // Run method
             try {
-                method.invoke(davCmpFsImpl, contentType, inputStream, etag);
+                method.invoke(davCmpFsImpl, contentType, content, etag);
                 fail("Not throws exception.");
             } catch (InvocationTargetException e) {
                 // Confirm result
@@ -606,6 +735,7 @@ public class DavCmpFsImplTest {
         } finally {
             contentFile.delete();
             tempContentFile.delete();
+            stagingFile.delete();
         }
     }
 
@@ -1095,6 +1225,32 @@ public class DavCmpFsImplTest {
         }
     }
 
+    /**
+     * Test putForUpdate().
+     * Error case.
+     * ETag not match is found before the body is staged.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void putForUpdate_Error_Not_match_ETag_before_staging() throws Exception {
+        // Mock settings
+        davCmpFsImpl = PowerMockito.spy(DavCmpFsImpl.create("", null));
+        doReturn(true).when(davCmpFsImpl).exists();
+        PowerMockito.doReturn(false).when(davCmpFsImpl, "matchesETag", anyString());
+        InputStream inputStream = mock(InputStream.class);
+
+        try {
+            // Run method
+            davCmpFsImpl.putForUpdate("text/plain", inputStream, "\"1-1487652733383\"");
+            fail("Not throws exception.");
+        } catch (PersoniumCoreException e) {
+            // Confirm result
+            assertThat(e.getCode(), is(PersoniumCoreException.Dav.ETAG_NOT_MATCH.getCode()));
+        }
+        verify(davCmpFsImpl, never()).stageContent(any());
+        verify(davCmpFsImpl, never()).lock();
+    }
+
     /**
      * Test makeEmpty().
      * normal.
@@ -1292,6 +1448,46 @@ public class DavCmpFsImplTest {
         assertThat(actual, is(expected));
     }
 
+    /**
+     * Test getAcl().
+     * normal.
+     * Principals are translated only once when the ACL is used.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void getAcl_Normal_translate_principal_when_used() throws Exception {
+        // Test method args
+        Acl stored = new Acl();
+        stored.setRequireSchemaAuthz("public");
+        Ace ace = new Ace();
+        ace.setPrincipalHref("roleId");
+        ace.addGrantedPrivilege("read");
+        stored.getAceList().add(ace);
+        JSONObject storedJson = (JSONObject) new JSONParser().parse(stored.toJSON());
+
+        // Mock settings
+        davCmpFsImpl = spy(DavCmpFsImpl.class);
+        Cell cell = mock(Cell.class);
+        doReturn("https://personium/cell/").when(cell).getUrl();
+        doReturn("https://personium/cell/__role/__/role1").when(cell).roleIdToRoleResourceUrl("roleId");
+        Whitebox.setInternalState(davCmpFsImpl, "cell", cell);
+        Whitebox.setInternalState(davCmpFsImpl, "storedAcl", storedJson);
+
+        // Run method
+        String confidentialLevel = davCmpFsImpl.getConfidentialLevel();
+        // Confirm result
+        assertThat(confidentialLevel, is("public"));
+        verify(cell, never()).roleIdToRoleResourceUrl(anyString());
+
+        // Run method
+        Acl actual = davCmpFsImpl.getAcl();
+        davCmpFsImpl.getAcl();
+        // Confirm result
+        assertThat(actual.getAceList().size(), is(1));
+        assertThat(actual.getAceList().get(0).getPrincipalHref(), is("role1"));
+        verify(cell, times(1)).roleIdToRoleResourceUrl("roleId");
+    }
+
     /**
      * A mock subclass of DavCmpFsImpl for use from other unit tests.
      * It is defined here for the following reasons.
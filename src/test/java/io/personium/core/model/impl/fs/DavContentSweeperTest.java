@@ -0,0 +1,135 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for DavContentSweeper.
+ */
+@Category({ Unit.class })
+public class DavContentSweeperTest {
+
+    /** Directory of a Dav file. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        PersoniumUnitConfig.reload();
+    }
+
+    /**
+     * Test retire().
+     * Normal test.
+     * the replaced file is kept during the retention and older leftovers are deleted.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void retire_Normal_kept_during_retention() throws Exception {
+        PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.RETIRED_CONTENT_RETENTION, "600");
+        Path dir = folder.getRoot().toPath();
+        Path retired = Files.write(dir.resolve("content"), "v1".getBytes(StandardCharsets.UTF_8));
+        Path current = Files.write(dir.resolve("content.v2"), "v2".getBytes(StandardCharsets.UTF_8));
+        Path leftover = Files.write(dir.resolve("content.v0"), "v0".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(leftover,
+                FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(1200)));
+
+        DavContentSweeper.retire(retired, current.getFileName().toString());
+
+        assertThat(Files.exists(retired), is(true));
+        assertThat(Files.exists(current), is(true));
+        assertThat(Files.exists(leftover), is(false));
+    }
+
+    /**
+     * Test retire().
+     * Normal test.
+     * a reader which has opened the replaced file keeps reading it after it is deleted,
+     * so the retention does not need to cover the whole download on this node.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void retire_Normal_open_reader_survives_deletion() throws Exception {
+        PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.RETIRED_CONTENT_RETENTION, "0");
+        Path dir = folder.getRoot().toPath();
+        Path retired = Files.write(dir.resolve("content"), "v1".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("content.v2"), "v2".getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel reader = FileChannel.open(retired, StandardOpenOption.READ)) {
+            DavContentSweeper.retire(retired, "content.v2");
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (Files.exists(retired) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(Files.exists(retired), is(false));
+
+            ByteBuffer buf = ByteBuffer.allocate(16);
+            reader.read(buf);
+            buf.flip();
+            assertThat(StandardCharsets.UTF_8.decode(buf).toString(), is("v1"));
+        }
+    }
+
+    /**
+     * Test sweepStagingFiles().
+     * Normal test.
+     * only the staging files older than the expiry are deleted.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void sweepStagingFiles_Normal_old_staging_files_deleted() throws Exception {
+        Path dir = folder.newFolder("box", "col", "file").toPath();
+        Path content = Files.write(dir.resolve("content.v1"), "v1".getBytes(StandardCharsets.UTF_8));
+        Path left = Files.write(dir.resolve(DavCmpFsImpl.STAGING_FILE_PREFIX + "left"),
+                "v2".getBytes(StandardCharsets.UTF_8));
+        Path writing = Files.write(dir.resolve(DavCmpFsImpl.STAGING_FILE_PREFIX + "writing"),
+                "v3".getBytes(StandardCharsets.UTF_8));
+        long now = System.currentTimeMillis();
+        FileTime old = FileTime.fromMillis(now - DavContentSweeper.STAGING_FILE_EXPIRY - TimeUnit.HOURS.toMillis(1));
+        Files.setLastModifiedTime(content, old);
+        Files.setLastModifiedTime(left, old);
+
+        DavContentSweeper.sweepStagingFiles(folder.getRoot().toPath(), now - DavContentSweeper.STAGING_FILE_EXPIRY);
+
+        assertThat(Files.exists(content), is(true));
+        assertThat(Files.exists(left), is(false));
+        assertThat(Files.exists(writing), is(true));
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.impl.fs;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import io.personium.common.file.DataCryptor;
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.DavCmp;
+import io.personium.core.model.file.ChunkedDataCryptor;
+import io.personium.core.model.lock.Lock;
+import io.personium.core.model.lock.LockManager;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for DavEncryptionMigrator.
+ */
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.crypto.*" })
+@PrepareForTest({ LockManager.class })
+@Category({ Unit.class })
+public class DavEncryptionMigratorTest {
+
+    private static final String AES_KEY = "abcdef0123456789";
+    private static final String CELL_ID = "PersoniumTestCellId";
+    private static final String BOX_ID = "PersoniumTestBoxId";
+    private static final int CONTENT_LENGTH = 1000;
+
+    /** Directory of a box. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] data = new byte[CONTENT_LENGTH];
+
+    /**
+     * Before.
+     */
+    @Before
+    public void before() {
+        DataCryptor.setKeyString(AES_KEY);
+        PersoniumUnitConfig.set(PersoniumUnitConfig.Lock.TYPE, LockManager.TYPE_IN_PROCESS);
+        PersoniumUnitConfig.set(PersoniumUnitConfig.Security.DAV_ENCRYPT_ENABLED, "true");
+        PersoniumUnitConfig.set(PersoniumUnitConfig.Security.DAV_ENCRYPT_CHUNK_SIZE, "64");
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+    }
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        PersoniumUnitConfig.reload();
+    }
+
+    /**
+     * Test migrate().
+     * Normal test.
+     * the content is rewritten into the chunked format and no staging file is left.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void migrate_Normal_rewritten_into_chunks() throws Exception {
+        Path dir = createAesFile(folder.getRoot().toPath().resolve("col/file"));
+
+        boolean migrated = new DavEncryptionMigrator(folder.getRoot().toPath()).migrate(CELL_ID, BOX_ID, dir);
+
+        assertThat(migrated, is(true));
+        DavMetadataFile metadata = DavMetadataFile.newInstance(dir.toString());
+        metadata.load();
+        assertThat(metadata.getEncryptionType(), is(ChunkedDataCryptor.ENCRYPTION_TYPE_AES_CHUNKED));
+        try (FileChannel channel = FileChannel.open(dir.resolve(metadata.getContentFileName()),
+                StandardOpenOption.READ);
+                InputStream input = ChunkedDataCryptor.decode(channel, 0, CELL_ID, null)) {
+            assertArrayEquals(data, IOUtils.toByteArray(input));
+        }
+        assertThat(countStagingFiles(), is(0L));
+    }
+
+    /**
+     * Test migrate().
+     * Normal test.
+     * service sources are kept without chunks for the engine.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void migrate_Normal_service_source_is_skipped() throws Exception {
+        Path svcDir = folder.newFolder("svc").toPath();
+        DavMetadataFile.prepareNewFile(svcDir.resolve(DavMetadataFile.DAV_META_FILE_NAME).toFile(),
+                DavCmp.TYPE_COL_SVC).save();
+        Path dir = createAesFile(svcDir.resolve(DavCmp.SERVICE_SRC_COLLECTION + "/source.js"));
+
+        boolean migrated = new DavEncryptionMigrator(folder.getRoot().toPath()).migrate(CELL_ID, BOX_ID, dir);
+
+        assertThat(migrated, is(false));
+        DavMetadataFile metadata = DavMetadataFile.newInstance(dir.toString());
+        metadata.load();
+        assertThat(metadata.getEncryptionType(), is(DataCryptor.ENCRYPTION_TYPE_AES));
+    }
+
+    /**
+     * Test migrate().
+     * Normal test.
+     * the file updated while encoding without the lock is left for the next run.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void migrate_Normal_file_updated_meanwhile_is_skipped() throws Exception {
+        Path dir = createAesFile(folder.getRoot().toPath().resolve("col/file"));
+        PowerMockito.mockStatic(LockManager.class);
+        PowerMockito.when(LockManager.getLock(anyString(), any(), anyString(), any())).thenAnswer(invocation -> {
+            // updated by a request just before the lock is acquired
+            DavMetadataFile metadata = DavMetadataFile.newInstance(
+                    dir.resolve(DavMetadataFile.DAV_META_FILE_NAME).toFile());
+            metadata.load();
+            metadata.setUpdated(System.currentTimeMillis());
+            metadata.save();
+            return mock(Lock.class);
+        });
+
+        boolean migrated = new DavEncryptionMigrator(folder.getRoot().toPath()).migrate(CELL_ID, BOX_ID, dir);
+
+        assertThat(migrated, is(false));
+        DavMetadataFile metadata = DavMetadataFile.newInstance(dir.toString());
+        metadata.load();
+        assertThat(metadata.getEncryptionType(), is(DataCryptor.ENCRYPTION_TYPE_AES));
+        assertThat(countStagingFiles(), is(0L));
+    }
+
+    private Path createAesFile(Path dir) throws Exception {
+        Files.createDirectories(dir);
+        try (InputStream input = new DataCryptor(CELL_ID).encode(new ByteArrayInputStream(data), true)) {
+            Files.copy(input, dir.resolve(DavCmpFsImpl.CONTENT_FILE_NAME));
+        }
+        DavMetadataFile metadata = DavMetadataFile.prepareNewFile(
+                dir.resolve(DavMetadataFile.DAV_META_FILE_NAME).toFile(), DavCmp.TYPE_DAV_FILE);
+        metadata.setEncryptionType(DataCryptor.ENCRYPTION_TYPE_AES);
+        metadata.setContentLength(data.length);
+        metadata.save();
+        return dir;
+    }
+
+    private long countStagingFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(folder.getRoot().toPath())) {
+            return files.filter(path -> DavCmpFsImpl.isStagingFile(path.getFileName().toString())).count();
+        }
+    }
+}
@@ -30,6 +30,9 @@ import org.junit.runners.Suite.SuiteClasses;
     AccountLockManagerTest.class,
     AccountValidAuthnIntervalLockManagerTest.class,
     CellLockManagerTest.class,
+    CellReferenceCounterTest.class,
+    InProcessLockManagerTest.class,
+    EventInterestLockManagerTest.class,
     UnitUserLockManagerTest.class
     })
 public class AllTests {
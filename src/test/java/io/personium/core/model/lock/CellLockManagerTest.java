@@ -26,6 +26,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.personium.core.PersoniumCoreException;
 import io.personium.test.categories.Unit;
 
@@ -192,4 +195,81 @@ public class CellLockManagerTest {
             fail();
         }
     }
+
+    /**
+     * プロセス内のキャッシュに通常以外の処理状態がキャッシュされないことを確認.
+     */
+    @Test
+    public void プロセス内のキャッシュに通常以外の処理状態がキャッシュされない() {
+        Cache<String, Object> cacheBefore = LockManager.localCache;
+        long expiresInBefore = LockManager.localCacheExpiresIn;
+        try {
+            LockManager.localCache = CacheBuilder.newBuilder().build();
+            LockManager.localCacheExpiresIn = 100;
+
+            assertEquals(CellLockManager.STATUS.NORMAL, CellLockManager.getCellStatus("TestingCellId"));
+            assertEquals(1, LockManager.localCache.size());
+
+            // 他のノードがキャッシュしている通常状態の期限切れを待つこと
+            long start = System.currentTimeMillis();
+            CellLockManager.setCellStatus("TestingCellId", CellLockManager.STATUS.EXPORT);
+            assertTrue(System.currentTimeMillis() - start >= 100);
+
+            assertEquals(CellLockManager.STATUS.EXPORT, CellLockManager.getCellStatus("TestingCellId"));
+            assertEquals(0, LockManager.localCache.size());
+
+            // 通常状態への復帰はキャッシュに関わらず即時に反映されること
+            LockManager.singleton.doDeleteCellStatus(CellLockManager.CELL_STATUS_PREFIX + "TestingCellId");
+            assertEquals(CellLockManager.STATUS.NORMAL, CellLockManager.getCellStatus("TestingCellId"));
+        } finally {
+            LockManager.localCache = cacheBefore;
+            LockManager.localCacheExpiresIn = expiresInBefore;
+        }
+    }
+
+    /**
+     * 他のノードによる処理状態の変更がキャッシュの期限を待たずに反映されることを確認.
+     */
+    @Test
+    public void 他のノードによる処理状態の変更がキャッシュの期限を待たずに反映される() {
+        Cache<String, Object> cacheBefore = LockManager.localCache;
+        long expiresInBefore = LockManager.localCacheExpiresIn;
+        long syncIntervalBefore = LockManager.localCacheSyncInterval;
+        CellStatusWatcher watcherBefore = LockManager.statusWatcher;
+        try {
+            LockManager.localCache = CacheBuilder.newBuilder().build();
+            LockManager.localCacheExpiresIn = 60000;
+            LockManager.localCacheSyncInterval = 10;
+            CellStatusWatcher watcher = new CellStatusWatcher(LockManager.singleton, LockManager.localCache);
+            LockManager.statusWatcher = watcher;
+            watcher.check();
+
+            assertEquals(CellLockManager.STATUS.NORMAL, CellLockManager.getCellStatus("TestingCellId"));
+            assertEquals(1, LockManager.localCache.size());
+
+            // 他のノードが処理状態を変更し、このノードの確認でキャッシュが破棄されること
+            LockManager.singleton.doSetCellStatus(CellLockManager.CELL_STATUS_PREFIX + "TestingCellId",
+                    CellLockManager.STATUS.IMPORT.getId());
+            LockManager.singleton.doIncrementCellStatusVersion(CellStatusWatcher.VERSION_KEY);
+            assertEquals(CellLockManager.STATUS.NORMAL, CellLockManager.getCellStatus("TestingCellId"));
+            watcher.check();
+            assertEquals(0, LockManager.localCache.size());
+            assertEquals(CellLockManager.STATUS.IMPORT, CellLockManager.getCellStatus("TestingCellId"));
+
+            // 変更したノードはキャッシュの期限ではなく確認の間隔だけ待つこと
+            CellLockManager.setCellStatus("TestingCellId", CellLockManager.STATUS.NORMAL);
+            assertEquals(CellLockManager.STATUS.NORMAL, CellLockManager.getCellStatus("TestingCellId"));
+            long start = System.currentTimeMillis();
+            CellLockManager.setCellStatus("TestingCellId", CellLockManager.STATUS.EXPORT);
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed >= 20);
+            assertTrue(elapsed < 60000);
+            assertEquals(CellLockManager.STATUS.EXPORT, CellLockManager.getCellStatus("TestingCellId"));
+        } finally {
+            LockManager.localCache = cacheBefore;
+            LockManager.localCacheExpiresIn = expiresInBefore;
+            LockManager.localCacheSyncInterval = syncIntervalBefore;
+            LockManager.statusWatcher = watcherBefore;
+        }
+    }
 }
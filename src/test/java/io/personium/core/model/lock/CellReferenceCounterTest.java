@@ -0,0 +1,154 @@
+/**
+ * Personium
+ * Copyright 2014-2022 Personium Project Authors
+ * - FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * CellReferenceCounterユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class CellReferenceCounterTest {
+
+    private static final String KEY = CellLockManager.REFERENCE_COUNT_PREFIX + "TestingCellId";
+
+    private InProcessLockManager manager;
+    private CellReferenceCounter counter;
+
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        manager = new InProcessLockManager();
+        counter = new CellReferenceCounter(manager);
+    }
+
+    /**
+     * ノード内の参照が複数あっても共有の参照カウントは1つだけ加算されること.
+     */
+    @Test
+    public void ノード内の参照が複数あっても共有の参照カウントは1つだけ加算されること() {
+        assertEquals(1, counter.increment(KEY));
+        assertEquals(2, counter.increment(KEY));
+
+        assertEquals(1, manager.doGetReferenceCount(KEY));
+        assertEquals(2, counter.get(KEY));
+    }
+
+    /**
+     * 参照がなくなった後のフラッシュで共有の参照カウントが解放されること.
+     */
+    @Test
+    public void 参照がなくなった後のフラッシュで共有の参照カウントが解放されること() {
+        counter.increment(KEY);
+        counter.increment(KEY);
+        assertEquals(1, counter.decrement(KEY));
+        counter.flush();
+        assertEquals(1, manager.doGetReferenceCount(KEY));
+
+        assertEquals(0, counter.decrement(KEY));
+        assertEquals(1, manager.doGetReferenceCount(KEY));
+        assertEquals(0, counter.get(KEY));
+
+        counter.flush();
+        assertEquals(-1, manager.doGetReferenceCount(KEY));
+        assertEquals(-1, counter.get(KEY));
+        assertEquals(0, counter.size());
+    }
+
+    /**
+     * 削除されたカウンタで参照を始めても共有の参照カウントが加算されること.
+     */
+    @Test
+    public void 削除されたカウンタで参照を始めても共有の参照カウントが加算されること() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, counter.increment(KEY));
+            assertEquals(0, counter.decrement(KEY));
+            counter.flush();
+            assertEquals(0, counter.size());
+            assertEquals(-1, manager.doGetReferenceCount(KEY));
+        }
+    }
+
+    /**
+     * 他ノードの参照が参照カウントに含まれること.
+     */
+    @Test
+    public void 他ノードの参照が参照カウントに含まれること() {
+        manager.doIncrementReferenceCount(KEY);
+        counter.increment(KEY);
+
+        assertEquals(2, manager.doGetReferenceCount(KEY));
+        assertEquals(2, counter.get(KEY));
+    }
+
+    /**
+     * 並行してフラッシュしても参照中は共有の参照カウントが解放されないこと.
+     * @throws Exception Unexpected error
+     */
+    @Test
+    public void 並行してフラッシュしても参照中は共有の参照カウントが解放されないこと() throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger violations = new AtomicInteger();
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                counter.flush();
+            }
+        });
+        flusher.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    counter.increment(KEY);
+                    if (manager.doGetReferenceCount(KEY) < 1) {
+                        violations.incrementAndGet();
+                    }
+                    counter.decrement(KEY);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        flusher.join();
+        counter.flush();
+
+        assertEquals(0, violations.get());
+        assertEquals(-1, manager.doGetReferenceCount(KEY));
+        assertTrue(counter.get(KEY) < 1);
+        assertEquals(0, counter.size());
+    }
+}
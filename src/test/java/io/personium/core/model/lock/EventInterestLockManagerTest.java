@@ -0,0 +1,94 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * EventInterestLockManager unit test class.
+ */
+@Category({ Unit.class })
+public class EventInterestLockManagerTest {
+    static LockManager lm;
+
+    /**
+     * before class.
+     */
+    @BeforeClass
+    public static void beforeClass() {
+        lm = LockManager.singleton;
+        LockManager.singleton = new InProcessLockManager();
+    }
+
+    /**
+     * after class.
+     */
+    @AfterClass
+    public static void afterClass() {
+        LockManager.singleton = lm;
+    }
+
+    /**
+     * before.
+     */
+    @Before
+    public void before() {
+        LockManager.deleteAllLocks();
+    }
+
+    /**
+     * Tests that interests are overwritten and kept per category.
+     */
+    @Test
+    public void put_and_get_interest() {
+        String rule = EventInterestLockManager.CATEGORY_RULE_INTEREST;
+        String ws = EventInterestLockManager.CATEGORY_WEBSOCKET_INTEREST;
+        // unknown
+        assertThat(EventInterestLockManager.getInterest(rule, "cell_1"), is(-1L));
+
+        assertThat(EventInterestLockManager.putInterest(rule, "cell_1", 1, 60), is(true));
+        assertThat(EventInterestLockManager.getInterest(rule, "cell_1"), is(1L));
+        assertThat(EventInterestLockManager.putInterest(rule, "cell_1", 0, 60), is(true));
+        assertThat(EventInterestLockManager.getInterest(rule, "cell_1"), is(0L));
+
+        assertThat(EventInterestLockManager.getInterest(ws, "cell_1"), is(-1L));
+        assertThat(EventInterestLockManager.getInterest(rule, "cell_2"), is(-1L));
+    }
+
+    /**
+     * Tests that interests become unknown when they expire.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void interest_expires() throws Exception {
+        String ws = EventInterestLockManager.CATEGORY_WEBSOCKET_INTEREST;
+        EventInterestLockManager.putInterest(ws, "cell_1", 1, 1);
+        assertThat(EventInterestLockManager.getInterest(ws, "cell_1"), is(1L));
+
+        Thread.sleep(1100);
+        assertThat(EventInterestLockManager.getInterest(ws, "cell_1"), is(-1L));
+    }
+}
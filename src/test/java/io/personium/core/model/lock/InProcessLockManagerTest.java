@@ -0,0 +1,125 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.model.lock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * InProcessLockManagerユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class InProcessLockManagerTest {
+
+    private static final int THREADS = 8;
+    private static final int TIMES = 2000;
+
+    private InProcessLockManager manager;
+
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        manager = new InProcessLockManager();
+    }
+
+    /**
+     * 並行して取得してもロックを同時に保持するスレッドは1つだけであること.
+     * @throws Exception Unexpected error
+     */
+    @Test
+    public void 並行して取得してもロックを同時に保持するスレッドは1つだけであること() throws Exception {
+        final String key = "odata-TestingCellId";
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger violations = new AtomicInteger();
+        final AtomicInteger acquired = new AtomicInteger();
+        runConcurrently(() -> {
+            Lock lock = new Lock(key, System.currentTimeMillis());
+            while (!manager.doPutLock(key, lock, 0)) {
+                Thread.yield();
+            }
+            if (holders.incrementAndGet() != 1) {
+                violations.incrementAndGet();
+            }
+            acquired.incrementAndGet();
+            holders.decrementAndGet();
+            manager.doReleaseLock(key, lock);
+        });
+
+        assertEquals(0, violations.get());
+        assertEquals(THREADS * TIMES, acquired.get());
+        assertEquals(null, manager.doGetLock(key));
+    }
+
+    /**
+     * 並行して増減しても参照カウントが失われないこと.
+     * @throws Exception Unexpected error
+     */
+    @Test
+    public void 並行して増減しても参照カウントが失われないこと() throws Exception {
+        final String key = CellLockManager.REFERENCE_COUNT_PREFIX + "TestingCellId";
+        final AtomicInteger violations = new AtomicInteger();
+        runConcurrently(() -> {
+            manager.doIncrementReferenceCount(key);
+            if (manager.doGetReferenceCount(key) < 1) {
+                violations.incrementAndGet();
+            }
+            manager.doDecrementReferenceCount(key);
+        });
+
+        assertEquals(0, violations.get());
+        assertEquals(-1, manager.doGetReferenceCount(key));
+    }
+
+    /**
+     * 並行して加算しても認証失敗回数が失われないこと.
+     * @throws Exception Unexpected error
+     */
+    @Test
+    public void 並行して加算しても認証失敗回数が失われないこと() throws Exception {
+        final String key = "AccountLock_TestingAccountId";
+        runConcurrently(() -> manager.doIncrementAccountLock(key, 60));
+
+        assertEquals(THREADS * TIMES, manager.doGetAccountLock(key));
+    }
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < TIMES; j++) {
+                    task.run();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
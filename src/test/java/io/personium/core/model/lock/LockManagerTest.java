@@ -19,6 +19,8 @@ package io.personium.core.model.lock;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Date;
 
@@ -174,23 +176,83 @@ public class LockManagerTest {
         } catch (PersoniumCoreException e) {
             assertEquals(PersoniumCoreException.class, e.getClass());
         } finally {
-            // doGetLock呼び出し回数 は 最初の呼び出しの１回と ＋ リトライ回数 となる
-            assertEquals(LockManager.getLockRetryTimes() + 1, rclm.getCount);
+            // doPutLock呼び出し回数 は 最初の呼び出しの１回と ＋ リトライ回数 となる
+            assertEquals(LockManager.getLockRetryTimes() + 1, rclm.putCount);
             LockManager.singleton = originalLm;
         }
     }
 
+    /**
+     * 解放されたロックを待つスレッドはリトライ間隔を待たずに取得する.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 解放されたロックを待つスレッドはリトライ間隔を待たずに取得する() throws InterruptedException {
+        long retryInterval = LockManager.getLockRetryInterval();
+        int retryTimes = LockManager.getLockRetryTimes();
+        LockManager.setLockRetryInterval(10000);
+        LockManager.setLockRetryTimes(1);
+        try {
+            Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, "aaa", null, null);
+            final long[] acquiredAt = new long[1];
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    LockManager.getLock(Lock.CATEGORY_ODATA, "aaa", null, null).release();
+                    acquiredAt[0] = System.currentTimeMillis();
+                }
+            });
+            t.start();
+            Thread.sleep(100);
+            long releasedAt = System.currentTimeMillis();
+            lock.release();
+            t.join();
+            assertTrue(acquiredAt[0] - releasedAt < 5000);
+        } finally {
+            LockManager.setLockRetryInterval(retryInterval);
+            LockManager.setLockRetryTimes(retryTimes);
+        }
+    }
+
+    /**
+     * リースが切れたロックは他の取得者が取得できる.
+     */
+    @Test
+    public void リースが切れたロックは他の取得者が取得できる() {
+        int retryTimes = LockManager.getLockRetryTimes();
+        LockManager.setLockRetryTimes(0);
+        try {
+            Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, "aaa", null, null);
+            // 停止したノードのロックを模擬する
+            LockManager.heldLocks.remove(lock);
+            lock.leaseExpiresAt = System.currentTimeMillis() - 1;
+            Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, "aaa", null, null);
+            assertNotNull(lock2);
+
+            // 期限切れのロックの解放は後続の取得者のロックを解放しない
+            lock.release();
+            try {
+                LockManager.getLock(Lock.CATEGORY_ODATA, "aaa", null, null);
+                fail("Not throws exception.");
+            } catch (PersoniumCoreException e) {
+                assertEquals(PersoniumCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+            }
+            lock2.release();
+        } finally {
+            LockManager.setLockRetryTimes(retryTimes);
+        }
+    }
+
     /**
      * Retryが指定回数行われることを確認するためのLockManager.
-     * doGetLock呼び出し回数をカウントする。
+     * doPutLock呼び出し回数をカウントする。
      */
     class RetryCountingLockManager extends InProcessLockManager {
-        int getCount = 0;
+        int putCount = 0;
 
         @Override
-        Lock doGetLock(String fullKey) {
-            getCount++;
-            return new Lock(fullKey, new Date().getTime());
+        Boolean doPutLock(String fullKey, Lock lock, int lease) {
+            putCount++;
+            return Boolean.FALSE;
         }
     }
 
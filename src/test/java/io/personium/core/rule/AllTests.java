@@ -25,6 +25,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
+    RuleIndexTest.class,
+    RuleLoaderTest.class,
     RuleManagerTest.class
 })
 public class AllTests {
@@ -0,0 +1,952 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import io.personium.core.event.PersoniumEvent;
+import io.personium.core.utils.UriUtils;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for RuleIndex.
+ */
+@Category({ Unit.class })
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ UriUtils.class })
+public class RuleIndexTest {
+
+    private RuleManager rman = newRuleManager();
+
+    /**
+     * Test match().
+     * Normal test.
+     * rules are selected by type prefix, type suffix, object prefix and others.
+     */
+    @Test
+    public void match_Normal_rules_are_selected_by_index() {
+        List<RuleManager.RuleInfo> rules = new ArrayList<>();
+        rules.add(rule("prefix", "odata.", null));
+        rules.add(rule("exact", "odata.create", null));
+        rules.add(rule("otherPrefix", "cellctl.", null));
+        rules.add(rule("suffix", ".create", null));
+        rules.add(rule("otherSuffix", ".delete", null));
+        rules.add(rule("object", null, "personium-localcell:/box/col"));
+        rules.add(rule("otherObject", null, "personium-localcell:/box2"));
+        rules.add(rule("any", null, null));
+        RuleIndex index = RuleIndex.build(rules);
+
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .type("odata.create")
+                .object("personium-localcell:/box/col/entity")
+                .build();
+        List<String> names = index.match(event).stream()
+                .map(entry -> entry.rule.name)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("any", "exact", "object", "prefix", "suffix"), names);
+    }
+
+    /**
+     * Test match().
+     * Normal test.
+     * candidates are checked with the other conditions.
+     */
+    @Test
+    public void match_Normal_candidates_are_checked_with_other_conditions() {
+        RuleManager.RuleInfo external = rule("external", "odata.", null);
+        external.external = Boolean.TRUE;
+        RuleManager.RuleInfo info = rule("info", "odata.", null);
+        info.info = "other";
+        RuleManager.RuleInfo noExternal = rule("noExternal", "odata.", null);
+        noExternal.external = null;
+        RuleIndex index = RuleIndex.build(Arrays.asList(external, info, noExternal));
+
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .type("odata.create")
+                .info("info")
+                .build();
+        assertTrue(index.match(event).isEmpty());
+        assertTrue(RuleIndex.EMPTY.match(event).isEmpty());
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * argument is null.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_argument_is_null() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = null;
+        PersoniumEvent event = null;
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * external of RuleInfo is null.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_external_of_ruleinfo_is_null() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        PersoniumEvent event = new PersoniumEvent.Builder().build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * external matches with false.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_external_matches_with_false() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.FALSE;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .schema("schema string")
+                .subject("subject")
+                .type("type")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * external matches with true.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_external_matches_with_true() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("schema")
+                .subject("subject")
+                .type("type")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * schema matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_schema_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        RuleManager.BoxInfo bi = rman.new BoxInfo();
+        bi.schema = "http://personium/appCell/";
+        ri.external = Boolean.TRUE;
+        ri.box = bi;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/appCell/")
+                .subject("subject")
+                .type("type")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * schema not matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_schema_not_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        RuleManager.BoxInfo bi = rman.new BoxInfo();
+        bi.schema = "http://personium/";
+        ri.external = Boolean.TRUE;
+        ri.box = bi;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/appCell/")
+                .subject("subject")
+                .type("type")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * subject matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_subject_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.subject = "http://personium/dummyCell/#account";
+        ri.external = Boolean.TRUE;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("http://personium/dummyCell/#account")
+                .type("type")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * subject not matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_subject_not_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.subject = "http://personium/dummyCell/";
+        ri.external = Boolean.TRUE;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/appCell/")
+                .subject("http://personium/dummyCell/#account")
+                .type("type")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * type matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_type_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.type = "cellctl.Rule.create";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * type partial matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_type_partial_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.type = "cellctl.Rule";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * type partial backward matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_type_partial_backward_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.type = ".create";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * type not matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_type_not_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.type = "cellctl.Rule.create.some";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * object matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_object_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.object = "personium-localcell:/__ctl/Role";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Role.create")
+                .object("personium-localcell:/__ctl/Role")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * object matches in boxbounded.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_object_matches_in_boxbounded() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        RuleManager.BoxInfo bi = rman.new BoxInfo();
+        bi.schema = "http://personium/appCell/";
+        bi.name = "box";
+        ri.external = Boolean.FALSE;
+        ri.object = "personium-localbox:/col/entity";
+        ri.box = bi;
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .schema("http://personium/appCell/")
+                .subject("subject")
+                .type("odata.create")
+                .object("personium-localcell:/box/col/entity")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        PowerMockito.mockStatic(UriUtils.class);
+        PowerMockito.doReturn("personium-localcell:/box/col/entity")
+                .when(UriUtils.class, "convertSchemeFromLocalBoxToLocalCell", "personium-localbox:/col/entity", "box");
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * object partial matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_object_partial_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.FALSE;
+        ri.object = "personium-localcell:/__ctl";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .schema("http://personium/appCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("personium-localcell:/__ctl/Rule")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * object not matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_object_not_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.FALSE;
+        ri.object = "personium-localcell:/__ctl/Role";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .schema("http://personium/appCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("personium-localcell:/__ctl/Rule")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * info matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_info_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.info = "info";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * info partial matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_info_partial_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.info = "info";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("information")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(true));
+    }
+
+    /**
+     * Test matches().
+     * Normal test.
+     * info not matches.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void matches_Normal_info_not_matches() throws Exception {
+        // --------------------
+        // Test method args
+        // --------------------
+        RuleManager.RuleInfo ri = rman.new RuleInfo();
+        ri.external = Boolean.TRUE;
+        ri.info = "information";
+        PersoniumEvent event = new PersoniumEvent.Builder()
+                .external()
+                .schema("http://personium/dummyCell/")
+                .subject("subject")
+                .type("cellctl.Rule.create")
+                .object("object")
+                .info("info")
+                .requestKey("requestKey")
+                .eventId("eventid")
+                .ruleChain("rulechain")
+                .via("via")
+                .roles("roles")
+                .build();
+
+        // --------------------
+        // Mock settings
+        // --------------------
+        // None.
+
+        // --------------------
+        // Run method
+        // --------------------
+        RuleIndex.Entry entry = RuleIndex.compile(ri);
+        boolean result = entry != null && entry.matches(event);
+
+        // --------------------
+        // Confirm result
+        // --------------------
+        assertThat(result, is(false));
+    }
+
+    private RuleManager.RuleInfo rule(String name, String type, String object) {
+        RuleManager.RuleInfo rule = rman.new RuleInfo();
+        rule.name = name;
+        rule.external = Boolean.FALSE;
+        rule.type = type;
+        rule.object = object;
+        return rule;
+    }
+
+    private static RuleManager newRuleManager() {
+        try {
+            Constructor<RuleManager> constructor = RuleManager.class.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
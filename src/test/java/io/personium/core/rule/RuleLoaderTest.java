@@ -0,0 +1,146 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for RuleLoader.
+ */
+@Category({ Unit.class })
+public class RuleLoaderTest {
+
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    /**
+     * Shutdown executor.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test runWhenLoaded().
+     * Normal test.
+     * tasks are parked while loading, run in order, and the cell is loaded once.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void runWhenLoaded_Normal_tasks_are_parked_until_loaded() throws Exception {
+        RuleLoader loader = new RuleLoader(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            final int n = i;
+            loader.runWhenLoaded("cell", () -> {
+                loadCount.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return RuleIndex.EMPTY;
+            }, index -> {
+                assertSame(RuleIndex.EMPTY, index);
+                results.add(n);
+                done.countDown();
+            });
+        }
+        assertTrue(loader.isLoading("cell"));
+        assertTrue(results.isEmpty());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, loadCount.get());
+        assertEquals(Arrays.asList(0, 1, 2), results);
+    }
+
+    /**
+     * Test await().
+     * Normal test.
+     * loading of other cells is not blocked by a slow cell.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void await_Normal_other_cells_are_not_blocked() throws Exception {
+        RuleLoader loader = new RuleLoader(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        loader.preload("slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return RuleIndex.EMPTY;
+        });
+
+        assertSame(RuleIndex.EMPTY, loader.await("fast", () -> RuleIndex.EMPTY));
+        assertTrue(loader.isLoading("slow"));
+
+        release.countDown();
+        assertSame(RuleIndex.EMPTY, loader.await("slow", () -> RuleIndex.EMPTY));
+    }
+
+    /**
+     * Test await().
+     * Error test.
+     * failure of loading is thrown and the next request loads again.
+     */
+    @Test
+    public void await_Error_failure_is_thrown_and_retried() {
+        RuleLoader loader = new RuleLoader(executor);
+        try {
+            loader.await("cell", () -> {
+                throw new IllegalStateException("load failed");
+            });
+            fail("exception is not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("load failed", e.getMessage());
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (loader.isLoading("cell") && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertFalse(loader.isLoading("cell"));
+        assertSame(RuleIndex.EMPTY, loader.await("cell", () -> RuleIndex.EMPTY));
+    }
+}
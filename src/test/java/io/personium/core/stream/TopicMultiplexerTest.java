@@ -0,0 +1,142 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for TopicMultiplexer.
+ */
+@Category({ Unit.class })
+public class TopicMultiplexerTest {
+
+    /**
+     * Broker subscriber for test.
+     */
+    static class MockSubscriber implements DataSubscriber {
+        String topic;
+        IDataListener listener;
+        boolean unsubscribed;
+
+        @Override
+        public void subscribe(String topicName) {
+            this.topic = topicName;
+        }
+
+        @Override
+        public void setListener(IDataListener dataListener) {
+            this.listener = dataListener;
+        }
+
+        @Override
+        public void unsubscribe() {
+            this.unsubscribed = true;
+        }
+    }
+
+    private List<MockSubscriber> brokers = new ArrayList<>();
+
+    private TopicMultiplexer create(Executor executor, int capacity) {
+        return new TopicMultiplexer(() -> {
+            MockSubscriber sub = new MockSubscriber();
+            brokers.add(sub);
+            return Optional.of(sub);
+        }, executor, capacity);
+    }
+
+    /**
+     * Test createSubscriber().
+     * Normal test.
+     * listeners of a topic share one broker subscription which is closed by the last listener.
+     */
+    @Test
+    public void createSubscriber_Normal_broker_subscription_is_shared() {
+        TopicMultiplexer mux = create(Runnable::run, 10);
+        List<String> received1 = new ArrayList<>();
+        List<String> received2 = new ArrayList<>();
+
+        DataSubscriber sub1 = mux.createSubscriber();
+        sub1.subscribe("cell.box.col.topic.t");
+        sub1.setListener((cellUrl, data) -> received1.add(data));
+        DataSubscriber sub2 = mux.createSubscriber();
+        sub2.subscribe("cell.box.col.topic.t");
+        sub2.setListener((cellUrl, data) -> received2.add(data));
+
+        assertEquals(1, brokers.size());
+        assertEquals("cell.box.col.topic.t", brokers.get(0).topic);
+
+        brokers.get(0).listener.onMessage("http://cell/", "data1");
+        assertEquals(1, received1.size());
+        assertEquals(1, received2.size());
+        assertEquals(Long.valueOf(2), mux.getStatistics().get("cell.box.col.topic.t").get("delivered"));
+
+        sub1.unsubscribe();
+        assertFalse(brokers.get(0).unsubscribed);
+        sub2.unsubscribe();
+        assertTrue(brokers.get(0).unsubscribed);
+        assertTrue(mux.getStatistics().isEmpty());
+
+        // a new listener creates a new broker subscription
+        DataSubscriber sub3 = mux.createSubscriber();
+        sub3.subscribe("cell.box.col.topic.t");
+        assertEquals(2, brokers.size());
+        sub3.unsubscribe();
+    }
+
+    /**
+     * Test createSubscriber().
+     * Normal test.
+     * data is dropped for a listener that does not keep up.
+     */
+    @Test
+    public void createSubscriber_Normal_data_is_dropped_when_queue_is_full() {
+        List<Runnable> pending = new ArrayList<>();
+        TopicMultiplexer mux = create(pending::add, 2);
+        List<String> received = new ArrayList<>();
+
+        DataSubscriber sub = mux.createSubscriber();
+        sub.subscribe("topic");
+        sub.setListener((cellUrl, data) -> received.add(data));
+
+        IDataListener broker = brokers.get(0).listener;
+        broker.onMessage("http://cell/", "data1");
+        broker.onMessage("http://cell/", "data2");
+        broker.onMessage("http://cell/", "data3");
+        assertEquals(Long.valueOf(1), mux.getStatistics().get("topic").get("dropped"));
+        assertEquals(Long.valueOf(2), mux.getStatistics().get("topic").get("queued"));
+
+        // delivered in order by one task
+        assertEquals(1, pending.size());
+        pending.get(0).run();
+        assertEquals(2, received.size());
+        assertEquals("data1", received.get(0));
+        assertEquals("data2", received.get(1));
+        sub.unsubscribe();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream.impl.activemq;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for ActiveMQConnectionPool.
+ */
+@Category({ Unit.class })
+public class ActiveMQConnectionPoolTest {
+
+    private ConnectionFactory factory;
+    private Connection connection;
+    private Session session;
+    private MessageProducer producer;
+    private Message message;
+
+    /**
+     * Prepare mocks.
+     * @throws Exception exception occurred in some errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        factory = mock(ConnectionFactory.class);
+        connection = mock(Connection.class);
+        session = mock(Session.class);
+        producer = mock(MessageProducer.class);
+        message = mock(Message.class);
+        when(factory.createConnection()).thenReturn(connection);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        when(session.createProducer(any())).thenReturn(producer);
+    }
+
+    /**
+     * Test send().
+     * Normal test.
+     * connection and session are reused by the following messages.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void send_Normal_session_is_reused() throws Exception {
+        ActiveMQConnectionPool pool = new ActiveMQConnectionPool(factory, null, null, 2, null, 0, 0, 0);
+        pool.send(false, "queue", s -> message, DeliveryMode.NON_PERSISTENT, 1000L);
+        pool.send(true, "topic", s -> message, DeliveryMode.NON_PERSISTENT, 1000L);
+
+        verify(factory, times(1)).createConnection();
+        verify(connection, times(1)).createSession(false, Session.AUTO_ACKNOWLEDGE);
+        verify(producer, times(2)).send(any(), eq(message), eq(DeliveryMode.NON_PERSISTENT),
+                eq(Message.DEFAULT_PRIORITY), eq(1000L));
+        verify(session, never()).close();
+    }
+
+    /**
+     * Test send().
+     * Normal test.
+     * a failed message is sent again with a new connection.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void send_Normal_reconnect_when_send_failed() throws Exception {
+        doThrow(new JMSException("connection broken")).doNothing()
+                .when(producer).send(any(), any(), anyInt(), anyInt(), anyLong());
+        ActiveMQConnectionPool pool = new ActiveMQConnectionPool(factory, null, null, 2, null, 0, 0, 0);
+        pool.send(false, "queue", s -> message, DeliveryMode.PERSISTENT, 0L);
+
+        verify(factory, times(2)).createConnection();
+        verify(connection, times(1)).close();
+        verify(producer, times(2)).send(any(), eq(message), anyInt(), anyInt(), anyLong());
+    }
+
+    /**
+     * Test flush().
+     * Normal test.
+     * queued messages are sent in one transaction.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void flush_Normal_messages_are_sent_in_batch() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ActiveMQConnectionPool pool = new ActiveMQConnectionPool(factory, null, null, 2,
+                    scheduler, 3600000L, 10, 10);
+            for (int i = 0; i < 3; i++) {
+                pool.send(false, "queue", s -> message, DeliveryMode.PERSISTENT, 0L);
+            }
+            verify(producer, never()).send(any(), any(), anyInt(), anyInt(), anyLong());
+
+            pool.flush();
+            verify(connection, times(1)).createSession(true, Session.SESSION_TRANSACTED);
+            verify(producer, times(3)).send(any(), eq(message), anyInt(), anyInt(), anyLong());
+            verify(session, times(1)).commit();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
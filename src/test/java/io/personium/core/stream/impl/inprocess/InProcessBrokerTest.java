@@ -0,0 +1,112 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.stream.impl.inprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.event.PersoniumEvent;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for InProcessBroker.
+ */
+@Category({ Unit.class })
+public class InProcessBrokerTest {
+
+    /**
+     * Discard queues and subscriptions.
+     */
+    @After
+    public void tearDown() {
+        InProcessBroker.clear();
+    }
+
+    /**
+     * Test send() and receive().
+     * Normal test.
+     * an event sent to a queue is received once, without copying.
+     */
+    @Test
+    public void send_Normal_event_is_received_by_one_receiver() {
+        PersoniumEvent event = new PersoniumEvent.Builder().type("test").object("obj").build();
+        InProcessReceiver receiver1 = new InProcessReceiver();
+        InProcessReceiver receiver2 = new InProcessReceiver();
+        receiver1.open("queue");
+        receiver2.open("queue");
+        InProcessSender sender = new InProcessSender();
+        sender.open("queue");
+        sender.send(event);
+
+        List<PersoniumEvent> received = receiver1.receive();
+        assertEquals(1, received.size());
+        assertSame(event, received.get(0));
+        assertTrue(receiver2.receive().isEmpty());
+    }
+
+    /**
+     * Test publish().
+     * Normal test.
+     * data published to a topic is delivered to every subscription.
+     */
+    @Test
+    public void publish_Normal_data_is_delivered_to_every_subscription() {
+        InProcessReceiver subscriber1 = new InProcessReceiver();
+        InProcessReceiver subscriber2 = new InProcessReceiver();
+        subscriber1.subscribe("topic");
+        subscriber2.subscribe("topic");
+        List<String> received = new ArrayList<>();
+        subscriber1.setListener((cellUrl, data) -> received.add(cellUrl + " " + data));
+        subscriber2.setListener((cellUrl, data) -> received.add(cellUrl + " " + data));
+
+        InProcessSender publisher = new InProcessSender();
+        publisher.open("topic");
+        publisher.publish("https://cell/", "data1");
+        subscriber2.unsubscribe();
+        publisher.publish("https://cell/", "data2");
+
+        assertEquals(Arrays.asList("https://cell/ data1", "https://cell/ data1", "https://cell/ data2"), received);
+    }
+
+    /**
+     * Test offer().
+     * Normal test.
+     * the oldest message is dropped when the queue is full.
+     * @throws Exception exception occurred in some errors
+     */
+    @Test
+    public void offer_Normal_oldest_message_is_dropped_when_full() throws Exception {
+        InProcessBroker.Mailbox mailbox = new InProcessBroker.Mailbox(2);
+        mailbox.offer(new InProcessBroker.Message("m1", "cell", 0));
+        mailbox.offer(new InProcessBroker.Message("m2", "cell", 0));
+        mailbox.offer(new InProcessBroker.Message("m3", "cell", 0));
+
+        List<InProcessBroker.Message> messages = mailbox.poll(10, 0);
+        assertEquals(2, messages.size());
+        assertEquals("m2", messages.get(0).body);
+        assertEquals("m3", messages.get(1).body);
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
         FileUtilsTest.class,
+        HttpClientFactoryTest.class,
         ODataUtilsTest.class,
         UriUtilsTest.class
 })
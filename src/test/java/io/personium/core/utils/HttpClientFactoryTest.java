@@ -0,0 +1,98 @@
+/**
+ * Personium
+ * Copyright 2017-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.PersoniumUnitConfig;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for HttpClientFactory.
+ */
+@Category({ Unit.class })
+public class HttpClientFactoryTest {
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        HttpClientFactory.shutdown();
+        PersoniumUnitConfig.reload();
+    }
+
+    /**
+     * 同じ通信タイプには同じクライアントが返却されること.
+     * @throws Exception Unexpected error
+     */
+    @Test
+    public void 同じ通信タイプには同じクライアントが返却されること() throws Exception {
+        CloseableHttpClient client = HttpClientFactory.create(HttpClientFactory.TYPE_INSECURE);
+        assertNotNull(client);
+        client.close();
+        assertSame(client, HttpClientFactory.create("INSECURE"));
+        assertNotNull(HttpClientFactory.getPoolStats(HttpClientFactory.TYPE_INSECURE));
+        assertNull(HttpClientFactory.getPoolStats(HttpClientFactory.TYPE_ALWAYS_LOCAL));
+    }
+
+    /**
+     * Engineへの接続数上限は他の接続先と別に設定されること.
+     */
+    @Test
+    public void Engineへの接続数上限は他の接続先と別に設定されること() {
+        PersoniumUnitConfig.set(PersoniumUnitConfig.HttpClient.POOL_MAX_PER_ROUTE, "5");
+        PersoniumUnitConfig.set(PersoniumUnitConfig.HttpClient.POOL_MAX_PER_ENGINE_ROUTE, "20");
+        HttpClientFactory.create(HttpClientFactory.TYPE_DEFAULT);
+        assertEquals(20, HttpClientFactory.getPoolStats(HttpClientFactory.TYPE_DEFAULT,
+                HttpClientFactory.getEngineHost()).getMax());
+        assertEquals(5, HttpClientFactory.getPoolStats(HttpClientFactory.TYPE_DEFAULT,
+                new HttpHost("example.com", 443, "https")).getMax());
+    }
+
+    /**
+     * 未知の通信タイプにはnullが返却されること.
+     */
+    @Test
+    public void 未知の通信タイプにはnullが返却されること() {
+        assertNull(HttpClientFactory.create("unknown"));
+        assertNull(HttpClientFactory.getPoolStats("unknown"));
+    }
+
+    /**
+     * KeepAliveヘッダのtimeoutが接続の保持時間として使われること.
+     */
+    @Test
+    public void KeepAliveヘッダのtimeoutが接続の保持時間として使われること() {
+        HttpClientFactory.KeepAliveStrategy strategy = new HttpClientFactory.KeepAliveStrategy(30000);
+        BasicHttpResponse res = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        assertEquals(30000, strategy.getKeepAliveDuration(res, null));
+        res.addHeader("Keep-Alive", "timeout=5, max=100");
+        assertEquals(5000, strategy.getKeepAliveDuration(res, null));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for HeartBeatService.
+ */
+@Category({ Unit.class })
+public class HeartBeatServiceTest {
+
+    private static final long PERIOD = 10;
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    /**
+     * After.
+     */
+    @After
+    public void after() {
+        unblock.countDown();
+        HeartBeatService.stop();
+    }
+
+    /**
+     * Test schedule().
+     * Normal test.
+     * a session whose ping blocks does not delay the heartbeats of the other sessions,
+     * and its heartbeats are skipped instead of piling up.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void schedule_Normal_blocking_session_does_not_delay_others() throws Exception {
+        AtomicInteger blockedPings = new AtomicInteger();
+        Session blocking = session(() -> {
+            blockedPings.incrementAndGet();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CountDownLatch pinged = new CountDownLatch(5);
+        Session other = session(pinged::countDown);
+
+        ScheduledFuture<?> blockingHeartBeat = HeartBeatService.schedule(
+                () -> HeartBeatService.sendPing(blocking), 0, PERIOD);
+        ScheduledFuture<?> otherHeartBeat = HeartBeatService.schedule(
+                () -> HeartBeatService.sendPing(other), PERIOD, PERIOD);
+
+        assertThat(pinged.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(blockedPings.get(), is(1));
+        blockingHeartBeat.cancel(false);
+        otherHeartBeat.cancel(false);
+    }
+
+    /**
+     * Create a session which runs the action on each ping.
+     */
+    private Session session(Runnable onPing) throws Exception {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doReturn(true).when(session).isOpen();
+        doReturn("id").when(session).getId();
+        doReturn(async).when(session).getAsyncRemote();
+        doAnswer(invocation -> {
+            onPing.run();
+            return null;
+        }).when(async).sendPing(any());
+        return session;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for OutboundQueue.
+ */
+@Category({ Unit.class })
+public class OutboundQueueTest {
+
+    private Session session;
+    private final List<String> sent = new ArrayList<>();
+    private final List<SendHandler> handlers = new ArrayList<>();
+
+    /**
+     * Before.
+     * The async remote keeps the handlers, so that each send completes when the test says so.
+     */
+    @Before
+    public void before() {
+        session = mock(Session.class);
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doReturn(true).when(session).isOpen();
+        doReturn("session1").when(session).getId();
+        doReturn(async).when(session).getAsyncRemote();
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            handlers.add(invocation.getArgument(1));
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+    }
+
+    /**
+     * Test offer().
+     * Normal test.
+     * messages are sent one at a time in the order of offer.
+     */
+    @Test
+    public void offer_Normal_sent_in_order() {
+        OutboundQueue queue = new OutboundQueue(session, 10, OutboundQueue.Overflow.DROP);
+
+        assertThat(queue.offer("a"), is(true));
+        assertThat(queue.offer("b"), is(true));
+        assertThat(queue.offer("c"), is(true));
+        // the next message waits until the previous one is written.
+        assertThat(sent.size(), is(1));
+        assertThat(queue.size(), is(2));
+
+        handlers.get(0).onResult(new SendResult());
+        handlers.get(1).onResult(new SendResult(new Exception("failed")));
+
+        assertThat(sent.size(), is(3));
+        assertThat(sent.get(0), is("a"));
+        assertThat(sent.get(1), is("b"));
+        assertThat(sent.get(2), is("c"));
+        assertThat(queue.size(), is(0));
+    }
+
+    /**
+     * Test offer().
+     * Overflow DROP.
+     * the new message is dropped when the queue is full and the session stays open.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void offer_Overflow_drop() throws Exception {
+        OutboundQueue queue = new OutboundQueue(session, 1, OutboundQueue.Overflow.DROP);
+
+        // "a" is in flight, "b" waits.
+        assertThat(queue.offer("a"), is(true));
+        assertThat(queue.offer("b"), is(true));
+        assertThat(queue.offer("c"), is(false));
+
+        handlers.get(0).onResult(new SendResult());
+        assertThat(sent.size(), is(2));
+        assertThat(sent.get(1), is("b"));
+        verify(session, never()).close();
+    }
+
+    /**
+     * Test offer().
+     * Overflow CLOSE.
+     * the session is closed when the queue is full.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void offer_Overflow_close() throws Exception {
+        OutboundQueue queue = new OutboundQueue(session, 1, OutboundQueue.Overflow.CLOSE);
+
+        assertThat(queue.offer("a"), is(true));
+        assertThat(queue.offer("b"), is(true));
+        assertThat(queue.offer("c"), is(false));
+
+        verify(session).close();
+    }
+
+    /**
+     * Test offer().
+     * Error test.
+     * nothing is sent to a closed session.
+     */
+    @Test
+    public void offer_Error_closed_session() {
+        doReturn(false).when(session).isOpen();
+        OutboundQueue queue = new OutboundQueue(session, 10, OutboundQueue.Overflow.DROP);
+
+        assertThat(queue.offer("a"), is(false));
+        assertThat(sent.size(), is(0));
+    }
+
+    /**
+     * Test Overflow.of().
+     * Normal test.
+     */
+    @Test
+    public void overflow_of_Normal() {
+        assertThat(OutboundQueue.Overflow.of("close"), is(OutboundQueue.Overflow.CLOSE));
+        assertThat(OutboundQueue.Overflow.of(" CLOSE "), is(OutboundQueue.Overflow.CLOSE));
+        assertThat(OutboundQueue.Overflow.of("drop"), is(OutboundQueue.Overflow.DROP));
+        assertThat(OutboundQueue.Overflow.of("unknown"), is(OutboundQueue.Overflow.DROP));
+        assertThat(OutboundQueue.Overflow.of(null), is(OutboundQueue.Overflow.DROP));
+    }
+}
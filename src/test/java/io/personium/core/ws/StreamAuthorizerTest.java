@@ -0,0 +1,92 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import io.personium.core.PersoniumCoreException;
+import io.personium.core.auth.BoxPrivilege;
+import io.personium.core.model.DavRsCmp;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for StreamAuthorizer.
+ */
+@Category({ Unit.class })
+public class StreamAuthorizerTest {
+
+    /**
+     * Test hasReceivePrivileges().
+     * Normal test.
+     * allowed when both read-properties and stream-receive are granted.
+     */
+    @Test
+    public void hasReceivePrivileges_Normal_allowed() {
+        DavRsCmp davRsCmp = mock(DavRsCmp.class);
+
+        assertThat(StreamAuthorizer.hasReceivePrivileges(davRsCmp), is(true));
+        verify(davRsCmp).checkAccessContext(BoxPrivilege.READ_PROPERTIES);
+        verify(davRsCmp).checkAccessContext(BoxPrivilege.STREAM_RECEIVE);
+    }
+
+    /**
+     * Test hasReceivePrivileges().
+     * Error test.
+     * denied without read-properties, as PROPFIND of the stream collection is.
+     */
+    @Test
+    public void hasReceivePrivileges_Error_read_properties_lacking() {
+        DavRsCmp davRsCmp = mock(DavRsCmp.class);
+        doThrow(PersoniumCoreException.Auth.NECESSARY_PRIVILEGE_LACKING)
+                .when(davRsCmp).checkAccessContext(BoxPrivilege.READ_PROPERTIES);
+
+        assertThat(StreamAuthorizer.hasReceivePrivileges(davRsCmp), is(false));
+    }
+
+    /**
+     * Test hasReceivePrivileges().
+     * Error test.
+     * denied without stream-receive.
+     */
+    @Test
+    public void hasReceivePrivileges_Error_stream_receive_lacking() {
+        DavRsCmp davRsCmp = mock(DavRsCmp.class);
+        doThrow(PersoniumCoreException.Auth.NECESSARY_PRIVILEGE_LACKING)
+                .when(davRsCmp).checkAccessContext(BoxPrivilege.STREAM_RECEIVE);
+
+        assertThat(StreamAuthorizer.hasReceivePrivileges(davRsCmp), is(false));
+    }
+
+    /**
+     * Test authorize().
+     * Error test.
+     * malformed requests are denied without looking up the cell.
+     */
+    @Test
+    public void authorize_Error_malformed() {
+        assertThat(StreamAuthorizer.authorize(null, "cell.box.col.topic.t1"), is(StreamAuthorizer.DENIED));
+        assertThat(StreamAuthorizer.authorize("token", null), is(StreamAuthorizer.DENIED));
+        assertThat(StreamAuthorizer.authorize("token", "cell.box.col.queue.t1"), is(StreamAuthorizer.DENIED));
+    }
+}
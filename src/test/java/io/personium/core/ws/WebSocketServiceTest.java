@@ -0,0 +1,188 @@
+/**
+ * Personium
+ * Copyright 2018-2022 Personium Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.personium.core.ws;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.powermock.reflect.Whitebox;
+
+import io.personium.core.event.PersoniumEvent;
+import io.personium.test.categories.Unit;
+
+/**
+ * Unit Test class for the event dispatch of WebSocketService.
+ */
+@Category({ Unit.class })
+public class WebSocketServiceTest {
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    /**
+     * After.
+     * Unregister the sessions and the dispatchers of the test.
+     */
+    @After
+    public void after() {
+        for (Session session : sessions) {
+            WebSocketService.removeSessionInfo(session);
+        }
+        ExecutorService[] executors = Whitebox.getInternalState(WebSocketService.class, "dispatchers");
+        if (executors != null) {
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+            Whitebox.setInternalState(WebSocketService.class, "dispatchers", (Object) null);
+        }
+    }
+
+    /**
+     * Register a session whose async remote completes each send immediately.
+     */
+    private WebSocketService.SessionInfo session(String id, String cellId, List<String> received,
+            String type, String object) {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        Map<String, Object> userProperties = new HashMap<>();
+        doReturn(true).when(session).isOpen();
+        doReturn(id).when(session).getId();
+        doReturn(userProperties).when(session).getUserProperties();
+        doReturn(async).when(session).getAsyncRemote();
+        doAnswer(invocation -> {
+            received.add(invocation.getArgument(0));
+            ((SendHandler) invocation.getArgument(1)).onResult(new SendResult());
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+
+        WebSocketService.SessionInfo info = new WebSocketService.SessionInfo(session, cellId);
+        info.authorizedTime = new Date();
+        info.accessToken = "token";
+        if (type != null) {
+            WebSocketService.RuleInfo rule = new WebSocketService().new RuleInfo();
+            rule.type = type;
+            rule.object = object;
+            info.rules.add(rule);
+        }
+        userProperties.put("session_info", info);
+        WebSocketService.addSessionInfo(info);
+        sessions.add(session);
+        return info;
+    }
+
+    private static PersoniumEvent event(String cellId, String type, String object) {
+        PersoniumEvent event = new PersoniumEvent.Builder().type(type).object(object).build();
+        Whitebox.setInternalState(event, "cellId", cellId);
+        return event;
+    }
+
+    /**
+     * Test dispatchEvent().
+     * Normal test.
+     * the event is sent to the authorized sessions of the cell whose rules match.
+     */
+    @Test
+    public void dispatchEvent_Normal_matched_sessions() {
+        List<String> matched = Collections.synchronizedList(new ArrayList<>());
+        List<String> unmatched = Collections.synchronizedList(new ArrayList<>());
+        List<String> unauthorized = Collections.synchronizedList(new ArrayList<>());
+        List<String> otherCell = Collections.synchronizedList(new ArrayList<>());
+        session("s1", "cellA", matched, "cellctl.Rule", "*");
+        session("s2", "cellA", unmatched, "boxctl", "*");
+        session("s3", "cellA", unauthorized, "*", "*").accessToken = null;
+        session("s4", "cellB", otherCell, "*", "*");
+
+        WebSocketService.dispatchEvent(event("cellA", "cellctl.Rule.create", "personium-localcell:/__ctl/Rule"));
+
+        assertThat(matched.size(), is(1));
+        assertThat(matched.get(0), containsString("cellctl.Rule.create"));
+        assertThat(unmatched.size(), is(0));
+        assertThat(unauthorized.size(), is(0));
+        assertThat(otherCell.size(), is(0));
+    }
+
+    /**
+     * Test dispatchEvent().
+     * Normal test.
+     * events of a cell are sent in order through its dispatcher.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void dispatchEvent_Normal_order_kept_by_dispatcher() throws Exception {
+        ExecutorService[] executors = {Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor()};
+        Whitebox.setInternalState(WebSocketService.class, "dispatchers", executors);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        session("s1", "cellC", received, "test", "*");
+
+        for (int i = 0; i < 100; i++) {
+            WebSocketService.dispatchEvent(event("cellC", "test", "obj" + i));
+        }
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        }
+
+        assertThat(received.size(), is(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(received.get(i), containsString("\"obj" + i + "\""));
+        }
+    }
+
+    /**
+     * Test removeSessionInfo().
+     * Normal test.
+     * the cell is dropped from the dispatch targets when its last session leaves.
+     */
+    @Test
+    public void removeSessionInfo_Normal_last_session() {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        WebSocketService.SessionInfo info1 = session("s1", "cellD", received, "*", "*");
+        WebSocketService.SessionInfo info2 = session("s2", "cellD", received, "*", "*");
+        Map<String, ?> cellSessionMap = Whitebox.getInternalState(WebSocketService.class, "cellSessionMap");
+
+        WebSocketService.removeSessionInfo(info1.session);
+        assertThat(cellSessionMap.containsKey("cellD"), is(true));
+        WebSocketService.removeSessionInfo(info2.session);
+        assertThat(cellSessionMap.containsKey("cellD"), is(false));
+
+        WebSocketService.dispatchEvent(event("cellD", "test", "obj"));
+        assertThat(received.size(), is(0));
+    }
+}
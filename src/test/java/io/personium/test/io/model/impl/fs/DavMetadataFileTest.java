@@ -31,8 +31,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
+import org.apache.commons.io.FileUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
@@ -49,6 +52,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import io.personium.core.PersoniumCoreException;
 import io.personium.core.PersoniumUnitConfig;
+import io.personium.core.model.DavCmp;
 import io.personium.core.model.impl.fs.DavMetadataFile;
 import io.personium.test.categories.Unit;
 
@@ -493,4 +497,124 @@ public class DavMetadataFileTest {
             metaFile.delete();
         }
     }
+
+    /**
+     * Test save() and load().
+     * Normal.
+     * Binary format.
+     * @throws Exception Unintended exception in test
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void save_load_Normal_binary_format() throws Exception {
+        String metaPath = unitTestPath + "/.pmeta";
+        File metaFile = new File(metaPath);
+        String formatBefore = PersoniumUnitConfig.getDavMetadataFormat();
+
+        try {
+            PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.METADATA_FORMAT, DavMetadataFile.FORMAT_BINARY);
+            DavMetadataFile saved = DavMetadataFile.prepareNewFile(metaFile, DavCmp.TYPE_DAV_FILE);
+            saved.getProperties().put("key@urn:x-personium:test", "<value>\u3042\"</value>");
+            saved.getAcl().put("D.ace", new JSONArray());
+            saved.setContentLength(-1L);
+            saved.save();
+
+            // Written in binary, read without any JSON text.
+            byte[] bytes = Files.readAllBytes(metaFile.toPath());
+            assertThat(bytes[0], is((byte) 0));
+
+            davMetadataFile = DavMetadataFile.newInstance(metaFile);
+            davMetadataFile.load();
+            assertThat(davMetadataFile.getJSON(), is(saved.getJSON()));
+
+            // JSON files can still be read.
+            PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.METADATA_FORMAT, DavMetadataFile.FORMAT_JSON);
+            davMetadataFile.save();
+            assertThat(Files.readAllBytes(metaFile.toPath())[0], is((byte) '{'));
+            DavMetadataFile reloaded = DavMetadataFile.newInstance(metaFile);
+            reloaded.load();
+            assertThat(reloaded.getJSON(), is(davMetadataFile.getJSON()));
+        } finally {
+            PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.METADATA_FORMAT, formatBefore);
+            metaFile.delete();
+        }
+    }
+
+    /**
+     * Test save().
+     * Normal.
+     * Metadata read by the engine is written in JSON even if the binary format is configured.
+     * @throws Exception Unintended exception in test
+     */
+    @Test
+    public void save_Normal_service_collection_in_json() throws Exception {
+        File svcDir = new File(unitTestPath + "/svc");
+        File srcDir = new File(svcDir, DavCmp.SERVICE_SRC_COLLECTION);
+        File sourceDir = new File(srcDir, "source.js");
+        File colDir = new File(unitTestPath + "/col");
+        String formatBefore = PersoniumUnitConfig.getDavMetadataFormat();
+
+        try {
+            PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.METADATA_FORMAT, DavMetadataFile.FORMAT_BINARY);
+            sourceDir.mkdirs();
+            colDir.mkdirs();
+            File svcMeta = new File(svcDir, DavMetadataFile.DAV_META_FILE_NAME);
+            File srcMeta = new File(srcDir, DavMetadataFile.DAV_META_FILE_NAME);
+            File sourceMeta = new File(sourceDir, DavMetadataFile.DAV_META_FILE_NAME);
+            File colMeta = new File(colDir, DavMetadataFile.DAV_META_FILE_NAME);
+            DavMetadataFile.prepareNewFile(svcMeta, DavCmp.TYPE_COL_SVC).save();
+            DavMetadataFile.prepareNewFile(srcMeta, DavCmp.TYPE_COL_WEBDAV).save();
+            DavMetadataFile.prepareNewFile(sourceMeta, DavCmp.TYPE_DAV_FILE).save();
+            DavMetadataFile.prepareNewFile(colMeta, DavCmp.TYPE_COL_WEBDAV).save();
+
+            assertThat(Files.readAllBytes(svcMeta.toPath())[0], is((byte) '{'));
+            assertThat(Files.readAllBytes(srcMeta.toPath())[0], is((byte) '{'));
+            assertThat(Files.readAllBytes(sourceMeta.toPath())[0], is((byte) '{'));
+            assertThat(Files.readAllBytes(colMeta.toPath())[0], is((byte) 0));
+        } finally {
+            PersoniumUnitConfig.set(PersoniumUnitConfig.BinaryData.METADATA_FORMAT, formatBefore);
+            FileUtils.deleteDirectory(svcDir);
+            FileUtils.deleteDirectory(colDir);
+        }
+    }
+
+    /**
+     * Test load().
+     * Normal.
+     * Cached metadata is not shared and the replaced file is read again.
+     * @throws Exception Unintended exception in test
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void load_Normal_cache_invalidation() throws Exception {
+        String metaPath = unitTestPath + "/.pmeta";
+        File metaFile = new File(metaPath);
+        File tempFile = new File(unitTestPath + "/.pmeta.temp");
+
+        try {
+            DavMetadataFile saved = DavMetadataFile.prepareNewFile(metaFile, DavCmp.TYPE_DAV_FILE);
+            saved.save();
+
+            DavMetadataFile first = DavMetadataFile.newInstance(metaFile);
+            first.load();
+            // Changes not saved are not seen by others.
+            first.getProperties().put("key", "value");
+            DavMetadataFile second = DavMetadataFile.newInstance(metaFile);
+            second.load();
+            assertThat(second.getProperties().get("key"), is((Object) null));
+
+            // File replaced by another process.
+            JSONObject replaced = (JSONObject) saved.getJSON().clone();
+            replaced.put("t", DavCmp.TYPE_COL_WEBDAV);
+            Files.write(tempFile.toPath(), replaced.toJSONString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), metaFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            DavMetadataFile third = DavMetadataFile.newInstance(metaFile);
+            third.load();
+            assertThat(third.getNodeType(), is(DavCmp.TYPE_COL_WEBDAV));
+        } finally {
+            tempFile.delete();
+            metaFile.delete();
+        }
+    }
 }
@@ -519,11 +519,38 @@ public class DavFileTest extends PersoniumTest {
     }
 
     /**
-     * Rangeヘッダで複数範囲指定すると501レスポンスが返却されること.
-     * MultiPartレスポンスを制限事項とするため501を返却する.
+     * Rangeヘッダで複数範囲指定するとmultipart/byterangesで206レスポンスが返却されること.
      */
     @Test
-    public final void Rangeヘッダで複数範囲指定すると501レスポンスが返却されること() {
+    public final void Rangeヘッダで複数範囲指定するとmultipart_byterangesで206レスポンスが返却されること() {
+        try {
+            String body = "abcdefghijklmn";
+
+            // ファイル新規作成
+            final Http theReq = this.putFileRequest(FILE_NAME, body, null, Setup.TEST_BOX1);
+            theReq.returns().statusCode(HttpStatus.SC_CREATED);
+
+            // ファイル取得
+            String rangeHeader = "bytes=1-2,5-6";
+            TResponse getResp = this.getFileRequestAtRange(FILE_NAME, TEST_BOX1, rangeHeader)
+                    .returns();
+
+            getResp.statusCode(HttpStatus.SC_PARTIAL_CONTENT);
+            assertTrue(getResp.getHeader(HttpHeaders.CONTENT_TYPE).startsWith("multipart/byteranges; boundary="));
+            String resBody = getResp.getBody();
+            assertTrue(resBody.contains("Content-Range: bytes 1-2/14\r\n\r\nbc\r\n"));
+            assertTrue(resBody.contains("Content-Range: bytes 5-6/14\r\n\r\nfg\r\n"));
+        } finally {
+            this.deleteFileRequest(FILE_NAME, null, Setup.TEST_BOX1).returns()
+                    .statusCode(HttpStatus.SC_NO_CONTENT);
+        }
+    }
+
+    /**
+     * Rangeヘッダで隣接する複数範囲を指定するとひとつの範囲にまとめて206レスポンスが返却されること.
+     */
+    @Test
+    public final void Rangeヘッダで隣接する複数範囲を指定するとひとつの範囲で206レスポンスが返却されること() {
         try {
             String body = "abcdefghijklmn";
 
@@ -536,7 +563,10 @@ public class DavFileTest extends PersoniumTest {
             TResponse getResp = this.getFileRequestAtRange(FILE_NAME, TEST_BOX1, rangeHeader)
                     .returns();
 
-            getResp.statusCode(HttpStatus.SC_NOT_IMPLEMENTED);
+            getResp.statusCode(HttpStatus.SC_PARTIAL_CONTENT);
+            assertFalse(getResp.getHeader(HttpHeaders.CONTENT_TYPE).startsWith("multipart/byteranges"));
+            assertEquals("bytes 1-4/14", getResp.getHeader(CommonUtils.HttpHeaders.CONTENT_RANGE));
+            assertEquals("bcde", getResp.getBody());
         } finally {
             this.deleteFileRequest(FILE_NAME, null, Setup.TEST_BOX1).returns()
                     .statusCode(HttpStatus.SC_NO_CONTENT);